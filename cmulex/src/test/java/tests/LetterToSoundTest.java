@@ -16,12 +16,14 @@ import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
 
+import com.sun.speech.freetts.lexicon.ArrayLetterToSound;
 import com.sun.speech.freetts.lexicon.LetterToSound;
 import com.sun.speech.freetts.lexicon.LetterToSoundImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.lang.System.getLogger;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -116,4 +118,24 @@ public class LetterToSoundTest {
             fail("Can't load lts " + ioe);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the array based rules give the same phones as the
+     * rules they were flattened from.
+     */
+    @Test
+    void testArrayLTS() throws Exception {
+        LetterToSoundImpl rules = new LetterToSoundImpl(
+                LetterToSoundTest.class.getResource("/com/sun/speech/freetts/en/us/cmulex_lts.bin").toURI(), true);
+        LetterToSound array = new ArrayLetterToSound(rules);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("***")) {
+                continue;
+            }
+            String word = line.substring(0, line.indexOf(' '));
+            assertArrayEquals(rules.getPhones(word, null), array.getPhones(word, null), word);
+        }
+        assertEquals(0, array.getPhones("", null).length);
+    }
+}
@@ -15,14 +15,22 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.sun.speech.freetts.en.us.CMULexicon;
 import com.sun.speech.freetts.lexicon.Lexicon;
+import com.sun.speech.freetts.lexicon.SyllabifiedPhones;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.lang.System.getLogger;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -112,4 +120,126 @@ public class LexiconTest {
             fail("FILE IO problem: ");
         }
     }
+
+    /**
+     * Tests that only words that are not in the lexicon go through
+     * the letter to sound cache, and that cached results give way to
+     * addenda.
+     */
+    @Test
+    void testLetterToSoundCache() {
+        CMULexicon cmuLex = (CMULexicon) lex;
+        cmuLex.setLetterToSoundCacheSize(10);
+        String[] lts = lex.getPhones("zorblax", null);
+        assertArrayEquals(lts, lex.getPhones("zorblax", null));
+        assertEquals(1, cmuLex.getLetterToSoundCache().getHits());
+        assertEquals(1, cmuLex.getLetterToSoundCache().getMisses());
+
+        // words in the lexicon do not go through the cache
+        lex.getPhones("hello", null);
+        assertEquals(1, cmuLex.getLetterToSoundCache().getMisses());
+        assertEquals(1, cmuLex.getLetterToSoundCache().getHits());
+
+        String[] phones = {"z", "ao1"};
+        lex.addAddendum("zorblax", null, phones);
+        assertArrayEquals(phones, lex.getPhones("zorblax", null));
+        lex.removeAddendum("zorblax", null);
+        assertArrayEquals(lts, lex.getPhones("zorblax", null));
+    }
+
+    /**
+     * Tests that lexicons share their data and that the addenda of one
+     * lexicon can be changed without affecting the other.
+     */
+    @Test
+    void testSharedLexicons() throws Exception {
+        Lexicon first = new CMULexicon("cmulex", true);
+        Lexicon second = new CMULexicon("cmulex", true);
+        first.allocate();
+        second.allocate();
+        String[] hello = second.getPhones("hello", null);
+        assertArrayEquals(hello, first.getPhones("hello", null));
+
+        first.addAddendum("hello", null, new String[] {"hh", "ow1"});
+        assertArrayEquals(hello, second.getPhones("hello", null));
+
+        first.deallocate();
+        assertFalse(first.isLoaded());
+        assertArrayEquals(hello, second.getPhones("hello", null));
+        second.deallocate();
+        assertFalse(second.isLoaded());
+    }
+
+    /**
+     * Tests adding a batch of words to the addenda, and that each
+     * change of the addenda changes the generation of the lexicon.
+     */
+    @Test
+    void testAddAddenda() {
+        long generation = lex.getGeneration();
+        Map<String, String[]> words = new HashMap<>();
+        words.put("zorblax", new String[] {"z", "ao1"});
+        words.put("hello", new String[] {"hh", "ow1"});
+        ((CMULexicon) lex).addAddenda(words, null);
+        assertNotEquals(generation, generation = lex.getGeneration());
+        assertArrayEquals(words.get("zorblax"), lex.getPhones("zorblax", null));
+        assertArrayEquals(words.get("hello"), lex.getPhones("hello", "n"));
+        assertEquals(generation, lex.getGeneration());
+        lex.removeAddendum("hello", null);
+        assertNotEquals(generation, lex.getGeneration());
+        assertEquals(4, lex.getPhones("hello", null).length);
+    }
+
+    /**
+     * Tests that the syllable boundaries stored in the binary lexicon
+     * match those found at runtime.
+     */
+    @Test
+    void testSyllableBoundaries() {
+        for (String word : new String[] {"hello", "syllable", "lexicon", "a"}) {
+            String[] phones = lex.getPhones(word, null);
+            long expected = 0;
+            List<String> syllable = new ArrayList<>();
+            for (int j = 0; j < phones.length; j++) {
+                syllable.add(phones[j]);
+                if (lex.isSyllableBoundary(syllable, phones, j + 1)) {
+                    expected |= 1L << j;
+                    syllable = new ArrayList<>();
+                }
+            }
+            assertEquals(expected, lex.getSyllableBoundaries(word, null), word);
+        }
+        assertEquals(0, lex.getSyllableBoundaries("zorblax", null));
+    }
+
+    /**
+     * Tests that the phones and boundaries got in one call are those
+     * of the separate calls, and that the phones may be changed.
+     */
+    @Test
+    void testSyllabifiedPhones() {
+        for (String word : new String[] {"hello", "syllable", "lexicon", "a", "zorblax"}) {
+            SyllabifiedPhones syllabified = lex.getSyllabifiedPhones(word, null);
+            assertArrayEquals(lex.getPhones(word, null), syllabified.getPhones(), word);
+            assertEquals(lex.getSyllableBoundaries(word, null), syllabified.getBoundaries(), word);
+            syllabified.getPhones()[0] = "xx";
+            assertNotEquals("xx", lex.getPhones(word, null)[0], word);
+        }
+    }
+
+    /**
+     * Tests that a lexicon loaded by the application is not unloaded
+     * when the voices using it deallocate it.
+     */
+    @Test
+    void testExplicitlyLoadedLexicon() throws Exception {
+        Lexicon shared = new CMULexicon("cmulex", true);
+        shared.load();
+        shared.allocate();
+        shared.allocate();
+        shared.deallocate();
+        shared.deallocate();
+        assertTrue(shared.isLoaded());
+        assertNotNull(shared.getPhones("hello", null));
+    }
 }
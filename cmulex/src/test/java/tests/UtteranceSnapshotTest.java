@@ -0,0 +1,135 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.sun.speech.freetts.Age;
+import com.sun.speech.freetts.Gender;
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Token;
+import com.sun.speech.freetts.Tokenizer;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.UtteranceProcessor;
+import com.sun.speech.freetts.UtteranceSnapshot;
+import com.sun.speech.freetts.en.us.CMULexicon;
+import com.sun.speech.freetts.en.us.CMUVoice;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests that the result of the front end of a CMU voice, from tokens
+ * to segment durations and pitch targets, can be captured and
+ * restored.
+ */
+public class UtteranceSnapshotTest {
+
+    private static final String TEXT = "Dr. Smith paid $12.50 on January 1st, 1998 at 12:30. "
+            + "Didn't he call 555-1234?";
+
+    private CMUVoice voice;
+
+    /**
+     * Loads a CMU voice with the CMU lexicon and no back end.
+     */
+    @BeforeEach
+    protected void setUp() {
+        voice = new CMUVoice("front end", Gender.NEUTRAL, Age.NEUTRAL, "front end only",
+                Locale.US, "general", "cmu", new CMULexicon("cmulex")) {
+            @Override
+            protected URI getResource(String resource) throws IOException {
+                try {
+                    return CMUVoice.class.getResource(resource).toURI();
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        voice.allocate();
+    }
+
+    @AfterEach
+    protected void tearDown() {
+        voice.deallocate();
+    }
+
+    /**
+     * Returns an utterance of the tokens of the text.
+     */
+    private Utterance tokenize(String text) {
+        Tokenizer tokenizer = voice.getTokenizer();
+        tokenizer.setInputText(text);
+        List<Token> tokens = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.getNextToken());
+        }
+        return new Utterance(voice, tokens);
+    }
+
+    /**
+     * Runs the front end processors of the voice, which are followed by
+     * the missing back end.
+     */
+    private void runFrontEnd(Utterance utterance) throws Exception {
+        for (UtteranceProcessor processor : voice.getUtteranceProcessors()) {
+            if (processor == null) {
+                break;
+            }
+            processor.processUtterance(utterance);
+        }
+    }
+
+    /**
+     * Returns the segments with their durations and the pitch targets
+     * of the utterance, one string per item.
+     */
+    private static List<String> describe(Utterance utterance) {
+        List<String> items = new ArrayList<>();
+        for (Item item = utterance.getRelation(Relation.SEGMENT).getHead(); item != null; item = item.getNext()) {
+            items.add(item + " " + item.getFeatures().getFloat("end")
+                    + " " + item.findFeature("R:SylStructure.parent.R:Syllable.stress")
+                    + " " + item.findFeature("R:SylStructure.parent.parent.R:Word.name"));
+        }
+        for (Item item = utterance.getRelation(Relation.TARGET).getHead(); item != null; item = item.getNext()) {
+            items.add(item.getFeatures().getFloat("pos") + " " + item.getFeatures().getFloat("f0"));
+        }
+        return items;
+    }
+
+    /**
+     * Tests that the front end result of a real voice can be captured,
+     * and that restoring it gives the same segments and targets as
+     * running the front end.
+     */
+    @Test
+    void testCaptureFrontEnd() throws Exception {
+        Utterance utterance = tokenize(TEXT);
+        runFrontEnd(utterance);
+        List<String> expected = describe(utterance);
+        assertTrue(expected.size() > 50);
+
+        UtteranceSnapshot snapshot = UtteranceSnapshot.capture(utterance);
+        assertNotNull(snapshot, "front end result holds a value that cannot be shared");
+
+        Utterance restored = tokenize(TEXT);
+        snapshot.restore(restored);
+        assertEquals(expected, describe(restored));
+        assertTrue(snapshot.getItemCount() > expected.size());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.clunits.ClusterUnitSelector;
+import com.sun.speech.freetts.clunits.TestClusterUnitDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the unit selection of a cluster unit voice, and with the
+ * <code>gc</code> profiler the garbage it leaves per utterance.  The
+ * voice is a cluster unit database made up at random by
+ * <code>TestClusterUnitDatabase</code>.
+ *
+ * <pre>
+ *   mvn -P benchmark -pl en_us test-compile antrun:run@benchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterUnitSelectorBenchmark {
+
+    private static final int TYPES = 20;
+    private static final int UNITS_PER_TYPE = 200;
+    private static final int SEGMENTS = 60;
+
+    /** the OPTIMAL_COUPLING setting of the database */
+    @Param({"1", "2"})
+    public int optimalCoupling;
+
+    private Path database;
+    private ClusterUnitSelector selector;
+    private Utterance utterance;
+
+    /**
+     * Writes the database, and creates an utterance of segments of
+     * random unit types.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        database = Files.createTempFile("clunits", ".txt");
+        TestClusterUnitDatabase.write(database, new Random(42), TYPES, UNITS_PER_TYPE, optimalCoupling, 3);
+        selector = new ClusterUnitSelector(database.toUri(), seg -> { });
+
+        Random random = new Random(7);
+        utterance = new Utterance(null);
+        Relation segs = utterance.createRelation(Relation.SEGMENT);
+        for (int i = 0; i < SEGMENTS; i++) {
+            Item item = segs.appendItem();
+            item.getFeatures().setString("name", "s" + i);
+            item.getFeatures().setString("clunit_name", TestClusterUnitDatabase.typeName(random.nextInt(TYPES)));
+            item.getFeatures().setFloat("end", 0.08f * (i + 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(database);
+    }
+
+    @Benchmark
+    public Object select() throws Exception {
+        selector.processUtterance(utterance);
+        return utterance.getRelation(Relation.UNIT).getTail().getFeatures().getObject("unit");
+    }
+}
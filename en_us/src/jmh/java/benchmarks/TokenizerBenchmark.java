@@ -0,0 +1,115 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package benchmarks;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.speech.freetts.Token;
+import com.sun.speech.freetts.en.TokenizerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the characters per second the tokenizer scans from a
+ * string, a character buffer and a reader.  The text is a megabyte of
+ * made-up sentences with the punctuation, brackets, quotes and line
+ * breaks the tokenizer splits off.
+ *
+ * <pre>
+ *   mvn -P benchmark -pl en_us test-compile antrun:run@benchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final int LENGTH = 1 << 20;
+
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "jumps", "over", "a", "lazy",
+            "dog", "Dr.", "Smith", "said", "1,024", "items", "cost", "$3.50",
+            "e.g.", "U.S.A.", "well-known", "don't", "it's", "version", "2.0"
+    };
+
+    private static final String[] BEFORE = {"", "", "", "", "\"", "(", "'", "["};
+
+    private static final String[] AFTER = {
+            "", "", "", "", "", ",", ".", ";", ":", "?", "!", "\"", ")", "...", "]"
+    };
+
+    private static final String[] SPACE = {" ", " ", " ", " ", "  ", "\n", "\n\n", "\t"};
+
+    private final TokenizerImpl tokenizer = new TokenizerImpl();
+    private String text;
+
+    /**
+     * Makes up the text.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(LENGTH + 64);
+        while (builder.length() < LENGTH) {
+            builder.append(BEFORE[random.nextInt(BEFORE.length)])
+                    .append(WORDS[random.nextInt(WORDS.length)])
+                    .append(AFTER[random.nextInt(AFTER.length)])
+                    .append(SPACE[random.nextInt(SPACE.length)]);
+        }
+        builder.setLength(LENGTH);
+        text = builder.toString();
+    }
+
+    /**
+     * Returns a checksum of the remaining tokens.
+     */
+    private int scan() {
+        int checksum = 0;
+        while (tokenizer.hasMoreTokens()) {
+            Token token = tokenizer.getNextToken();
+            checksum = checksum * 31 + token.getWord().length() + token.getPosition();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int string() {
+        tokenizer.setInputText(text);
+        return scan();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int buffer() {
+        tokenizer.setInputText(CharBuffer.wrap(text));
+        return scan();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int reader() {
+        tokenizer.setInputReader(new StringReader(text));
+        return scan();
+    }
+}
@@ -36,6 +36,7 @@ import java.util.StringTokenizer;
 
 import com.sun.speech.freetts.cart.CART;
 import com.sun.speech.freetts.cart.CARTImpl;
+import com.sun.speech.freetts.relp.Sample;
 import com.sun.speech.freetts.relp.SampleInfo;
 import com.sun.speech.freetts.relp.SampleSet;
 import com.sun.speech.freetts.util.BulkTimer;
@@ -53,6 +54,21 @@ import static java.lang.System.getLogger;
  * The ClusterUnitDataBase can be loaded from a text or a binary
  * source. The binary form of the database loads much faster and
  * therefore is generally used in a deployed system.
+ * <p>
+ * If the system property <code>com.sun.speech.freetts.relp.floatFrames</code>
+ * is set to true, the LPC frames of the database are dequantized to
+ * floats once, as it is loaded.
+ * <p>
+ * The units are kept as columns of primitive arrays, one for each of
+ * their fields, and the MCEP frames that the join costs compare are
+ * kept one after another in a single array, so that the unit
+ * selection runs through contiguous memory.  The residuals of the
+ * MCEP frames are not used for synthesis.  They are dropped as a binary
+ * database is loaded, and kept from a text database only so that the
+ * binary database generated from it holds them as before.  A database
+ * loaded from its binary form therefore cannot be dumped again.
+ *
+ * @see Sample#PROP_FLOAT_FRAMES
  */
 public class ClusterUnitDatabase {
 
@@ -60,10 +76,20 @@ public class ClusterUnitDatabase {
 
     final static int CLUNIT_NONE = 65535;
 
-    private DatabaseClusterUnit[] units;
+    private int numberOfUnits;
+    private int[] unitType;
+    private int[] unitPhone;
+    private int[] unitStart;
+    private int[] unitEnd;
+    private int[] unitPrev;
+    private int[] unitNext;
     private UnitType[] unitTypes;
     private SampleSet sts;
-    private SampleSet mcep;
+    private SampleInfo mcepInfo;
+    /** the MCEP frames; frame i starts at i times the number of channels */
+    private short[] mcepFrames;
+    /** the residuals of the MCEP frames, kept from a text database */
+    private transient byte[][] mcepResiduals;
 
     private UnitOriginInfo[] unitOrigins; // for debugging
 
@@ -77,7 +103,7 @@ public class ClusterUnitDatabase {
     private Map<String, CART> cartMap = new HashMap<>();
     private CART defaultCart = null;
 
-    private transient List<DatabaseClusterUnit> unitList;
+    private transient List<int[]> unitList;
     private transient int lineCount;
     private transient List<UnitType> unitTypesList;
 
@@ -100,6 +126,9 @@ public class ClusterUnitDatabase {
             loadText(is);
         }
         is.close();
+        if (Utilities.getBoolean(Sample.PROP_FLOAT_FRAMES)) {
+            sts.dequantize();
+        }
         // Attempt to load debug info from a .debug resource.
         // This will silently fail if no debug info is available.
         String urlString = url.toString();
@@ -121,7 +150,7 @@ public class ClusterUnitDatabase {
      * @return the begininning sample index
      */
     int getStart(int unitEntry) {
-        return units[unitEntry].start;
+        return unitStart[unitEntry];
     }
 
     /**
@@ -132,7 +161,7 @@ public class ClusterUnitDatabase {
      * @return the ending sample index
      */
     int getEnd(int unitEntry) {
-        return units[unitEntry].end;
+        return unitEnd[unitEntry];
     }
 
     /**
@@ -142,7 +171,7 @@ public class ClusterUnitDatabase {
      * @return the phone for the entry
      */
     int getPhone(int unitEntry) {
-        return units[unitEntry].phone;
+        return unitPhone[unitEntry];
     }
 
     /**
@@ -242,7 +271,7 @@ public class ClusterUnitDatabase {
      * @return the next unit
      */
     int getNextUnit(int which) {
-        return units[which].next;
+        return unitNext[which];
     }
 
     /**
@@ -252,7 +281,7 @@ public class ClusterUnitDatabase {
      * @return the previous unit
      */
     int getPrevUnit(int which) {
-        return units[which].prev;
+        return unitPrev[which];
     }
 
     /**
@@ -264,9 +293,9 @@ public class ClusterUnitDatabase {
      * equal; otherwise return <code>false</code>
      */
     boolean isUnitTypeEqual(int unitA, int unitB) {
-        return units[unitA].type == units[unitB].type;
-//        String nameA = units[unitA].getName();
-//        String nameB = units[unitB].getName();
+        return unitType[unitA] == unitType[unitB];
+//        String nameA = getUnitName(unitA);
+//        String nameB = getUnitName(unitB);
 //        int lastUnderscore = nameA.lastIndexOf('_');
 //        return nameA.regionMatches(0, nameB, 0, lastUnderscore + 1);
     }
@@ -299,23 +328,13 @@ public class ClusterUnitDatabase {
     }
 
     /**
-     * Looks up the unit with the given name.
+     * Returns the name of the unit with the given index.
      *
-     * @param unitName the name of the unit to look for
-     * @return the unit or the defaultUnit if not found.
+     * @param which the index of the unit
+     * @return the name of the unit's type
      */
-    DatabaseClusterUnit getUnit(String unitName) {
-        return null;
-    }
-
-    /**
-     * Looks up the unit with the given index.
-     *
-     * @param which the index of the unit to look for
-     * @return the unit
-     */
-    DatabaseClusterUnit getUnit(int which) {
-        return units[which];
+    String getUnitName(int which) {
+        return unitTypes[unitType[which]].getName();
     }
 
     /**
@@ -359,12 +378,22 @@ public class ClusterUnitDatabase {
     }
 
     /**
-     * Gets the Mel Ceptra list.
+     * Gets the info on the Mel Ceptra frames.
      *
-     * @return the Mel Ceptra list
+     * @return the sample info of the Mel Ceptra
      */
-    SampleSet getMcep() {
-        return mcep;
+    SampleInfo getMcepInfo() {
+        return mcepInfo;
+    }
+
+    /**
+     * Gets the Mel Ceptra frames, one after another.  Frame
+     * <i>i</i> starts at <i>i</i> times the number of channels.
+     *
+     * @return the Mel Ceptra frames
+     */
+    short[] getMcepFrames() {
+        return mcepFrames;
     }
 
     /**
@@ -429,7 +458,16 @@ public class ClusterUnitDatabase {
             }
             reader.close();
 
-            units = unitList.toArray(new DatabaseClusterUnit[0]);
+            createUnits(unitList.size());
+            for (int i = 0; i < numberOfUnits; i++) {
+                int[] unit = unitList.get(i);
+                unitType[i] = unit[0];
+                unitPhone[i] = unit[1];
+                unitStart[i] = unit[2];
+                unitEnd[i] = unit[3];
+                unitPrev[i] = unit[4];
+                unitNext[i] = unit[5];
+            }
             unitList = null;
 
             unitTypes = unitTypesList.toArray(new UnitType[0]);
@@ -479,7 +517,15 @@ public class ClusterUnitDatabase {
                 if (name.equals("STS")) {
                     sts = new SampleSet(tokenizer, reader);
                 } else {
-                    mcep = new SampleSet(tokenizer, reader);
+                    SampleSet mcep = new SampleSet(tokenizer, reader);
+                    mcepInfo = mcep.getSampleInfo();
+                    int channels = mcepInfo.getNumberOfChannels();
+                    mcepFrames = new short[mcep.getNumberOfSamples() * channels];
+                    mcepResiduals = new byte[mcep.getNumberOfSamples()][];
+                    for (int i = 0; i < mcep.getNumberOfSamples(); i++) {
+                        System.arraycopy(mcep.getSample(i).getFrameData(), 0, mcepFrames, i * channels, channels);
+                        mcepResiduals[i] = mcep.getSample(i).getResidualData();
+                    }
                 }
                 break;
             }
@@ -490,8 +536,7 @@ public class ClusterUnitDatabase {
                 int end = Integer.parseInt(tokenizer.nextToken());
                 int prev = Integer.parseInt(tokenizer.nextToken());
                 int next = Integer.parseInt(tokenizer.nextToken());
-                DatabaseClusterUnit unit = new DatabaseClusterUnit(type, phone, start, end, prev, next);
-                unitList.add(unit);
+                unitList.add(new int[] {type, phone, start, end, prev, next});
                 break;
             }
             case "CART": {
@@ -572,10 +617,14 @@ public class ClusterUnitDatabase {
             joinWeights[i] = bb.getInt();
         }
 
-        int unitsLength = bb.getInt();
-        units = new DatabaseClusterUnit[unitsLength];
-        for (int i = 0; i < units.length; i++) {
-            units[i] = new DatabaseClusterUnit(bb);
+        createUnits(bb.getInt());
+        for (int i = 0; i < numberOfUnits; i++) {
+            unitType[i] = bb.getInt();
+            unitPhone[i] = bb.getInt();
+            unitStart[i] = bb.getInt();
+            unitEnd[i] = bb.getInt();
+            unitPrev[i] = bb.getInt();
+            unitNext[i] = bb.getInt();
         }
 
         int unitTypesLength = bb.getInt();
@@ -584,7 +633,7 @@ public class ClusterUnitDatabase {
             unitTypes[i] = new UnitType(bb);
         }
         sts = new SampleSet(bb);
-        mcep = new SampleSet(bb);
+        loadMcep(bb);
 
         int numCarts = bb.getInt();
         cartMap = new HashMap<>();
@@ -626,10 +675,14 @@ public class ClusterUnitDatabase {
             joinWeights[i] = is.readInt();
         }
 
-        int unitsLength = is.readInt();
-        units = new DatabaseClusterUnit[unitsLength];
-        for (int i = 0; i < units.length; i++) {
-            units[i] = new DatabaseClusterUnit(is);
+        createUnits(is.readInt());
+        for (int i = 0; i < numberOfUnits; i++) {
+            unitType[i] = is.readInt();
+            unitPhone[i] = is.readInt();
+            unitStart[i] = is.readInt();
+            unitEnd[i] = is.readInt();
+            unitPrev[i] = is.readInt();
+            unitNext[i] = is.readInt();
         }
 
         int unitTypesLength = is.readInt();
@@ -638,7 +691,7 @@ public class ClusterUnitDatabase {
             unitTypes[i] = new UnitType(is);
         }
         sts = new SampleSet(is);
-        mcep = new SampleSet(is);
+        loadMcep(is);
 
         int numCarts = is.readInt();
         cartMap = new HashMap<>();
@@ -653,6 +706,91 @@ public class ClusterUnitDatabase {
         }
     }
 
+    /**
+     * Creates the columns of the units.
+     *
+     * @param size the number of units
+     */
+    private void createUnits(int size) {
+        numberOfUnits = size;
+        unitType = new int[size];
+        unitPhone = new int[size];
+        unitStart = new int[size];
+        unitEnd = new int[size];
+        unitPrev = new int[size];
+        unitNext = new int[size];
+    }
+
+    /**
+     * Loads the Mel Ceptra frames, stored as a sample set, from the
+     * given byte buffer.
+     *
+     * @param bb the byte buffer to load the frames from
+     * @throws IOException if there is trouble reading the DB
+     */
+    private void loadMcep(ByteBuffer bb) throws IOException {
+        mcepInfo = new SampleInfo(bb);
+        int channels = mcepInfo.getNumberOfChannels();
+        int numSamples = bb.getInt();
+        mcepFrames = new short[numSamples * channels];
+        for (int i = 0; i < numSamples; i++) {
+            if (bb.getInt() != channels) {
+                throw new Error("Bad MCEP frame size in db");
+            }
+            for (int j = 0; j < channels; j++) {
+                mcepFrames[i * channels + j] = bb.getShort();
+            }
+            int residualSize = bb.getInt();
+            bb.position(bb.position() + residualSize);
+        }
+    }
+
+    /**
+     * Loads the Mel Ceptra frames, stored as a sample set, from the
+     * given input stream.
+     *
+     * @param is the input stream to load the frames from
+     * @throws IOException if there is trouble reading the DB
+     */
+    private void loadMcep(DataInputStream is) throws IOException {
+        mcepInfo = new SampleInfo(is);
+        int channels = mcepInfo.getNumberOfChannels();
+        int numSamples = is.readInt();
+        mcepFrames = new short[numSamples * channels];
+        for (int i = 0; i < numSamples; i++) {
+            if (is.readInt() != channels) {
+                throw new Error("Bad MCEP frame size in db");
+            }
+            for (int j = 0; j < channels; j++) {
+                mcepFrames[i * channels + j] = is.readShort();
+            }
+            int residualSize = is.readInt();
+            is.skipNBytes(residualSize);
+        }
+    }
+
+    /**
+     * Dumps the Mel Ceptra frames, with their residuals, as a sample
+     * set.
+     *
+     * @param os the output stream
+     * @throws IOException if an error occurs
+     */
+    private void dumpMcep(DataOutputStream os) throws IOException {
+        mcepInfo.dumpBinary(os);
+        int channels = mcepInfo.getNumberOfChannels();
+        int numSamples = mcepFrames.length / channels;
+        os.writeInt(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            os.writeInt(channels);
+            for (int j = 0; j < channels; j++) {
+                os.writeShort(mcepFrames[i * channels + j]);
+            }
+            os.writeInt(mcepResiduals[i].length);
+            os.write(mcepResiduals[i]);
+        }
+    }
+
     /**
      * Load debug info about the origin of units from the given input stream.
      * The file format is identical to that of the Festvox .catalogue files.
@@ -664,7 +802,7 @@ public class ClusterUnitDatabase {
      * @throws IOException if a read problem occurs.
      */
     private void loadUnitOrigins(InputStream is) throws IOException {
-        unitOrigins = new UnitOriginInfo[units.length];
+        unitOrigins = new UnitOriginInfo[numberOfUnits];
         BufferedReader in = new BufferedReader(new InputStreamReader(is));
 
         String currentLine;
@@ -691,8 +829,15 @@ public class ClusterUnitDatabase {
      * Dumps a binary form of the database.
      *
      * @param path the path to dump the file to
+     * @throws IllegalStateException if the database was loaded from
+     *                               its binary form, without the
+     *                               residuals of its MCEP frames
      */
     void dumpBinary(String path) {
+        if (mcepResiduals == null) {
+            throw new IllegalStateException("Can't dump a database loaded from binary: "
+                    + "the residuals of its MCEP frames were not loaded");
+        }
         try {
             FileOutputStream fos = new FileOutputStream(path);
             DataOutputStream os = new DataOutputStream(new BufferedOutputStream(fos));
@@ -709,9 +854,14 @@ public class ClusterUnitDatabase {
                 os.writeInt(joinWeight);
             }
 
-            os.writeInt(units.length);
-            for (DatabaseClusterUnit unit : units) {
-                unit.dumpBinary(os);
+            os.writeInt(numberOfUnits);
+            for (int i = 0; i < numberOfUnits; i++) {
+                os.writeInt(unitType[i]);
+                os.writeInt(unitPhone[i]);
+                os.writeInt(unitStart[i]);
+                os.writeInt(unitEnd[i]);
+                os.writeInt(unitPrev[i]);
+                os.writeInt(unitNext[i]);
             }
 
             os.writeInt(unitTypes.length);
@@ -719,7 +869,7 @@ public class ClusterUnitDatabase {
                 unitType.dumpBinary(os);
             }
             sts.dumpBinary(os);
-            mcep.dumpBinary(os);
+            dumpMcep(os);
 
             os.writeInt(cartMap.size());
             for (String name : cartMap.keySet()) {
@@ -875,92 +1025,6 @@ public class ClusterUnitDatabase {
         }
     }
 
-    /**
-     * Represents a unit  for the cluster database.
-     */
-    class DatabaseClusterUnit {
-
-        int type;
-        int phone;
-        int start;
-        int end;
-        int prev;
-        int next;
-
-        /**
-         * Constructs a unit.
-         *
-         * @param type  the name of the unit
-         * @param phone the name of the unit
-         * @param start the starting frame
-         * @param end   the ending frame
-         * @param prev  the previous index
-         * @param next  the next index
-         */
-        DatabaseClusterUnit(int type, int phone, int start, int end, int prev, int next) {
-            this.type = type;
-            this.phone = phone;
-            this.start = start;
-            this.end = end;
-            this.prev = prev;
-            this.next = next;
-        }
-
-        /**
-         * Creates a unit by reading it from the given byte buffer.
-         *
-         * @param bb source of the DatabaseClusterUnit data
-         * @throws IOException if an IO error occurs
-         */
-        DatabaseClusterUnit(ByteBuffer bb) throws IOException {
-            this.type = bb.getInt();
-            this.phone = bb.getInt();
-            this.start = bb.getInt();
-            this.end = bb.getInt();
-            this.prev = bb.getInt();
-            this.next = bb.getInt();
-        }
-
-        /**
-         * Creates a unit by reading it from the given input stream.
-         *
-         * @param is source of the DatabaseClusterUnit data
-         * @throws IOException if an IO error occurs
-         */
-        DatabaseClusterUnit(DataInputStream is) throws IOException {
-            this.type = is.readInt();
-            this.phone = is.readInt();
-            this.start = is.readInt();
-            this.end = is.readInt();
-            this.prev = is.readInt();
-            this.next = is.readInt();
-        }
-
-        /**
-         * Returns the name of the unit.
-         *
-         * @return the name
-         */
-        String getName() {
-            return unitTypes[type].getName();
-        }
-
-        /**
-         * Dumps this unit to the given output stream.
-         *
-         * @param os the output stream
-         * @throws IOException if an error occurs.
-         */
-        void dumpBinary(DataOutputStream os) throws IOException {
-            os.writeInt(type);
-            os.writeInt(phone);
-            os.writeInt(start);
-            os.writeInt(end);
-            os.writeInt(prev);
-            os.writeInt(next);
-        }
-    }
-
     /**
      * Represents debug information about the origin of a unit.
      */
@@ -15,9 +15,11 @@ import java.io.IOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 
 import com.sun.speech.freetts.FeatureSet;
-import com.sun.speech.freetts.FeatureSetImpl;
 import com.sun.speech.freetts.Item;
 import com.sun.speech.freetts.PathExtractor;
 import com.sun.speech.freetts.PathExtractorImpl;
@@ -30,7 +32,6 @@ import com.sun.speech.freetts.cart.CART;
 import com.sun.speech.freetts.clunits.ClusterUnitDatabase.UnitOriginInfo;
 import com.sun.speech.freetts.relp.Sample;
 import com.sun.speech.freetts.relp.SampleInfo;
-import com.sun.speech.freetts.relp.SampleSet;
 import de.dfki.lt.freetts.ClusterUnitNamer;
 
 import static java.lang.System.getLogger;
@@ -49,6 +50,12 @@ public class ClusterUnitSelector implements UtteranceProcessor {
             "R:SylStructure.parent.parent.name", true);
     private ClusterUnitDatabase clunitDB;
     private ClusterUnitNamer unitNamer;
+    /**
+     * The Viterbi searches that are not in use, reused for the next
+     * utterances.  There are as many as threads that selected units at
+     * the same time, and they go away with this selector.
+     */
+    private final Deque<Viterbi> viterbis = new ArrayDeque<>();
 
     /**
      * Constructs a ClusterUnitSelector.
@@ -122,33 +129,43 @@ public class ClusterUnitSelector implements UtteranceProcessor {
      */
     @Override
     public void processUtterance(Utterance utterance) throws ProcessException {
-        Viterbi vd;
         Relation segs = utterance.getRelation(Relation.SEGMENT);
 
         utterance.setObject(SampleInfo.UTT_NAME, clunitDB.getSampleInfo());
         utterance.setObject("sts_list", clunitDB.getSts());
 
-        vd = new Viterbi(segs, clunitDB);
-
         for (Item s = segs.getHead(); s != null; s = s.getNext()) {
             setUnitName(s);
         }
 
-        // Carry out the CART lookup for the target costs, and the viterbi
-        // search for finding the best path (join costs) through the candidates.
-        vd.decode();
-
-        // Now associate the candidate units in the best path
-        // with the items in the segment relation.
-        if (!vd.result("selected_unit")) {
-            logger.log(Level.ERROR, "clunits: can't find path");
-            throw new Error();
+        Viterbi vd;
+        synchronized (viterbis) {
+            vd = viterbis.poll();
         }
+        if (vd == null) {
+            vd = new Viterbi(clunitDB);
+        }
+        try {
+            // Carry out the CART lookup for the target costs, and the viterbi
+            // search for finding the best path (join costs) through the candidates.
+            vd.decode(segs);
+
+            // Now associate the candidate units in the best path
+            // with the items in the segment relation.
+            if (!vd.result("selected_unit")) {
+                logger.log(Level.ERROR, "clunits: can't find path");
+                throw new Error();
+            }
 
-        // If optimal coupling was used, the join points must now be copied
-        // from the path elements to the actual items in the segment relation.
-        vd.copyFeature("unit_prev_move");
-        vd.copyFeature("unit_this_move");
+            // If optimal coupling was used, the join points must now be copied
+            // from the path elements to the actual items in the segment relation.
+            vd.copyMoves();
+        } finally {
+            vd.clear();
+            synchronized (viterbis) {
+                viterbis.push(vd);
+            }
+        }
 
         // Based on this data, create a Unit relation giving the details of the
         // units to concatenate.
@@ -284,191 +301,154 @@ public class ClusterUnitSelector implements UtteranceProcessor {
      * <p>
      * <p>
      * Move to the next unit and repeat the process.
+     * <p>
+     * The candidates of all items are kept one after another in
+     * arrays of primitives: the unit of each candidate, and the score,
+     * previous candidate and join points of the best path that ends in
+     * it.  The arrays grow to the largest utterance seen and are
+     * reused for the next, so that the search allocates nothing per
+     * pair of candidates.  A Viterbi is therefore not thread safe.
      */
     static class Viterbi {
 
-        private int numStates = -1;
-        private boolean bigIsGood = false;
-        private ViterbiPoint timeline = null;
-        private ViterbiPoint lastPoint;
-        private FeatureSet f;
+        /** Marks a candidate that no path reaches. */
+        private static final int NO_PATH = -2;
+
         private ClusterUnitDatabase clunitDB;
 
+        /** the items of the utterance */
+        private Item[] items = new Item[16];
+        private int numberOfItems;
         /**
-         * Creates a Viterbi class to process the given utterance.
-         * A queue of ViterbiPoints corresponding to the Items in the Relation segs
-         * is built up.
+         * where the candidates of each item start; those of the last
+         * item end at <code>candidateStart[numberOfItems]</code>
          */
-        public Viterbi(Relation segs, ClusterUnitDatabase db) {
-            ViterbiPoint last = null;
-            clunitDB = db;
-            f = new FeatureSetImpl();
-            for (Item s = segs.getHead(); true; s = s.getNext()) {
-                ViterbiPoint n = new ViterbiPoint(s);
-                // The number of ViterbiPaths associated with each ViterbiPoint
-                // is determined using the variable numStates.
-                // TODO: Where can numStates be set?
-                if (numStates > 0) {
-                    n.initPathArray(numStates);
-                }
-                if (last != null) { // continue to build up the queue
-                    last.next = n;
-                } else { // timeline is the start of the queue
-                    timeline = n;
-                }
-                last = n;
-
-                if (s == null) { // no further segments, leave loop
-                    lastPoint = n;
-                    break;
-                }
-            }
-
-            if (logger.isLoggable(Level.DEBUG)) {
-                logger.log(Level.DEBUG, "num states " + numStates);
-            }
-
-            if (numStates == 0) { // its a  general beam search
-                timeline.paths = new ViterbiPath();
-            }
-
-            if (numStates == -1) { // dynamic number of states (# cands)
-                timeline.initPathArray(1);
-            }
-        }
-
+        private int[] candidateStart = new int[17];
+        private int numberOfCandidates;
+        /** the unit of each candidate */
+        private int[] candidateUnit = new int[256];
+        /** the score of the best path to each candidate */
+        private int[] score = new int[256];
         /**
-         * Sets the given feature to the given value.
-         *
-         * @param name the name of the feature
-         * @param obj  the new value.
+         * the candidate before each one on its best path, -1 for the
+         * candidates of the first item, or <code>NO_PATH</code>
          */
-        public void setFeature(String name, Object obj) {
-            f.setObject(name, obj);
-        }
+        private int[] from = new int[256];
+        /** the new end of the previous unit on each best path, or -1 */
+        private int[] prevMove = new int[256];
+        /** the new start of the unit on each best path, or -1 */
+        private int[] thisMove = new int[256];
+
+        /** the join points found by the last <code>getOptimalCouple</code> */
+        private int u0Move;
+        private int u1Move;
 
         /**
-         * Gets the value for the given feature.
+         * Creates a Viterbi search over the given database.
          *
-         * @param name the name of the feature
-         * @return the value of the feature
+         * @param db the cluster unit database
          */
-        public Object getFeature(String name) {
-            return f.getObject(name);
+        public Viterbi(ClusterUnitDatabase db) {
+            clunitDB = db;
         }
 
         /**
-         * Carry out a Viterbi search in for a prepared queue of ViterbiPoints.
-         * In a nutshell, each Point represents a target item (a target segment);
-         * for each target Point, a number of Candidate units in the voice database
-         * are determined; a Path structure is built up, based on local best transitions.
-         * Concretely, a Path consists of a (possibly empty) previous Path, a current Candidate,
-         * and a Score. This Score is a quality measure of the Path; it is calculated as the
-         * sum of the previous Path's score, the Candidate's score, and the Cost of joining
-         * the Candidate to the previous Path's Candidate. At each step, only one Path
-         * leading to each Candidate is retained, viz. the Path with the best Score.
+         * Carry out a Viterbi search over the items of the given relation.
+         * In a nutshell, for each target item (a target segment), a number
+         * of candidate units in the voice database are determined; for
+         * each candidate, the best path ending in it is kept.
+         * The score of a path is the score of the best path to a
+         * candidate of the previous item plus the cost of joining that
+         * candidate to this one.
          * All that is left to do is to call result() to get the best-rated
-         * path from among the paths associated with the last Point, and to associate
-         * the resulting Candidates with the segment items they will realise.
+         * path from among the paths ending in the candidates of the last
+         * item, and to associate the resulting candidates with the
+         * segment items they will realise.
+         *
+         * @param segs the segment relation
          */
-        void decode() {
-            for (ViterbiPoint p = timeline; p.next != null; p = p.next) {
-                // The candidates for the current item:
-                p.cands = getCandidate(p.item);
-                if (logger.isLoggable(Level.DEBUG)) {
-                    logger.log(Level.DEBUG, "decode " + p.cands);
+        void decode(Relation segs) {
+            numberOfItems = 0;
+            numberOfCandidates = 0;
+            for (Item s = segs.getHead(); s != null; s = s.getNext()) {
+                if (numberOfItems == items.length) {
+                    items = Arrays.copyOf(items, 2 * items.length);
+                    candidateStart = Arrays.copyOf(candidateStart, items.length + 1);
                 }
-                if (numStates != 0) {
-                    if (numStates == -1) {
-                        // put as many (empty) path elements into p.next as there are candidates in p
-                        p.next.initDynamicPathArray(p.cands);
-                    }
-
-                    // Now go through all existing paths and all candidates for the current item;
-                    // tentatively extend each existing path to each of the candidates,
-                    // but only retain the
-                    // Attention: p.numStates is not numStates!
-                    // numStates = a general flag indicating which type of viterbi search
-                    //             to use (only -1 seems to be implemented);
-                    // p.numStates = the number of paths in p.statePaths, i.e. p.numStates==p.statePaths.length
-                    for (int i = 0; i < p.numStates; i++) {
-                        if ((p == timeline && i == 0) ||
-                                (p.statePaths[i] != null)) {
-                            // We are at the very beginning of the search, or have a usable path to extend
-                            // debug("   dc p " + p);
-                            for (ViterbiCandidate c = p.cands;
-                                 c != null; c = c.next) {
-                                // For the candidate c, create a path extending the previous path
-                                // p.statePaths[i] to that candidate:
-                                ViterbiPath np = getPath(p.statePaths[i], c);
-                                // Compare this path to the existing best path (if any) leading to
-                                // candidate c; only retain the one with the better score.
-                                // TODO: why should the paths leading to the candidates realising p
-                                // be stored in p.next?
-                                addPaths(p.next, np);
-                            }
-                        }
-                    }
-                } else {
-                    System.err.println("Viterbi.decode: general beam search not implemented");
+                items[numberOfItems] = s;
+                candidateStart[numberOfItems] = numberOfCandidates;
+                addCandidates(numberOfItems);
+                if (logger.isLoggable(Level.DEBUG)) {
+                    logger.log(Level.DEBUG, "decode " + (numberOfCandidates
+                            - candidateStart[numberOfItems]) + " candidates");
                 }
+                numberOfItems++;
+                candidateStart[numberOfItems] = numberOfCandidates;
+                addPaths(numberOfItems - 1);
             }
         }
 
         /**
-         * Try to add paths to the given point.
+         * Extends the best paths to the candidates of the previous item
+         * to each candidate of the given item, and keeps the best path
+         * to each candidate.  Of paths of the same score, the one from
+         * the earliest candidate is kept.
          *
-         * @param point the point to add the paths to
-         * @param path  the path
+         * @param item the index of the item
          */
-        void addPaths(ViterbiPoint point, ViterbiPath path) {
-            ViterbiPath nextPath;
-            for (ViterbiPath p = path; p != null; p = nextPath) {
-                nextPath = p.next;
-                addPath(point, p);
+        private void addPaths(int item) {
+            int start = candidateStart[item];
+            int end = candidateStart[item + 1];
+            if (item == 0) {
+                // the paths start here
+                for (int c = start; c < end; c++) {
+                    score[c] = 0;
+                    from[c] = -1;
+                    prevMove[c] = -1;
+                    thisMove[c] = -1;
+                }
+                return;
             }
-        }
 
-        /**
-         * Add the new path to the state path if it is
-         * better than the current path. In this, state means
-         * the position of the candidate associated with this
-         * path in the candidate queue
-         * for the corresponding segment item. In other words,
-         * this method uses newPath as the one path leading to
-         * the candidate newPath.candidate, if it has a better
-         * score than the previously best path leading to that candidate.
-         *
-         * @param point   where the path is added
-         * @param newPath the path to add if its score is best
-         */
-        void addPath(ViterbiPoint point, ViterbiPath newPath) {
-            if (point.statePaths[newPath.state] == null) {
-                // we don't have one yet, so this is best
-                point.statePaths[newPath.state] = newPath;
-            } else if (isBetterThan(newPath.score, point.statePaths[newPath.state].score)) {
-                // its better than what we already have
-                point.statePaths[newPath.state] = newPath;
-            } else {
-                // its not better that what we already have
-                // so we just forget about it.
+            for (int c = start; c < end; c++) {
+                from[c] = NO_PATH;
             }
-        }
+            int optimalCoupling = clunitDB.getOptimalCoupling();
+            for (int p = candidateStart[item - 1]; p < start; p++) {
+                if (from[p] == NO_PATH) {
+                    continue;
+                }
+                int u0 = candidateUnit[p];
+                for (int c = start; c < end; c++) {
+                    //
+                    // Flite 1.1 has some logic here to test to see
+                    // if  the unit database is fully populated or not and if not
+                    // load fixed residuals and calculate distance with a
+                    // different distance algorithm that is designed for fixed
+                    // point. FreeTTS doesn't really need to do that.
+                    //
+                    int u1 = candidateUnit[c];
+                    int cost;
+                    u0Move = -1;
+                    u1Move = -1;
+                    if (optimalCoupling == 1) {
+                        cost = getOptimalCouple(u0, u1);
+                    } else if (optimalCoupling == 2) {
+                        cost = getOptimalCoupleFrame(u0, u1);
+                    } else {
+                        cost = 0;
+                    }
 
-        /**
-         * See if a is better than b. Goodness is defined
-         * by 'bigIsGood'.
-         *
-         * @param a value to check
-         * @param b value to check.
-         *          <p>
-         *          return true if a is better than b.
-         */
-        private boolean isBetterThan(int a, int b) {
-            if (bigIsGood) {
-                return a > b;
-            } else {
-                return a < b;
+//                    cost *= clunitDB.getContinuityWeight();
+                    cost *= 5; // magic number ("continuity weight") from flite
+                    int newScore = cost + score[p];
+                    if (from[c] == NO_PATH || newScore < score[c]) {
+                        score[c] = newScore;
+                        from[c] = p;
+                        prevMove[c] = u0Move;
+                        thisMove[c] = u1Move;
+                    }
+                }
             }
         }
 
@@ -480,56 +460,83 @@ public class ClusterUnitSelector implements UtteranceProcessor {
          * @return true if a best path was found
          */
         boolean result(String feature) {
-            ViterbiPath path;
-
-            if (timeline == null || timeline.next == null) {
+            if (numberOfItems == 0) {
                 return true; // null case succeeds
             }
-            path = findBestPath();
-
-            if (path == null) {
+            int c = findBestPath();
+            if (c == NO_PATH) {
                 return false;
             }
 
-            for (; path != null; path = path.from) {
-                if (path.candidate != null) {
-                    path.candidate.item.getFeatures().setObject(feature, path.candidate.value);
-                }
+            for (int item = numberOfItems - 1; item >= 0; item--) {
+                items[item].getFeatures().setInt(feature, candidateUnit[c]);
+                c = from[c];
             }
             return true;
         }
 
         /**
-         * Given a feature, copy the value associated with feature
-         * name from the path to each item in the path.
-         *
-         * @param feature the name of the feature.
+         * Copies the join points found by optimal coupling from the best
+         * path to its items, as the features "unit_prev_move" and
+         * "unit_this_move".
          */
-        void copyFeature(String feature) {
-            ViterbiPath path = findBestPath();
-            if (path == null) {
+        void copyMoves() {
+            int c = findBestPath();
+            if (c == NO_PATH) {
                 return;  // nothing to copy, empty stream or no solution
             }
 
-            for (; path != null; path = path.from) {
-                if (path.candidate != null && path.isPresent(feature)) {
-                    path.candidate.item.getFeatures().setObject(feature, path.getFeature(feature));
+            for (int item = numberOfItems - 1; item >= 0; item--) {
+                FeatureSet features = items[item].getFeatures();
+                if (prevMove[c] != -1) {
+                    features.setInt("unit_prev_move", prevMove[c]);
+                }
+                if (thisMove[c] != -1) {
+                    features.setInt("unit_this_move", thisMove[c]);
                 }
+                c = from[c];
             }
         }
 
         /**
-         * Finds the best (queue of) candidate(s) for a given (segment) item.
+         * Forgets the items of the last utterance.
+         */
+        void clear() {
+            Arrays.fill(items, 0, numberOfItems, null);
+            numberOfItems = 0;
+            numberOfCandidates = 0;
+        }
+
+        /**
+         * Adds a candidate to the current item.
+         *
+         * @param unit the unit of the candidate
+         */
+        private void addCandidate(int unit) {
+            if (numberOfCandidates == candidateUnit.length) {
+                int size = 2 * candidateUnit.length;
+                candidateUnit = Arrays.copyOf(candidateUnit, size);
+                score = Arrays.copyOf(score, size);
+                from = Arrays.copyOf(from, size);
+                prevMove = Arrays.copyOf(prevMove, size);
+                thisMove = Arrays.copyOf(thisMove, size);
+            }
+            candidateUnit[numberOfCandidates++] = unit;
+        }
+
+        /**
+         * Finds the candidates for the given (segment) item.
          * This traverses a CART tree for target cluster selection as described in
          * the paper introducing the clunits algorithm. This corresponds to the
          * "target costs" described for general unit selection.
+         * <p>
+         * The candidates are kept in the order in which flite keeps
+         * them: the last one found comes first.
          *
-         * @return the first candidate in the queue of candidate units for this item.
+         * @param index the index of the item
          */
-        private ViterbiCandidate getCandidate(Item item) {
-            // TODO: This should better be called getCandidates() (plural form),
-            // because what it does is find all the candidates for the item
-            // and return the head of the queue.
+        private void addCandidates(int index) {
+            Item item = items[index];
             String unitType = item.getFeatures().getString("clunit_name");
             CART cart = clunitDB.getTree(unitType);
             // Here, the unit candidates are selected.
@@ -537,19 +544,10 @@ public class ClusterUnitSelector implements UtteranceProcessor {
             // Now, clist is an array of instance numbers for the units of type
             // unitType that belong to the best cluster according to the CART.
 
-            ViterbiCandidate p;
-            ViterbiCandidate all;
-            ViterbiCandidate gt;
-
-            all = null;
+            int first = numberOfCandidates;
             for (int j : clist) {
-                p = new ViterbiCandidate();
-                p.next = all; // link them reversely: the first in clist will be at the end of the queue
-                p.item = item; // The item is the same for all these candidates in the queue.
-                p.score = 0;
                 // remember the absolute unit index:
-                p.setInt(clunitDB.getUnitIndex(unitType, j));
-                all = p;
+                addCandidate(clunitDB.getUnitIndex(unitType, j));
                 // this is OK
                 if (logger.isLoggable(Level.DEBUG)) {
                     logger.log(Level.DEBUG, "    gc adding " + j);
@@ -564,185 +562,110 @@ public class ClusterUnitSelector implements UtteranceProcessor {
             // are added. A high setting will add candidates which don't fit the
             // target well, but which can be smoothly concatenated with the context.
             // In a sense, this means trading target costs against join costs.
-            if (clunitDB.getExtendSelections() > 0 && item.getPrevious() != null) {
-                // Get the candidates for the preceding (segment) item
-                ViterbiCandidate lc = (ViterbiCandidate) (item.getPrevious().getFeatures().getObject("clunit_cands"));
-                if (logger.isLoggable(Level.DEBUG)) {
-                    logger.log(Level.DEBUG, "      lc " + lc);
-                }
-                for (int e = 0; lc != null && (e < clunitDB.getExtendSelections()); lc = lc.next) {
-                    int nu = clunitDB.getNextUnit(lc.ival);
+            int extendSelections = clunitDB.getExtendSelections();
+            if (extendSelections > 0 && index > 0) {
+                // Go through the candidates for the preceding (segment) item
+                for (int lc = candidateStart[index - 1], e = 0; lc < first && e < extendSelections; lc++) {
+                    int nu = clunitDB.getNextUnit(candidateUnit[lc]);
                     if (logger.isLoggable(Level.DEBUG)) {
                         logger.log(Level.DEBUG, "      e: " + e + " nu: " + nu);
                     }
-                    if (nu == ClusterUnitDatabase.CLUNIT_NONE) {
+                    if (nu == ClusterUnitDatabase.CLUNIT_NONE || numberOfCandidates == first) {
                         continue;
                     }
 
                     // Look through the list of candidates for the current item:
-                    for (gt = all; gt != null; gt = gt.next) {
+                    boolean found = false;
+                    for (int gt = first; gt < numberOfCandidates && !found; gt++) {
                         if (logger.isLoggable(Level.DEBUG)) {
-                            logger.log(Level.DEBUG, "       gt " + gt.ival + " nu " + nu);
-                        }
-                        if (nu == gt.ival) {
-                            // The unit following one of the candidates for the preceding
-                            // item already is a candidate for the current item.
-                            break;
+                            logger.log(Level.DEBUG, "       gt " + candidateUnit[gt] + " nu " + nu);
                         }
+                        // The unit following one of the candidates for the preceding
+                        // item may already be a candidate for the current item.
+                        found = nu == candidateUnit[gt];
                     }
 
+                    // the candidate found last, which comes first
+                    int all = candidateUnit[numberOfCandidates - 1];
                     if (logger.isLoggable(Level.DEBUG)) {
-                        logger.log(Level.DEBUG, "nu " + clunitDB.getUnit(nu).getName() + " all " +
-                                clunitDB.getUnit(all.ival).getName() + " " + all.ival);
+                        logger.log(Level.DEBUG, "nu " + clunitDB.getUnitName(nu) + " all " +
+                                clunitDB.getUnitName(all) + " " + all);
                     }
-                    if ((gt == null) && clunitDB.isUnitTypeEqual(nu, all.ival)) {
+                    if (!found && clunitDB.isUnitTypeEqual(nu, all)) {
                         // nu is of the right unit type and is not yet one of the candidates.
-                        // add it to the queue of candidates for the current item:
-                        p = new ViterbiCandidate();
-                        p.next = all;
-                        p.item = item;
-                        p.score = 0;
-                        p.setInt(nu);
-                        all = p;
+                        // add it to the candidates for the current item:
+                        addCandidate(nu);
                         e++;
                     }
                 }
             }
-            item.getFeatures().setObject("clunit_cands", all);
-            return all;
-        }
-
-        /**
-         * Construct a new path element linking a previous path to the given candidate.
-         * The (penalty) score associated with the new path is calculated as the sum of
-         * the score of the old path plus the score of the candidate itself plus the
-         * join cost of appending the candidate to the nearest candidate in the given path.
-         * This join cost takes into account optimal coupling if the database has
-         * OPTIMAL_COUPLING set to 1. The join position is saved in the new path, as
-         * the features "unit_prev_move" and "unit_this_move".
-         *
-         * @param path      the previous path, or null if this candidate starts a new path
-         * @param candidate the candidate to add to the path
-         * @return a new path, consisting of this candidate appended to the previous path, and
-         * with the cumulative (penalty) score calculated.
-         */
-        private ViterbiPath getPath(ViterbiPath path, ViterbiCandidate candidate) {
-            int cost;
-            ViterbiPath newPath = new ViterbiPath();
-
-            newPath.candidate = candidate;
-            newPath.from = path;
-            //
-            // Flite 1.1 has some logic here to test to see
-            // if  the unit database is fully populated or not and if not
-            // load fixed residuals and calculate distance with a
-            // different distance algorithm that is designed for fixed
-            // point. FreeTTS doesn't really need to do that.
-            //
-
-            if (path == null || path.candidate == null) {
-                cost = 0;
-            } else {
-                int u0 = path.candidate.ival;
-                int u1 = candidate.ival;
-                if (clunitDB.getOptimalCoupling() == 1) {
-                    Cost oCost = getOptimalCouple(u0, u1);
-                    if (oCost.u0Move != -1) {
-                        newPath.setFeature("unit_prev_move", oCost.u0Move);
-                    }
-                    if (oCost.u1Move != -1) {
-                        newPath.setFeature("unit_this_move", oCost.u1Move);
-                    }
-                    cost = oCost.cost;
-                } else if (clunitDB.getOptimalCoupling() == 2) {
-                    cost = getOptimalCoupleFrame(u0, u1);
-                } else {
-                    cost = 0;
-                }
-            }
 
-//            cost *= clunitDB.getContinuityWeight();
-            cost *= 5; // magic number ("continuity weight") from flite
-            // TODO: remove the state attribute from ViterbiPath, as it is simply path.candidate.pos!
-            newPath.state = candidate.pos;
-            if (path == null) {
-                newPath.score = cost + candidate.score;
-            } else {
-                newPath.score = cost + candidate.score + path.score;
+            // the last candidate found comes first
+            for (int i = first, j = numberOfCandidates - 1; i < j; i++, j--) {
+                int unit = candidateUnit[i];
+                candidateUnit[i] = candidateUnit[j];
+                candidateUnit[j] = unit;
             }
-
-            return newPath;
         }
 
         /**
          * Find the best path. This requires decode() to have been run.
          *
-         * @return the best path.
+         * @return the candidate of the last item in which the best path
+         * ends, or <code>NO_PATH</code> if there is none
          */
-        private ViterbiPath findBestPath() {
-            ViterbiPoint t;
-            int best;
-            int worst;
-            ViterbiPath bestPath = null;
-
-            if (bigIsGood) {
-                worst = Integer.MIN_VALUE;
-            } else {
-                worst = Integer.MAX_VALUE;
-            }
-
-            best = worst;
-
-            // TODO: do not need t, can use lastPoint throughout
-            t = lastPoint;
-
-            if (numStates != 0) {
-                if (logger.isLoggable(Level.DEBUG)) {
-                    logger.log(Level.DEBUG, "fbp ns " + numStates + " t " + t.numStates + " best " + best);
-                }
-                // All paths end in lastPoint, and take into account
-                // previous path segment's scores. Therefore, it is
-                // sufficient to find the best path from among the
-                // paths for lastPoint.
-                for (int i = 0; i < t.numStates; i++) {
-                    if (t.statePaths[i] != null && (isBetterThan(t.statePaths[i].score, best))) {
-                        best = t.statePaths[i].score;
-                        bestPath = t.statePaths[i];
-                    }
+        private int findBestPath() {
+            int best = Integer.MAX_VALUE;
+            int bestPath = NO_PATH;
+            if (numberOfItems == 0) {
+                return bestPath;
+            }
+
+            // All paths end in the candidates of the last item, and
+            // take into account previous path segment's scores.
+            // Therefore, it is sufficient to find the best path from
+            // among the paths to these candidates.
+            for (int c = candidateStart[numberOfItems - 1]; c < numberOfCandidates; c++) {
+                if (from[c] != NO_PATH && score[c] < best) {
+                    best = score[c];
+                    bestPath = c;
                 }
             }
             return bestPath;
         }
 
         /**
-         * Find the optimal coupling frame for a pair of units.
+         * Find the optimal coupling frame for a pair of units.  The
+         * coupling frames found are left in <code>u0Move</code>, the new
+         * end for u0, and <code>u1Move</code>, the new start for u1;
+         * they are -1 if the units are not to be moved.
          *
          * @param u0 first unit to try
          * @param u1 second unit to try
-         * @return the cost for this coupling, including the best coupling frame
+         * @return the cost for this coupling
          */
-        Cost getOptimalCouple(int u0, int u1) {
+        int getOptimalCouple(int u0, int u1) {
             int a, b;
             int u1_p;
             int i, fcount;
             int u0_st, u1_p_st, u0_end, u1_p_end;
             int best_u0, best_u1_p;
             int dist, best_val;
-            Cost cost = new Cost();
 
+            u0Move = -1;
+            u1Move = -1;
             u1_p = clunitDB.getPrevUnit(u1);
 
             // If u0 precedes u1, the cost is 0, and we're finished.
             if (u1_p == u0) {
-                return cost;
+                return 0;
             }
 
             // If u1 does not have a previous unit, or that previous
             // unit does not belong to the same phone, the optimal
             // couple frame must be found between u0 and u1.
             if (u1_p == ClusterUnitDatabase.CLUNIT_NONE || clunitDB.getPhone(u0) != clunitDB.getPhone(u1_p)) {
-                cost.cost = 10 * getOptimalCoupleFrame(u0, u1);
-                return cost;
+                return 10 * getOptimalCoupleFrame(u0, u1);
             }
 
             // If u1 has a valid previous unit, try to find the optimal
@@ -775,7 +698,7 @@ public class ClusterUnitSelector implements UtteranceProcessor {
                 a = clunitDB.getStart(u0) + u0_st + i;
                 b = clunitDB.getStart(u1_p) + u1_p_st + i;
                 dist = getFrameDistance(a, b, clunitDB.getJoinWeights(),
-                        clunitDB.getMcep().getSampleInfo().getNumberOfChannels())
+                        clunitDB.getMcepInfo().getNumberOfChannels())
                         + Math.abs(clunitDB.getSts().getFrameSize(a) -
                         clunitDB.getSts().getFrameSize(b)) * clunitDB.getContinuityWeight();
 
@@ -788,10 +711,9 @@ public class ClusterUnitSelector implements UtteranceProcessor {
 
             // u0Move is the new end for u0
             // u1Move is the new start for u1
-            cost.u0Move = clunitDB.getStart(u0) + best_u0;
-            cost.u1Move = clunitDB.getStart(u1_p) + best_u1_p;
-            cost.cost = 30000 + best_val;
-            return cost;
+            u0Move = clunitDB.getStart(u0) + best_u0;
+            u1Move = clunitDB.getStart(u1_p) + best_u1_p;
+            return 30000 + best_val;
         }
 
         /**
@@ -818,7 +740,7 @@ public class ClusterUnitSelector implements UtteranceProcessor {
 
             return getFrameDistance(a, b,
                     clunitDB.getJoinWeights(),
-                    clunitDB.getMcep().getSampleInfo().getNumberOfChannels())
+                    clunitDB.getMcepInfo().getNumberOfChannels())
                     + Math.abs(clunitDB.getSts().getFrameSize(a) -
                     clunitDB.getSts().getFrameSize(b)) *
                     clunitDB.getContinuityWeight();
@@ -839,202 +761,18 @@ public class ClusterUnitSelector implements UtteranceProcessor {
                 logger.log(Level.DEBUG, " gfd  a " + a + " b " + b + " or " + order);
             }
             int r, i;
-            short[] bv = clunitDB.getMcep().getSample(b).getFrameData();
-            short[] av = clunitDB.getMcep().getSample(a).getFrameData();
+            short[] frames = clunitDB.getMcepFrames();
+            int channels = clunitDB.getMcepInfo().getNumberOfChannels();
+            int av = a * channels;
+            int bv = b * channels;
 
             for (r = 0, i = 0; i < order; i++) {
-                int diff = av[i] - bv[i];
+                int diff = frames[av + i] - frames[bv + i];
                 r += Math.abs(diff) * joinWeights[i] / 65536;
             }
             return r;
         }
     }
-
-    /**
-     * Represents a point in the Viterbi path. A point corresponds to an item,
-     * e.g. a Segment.
-     * Each ViterbiPoint knows
-     * about its next ViterbiPoint, i.e. they can form a queue.
-     */
-    static class ViterbiPoint {
-
-        Item item;
-        // TODO: remove the numStates attribute from ViterbiPoint, as this is only statePaths.length
-        int numStates = 0;
-        int numPaths = 0;
-        ViterbiCandidate cands = null;
-        ViterbiPath paths = null;
-        ViterbiPath[] statePaths = null;
-        ViterbiPoint next = null;
-
-        /**
-         * Creates a ViterbiPoint for the given item. A typical item of choice is a Segment item.
-         *
-         * @param item the item of interest
-         */
-        public ViterbiPoint(Item item) {
-            this.item = item;
-        }
-
-        /**
-         * Initialize the path array to the given size.
-         *
-         * @param size the size of the path array
-         */
-        public void initPathArray(int size) {
-            if (logger.isLoggable(Level.DEBUG)) {
-                logger.log(Level.DEBUG, "init_path_array: " + size);
-            }
-            numStates = size;
-            statePaths = new ViterbiPath[size];
-        }
-
-        /**
-         * Initializes the dynamic path array. The path array will have
-         * as many ViterbiPath members as there are candidates in the
-         * queue starting with candidate.
-         * Side effect on parameter: This will set the pos member of the
-         * candidates in the queue starting with candidate to the position
-         * in the queue.
-         *
-         * @param candidate the first candidate of interest
-         */
-        public void initDynamicPathArray(ViterbiCandidate candidate) {
-            int i = 0;
-            for (ViterbiCandidate cc = candidate; cc != null;
-                 i++, cc = cc.next) {
-                cc.pos = i;
-            }
-            if (logger.isLoggable(Level.DEBUG)) {
-                logger.log(Level.DEBUG, "init_dynamic_ path_array: " + i);
-            }
-            initPathArray(i);
-        }
-
-        public String toString() {
-            return " pnt: " + numStates + " paths " + numPaths;
-        }
-    }
-
-    /**
-     * Represents a candidate for the Viterbi algorthm.
-     * Each candidate knows about its next candidate, i.e. they can form
-     * a queue.
-     */
-    static class ViterbiCandidate {
-
-        int score = 0;
-        Object value = null;
-        int ival = 0;
-        int pos = 0;
-        Item item = null;
-        ViterbiCandidate next = null;
-
-        /**
-         * Sets the object for this candidate.
-         *
-         * @param obj the object
-         */
-        void set(Object obj) {
-            value = obj;
-        }
-
-        /**
-         * Sets the integer value  for this candidate. This can be used for saving
-         * the unit index of the candidate unit represented by this ViterbiCandidate.
-         *
-         * @param ival the integer value
-         */
-        void setInt(int ival) {
-            this.ival = ival;
-            set(ival);
-        }
-
-        /**
-         * Converts this object to a string.
-         *
-         * @return the string form of this object
-         */
-        public String toString() {
-            return "VC: Score " + score + " ival " + ival + " Pos " + pos;
-        }
-    }
-
-    /**
-     * Describes a Viterbi path.
-     */
-    static class ViterbiPath {
-
-        int score = 0;
-        int state = 0;
-        ViterbiCandidate candidate = null;
-        private FeatureSet f = null;
-        ViterbiPath from = null;
-        ViterbiPath next = null;
-
-        /**
-         * Sets a feature with the given name to the given value.
-         *
-         * @param name  the name of the feature
-         * @param value the new value for the feature
-         */
-        void setFeature(String name, Object value) {
-            if (f == null) {
-                f = new FeatureSetImpl();
-            }
-            f.setObject(name, value);
-        }
-
-        /**
-         * Retrieves a feature.
-         *
-         * @param name the name of the feature
-         * @return the feature
-         */
-        Object getFeature(String name) {
-            Object value = null;
-            if (f != null) {
-                value = f.getObject(name);
-            }
-            return value;
-        }
-
-        /**
-         * Determines if the feature with the given name
-         * exsists.
-         *
-         * @param name the feature to look for
-         * @return <code>true</code> if the feature is present;
-         * otherwise <code>false</code>.
-         */
-        boolean isPresent(String name) {
-            if (f == null) {
-                return false;
-            } else {
-                return getFeature(name) != null;
-            }
-        }
-
-        /**
-         * Converts this object to a string.
-         *
-         * @return the string form of this object
-         */
-        public String toString() {
-            return "ViterbiPath score " + score + " state " + state;
-        }
-    }
-}
-
-
-/**
- * Information returned from getOptimalCoupling.
- */
-class Cost {
-
-    int cost = 0;
-    int u0Move = -1;
-    int u1Move = -1;
 }
 
 
@@ -1111,21 +849,7 @@ class ClusterUnit implements com.sun.speech.freetts.Unit {
      */
     @Override
     public Sample getNearestSample(float index) {
-        int i, iSize = 0, nSize;
-        SampleSet sts = db.getSts();
-
-        // loop through all the Samples in this unit
-        for (i = start; i < end; i++) {
-            Sample sample = sts.getSample(i);
-            nSize = iSize + sample.getResidualSize();
-
-            if (Math.abs(index - (float) iSize) <
-                    Math.abs(index - (float) nSize)) {
-                return sample;
-            }
-            iSize = nSize;
-        }
-        return sts.getSample(end - 1);
+        return db.getSts().getNearestSample(start, end, index);
     }
 
     /**
@@ -13,6 +13,8 @@ package com.sun.speech.freetts.en;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 import com.sun.speech.freetts.Token;
 import com.sun.speech.freetts.Tokenizer;
@@ -21,6 +23,15 @@ import com.sun.speech.freetts.Tokenizer;
 /**
  * Implements the tokenizer interface. Breaks an input sequence of
  * characters into a set of tokens.
+ *
+ * <p>The input is scanned in place, as a <code>CharSequence</code>
+ * such as a <code>String</code> or a <code>CharBuffer</code>.  Input
+ * from a <code>Reader</code> is read in blocks into a buffer that is
+ * scanned the same way.  Characters are classified by a table, indexed
+ * by the character, that is built whenever the symbols change, and the
+ * parts of a token are cut straight out of the input.  Empty and
+ * single character parts, such as a single space of whitespace, are
+ * shared strings.
  */
 public class TokenizerImpl implements Tokenizer {
 
@@ -39,26 +50,47 @@ public class TokenizerImpl implements Tokenizer {
     /** A string containing the default post-punctuation characters. */
     public static final String DEFAULT_POSTPUNCTUATION_SYMBOLS = "\"'`.,:;!?(){}[]";
 
+    /** Character class flags, as stored in the class table. */
+    private static final byte WHITESPACE = 1;
+    private static final byte SINGLE_CHAR = 2;
+    private static final byte PREPUNCTUATION = 4;
+    private static final byte POSTPUNCTUATION = 8;
+
+    /** The number of characters read from a reader at a time. */
+    private static final int READ_SIZE = 4096;
+
+    /** Shared strings of the single characters below 256. */
+    private static final String[] CHAR_STRINGS = new String[256];
+
+    static {
+        for (int i = 0; i < CHAR_STRINGS.length; i++) {
+            CHAR_STRINGS[i] = String.valueOf((char) i);
+        }
+    }
+
     /** The line number. */
     private int lineNumber;
 
-    /** The input text (from the Utterance) to tokenize. */
-    private String inputText;
+    /** The text to tokenize, or the buffer of text read from the reader. */
+    private CharSequence text;
+
+    /** The number of valid characters in <code>text</code>. */
+    private int limit;
+
+    /** The position in <code>text</code> of the next character to scan. */
+    private int scanPosition;
+
+    /** The position in <code>text</code> up to which lines are counted. */
+    private int linePosition;
 
     /** The file to read input text from, if using file mode. */
     private Reader reader;
 
-//    /** The token position - doesn't seem really necessary at this point. */
-//    private int tokenPosition = 0;
+    /** The buffer <code>text</code> wraps when reading from a reader. */
+    private char[] readBuffer;
 
-    /** The current character, whether its from the file or the input text. */
-    private int currentChar;
-
-    /**
-     * The current char position for the input text (not the file)
-     * this is called "file_pos" in flite
-     */
-    private int currentPosition;
+    /** The number of characters dropped from the front of the read buffer. */
+    private int readOffset;
 
     /** The delimiting symbols of this tokenizer. */
     private String whitespaceSymbols = DEFAULT_WHITESPACE_SYMBOLS;
@@ -66,6 +98,12 @@ public class TokenizerImpl implements Tokenizer {
     private String prepunctuationSymbols = DEFAULT_PREPUNCTUATION_SYMBOLS;
     private String postpunctuationSymbols = DEFAULT_POSTPUNCTUATION_SYMBOLS;
 
+    /**
+     * The class flags of every character up to the highest symbol;
+     * higher characters belong to no class.
+     */
+    private byte[] charClasses;
+
     /** The error description. */
     private String errorDescription;
 
@@ -73,13 +111,11 @@ public class TokenizerImpl implements Tokenizer {
     private Token token;
     private Token lastToken;
 
-//    /** For timing. */
-//    private long duration = 0;
-
     /**
      * Constructs a Tokenizer.
      */
     public TokenizerImpl() {
+        updateCharClasses();
     }
 
     /**
@@ -89,6 +125,7 @@ public class TokenizerImpl implements Tokenizer {
      * @param string the string to tokenize
      */
     public TokenizerImpl(String string) {
+        this();
         setInputText(string);
     }
 
@@ -99,6 +136,7 @@ public class TokenizerImpl implements Tokenizer {
      * @param file where to read the input from
      */
     public TokenizerImpl(Reader file) {
+        this();
         setInputReader(file);
     }
 
@@ -110,6 +148,7 @@ public class TokenizerImpl implements Tokenizer {
     @Override
     public void setWhitespaceSymbols(String symbols) {
         whitespaceSymbols = symbols;
+        updateCharClasses();
     }
 
     /**
@@ -121,6 +160,7 @@ public class TokenizerImpl implements Tokenizer {
     @Override
     public void setSingleCharSymbols(String symbols) {
         singleCharSymbols = symbols;
+        updateCharClasses();
     }
 
     /**
@@ -132,6 +172,7 @@ public class TokenizerImpl implements Tokenizer {
     @Override
     public void setPrepunctuationSymbols(String symbols) {
         prepunctuationSymbols = symbols;
+        updateCharClasses();
     }
 
     /**
@@ -143,6 +184,29 @@ public class TokenizerImpl implements Tokenizer {
     @Override
     public void setPostpunctuationSymbols(String symbols) {
         postpunctuationSymbols = symbols;
+        updateCharClasses();
+    }
+
+    /**
+     * Rebuilds the character class table from the symbols.
+     */
+    private void updateCharClasses() {
+        int max = 127;
+        String[] symbols = {whitespaceSymbols, singleCharSymbols,
+                prepunctuationSymbols, postpunctuationSymbols};
+        for (String s : symbols) {
+            for (int i = 0; i < s.length(); i++) {
+                max = Math.max(max, s.charAt(i));
+            }
+        }
+        byte[] classes = new byte[max + 1];
+        byte[] flags = {WHITESPACE, SINGLE_CHAR, PREPUNCTUATION, POSTPUNCTUATION};
+        for (int j = 0; j < symbols.length; j++) {
+            for (int i = 0; i < symbols[j].length(); i++) {
+                classes[symbols[j].charAt(i)] |= flags[j];
+            }
+        }
+        charClasses = classes;
     }
 
     /**
@@ -152,12 +216,23 @@ public class TokenizerImpl implements Tokenizer {
      */
     @Override
     public void setInputText(String inputString) {
-        inputText = inputString;
-        currentPosition = 0;
+        setInputText((CharSequence) inputString);
+    }
 
-        if (inputText != null) {
-            getNextChar();
-        }
+    /**
+     * Sets the text to tokenize.  The text is scanned in place, so it
+     * must not change while it is being tokenized.
+     *
+     * @param inputText the text to tokenize, such as a
+     *                  <code>CharBuffer</code>
+     */
+    public void setInputText(CharSequence inputText) {
+        reader = null;
+        readBuffer = null;
+        readOffset = 0;
+        text = inputText;
+        limit = inputText == null ? 0 : inputText.length();
+        resetPosition();
     }
 
     /**
@@ -167,187 +242,217 @@ public class TokenizerImpl implements Tokenizer {
      */
     @Override
     public void setInputReader(Reader reader) {
+        int position = text == null ? 0 : readOffset + Math.min(scanPosition + 1, limit);
         this.reader = reader;
-        getNextChar();
+        readBuffer = new char[READ_SIZE];
+        readOffset = position;
+        text = CharBuffer.wrap(readBuffer);
+        limit = 0;
+        resetPosition();
     }
 
     /**
-     * Returns the next token.
-     *
-     * @return the next token if it exists,
-     * <code>null</code> if no more tokens
+     * Starts scanning at the beginning of new input.  The line number
+     * and the last token carry over from the previous input, so that
+     * <code>isBreak</code> and line numbers continue across inputs.
+     * Positions restart at the beginning of a text, but continue
+     * from the previous input in a reader.
      */
-    @Override
-    public Token getNextToken() {
-        lastToken = token;
-        token = new Token();
-
-        // Skip whitespace
-        token.setWhitespace(getTokenOfCharClass(whitespaceSymbols));
-
-        // quoted strings currently ignored
-
-        // get prepunctuation
-        token.setPrepunctuation(getTokenOfCharClass(prepunctuationSymbols));
-
-        // get the symbol itself
-        if (singleCharSymbols.indexOf(currentChar) != -1) {
-            token.setWord(String.valueOf((char) currentChar));
-            getNextChar();
-        } else {
-            token.setWord(getTokenNotOfCharClass(whitespaceSymbols));
-        }
-
-        token.setPosition(currentPosition);
-        token.setLineNumber(lineNumber);
-
-        // This'll have token *plus* postpunctuation
-        // Get postpunctuation
-        removeTokenPostpunctuation();
-
-        return token;
+    private void resetPosition() {
+        scanPosition = 0;
+        linePosition = 0;
+        countLines(1);
     }
 
     /**
-     * Returns <code>true</code> if there are more tokens,
-     * <code>false</code> otherwise.
+     * Reads more input from the reader, dropping the characters before
+     * the scan position from the buffer.
      *
-     * @return <code>true</code> if there are more tokens
-     * <code>false</code> otherwise
+     * @return <code>true</code> if the buffer changed, so that any
+     * positions in it must be scanned again
      */
-    @Override
-    public boolean hasMoreTokens() {
-        int nextChar = currentChar;
-        return (nextChar != EOF);
+    private boolean fill() {
+        if (reader == null) {
+            return false;
+        }
+        int dropped = scanPosition;
+        if (dropped > 0) {
+            System.arraycopy(readBuffer, dropped, readBuffer, 0, limit - dropped);
+            readOffset += dropped;
+            linePosition -= dropped;
+            limit -= dropped;
+            scanPosition = 0;
+        }
+        if (readBuffer.length - limit < READ_SIZE / 2) {
+            readBuffer = Arrays.copyOf(readBuffer, readBuffer.length * 2);
+            text = CharBuffer.wrap(readBuffer);
+        }
+        try {
+            int count = reader.read(readBuffer, limit, readBuffer.length - limit);
+            if (count > 0) {
+                limit += count;
+                return true;
+            }
+        } catch (IOException ioe) {
+            errorDescription = ioe.getMessage();
+        }
+        reader = null;
+        return dropped > 0;
     }
 
     /**
-     * Advances the currentPosition pointer by 1 (if not exceeding
-     * length of inputText, and returns the character pointed by
-     * currentPosition.
+     * Counts the lines up to the given number of characters past the
+     * scan position, as far as they are available.
      *
-     * @return the next character EOF if no more characters exist
+     * @param lookahead the number of characters past the scan position
      */
-    private int getNextChar() {
-        if (reader != null) {
-            try {
-                int readVal = reader.read();
-                if (readVal == -1) {
-                    currentChar = EOF;
-                } else {
-                    currentChar = (char) readVal;
+    private void countLines(int lookahead) {
+        int end = Math.min(scanPosition + lookahead, limit);
+        if (end > linePosition) {
+            CharSequence text = this.text;
+            for (int i = linePosition; i < end; i++) {
+                if (text.charAt(i) == '\n') {
+                    lineNumber++;
                 }
-            } catch (IOException ioe) {
-                currentChar = EOF;
-                errorDescription = ioe.getMessage();
-            }
-        } else if (inputText != null) {
-            if (currentPosition < inputText.length()) {
-                currentChar = inputText.charAt(currentPosition);
-            } else {
-                currentChar = EOF;
             }
+            linePosition = end;
         }
-        if (currentChar != EOF) {
-            currentPosition++;
-        }
-        if (currentChar == '\n') {
-            lineNumber++;
-        }
-        return currentChar;
     }
 
     /**
-     * Starting from the current position of the input text,
-     * returns the subsequent characters of type charClass,
-     * and not of type singleCharSymbols.
+     * Returns the class flags of the given character.
      *
-     * @param charClass the type of characters to look for
-     * @return a string of characters starting from the current position
-     * of the input text, until it encounters a character not
-     * in the string charClass
+     * @param c the character
+     * @return the class flags
      */
-    private String getTokenOfCharClass(String charClass) {
-        return getTokenByCharClass(charClass, true);
+    private byte getCharClass(char c) {
+        return c < charClasses.length ? charClasses[c] : 0;
     }
 
     /**
-     * Starting from the current position of the input text/file,
-     * returns the subsequent characters, not of type singleCharSymbols,
-     * and ended at characters of type endingCharClass.  E.g., if the current
-     * string is "xxxxyyy", endingCharClass is "yz", and singleCharClass
-     * "abc". Then this method will return to "xxxx".
+     * Returns the characters of the input between the given positions.
      *
-     * @param endingCharClass the type of characters to look for
-     * @return a string of characters from the current position until
-     * it encounters characters in endingCharClass
+     * @param start the position of the first character
+     * @param end   the position after the last character
+     * @return the characters
      */
-    private String getTokenNotOfCharClass(String endingCharClass) {
-        return getTokenByCharClass(endingCharClass, false);
+    private String substring(int start, int end) {
+        if (start == end) {
+            return "";
+        } else if (end - start == 1 && text.charAt(start) < CHAR_STRINGS.length) {
+            return CHAR_STRINGS[text.charAt(start)];
+        } else if (text instanceof String string) {
+            return string.substring(start, end);
+        } else {
+            return text.subSequence(start, end).toString();
+        }
     }
 
     /**
-     * Provides a `compressed' method from getTokenOfCharClass() and
-     * getTokenNotOfCharClass().
-     * If parameter containThisCharClass is <code>true</code>,
-     * then a string from the
-     * current position to the last character in charClass is returned.
-     * If containThisCharClass is <code>false</code>, then a string
-     * before the first
-     * occurrence of a character in containThisCharClass is returned.
+     * Returns the next token.
      *
-     * @param charClass            the string of characters you want included or
-     *                             excluded in your return
-     * @param containThisCharClass determines if you want characters
-     *                             in charClass in the returned string or not
-     * @return a string of characters from the current position until
-     * it encounters characters in endingCharClass
+     * @return the next token if it exists,
+     * <code>null</code> if no more tokens
      */
-    private String getTokenByCharClass(String charClass, boolean containThisCharClass) {
-        StringBuilder buffer = new StringBuilder();
-
-        // if we want the returned string to contain chars in charClass, then
-        // containThisCharClass is TRUE and
-        // (charClass.indexOf(currentChar) != 1) == containThisCharClass)
-        // returns true; if we want it to stop at characters of charClass,
-        // then containThisCharClass is FALSE, and the condition returns
-        // false.
-        while ((charClass.indexOf(currentChar) != -1) == containThisCharClass
-                && singleCharSymbols.indexOf(currentChar) == -1
-                && currentChar != EOF) {
-            buffer.append((char) currentChar);
-            getNextChar();
+    @Override
+    public Token getNextToken() {
+        lastToken = token;
+        token = new Token();
+
+        // a token, together with the character after it, must be in the
+        // buffer before it is cut out; if it is not, read more and rescan
+        int whitespaceEnd, prepunctuationEnd, wordEnd;
+        do {
+            whitespaceEnd = scan(scanPosition, WHITESPACE);
+            prepunctuationEnd = scan(whitespaceEnd, PREPUNCTUATION);
+            if (prepunctuationEnd < limit
+                    && (getCharClass(text.charAt(prepunctuationEnd)) & SINGLE_CHAR) != 0) {
+                wordEnd = prepunctuationEnd + 1;
+            } else {
+                wordEnd = scanWord(prepunctuationEnd);
+            }
+        } while (wordEnd >= limit && fill());
+
+        // quoted strings currently ignored
+
+        // This'll have token *plus* postpunctuation
+        // Get postpunctuation
+        int postpunctuationStart = wordEnd - 1;
+        while (postpunctuationStart > prepunctuationEnd
+                && (getCharClass(text.charAt(postpunctuationStart)) & POSTPUNCTUATION) != 0) {
+            postpunctuationStart--;
         }
-        return buffer.toString();
+        postpunctuationStart++;
+
+        token.setWhitespace(substring(scanPosition, whitespaceEnd));
+        token.setPrepunctuation(substring(whitespaceEnd, prepunctuationEnd));
+        token.setWord(substring(prepunctuationEnd, postpunctuationStart));
+        token.setPostpunctuation(substring(postpunctuationStart, wordEnd));
+
+        // the position and line number include the character after the token
+        scanPosition = wordEnd;
+        countLines(1);
+        token.setPosition(readOffset + Math.min(wordEnd + 1, limit));
+        token.setLineNumber(lineNumber);
+
+        return token;
     }
 
     /**
-     * Removes the postpunctuation characters from the current token.
-     * Copies those postpunctuation characters to the class
-     * variable 'postpunctuation'.
+     * Returns the position after the run of characters of the given
+     * class that starts at the given position.  Single character
+     * symbols end the run.
+     *
+     * @param start     the position to start at
+     * @param charClass the class flag of the characters to skip
+     * @return the position of the first character not in the run
      */
-    private void removeTokenPostpunctuation() {
-        if (token == null) {
-            return;
+    private int scan(int start, byte charClass) {
+        CharSequence text = this.text;
+        int i = start;
+        while (i < limit) {
+            byte flags = getCharClass(text.charAt(i));
+            if ((flags & charClass) == 0 || (flags & SINGLE_CHAR) != 0) {
+                break;
+            }
+            i++;
         }
-        String tokenWord = token.getWord();
-
-        int tokenLength = tokenWord.length();
-        int position = tokenLength - 1;
+        return i;
+    }
 
-        while (position > 0 && postpunctuationSymbols.indexOf(tokenWord.charAt(position)) != -1) {
-            position--;
+    /**
+     * Returns the position after the word that starts at the given
+     * position; the word ends at whitespace or a single character
+     * symbol.
+     *
+     * @param start the position to start at
+     * @return the position of the first character after the word
+     */
+    private int scanWord(int start) {
+        CharSequence text = this.text;
+        int i = start;
+        while (i < limit && (getCharClass(text.charAt(i)) & (WHITESPACE | SINGLE_CHAR)) == 0) {
+            i++;
         }
+        return i;
+    }
 
-        if (tokenLength - 1 != position) {
-            // Copy postpunctuation from token
-            token.setPostpunctuation(tokenWord.substring(position + 1));
-
-            // truncate token at postpunctuation
-            token.setWord(tokenWord.substring(0, position + 1));
-        } else {
-            token.setPostpunctuation("");
+    /**
+     * Returns <code>true</code> if there are more tokens,
+     * <code>false</code> otherwise.
+     *
+     * @return <code>true</code> if there are more tokens
+     * <code>false</code> otherwise
+     */
+    @Override
+    public boolean hasMoreTokens() {
+        while (scanPosition >= limit) {
+            if (!fill()) {
+                return false;
+            }
         }
+        countLines(1);
+        return true;
     }
 
     /**
@@ -123,6 +123,7 @@ public abstract class CMUVoice extends Voice {
         processors.add(getPostLexicalAnalyzer());
         processors.add(new Durator(durzCart, phoneDurations));
         processors.add(new ContourGenerator(getResource("f0_lr_terms.txt"), 170.0f, 34.0f));
+        setFrontEndProcessorCount(processors.size());
 
         processors.add(getUnitSelector());
         processors.add(getPitchmarkGenerator());
@@ -253,6 +254,29 @@ public abstract class CMUVoice extends Voice {
         return phoneSet.getPhoneFeature(phone, featureName);
     }
 
+    /**
+     * Given a phoneme and a feature column, return the feature
+     *
+     * @param phone        the phoneme of interest
+     * @param featureIndex the feature column
+     * @return the feature in the given column
+     */
+    @Override
+    public String getPhoneFeature(String phone, int featureIndex) {
+        return phoneSet.getPhoneFeature(phone, featureIndex);
+    }
+
+    /**
+     * Given a phoneme, return all of its features
+     *
+     * @param phone the phoneme of interest
+     * @return the shared feature row
+     */
+    @Override
+    public String[] getPhoneFeatures(String phone) {
+        return phoneSet.getPhoneFeatures(phone);
+    }
+
     /**
      * Returns the AudioOutput processor to be used by this voice
      * Derived voices typically override this to customize behaviors.
@@ -20,6 +20,7 @@ import com.sun.speech.freetts.Item;
 import com.sun.speech.freetts.PartOfSpeech;
 import com.sun.speech.freetts.PathExtractor;
 import com.sun.speech.freetts.PathExtractorImpl;
+import com.sun.speech.freetts.PhoneSet;
 import com.sun.speech.freetts.ProcessException;
 import com.sun.speech.freetts.Relation;
 import com.sun.speech.freetts.Voice;
@@ -629,7 +630,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "cplace");
+            return getPhoneFeature(item, PhoneSet.CPLACE_INDEX);
         }
     }
 
@@ -652,7 +653,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "ctype");
+            return getPhoneFeature(item, PhoneSet.CTYPE_INDEX);
         }
     }
 
@@ -675,7 +676,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "cvox");
+            return getPhoneFeature(item, PhoneSet.CVOX_INDEX);
         }
     }
 
@@ -698,7 +699,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "vc");
+            return getPhoneFeature(item, PhoneSet.VC_INDEX);
         }
     }
 
@@ -721,7 +722,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "vfront");
+            return getPhoneFeature(item, PhoneSet.VFRONT_INDEX);
         }
     }
 
@@ -744,7 +745,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "vheight");
+            return getPhoneFeature(item, PhoneSet.VHEIGHT_INDEX);
         }
     }
 
@@ -767,7 +768,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "vlng");
+            return getPhoneFeature(item, PhoneSet.VLNG_INDEX);
         }
     }
 
@@ -790,7 +791,7 @@ public class FeatureProcessors {
          */
         @Override
         public String process(Item item) throws ProcessException {
-            return getPhoneFeature(item, "vrnd");
+            return getPhoneFeature(item, PhoneSet.VRND_INDEX);
         }
     }
 
@@ -814,7 +815,7 @@ public class FeatureProcessors {
             int count = 0;
             Item daughter = syl.getItemAs(Relation.SYLLABLE_STRUCTURE).getDaughter();
             while (daughter != null) {
-                if ("+".equals(getPhoneFeature(daughter, "vc"))) {
+                if ("+".equals(getPhoneFeature(daughter, PhoneSet.VC_INDEX))) {
                     break;
                 }
                 count++;
@@ -845,7 +846,7 @@ public class FeatureProcessors {
             Item daughter = syl.getItemAs(Relation.SYLLABLE_STRUCTURE).getLastDaughter();
 
             while (daughter != null) {
-                if ("+".equals(getPhoneFeature(daughter, "vc"))) {
+                if ("+".equals(getPhoneFeature(daughter, PhoneSet.VC_INDEX))) {
                     break;
                 }
 
@@ -1054,7 +1055,7 @@ public class FeatureProcessors {
 
             s = s.getNext();
             while (s != null) {
-                if ("+".equals(getPhoneFeature(s, "vc"))) {
+                if ("+".equals(getPhoneFeature(s, PhoneSet.VC_INDEX))) {
                     return "onset";
                 }
 
@@ -1135,6 +1136,19 @@ public class FeatureProcessors {
         return feature;
     }
 
+    /**
+     * Gets the phoneset feature in the given column
+     *
+     * @param item         item the phoneme of interest
+     * @param featureIndex the feature column, one of the
+     *                     <code>PhoneSet.*_INDEX</code> constants
+     * @return the phone feature for the item
+     */
+    public static String getPhoneFeature(Item item, int featureIndex) {
+        Voice voice = item.getUtterance().getVoice();
+        return voice.getPhoneFeature(item.toString(), featureIndex);
+    }
+
     /**
      * Classifies the type of word break
      *
@@ -1191,10 +1205,10 @@ public class FeatureProcessors {
         Item daughter = seg.getItemAs(Relation.SYLLABLE_STRUCTURE).getParent().getLastDaughter();
 
         while (daughter != null) {
-            if ("+".equals(getPhoneFeature(daughter, "vc"))) {
+            if ("+".equals(getPhoneFeature(daughter, PhoneSet.VC_INDEX))) {
                 return "0";
             }
-            if (ctype.equals(getPhoneFeature(daughter, "ctype"))) {
+            if (ctype.equals(getPhoneFeature(daughter, PhoneSet.CTYPE_INDEX))) {
                 return "1";
             }
 
@@ -1214,10 +1228,10 @@ public class FeatureProcessors {
         Item daughter = seg.getItemAs(Relation.SYLLABLE_STRUCTURE).getParent().getDaughter();
 
         while (daughter != null) {
-            if ("+".equals(getPhoneFeature(daughter, "vc"))) {
+            if ("+".equals(getPhoneFeature(daughter, PhoneSet.VC_INDEX))) {
                 return "0";
             }
-            if (ctype.equals(getPhoneFeature(daughter, "ctype"))) {
+            if (ctype.equals(getPhoneFeature(daughter, PhoneSet.CTYPE_INDEX))) {
                 return "1";
             }
 
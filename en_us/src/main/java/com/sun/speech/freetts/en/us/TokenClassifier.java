@@ -0,0 +1,439 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.en.us;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+/**
+ * Matches a string against a set of regular expressions at once.
+ *
+ * <p>The expressions are compiled together into one deterministic
+ * automaton, so classifying a string reads each of its characters
+ * once, however many expressions there are.  The result is a bit mask
+ * with bit <code>i</code> set if expression <code>i</code> matches the
+ * whole string, as <code>Pattern.matches</code> would.
+ *
+ * <p>Only the plain subset of the regular expression syntax used by
+ * the token patterns is compiled: literals, escaped symbols,
+ * character classes with ranges and negation, <code>.</code>,
+ * grouping, alternation and the <code>*</code>, <code>+</code> and
+ * <code>?</code> operators, all over ASCII characters.  An expression
+ * using anything else is matched with <code>java.util.regex</code>
+ * instead.  Characters outside ASCII are told apart only as line
+ * terminators or not, which is all such expressions can observe.
+ */
+public class TokenClassifier {
+
+    /** The symbol of the characters outside ASCII, but line terminators. */
+    private static final int OTHER = 128;
+
+    /** The symbol of the line terminators outside ASCII. */
+    private static final int LINE_TERMINATOR = 129;
+
+    /** The number of input symbols of the automaton. */
+    private static final int SYMBOLS = 130;
+
+    /** The next state for each state and symbol, or -1 for none. */
+    private final int[] transitions;
+
+    /** The expressions that match when the input ends in each state. */
+    private final int[] accepts;
+
+    /** The expressions that are not compiled into the automaton. */
+    private final Pattern[] fallbacks;
+
+    /**
+     * Compiles the given regular expressions.
+     *
+     * @param regexes the expressions, at most 32
+     * @throws IllegalArgumentException if there are too many expressions
+     */
+    public TokenClassifier(String... regexes) {
+        if (regexes.length > Integer.SIZE) {
+            throw new IllegalArgumentException("too many patterns: " + regexes.length);
+        }
+        Nfa nfa = new Nfa();
+        int start = nfa.newState();
+        fallbacks = new Pattern[regexes.length];
+        for (int i = 0; i < regexes.length; i++) {
+            try {
+                int[] fragment = new Parser(nfa, regexes[i]).parse();
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.accepts.set(fragment[1], nfa.accepts.get(fragment[1]) | (1 << i));
+            } catch (IllegalArgumentException e) {
+                fallbacks[i] = Pattern.compile(regexes[i]);
+            }
+        }
+
+        // subset construction
+        List<BitSet> states = new ArrayList<>();
+        Map<BitSet, Integer> stateIndex = new HashMap<>();
+        List<int[]> rows = new ArrayList<>();
+        BitSet initial = new BitSet();
+        initial.set(start);
+        nfa.closure(initial);
+        states.add(initial);
+        stateIndex.put(initial, 0);
+        for (int s = 0; s < states.size(); s++) {
+            BitSet set = states.get(s);
+            int[] row = new int[SYMBOLS];
+            for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                BitSet next = nfa.step(set, symbol);
+                if (next.isEmpty()) {
+                    row[symbol] = -1;
+                } else {
+                    Integer index = stateIndex.get(next);
+                    if (index == null) {
+                        index = states.size();
+                        states.add(next);
+                        stateIndex.put(next, index);
+                    }
+                    row[symbol] = index;
+                }
+            }
+            rows.add(row);
+        }
+
+        transitions = new int[states.size() * SYMBOLS];
+        accepts = new int[states.size()];
+        for (int s = 0; s < states.size(); s++) {
+            System.arraycopy(rows.get(s), 0, transitions, s * SYMBOLS, SYMBOLS);
+            BitSet set = states.get(s);
+            for (int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) {
+                accepts[s] |= nfa.accepts.get(n);
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol of the given character.
+     *
+     * @param c the character
+     * @return the symbol
+     */
+    private static int getSymbol(char c) {
+        if (c < OTHER) {
+            return c;
+        } else if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+            return LINE_TERMINATOR;
+        } else {
+            return OTHER;
+        }
+    }
+
+    /**
+     * Returns the expressions that match the whole of the given string.
+     *
+     * @param input the string to classify
+     * @return a mask with bit <code>i</code> set if expression
+     * <code>i</code> matches
+     */
+    public int classify(CharSequence input) {
+        int state = 0;
+        int length = input.length();
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = transitions[state * SYMBOLS + getSymbol(input.charAt(i))];
+        }
+        int classes = state >= 0 ? accepts[state] : 0;
+        for (int i = 0; i < fallbacks.length; i++) {
+            if (fallbacks[i] != null && fallbacks[i].matcher(input).matches()) {
+                classes |= 1 << i;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the number of states of the automaton.
+     *
+     * @return the number of states
+     */
+    public int getStateCount() {
+        return accepts.length;
+    }
+
+    /**
+     * A nondeterministic automaton with epsilon moves, built while the
+     * expressions are parsed.
+     */
+    private static class Nfa {
+        /** The epsilon moves of each state. */
+        final List<List<Integer>> epsilons = new ArrayList<>();
+        /** The symbols each state moves on, or null. */
+        final List<BitSet> symbols = new ArrayList<>();
+        /** The state each state moves to on its symbols. */
+        final List<Integer> targets = new ArrayList<>();
+        /** The expressions each state accepts. */
+        final List<Integer> accepts = new ArrayList<>();
+
+        /**
+         * Adds a state.
+         *
+         * @return the new state
+         */
+        int newState() {
+            epsilons.add(new ArrayList<>());
+            symbols.add(null);
+            targets.add(-1);
+            accepts.add(0);
+            return epsilons.size() - 1;
+        }
+
+        /**
+         * Adds an epsilon move.
+         *
+         * @param from the state to move from
+         * @param to   the state to move to
+         */
+        void addEpsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        /**
+         * Sets the move of a state on a set of symbols.
+         *
+         * @param from the state to move from
+         * @param set  the symbols
+         * @param to   the state to move to
+         */
+        void setMove(int from, BitSet set, int to) {
+            symbols.set(from, set);
+            targets.set(from, to);
+        }
+
+        /**
+         * Adds to the set all states it reaches through epsilon moves.
+         *
+         * @param set the set of states
+         */
+        void closure(BitSet set) {
+            List<Integer> stack = new ArrayList<>();
+            for (int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) {
+                stack.add(n);
+            }
+            while (!stack.isEmpty()) {
+                int n = stack.remove(stack.size() - 1);
+                for (int next : epsilons.get(n)) {
+                    if (!set.get(next)) {
+                        set.set(next);
+                        stack.add(next);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the states the given set moves to on a symbol.
+         *
+         * @param set    the set of states
+         * @param symbol the symbol
+         * @return the closed set of next states
+         */
+        BitSet step(BitSet set, int symbol) {
+            BitSet next = new BitSet();
+            for (int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) {
+                BitSet on = symbols.get(n);
+                if (on != null && on.get(symbol)) {
+                    next.set(targets.get(n));
+                }
+            }
+            closure(next);
+            return next;
+        }
+    }
+
+    /**
+     * Parses a regular expression into a fragment of an automaton.
+     * A fragment is a pair of states: the one it starts at and the one
+     * it accepts in.
+     */
+    private static class Parser {
+        private final Nfa nfa;
+        private final String regex;
+        private int pos;
+
+        /**
+         * Creates a parser.
+         *
+         * @param nfa   the automaton to add to
+         * @param regex the expression
+         */
+        Parser(Nfa nfa, String regex) {
+            this.nfa = nfa;
+            this.regex = regex;
+        }
+
+        /**
+         * Parses the whole expression.
+         *
+         * @return the fragment
+         * @throws IllegalArgumentException if the syntax is not supported
+         */
+        int[] parse() {
+            int[] fragment = parseAlternation();
+            if (pos != regex.length()) {
+                throw new IllegalArgumentException(regex);
+            }
+            return fragment;
+        }
+
+        private int[] parseAlternation() {
+            int[] fragment = parseConcatenation();
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                int[] other = parseConcatenation();
+                int start = nfa.newState();
+                int end = nfa.newState();
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.addEpsilon(start, other[0]);
+                nfa.addEpsilon(fragment[1], end);
+                nfa.addEpsilon(other[1], end);
+                fragment = new int[] {start, end};
+            }
+            return fragment;
+        }
+
+        private int[] parseConcatenation() {
+            int start = nfa.newState();
+            int end = start;
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                int[] next = parseRepetition();
+                nfa.addEpsilon(end, next[0]);
+                end = next[1];
+            }
+            return new int[] {start, end};
+        }
+
+        private int[] parseRepetition() {
+            int[] fragment = parseAtom();
+            while (pos < regex.length()) {
+                char op = regex.charAt(pos);
+                if (op != '*' && op != '+' && op != '?') {
+                    break;
+                }
+                pos++;
+                int start = nfa.newState();
+                int end = nfa.newState();
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.addEpsilon(fragment[1], end);
+                if (op != '+') {
+                    nfa.addEpsilon(start, end);
+                }
+                if (op != '?') {
+                    nfa.addEpsilon(fragment[1], fragment[0]);
+                }
+                fragment = new int[] {start, end};
+            }
+            return fragment;
+        }
+
+        private int[] parseAtom() {
+            char c = regex.charAt(pos++);
+            BitSet set;
+            switch (c) {
+            case '(':
+                if (pos < regex.length() && regex.charAt(pos) == '?') {
+                    throw new IllegalArgumentException(regex);
+                }
+                int[] group = parseAlternation();
+                expect(')');
+                return group;
+            case '[':
+                set = parseClass();
+                break;
+            case '.':
+                set = new BitSet(SYMBOLS);
+                set.set(0, SYMBOLS);
+                set.clear('\n');
+                set.clear('\r');
+                set.clear(LINE_TERMINATOR);
+                break;
+            case '\\':
+                set = new BitSet(SYMBOLS);
+                set.set(parseEscape());
+                break;
+            case '*', '+', '?', '{', '}', '^', '$', ')', ']':
+                throw new IllegalArgumentException(regex);
+            default:
+                set = new BitSet(SYMBOLS);
+                set.set(checkAscii(c));
+                break;
+            }
+            int start = nfa.newState();
+            int end = nfa.newState();
+            nfa.setMove(start, set, end);
+            return new int[] {start, end};
+        }
+
+        private BitSet parseClass() {
+            BitSet set = new BitSet(SYMBOLS);
+            boolean negate = pos < regex.length() && regex.charAt(pos) == '^';
+            if (negate) {
+                pos++;
+            }
+            boolean first = true;
+            while (true) {
+                if (pos >= regex.length()) {
+                    throw new IllegalArgumentException(regex);
+                }
+                char c = regex.charAt(pos++);
+                if (c == ']' && !first) {
+                    break;
+                } else if (c == '[' || c == '&') {
+                    throw new IllegalArgumentException(regex);
+                }
+                int low = c == '\\' ? parseEscape() : checkAscii(c);
+                int high = low;
+                if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    char h = regex.charAt(pos++);
+                    high = h == '\\' ? parseEscape() : checkAscii(h);
+                }
+                if (high < low) {
+                    throw new IllegalArgumentException(regex);
+                }
+                set.set(low, high + 1);
+                first = false;
+            }
+            if (negate) {
+                set.flip(0, SYMBOLS);
+            }
+            return set;
+        }
+
+        private int parseEscape() {
+            if (pos >= regex.length()) {
+                throw new IllegalArgumentException(regex);
+            }
+            char c = regex.charAt(pos++);
+            if (Character.isLetterOrDigit(c)) {
+                throw new IllegalArgumentException(regex);
+            }
+            return checkAscii(c);
+        }
+
+        private int checkAscii(char c) {
+            if (c >= OTHER) {
+                throw new IllegalArgumentException(regex);
+            }
+            return c;
+        }
+
+        private void expect(char c) {
+            if (pos >= regex.length() || regex.charAt(pos) != c) {
+                throw new IllegalArgumentException(regex);
+            }
+            pos++;
+        }
+    }
+}
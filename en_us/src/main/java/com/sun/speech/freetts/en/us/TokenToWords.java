@@ -11,10 +11,10 @@
 
 package com.sun.speech.freetts.en.us;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.sun.speech.freetts.FeatureSet;
 import com.sun.speech.freetts.Item;
@@ -23,6 +23,7 @@ import com.sun.speech.freetts.Relation;
 import com.sun.speech.freetts.Utterance;
 import com.sun.speech.freetts.UtteranceProcessor;
 import com.sun.speech.freetts.cart.CART;
+import com.sun.speech.freetts.util.LRUCache;
 import com.sun.speech.freetts.util.Utilities;
 
 
@@ -36,51 +37,95 @@ import com.sun.speech.freetts.util.Utilities;
  * <code>
  * lang/usenglish/us_text.c
  * </code>
+ * <p>
+ * The words of tokens that expand the same whatever surrounds them,
+ * such as "$12.50", "12:30" or "U.S.A", and of numbers once the number
+ * CART has classified them, can be cached.  The cache is off by
+ * default; to keep the words of up to 1000 tokens, set the following
+ * property (or call <code>setNormalizationCacheSize</code>):
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.en.us.normalizationCacheSize=1000
+ * </pre>
  */
 public class TokenToWords implements UtteranceProcessor {
 
     /** Regular expression for something that has a vowel */
     private static final String RX_HAS_VOWEL = ".*[aeiouAEIOU].*";
 
-    // Patterns for regular expression matching
-    private static final Pattern alphabetPattern;
-    private static final Pattern commaIntPattern;
-    private static final Pattern digits2DashPattern;
-    private static final Pattern digitsPattern;
-    private static final Pattern digitsSlashDigitsPattern;
-    private static final Pattern dottedAbbrevPattern;
-    private static final Pattern doublePattern;
-    private static final Pattern drStPattern;
-    private static final Pattern fourDigitsPattern;
-    private static final Pattern hasVowelPattern;
-    private static final Pattern illionPattern;
-    private static final Pattern numberTimePattern;
-    private static final Pattern numessPattern;
-    private static final Pattern ordinalPattern;
-    private static final Pattern romanNumbersPattern;
-    private static final Pattern sevenPhoneNumberPattern;
-    private static final Pattern threeDigitsPattern;
-    private static final Pattern usMoneyPattern;
+    // Classes of tokens, as bits of the mask the classifier returns
+    private static final int ALPHABET = 1;
+    private static final int COMMA_INT = 1 << 1;
+    private static final int DIGITS2DASH = 1 << 2;
+    private static final int DIGITS = 1 << 3;
+    private static final int DIGITS_SLASH_DIGITS = 1 << 4;
+    private static final int DOTTED_ABBREV = 1 << 5;
+    private static final int DOUBLE = 1 << 6;
+    private static final int DRST = 1 << 7;
+    private static final int FOUR_DIGITS = 1 << 8;
+    private static final int ILLION = 1 << 9;
+    private static final int NUMBER_TIME = 1 << 10;
+    private static final int NUMESS = 1 << 11;
+    private static final int ORDINAL = 1 << 12;
+    private static final int ROMAN_NUMBER = 1 << 13;
+    private static final int SEVEN_PHONE_NUMBER = 1 << 14;
+    private static final int THREE_DIGITS = 1 << 15;
+    private static final int US_MONEY = 1 << 16;
+
+    /** Matches the token patterns, in the order of the class bits. */
+    private static final TokenClassifier classifier = new TokenClassifier(
+            USEnglish.RX_ALPHABET,
+            USEnglish.RX_COMMAINT,
+            USEnglish.RX_DIGITS2DASH,
+            USEnglish.RX_DIGITS,
+            USEnglish.RX_DIGITSSLASHDIGITS,
+            USEnglish.RX_DOTTED_ABBREV,
+            USEnglish.RX_DOUBLE,
+            USEnglish.RX_DRST,
+            USEnglish.RX_FOUR_DIGIT,
+            USEnglish.RX_ILLION,
+            USEnglish.RX_NUMBER_TIME,
+            USEnglish.RX_NUMESS,
+            USEnglish.RX_ORDINAL_NUMBER,
+            USEnglish.RX_ROMAN_NUMBER,
+            USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER,
+            USEnglish.RX_THREE_DIGIT,
+            USEnglish.RX_US_MONEY);
 
-    static {
-        alphabetPattern = Pattern.compile(USEnglish.RX_ALPHABET);
-        commaIntPattern = Pattern.compile(USEnglish.RX_COMMAINT);
-        digits2DashPattern = Pattern.compile(USEnglish.RX_DIGITS2DASH);
-        digitsPattern = Pattern.compile(USEnglish.RX_DIGITS);
-        digitsSlashDigitsPattern = Pattern.compile(USEnglish.RX_DIGITSSLASHDIGITS);
-        dottedAbbrevPattern = Pattern.compile(USEnglish.RX_DOTTED_ABBREV);
-        doublePattern = Pattern.compile(USEnglish.RX_DOUBLE);
-        drStPattern = Pattern.compile(USEnglish.RX_DRST);
-        fourDigitsPattern = Pattern.compile(USEnglish.RX_FOUR_DIGIT);
-        hasVowelPattern = Pattern.compile(USEnglish.RX_HAS_VOWEL);
-        illionPattern = Pattern.compile(USEnglish.RX_ILLION);
-        numberTimePattern = Pattern.compile(USEnglish.RX_NUMBER_TIME);
-        numessPattern = Pattern.compile(USEnglish.RX_NUMESS);
-        ordinalPattern = Pattern.compile(USEnglish.RX_ORDINAL_NUMBER);
-        romanNumbersPattern = Pattern.compile(USEnglish.RX_ROMAN_NUMBER);
-        sevenPhoneNumberPattern = Pattern.compile(USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER);
-        threeDigitsPattern = Pattern.compile(USEnglish.RX_THREE_DIGIT);
-        usMoneyPattern = Pattern.compile(USEnglish.RX_US_MONEY);
+    /**
+     * The classes of a missing name, which <code>findFeature</code>
+     * returns as "0".
+     */
+    private static final int NO_NAME_CLASSES = classifier.classify("0");
+
+    /** The token feature the classes of its name are cached in. */
+    private static final String CLASSES_FEATURE = "token_classes";
+
+    /**
+     * The words a token expands to, as cached in the normalization
+     * cache.
+     */
+    private static final class Expansion {
+        final String[] words;
+        final boolean[] breaks;
+
+        Expansion(String[] words, boolean[] breaks) {
+            this.words = words;
+            this.breaks = breaks;
+        }
+    }
+
+    /**
+     * The classes of a token name, cached on the token item.
+     */
+    private static final class NameClasses {
+        final String name;
+        final int classes;
+
+        NameClasses(String name, int classes) {
+            this.name = name;
+            this.classes = classes;
+        }
     }
 
     // King-like words 
@@ -258,6 +303,11 @@ public class TokenToWords implements UtteranceProcessor {
     // a CART for classifying numbers
     private CART cart;
 
+    // the words of tokens, indexed by their context class and the token,
+    // or null if caching is disabled
+    private LRUCache<String, Expansion> normalizationCache =
+            createNormalizationCache(Utilities.getInteger("com.sun.speech.freetts.en.us.normalizationCacheSize", 0));
+
     /**
      * Constructs a default USTokenWordProcessor. It uses the USEnglish
      * regular expression set (USEngRegExp) by default.
@@ -279,6 +329,35 @@ public class TokenToWords implements UtteranceProcessor {
         return tokenItem;
     }
 
+    /**
+     * Sets the number of tokens whose words are cached.  Any cached
+     * words are discarded.
+     *
+     * @param size the number of tokens, or 0 to disable the cache
+     */
+    public void setNormalizationCacheSize(int size) {
+        normalizationCache = createNormalizationCache(size);
+    }
+
+    /**
+     * Returns the cache of token words, for reporting its hit rate.
+     *
+     * @return the cache, or <code>null</code> if it is disabled
+     */
+    public LRUCache<String, ?> getNormalizationCache() {
+        return normalizationCache;
+    }
+
+    /**
+     * Creates a normalization cache of the given size.
+     *
+     * @param size the number of tokens, or 0 for no cache
+     * @return the cache, or <code>null</code>
+     */
+    private static LRUCache<String, Expansion> createNormalizationCache(int size) {
+        return size > 0 ? new LRUCache<>(size) : null;
+    }
+
     /**
      * process the utterance
      *
@@ -295,45 +374,117 @@ public class TokenToWords implements UtteranceProcessor {
 
         wordRelation = WordRelation.createWordRelation(utterance, this);
 
-        for (tokenItem = tokenRelation.getHead();
-             tokenItem != null;
-             tokenItem = tokenItem.getNext()) {
+        try {
+            for (tokenItem = tokenRelation.getHead();
+                 tokenItem != null;
+                 tokenItem = tokenItem.getNext()) {
 
-            FeatureSet featureSet = tokenItem.getFeatures();
-            String tokenVal = featureSet.getString("name");
+                FeatureSet featureSet = tokenItem.getFeatures();
+                String tokenVal = featureSet.getString("name");
 
-            // convert the token into a list of words
-            tokenToWords(tokenVal);
+                // convert the token into a list of words
+                tokenToWords(tokenVal);
+            }
+        } finally {
+            for (Item item = tokenRelation.getHead(); item != null; item = item.getNext()) {
+                item.getFeatures().remove(CLASSES_FEATURE);
+            }
         }
     }
 
+    /**
+     * Returns the classes of the name of the given token item, as
+     * <code>findFeature</code> would return it.  The classes are
+     * cached on the item, so that each token is classified once while
+     * it is converted and while its neighbours look at it.
+     *
+     * @param item the token item, or <code>null</code>
+     * @return the classes of the name
+     */
+    private static int getNameClasses(Item item) {
+        if (item == null) {
+            return NO_NAME_CLASSES;
+        }
+        FeatureSet featureSet = item.getFeatures();
+        String name = (String) featureSet.getObject("name");
+        if (name == null) {
+            return NO_NAME_CLASSES;
+        }
+        Object cached = featureSet.getObject(CLASSES_FEATURE);
+        if (cached instanceof NameClasses nameClasses && nameClasses.name.equals(name)) {
+            return nameClasses.classes;
+        }
+        int classes = classifier.classify(name);
+        featureSet.setObject(CLASSES_FEATURE, new NameClasses(name, classes));
+        return classes;
+    }
+
+    /**
+     * Returns the classes of the name of the token before the current
+     * one, as the feature "p.name" or "p.p.name".
+     *
+     * @param distance 1 for the previous token, 2 for the one before
+     * @return the classes of the name
+     */
+    private int getPreviousClasses(int distance) {
+        Item item = tokenItem;
+        for (int i = 0; i < distance && item != null; i++) {
+            item = item.getPrevious();
+        }
+        return getNameClasses(item);
+    }
+
+    /**
+     * Returns the classes of the name of the token after the current
+     * one, as the feature "n.name" or "n.n.name".
+     *
+     * @param distance 1 for the next token, 2 for the one after
+     * @return the classes of the name
+     */
+    private int getNextClasses(int distance) {
+        Item item = tokenItem;
+        for (int i = 0; i < distance && item != null; i++) {
+            item = item.getNext();
+        }
+        return getNameClasses(item);
+    }
+
+    /**
+     * Returns true if the given classes include the given class.
+     *
+     * @param classes the classes of a token
+     * @param c       the class to look for
+     * @return true or false
+     */
+    private static boolean is(int classes, int c) {
+        return (classes & c) != 0;
+    }
+
     /**
      * Returns true if the given token matches part of a phone number
      *
-     * @param tokenVal the string value of the token
+     * @param classes the classes of the token
      * @return true or false
      */
-    private boolean matchesPartPhoneNumber(String tokenVal) {
-
-        String n_name = (String) tokenItem.findFeature("n.name");
-        String n_n_name = (String) tokenItem.findFeature("n.n.name");
-        String p_name = (String) tokenItem.findFeature("p.name");
-        String p_p_name = (String) tokenItem.findFeature("p.p.name");
-
-        boolean matches3DigitsP_name = matches(threeDigitsPattern, p_name);
-
-        return ((matches(threeDigitsPattern, tokenVal) &&
-                ((!matches(digitsPattern, p_name)
-                        && matches(threeDigitsPattern, n_name)
-                        && matches(fourDigitsPattern, n_n_name)) ||
-                        (matches(sevenPhoneNumberPattern, n_name)) ||
-                        (!matches(digitsPattern, p_p_name)
-                                && matches3DigitsP_name
-                                && matches(fourDigitsPattern, n_name)))) ||
-                (matches(fourDigitsPattern, tokenVal) &&
-                        (!matches(digitsPattern, n_name)
-                                && matches3DigitsP_name
-                                && matches(threeDigitsPattern, p_p_name))));
+    private boolean matchesPartPhoneNumber(int classes) {
+
+        int n_name = getNextClasses(1);
+        int n_n_name = getNextClasses(2);
+        int p_name = getPreviousClasses(1);
+        int p_p_name = getPreviousClasses(2);
+
+        return ((is(classes, THREE_DIGITS) &&
+                ((!is(p_name, DIGITS)
+                        && is(n_name, THREE_DIGITS)
+                        && is(n_n_name, FOUR_DIGITS)) ||
+                        (is(n_name, SEVEN_PHONE_NUMBER)) ||
+                        (!is(p_p_name, DIGITS)
+                                && is(p_name, THREE_DIGITS)
+                                && is(n_name, FOUR_DIGITS)))) ||
+                (is(classes, FOUR_DIGITS) &&
+                        (!is(n_name, DIGITS)
+                                && is(p_name, THREE_DIGITS)
+                                && is(p_p_name, THREE_DIGITS))));
     }
 
     /**
@@ -352,6 +503,81 @@ public class TokenToWords implements UtteranceProcessor {
         return false;
     }
 
+    /**
+     * Returns the context class of a token whose words depend on nothing
+     * but the token itself and that class.
+     *
+     * @param tokenVal the token string
+     * @param classes  the classes of the token
+     * @return the context class, or <code>null</code> if the words of the
+     * token depend on more of its context
+     */
+    private String getContextClass(String tokenVal, int classes) {
+        if (is(classes, ALPHABET | DIGITS)) {
+            return null;
+        } else if (is(classes, DOTTED_ABBREV | COMMA_INT | SEVEN_PHONE_NUMBER
+                | NUMBER_TIME | DIGITS2DASH | DOUBLE | ORDINAL)) {
+            return "";
+        } else if (is(classes, US_MONEY) && tokenVal.indexOf('.') != -1) {
+            // amounts without cents are numbers the CART classifies
+            return is(getNextClasses(1), ILLION) ? "illion" : "money";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the words of a token to the WordRelation, from the
+     * normalization cache if they are there.  Otherwise the words are
+     * expanded, and cached if the expansion only added words.
+     *
+     * @param key      the context class and the token
+     * @param expander expands the token into the WordRelation
+     */
+    private void expandCached(String key, Runnable expander) {
+        LRUCache<String, Expansion> cache = normalizationCache;
+        if (cache == null) {
+            expander.run();
+            return;
+        }
+
+        Expansion expansion = cache.get(key);
+        if (expansion != null) {
+            for (int i = 0; i < expansion.words.length; i++) {
+                wordRelation.addWord(expansion.words[i]);
+                if (expansion.breaks[i]) {
+                    wordRelation.addBreak();
+                }
+            }
+            return;
+        }
+
+        Item last = wordRelation.getTail();
+        FeatureSet lastFeatures = last == null ? null : last.getFeatures();
+        Object lastName = last == null ? null : lastFeatures.getObject("name");
+        boolean lastBreak = last != null && lastFeatures.isPresent("break");
+
+        expander.run();
+
+        // an expansion that changed the words before it cannot be replayed
+        if (last != null && (lastName != lastFeatures.getObject("name")
+                || lastBreak != lastFeatures.isPresent("break"))) {
+            return;
+        }
+        List<String> words = new ArrayList<>();
+        List<Boolean> breaks = new ArrayList<>();
+        for (Item item = last == null ? wordRelation.getHead() : last.getNext();
+             item != null; item = item.getNext()) {
+            words.add(item.getFeatures().getString("name"));
+            breaks.add(item.getFeatures().isPresent("break"));
+        }
+        boolean[] breakArray = new boolean[breaks.size()];
+        for (int i = 0; i < breakArray.length; i++) {
+            breakArray[i] = breaks.get(i);
+        }
+        cache.put(key, new Expansion(words.toArray(new String[0]), breakArray));
+    }
+
     /**
      * Converts the given Token into (word) Items in the WordRelation.
      *
@@ -359,9 +585,29 @@ public class TokenToWords implements UtteranceProcessor {
      *                 same as the one in called "name" in flite
      */
     private void tokenToWords(String tokenVal) {
-
         FeatureSet tokenFeatures = tokenItem.getFeatures();
         String itemName = tokenFeatures.getString("name");
+        int classes = tokenVal.equals(itemName) ? getNameClasses(tokenItem) : classifier.classify(tokenVal);
+
+        String contextClass = normalizationCache == null || tokenFeatures.isPresent("phones")
+                ? null : getContextClass(tokenVal, classes);
+        if (contextClass != null) {
+            expandCached(contextClass + ' ' + tokenVal, () -> tokenToWords(tokenVal, itemName, classes));
+        } else {
+            tokenToWords(tokenVal, itemName, classes);
+        }
+    }
+
+    /**
+     * Converts the given Token into (word) Items in the WordRelation.
+     *
+     * @param tokenVal the String value of the token
+     * @param itemName the name of the token item
+     * @param classes  the classes of the token
+     */
+    private void tokenToWords(String tokenVal, String itemName, int classes) {
+
+        FeatureSet tokenFeatures = tokenItem.getFeatures();
         int tokenLength = tokenVal.length();
 
         if (tokenFeatures.isPresent("phones")) {
@@ -374,20 +620,19 @@ public class TokenToWords implements UtteranceProcessor {
             // if A is a sub part of a token, then its ey not ah
             wordRelation.addWord("_a");
 
-        } else if (matches(alphabetPattern, tokenVal)) {
+        } else if (is(classes, ALPHABET)) {
 
-            if (matches(romanNumbersPattern, tokenVal)) {
+            if (is(classes, ROMAN_NUMBER)) {
 
                 // XVIII
                 romanToWords(tokenVal);
 
-            } else if (matches(illionPattern, tokenVal) &&
-                    matches(usMoneyPattern, (String) tokenItem.findFeature("p.name"))) {
+            } else if (is(classes, ILLION) && is(getPreviousClasses(1), US_MONEY)) {
                 // $ X -illion
                 wordRelation.addWord(tokenVal);
                 wordRelation.addWord("dollars");
 
-            } else if (matches(drStPattern, tokenVal)) {
+            } else if (is(classes, DRST)) {
 
                 // St Andrew's St, Dr King Dr
                 drStToWords(tokenVal);
@@ -429,20 +674,20 @@ public class TokenToWords implements UtteranceProcessor {
                 wordRelation.addWord(tokenVal.toLowerCase());
             }
 
-        } else if (matches(dottedAbbrevPattern, tokenVal)) {
+        } else if (is(classes, DOTTED_ABBREV)) {
 
             // U.S.A.
             // remove all dots
             String aaa = Utilities.deleteChar(tokenVal, '.');
             NumberExpander.expandLetters(aaa, wordRelation);
 
-        } else if (matches(commaIntPattern, tokenVal)) {
+        } else if (is(classes, COMMA_INT)) {
 
             // 99,999,999
             String aaa = Utilities.deleteChar(tokenVal, ',');
             NumberExpander.expandReal(aaa, wordRelation);
 
-        } else if (matches(sevenPhoneNumberPattern, tokenVal)) {
+        } else if (is(classes, SEVEN_PHONE_NUMBER)) {
 
             // 234-3434  telephone numbers
             int dashIndex = tokenVal.indexOf('-');
@@ -453,7 +698,7 @@ public class TokenToWords implements UtteranceProcessor {
             wordRelation.addBreak();
             NumberExpander.expandDigits(bbb, wordRelation);
 
-        } else if (matchesPartPhoneNumber(tokenVal)) {
+        } else if (matchesPartPhoneNumber(classes)) {
 
             // part of a telephone number
             String punctuation = (String) tokenItem.findFeature("punc");
@@ -463,7 +708,7 @@ public class TokenToWords implements UtteranceProcessor {
             NumberExpander.expandDigits(tokenVal, wordRelation);
             wordRelation.addBreak();
 
-        } else if (matches(numberTimePattern, tokenVal)) {
+        } else if (is(classes, NUMBER_TIME)) {
 
             // 12:35
             int colonIndex = tokenVal.indexOf(':');
@@ -475,12 +720,12 @@ public class TokenToWords implements UtteranceProcessor {
                 NumberExpander.expandID(bbb, wordRelation);
             }
 
-        } else if (matches(digits2DashPattern, tokenVal)) {
+        } else if (is(classes, DIGITS2DASH)) {
 
             // 999-999-999
             digitsDashToWords(tokenVal);
 
-        } else if (matches(digitsPattern, tokenVal)) {
+        } else if (is(classes, DIGITS)) {
 
             digitsToWords(tokenVal);
 
@@ -496,17 +741,17 @@ public class TokenToWords implements UtteranceProcessor {
             } else {
                 wordRelation.addWord(aaa);
             }
-        } else if (matches(doublePattern, tokenVal)) {
+        } else if (is(classes, DOUBLE)) {
 
             NumberExpander.expandReal(tokenVal, wordRelation);
 
-        } else if (matches(ordinalPattern, tokenVal)) {
+        } else if (is(classes, ORDINAL)) {
 
             // explicit ordinals
             String aaa = tokenVal.substring(0, tokenLength - 2);
             NumberExpander.expandOrdinal(aaa, wordRelation);
 
-        } else if (matches(usMoneyPattern, tokenVal)) {
+        } else if (is(classes, US_MONEY)) {
 
             // US money
             usMoneyToWords(tokenVal);
@@ -518,7 +763,7 @@ public class TokenToWords implements UtteranceProcessor {
             wordRelation.addWord("per");
             wordRelation.addWord("cent");
 
-        } else if (matches(numessPattern, tokenVal)) {
+        } else if (is(classes, NUMESS)) {
 
             // 60s and 7s and 9s
             tokenToWords(tokenVal.substring(0, tokenLength - 1));
@@ -528,7 +773,7 @@ public class TokenToWords implements UtteranceProcessor {
 
             postropheToWords(tokenVal);
 
-        } else if (matches(digitsSlashDigitsPattern, tokenVal) && tokenVal.equals(itemName)) {
+        } else if (is(classes, DIGITS_SLASH_DIGITS) && tokenVal.equals(itemName)) {
 
             digitsSlashDigitsToWords(tokenVal);
 
@@ -536,7 +781,7 @@ public class TokenToWords implements UtteranceProcessor {
 
             dashToWords(tokenVal);
 
-        } else if (tokenLength > 1 && !matches(alphabetPattern, tokenVal)) {
+        } else if (tokenLength > 1 && !is(classes, ALPHABET)) {
 
             notJustAlphasToWords(tokenVal);
 
@@ -578,7 +823,7 @@ public class TokenToWords implements UtteranceProcessor {
         }
 
         if (nsw.equals("nide")) {
-            NumberExpander.expandID(tokenVal, wordRelation);
+            expandCached("nide " + tokenVal, () -> NumberExpander.expandID(tokenVal, wordRelation));
         } else {
             String rName = featureSet.getString("name");
             String digitsType;
@@ -591,20 +836,23 @@ public class TokenToWords implements UtteranceProcessor {
                 featureSet.setString("name", rName);
             }
 
-            switch (digitsType) {
-            case "ordinal":
-                NumberExpander.expandOrdinal(tokenVal, wordRelation);
-                break;
-            case "digits":
-                NumberExpander.expandDigits(tokenVal, wordRelation);
-                break;
-            case "year":
-                NumberExpander.expandID(tokenVal, wordRelation);
-                break;
-            default:
-                NumberExpander.expandNumber(tokenVal, wordRelation);
-                break;
-            }
+            // the class the CART gives is all the context the words depend on
+            expandCached(digitsType + ' ' + tokenVal, () -> {
+                switch (digitsType) {
+                case "ordinal":
+                    NumberExpander.expandOrdinal(tokenVal, wordRelation);
+                    break;
+                case "digits":
+                    NumberExpander.expandDigits(tokenVal, wordRelation);
+                    break;
+                case "year":
+                    NumberExpander.expandID(tokenVal, wordRelation);
+                    break;
+                default:
+                    NumberExpander.expandNumber(tokenVal, wordRelation);
+                    break;
+                }
+            });
         }
     }
 
@@ -746,7 +994,7 @@ public class TokenToWords implements UtteranceProcessor {
 
         int dotIndex = tokenVal.indexOf('.');
 
-        if (matches(illionPattern, (String) tokenItem.findFeature("n.name"))) {
+        if (is(getNextClasses(1), ILLION)) {
             NumberExpander.expandReal(tokenVal.substring(1), wordRelation);
         } else if (dotIndex == -1) {
 
@@ -831,7 +1079,7 @@ public class TokenToWords implements UtteranceProcessor {
         int a, b;
 
         // if the previous token is a number, add an "and"
-        if (matches(digitsPattern, (String) tokenItem.findFeature("p.name"))
+        if (is(getPreviousClasses(1), DIGITS)
                 && tokenItem.getPrevious() != null) {
             wordRelation.addWord("and");
         }
@@ -864,7 +1112,7 @@ public class TokenToWords implements UtteranceProcessor {
         String aaa = tokenVal.substring(0, index);
         String bbb = tokenVal.substring(index + 1);
 
-        if (matches(digitsPattern, aaa) && matches(digitsPattern, bbb)) {
+        if (is(classifier.classify(aaa), DIGITS) && is(classifier.classify(bbb), DIGITS)) {
             FeatureSet featureSet = tokenItem.getFeatures();
             featureSet.setString("name", aaa);
             tokenToWords(aaa);
@@ -947,7 +1195,7 @@ public class TokenToWords implements UtteranceProcessor {
                 boolean previousIsCity =
                         (isUppercaseLetter(previous.charAt(0))
                                 && previous.length() > 2
-                                && matches(alphabetPattern, previous)
+                                && is(getPreviousClasses(1), ALPHABET)
                                 && tokenItem.findFeature("p.punc").equals(","));
 
                 // check if next token starts with a lower case, or
@@ -958,7 +1206,7 @@ public class TokenToWords implements UtteranceProcessor {
                                 || tokenItem.getNext() == null
                                 || featureSet.getString("punc").equals(".")
                                 || ((nextLength == 5 || nextLength == 10) &&
-                                matches(digitsPattern, next)));
+                                is(getNextClasses(1), DIGITS)));
 
                 expandState = previousIsCity && nextIsGood;
             } else {
@@ -976,19 +1224,6 @@ public class TokenToWords implements UtteranceProcessor {
         return false;
     }
 
-    /**
-     * Determines if the given input matches the given Pattern.
-     *
-     * @param pattern the pattern to match
-     * @param input   the string to test
-     * @return <code>true</code> if the input string matches the given Pattern;
-     * <code>false</code> otherwise
-     */
-    private static boolean matches(Pattern pattern, String input) {
-        Matcher m = pattern.matcher(input);
-        return m.matches();
-    }
-
     /**
      * Determines if the character at the given position of the given
      * input text is splittable. A character is splittable if:
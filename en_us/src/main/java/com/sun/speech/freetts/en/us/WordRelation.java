@@ -78,6 +78,15 @@ public class WordRelation {
         featureSet.setString("name", word);
     }
 
+    /**
+     * Returns the first item in this WordRelation.
+     *
+     * @return the first item
+     */
+    public Item getHead() {
+        return relation.getHead();
+    }
+
     /**
      * Returns the last item in this WordRelation.
      *
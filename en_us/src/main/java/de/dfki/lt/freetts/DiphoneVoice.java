@@ -241,4 +241,33 @@ public class DiphoneVoice extends Voice implements ConcatenativeVoice {
         else
             return null;
     }
+
+    /**
+     * Given a phoneme and a feature column, return the feature
+     *
+     * @param phone        the phoneme of interest
+     * @param featureIndex the feature column
+     * @return the feature in the given column
+     */
+    @Override
+    public String getPhoneFeature(String phone, int featureIndex) {
+        if (phoneSet != null)
+            return phoneSet.getPhoneFeature(phone, featureIndex);
+        else
+            return null;
+    }
+
+    /**
+     * Given a phoneme, return all of its features
+     *
+     * @param phone the phoneme of interest
+     * @return the shared feature row
+     */
+    @Override
+    public String[] getPhoneFeatures(String phone) {
+        if (phoneSet != null)
+            return phoneSet.getPhoneFeatures(phone);
+        else
+            return null;
+    }
 }
@@ -0,0 +1,109 @@
+/**
+ *
+ */
+
+package com.sun.speech.freetts;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test case for the PhoneSet.
+ */
+public class PhoneSetImplTest {
+
+    private PhoneSet phoneSet;
+
+    /**
+     * Set up the test environment.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        URI url = PhoneSetImplTest.class.getResource("/com/sun/speech/freetts/en/us/phoneset.txt").toURI();
+        phoneSet = new PhoneSetImpl(url);
+    }
+
+    /**
+     * Test method for {@link com.sun.speech.freetts.PhoneSetImpl#getPhoneFeature(java.lang.String, java.lang.String)}.
+     */
+    @Test
+    void testGetPhoneFeature() {
+        assertEquals("+", phoneSet.getPhoneFeature("aa", PhoneSet.VC));
+        assertEquals("s", phoneSet.getPhoneFeature("p", PhoneSet.CTYPE));
+        assertNull(phoneSet.getPhoneFeature("asdf", PhoneSet.VC));
+        assertNull(phoneSet.getPhoneFeature("aa", "asdf"));
+    }
+
+    /**
+     * Test method for {@link com.sun.speech.freetts.PhoneSetImpl#getPhoneFeatures(java.lang.String)}.
+     */
+    @Test
+    void testGetPhoneFeatures() {
+        String[] features = phoneSet.getPhoneFeatures("ae");
+        assertEquals("1", features[PhoneSet.VFRONT_INDEX]);
+        assertSame(features[PhoneSet.VC_INDEX], phoneSet.getPhoneFeatures("aa")[PhoneSet.VC_INDEX]);
+        assertNull(phoneSet.getPhoneFeatures("asdf"));
+    }
+
+    /**
+     * Test method for {@link com.sun.speech.freetts.PhoneSetImpl#getPhoneFeature(int, int)}.
+     */
+    @Test
+    void testGetPhoneFeatureByIndex() {
+        int phone = phoneSet.getPhoneIndex("p");
+        assertTrue(phone >= 0);
+        assertEquals(PhoneSet.CVOX_INDEX, phoneSet.getFeatureIndex(PhoneSet.CVOX));
+        assertEquals("-", phoneSet.getPhoneFeature(phone, PhoneSet.CVOX_INDEX));
+        assertEquals("-", phoneSet.getPhoneFeature("p", PhoneSet.CVOX_INDEX));
+        assertNull(phoneSet.getPhoneFeature("asdf", PhoneSet.CVOX_INDEX));
+        assertEquals(-1, phoneSet.getPhoneIndex("asdf"));
+    }
+
+    /**
+     * A phone set that implements only the single feature lookup gets
+     * its feature rows and columns from the default methods.
+     */
+    @Test
+    void testDefaultFeatureRow() {
+        PhoneSet lookupOnly = (phone, featureName) -> phoneSet.getPhoneFeature(phone, featureName);
+        String[] features = lookupOnly.getPhoneFeatures("p");
+        assertEquals("-", features[PhoneSet.CVOX_INDEX]);
+        assertEquals("s", features[PhoneSet.CTYPE_INDEX]);
+        assertEquals(PhoneSet.CPLACE_INDEX, lookupOnly.getFeatureIndex(PhoneSet.CPLACE));
+        assertEquals("s", lookupOnly.getPhoneFeature("p", PhoneSet.CTYPE_INDEX));
+        assertNull(lookupOnly.getPhoneFeature("p", PhoneSet.STANDARD_FEATURES.size()));
+        assertNull(lookupOnly.getPhoneFeatures("asdf"));
+
+        Voice voice = new Voice() {
+            @Override
+            public String getPhoneFeature(String phone, String featureName) {
+                return phoneSet.getPhoneFeature(phone, featureName);
+            }
+
+            @Override
+            public Tokenizer getTokenizer() {
+                return null;
+            }
+
+            @Override
+            protected void loader() {
+            }
+
+            @Override
+            protected UtteranceProcessor getAudioOutput() {
+                return null;
+            }
+        };
+        assertEquals("+", voice.getPhoneFeatures("aa")[PhoneSet.VC_INDEX]);
+        assertEquals("+", voice.getPhoneFeature("aa", PhoneSet.VC_INDEX));
+        assertNull(voice.getPhoneFeatures("asdf"));
+    }
+}
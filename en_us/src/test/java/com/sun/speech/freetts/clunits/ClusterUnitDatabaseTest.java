@@ -0,0 +1,195 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.clunits;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.sun.speech.freetts.cart.CART;
+import com.sun.speech.freetts.relp.SampleInfo;
+import com.sun.speech.freetts.relp.SampleSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test case for the binary form of the ClusterUnitDatabase.
+ */
+public class ClusterUnitDatabaseTest {
+
+    private static final int TYPES = 6;
+    private static final int UNITS_PER_TYPE = 30;
+
+    private Path directory;
+    private Path text;
+    private Path binary;
+
+    /**
+     * Writes a text database and generates its binary form.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("clunits");
+        text = directory.resolve("clunits.txt");
+        binary = directory.resolve("clunits.bin");
+        TestClusterUnitDatabase.write(text, new Random(5), TYPES, UNITS_PER_TYPE, 1, 2);
+        ClusterUnitDatabase.main(new String[] {"-src", directory.toString(), "-dest", directory.toString(),
+                "-generate_binary", "clunits.txt"});
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (String name : new String[] {"clunits.txt", "clunits.bin", "clunits.jar", "copy.bin"}) {
+            Files.deleteIfExists(directory.resolve(name));
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Tests that the binary database, read from a mapped file and
+     * from a stream, has the units, settings and frames of the text
+     * database it was generated from.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        Path jar = directory.resolve("clunits.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry("clunits.bin"));
+            Files.copy(binary, zip);
+        }
+
+        ClusterUnitDatabase expected = new ClusterUnitDatabase(text.toUri(), false);
+        compare(expected, new ClusterUnitDatabase(binary.toUri(), true));
+        compare(expected, new ClusterUnitDatabase(URI.create("jar:" + jar.toUri() + "!/clunits.bin"), true));
+    }
+
+    /**
+     * Tests that the MCEP frames are written with their residuals,
+     * as a sample set of the text database is written.
+     */
+    @Test
+    void testMcepResiduals() throws IOException {
+        byte[] mcep;
+        try (BufferedReader reader = Files.newBufferedReader(text)) {
+            String line;
+            while (!(line = reader.readLine()).startsWith("STS MCEP ")) {
+            }
+            StringTokenizer tokenizer = new StringTokenizer(line, " ");
+            tokenizer.nextToken();
+            tokenizer.nextToken();
+            mcep = dump(new SampleSet(tokenizer, reader));
+        }
+        assertTrue(indexOf(Files.readAllBytes(binary), mcep) > 0);
+    }
+
+    /**
+     * Tests that a database loaded from its binary form, which drops
+     * the MCEP residuals, cannot be dumped again without them.
+     */
+    @Test
+    void testDumpBinaryDatabase() throws IOException {
+        ClusterUnitDatabase database = new ClusterUnitDatabase(binary.toUri(), true);
+        Path copy = directory.resolve("copy.bin");
+        assertThrows(IllegalStateException.class, () -> database.dumpBinary(copy.toString()));
+        assertFalse(Files.exists(copy));
+    }
+
+    /**
+     * Asserts that two databases have the same units, settings and
+     * frames.
+     */
+    private static void compare(ClusterUnitDatabase expected, ClusterUnitDatabase actual) throws IOException {
+        assertEquals(expected.getContinuityWeight(), actual.getContinuityWeight());
+        assertEquals(expected.getOptimalCoupling(), actual.getOptimalCoupling());
+        assertEquals(expected.getExtendSelections(), actual.getExtendSelections());
+        assertEquals(expected.getJoinWeightShift(), actual.getJoinWeightShift());
+        assertArrayEquals(expected.getJoinWeights(), actual.getJoinWeights());
+
+        for (int type = 0; type < TYPES; type++) {
+            String name = TestClusterUnitDatabase.typeName(type);
+            assertEquals(type, actual.getUnitTypeIndex(name));
+            assertArrayEquals(dump(expected.getTree(name)), dump(actual.getTree(name)));
+        }
+        for (int i = 0; i < TYPES * UNITS_PER_TYPE; i++) {
+            assertEquals(expected.getUnitName(i), actual.getUnitName(i));
+            assertEquals(expected.getPhone(i), actual.getPhone(i));
+            assertEquals(expected.getStart(i), actual.getStart(i));
+            assertEquals(expected.getEnd(i), actual.getEnd(i));
+            assertEquals(expected.getPrevUnit(i), actual.getPrevUnit(i));
+            assertEquals(expected.getNextUnit(i), actual.getNextUnit(i));
+        }
+
+        assertInfoEquals(expected.getSampleInfo(), actual.getSampleInfo());
+        SampleSet sts = expected.getSts();
+        assertEquals(sts.getNumberOfSamples(), actual.getSts().getNumberOfSamples());
+        for (int i = 0; i < sts.getNumberOfSamples(); i++) {
+            assertTrue(sts.getSample(i).compare(actual.getSts().getSample(i)));
+        }
+
+        assertInfoEquals(expected.getMcepInfo(), actual.getMcepInfo());
+        assertEquals(TestClusterUnitDatabase.MCEP_CHANNELS * sts.getNumberOfSamples(),
+                actual.getMcepFrames().length);
+        assertArrayEquals(expected.getMcepFrames(), actual.getMcepFrames());
+    }
+
+    private static void assertInfoEquals(SampleInfo expected, SampleInfo actual) {
+        assertEquals(expected.getSampleRate(), actual.getSampleRate());
+        assertEquals(expected.getNumberOfChannels(), actual.getNumberOfChannels());
+        assertEquals(expected.getResidualFold(), actual.getResidualFold());
+        assertEquals(expected.getCoeffMin(), actual.getCoeffMin());
+        assertEquals(expected.getCoeffRange(), actual.getCoeffRange());
+        assertEquals(expected.getPostEmphasis(), actual.getPostEmphasis());
+    }
+
+    private static byte[] dump(SampleSet samples) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(out);
+        samples.dumpBinary(os);
+        os.flush();
+        return out.toByteArray();
+    }
+
+    private static byte[] dump(CART cart) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(out);
+        cart.dumpBinary(os);
+        os.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Finds the first occurrence of the given bytes.
+     */
+    private static int indexOf(byte[] data, byte[] bytes) {
+        for (int i = 0; i + bytes.length <= data.length; i++) {
+            int j = 0;
+            while (j < bytes.length && data[i + j] == bytes[j]) {
+                j++;
+            }
+            if (j == bytes.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.clunits;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.speech.freetts.FeatureSet;
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.ProcessException;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Utterance;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Test case for the unit selection of the ClusterUnitSelector.  The
+ * expected units and join points were recorded with the selector that
+ * kept its units and Viterbi paths as objects, on the same database.
+ */
+public class ClusterUnitSelectorTest {
+
+    private static final int TYPES = 8;
+    private static final int UNITS_PER_TYPE = 40;
+    private static final int SEGMENTS = 16;
+
+    /**
+     * The selected_unit, unit_prev_move and unit_this_move of each
+     * segment, or -1 for a move that is not set, by EXTEND_SELECTIONS
+     * 0 and 3 and by OPTIMAL_COUPLING.
+     */
+    private static final String[][] GOLDEN = {
+        {
+            "204,-1,-1 183,-1,-1 33,-1,-1 265,-1,-1 33,-1,-1 183,-1,-1 265,-1,-1 183,-1,-1 "
+                    + "70,-1,-1 265,-1,-1 204,-1,-1 80,-1,-1 265,-1,-1 33,-1,-1 33,-1,-1 135,-1,-1",
+            "237,-1,-1 190,1287,182 16,1031,1338 270,-1,-1 27,1483,1424 195,144,526 251,1047,57 168,1375,53 "
+                    + "60,908,962 248,326,875 237,1356,1183 117,1287,714 248,633,875 26,1352,991 27,-1,-1 "
+                    + "128,144,1684",
+            "200,-1,-1 179,-1,-1 16,-1,-1 270,-1,-1 33,-1,-1 190,-1,-1 251,-1,-1 179,-1,-1 "
+                    + "60,-1,-1 276,-1,-1 216,-1,-1 94,-1,-1 270,-1,-1 26,-1,-1 27,-1,-1 135,-1,-1",
+        },
+        {
+            "204,-1,-1 183,-1,-1 8,-1,-1 265,-1,-1 23,-1,-1 189,-1,-1 242,-1,-1 183,-1,-1 "
+                    + "41,-1,-1 265,-1,-1 206,-1,-1 92,-1,-1 273,-1,-1 23,-1,-1 14,-1,-1 135,-1,-1",
+            "237,-1,-1 190,1287,182 16,1031,1338 270,-1,-1 21,1482,624 163,113,105 245,-1,-1 190,1333,184 "
+                    + "41,-1,-1 268,222,1474 204,1471,476 92,-1,-1 251,503,57 30,-1,-1 18,162,483 "
+                    + "128,97,1684",
+            "200,-1,-1 179,-1,-1 16,-1,-1 270,-1,-1 26,-1,-1 189,-1,-1 270,-1,-1 187,-1,-1 "
+                    + "45,-1,-1 264,-1,-1 206,-1,-1 117,-1,-1 273,-1,-1 13,-1,-1 14,-1,-1 133,-1,-1",
+        },
+    };
+
+    /**
+     * Writes the database with the given settings and creates a
+     * selector for it.
+     */
+    private static ClusterUnitSelector createSelector(int optimalCoupling, int extendSelections)
+            throws IOException {
+        Path database = Files.createTempFile("clunits", ".txt");
+        try {
+            TestClusterUnitDatabase.write(database, new Random(11), TYPES, UNITS_PER_TYPE,
+                    optimalCoupling, extendSelections);
+            return new ClusterUnitSelector(database.toUri(), seg -> { });
+        } finally {
+            Files.delete(database);
+        }
+    }
+
+    /**
+     * Selects the units of an utterance of the same segments each
+     * time, and returns them as the golden values are written.
+     */
+    private static String select(ClusterUnitSelector selector) throws ProcessException {
+        Random random = new Random(3);
+        Utterance utterance = new Utterance(null);
+        Relation segs = utterance.createRelation(Relation.SEGMENT);
+        for (int i = 0; i < SEGMENTS; i++) {
+            Item item = segs.appendItem();
+            item.getFeatures().setString("name", "s" + i);
+            item.getFeatures().setString("clunit_name", TestClusterUnitDatabase.typeName(random.nextInt(TYPES)));
+            item.getFeatures().setFloat("end", 0.08f * (i + 1));
+        }
+        selector.processUtterance(utterance);
+
+        StringBuilder units = new StringBuilder();
+        for (Item s = segs.getHead(); s != null; s = s.getNext()) {
+            FeatureSet features = s.getFeatures();
+            units.append(units.length() == 0 ? "" : " ").append(features.getInt("selected_unit"))
+                    .append(',').append(features.isPresent("unit_prev_move") ? features.getInt("unit_prev_move") : -1)
+                    .append(',').append(features.isPresent("unit_this_move") ? features.getInt("unit_this_move") : -1);
+        }
+        return units.toString();
+    }
+
+    /**
+     * Tests that the units and join points selected with each optimal
+     * coupling, with and without extended selections, are the ones
+     * recorded, also when the selector is reused.
+     */
+    @Test
+    void testGolden() throws Exception {
+        int[] extendSelections = {0, 3};
+        for (int e = 0; e < extendSelections.length; e++) {
+            for (int optimalCoupling = 0; optimalCoupling <= 2; optimalCoupling++) {
+                ClusterUnitSelector selector = createSelector(optimalCoupling, extendSelections[e]);
+                String name = "OPTIMAL_COUPLING " + optimalCoupling + " EXTEND_SELECTIONS " + extendSelections[e];
+                assertEquals(GOLDEN[e][optimalCoupling], select(selector), name);
+                assertEquals(GOLDEN[e][optimalCoupling], select(selector), name);
+            }
+        }
+    }
+
+    /**
+     * Tests that threads that select units with one selector at the
+     * same time all get the recorded units.
+     */
+    @Test
+    void testConcurrentSelection() throws Exception {
+        ClusterUnitSelector selector = createSelector(1, 3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> select(selector)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(GOLDEN[1][1], result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.clunits;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Writes cluster unit databases made up at random, in the text format:
+ * units of a few frames, linked to the units recorded before and after
+ * them, and a CART per unit type that gives tens of candidates.
+ */
+public final class TestClusterUnitDatabase {
+
+    /** the number of MCEP channels of the databases */
+    public static final int MCEP_CHANNELS = 12;
+
+    private TestClusterUnitDatabase() {
+    }
+
+    /**
+     * Gets the name of the given unit type.
+     *
+     * @param type the index of the unit type
+     * @return the name of the unit type
+     */
+    public static String typeName(int type) {
+        return "t" + (char) ('a' + type);
+    }
+
+    /**
+     * Writes a cluster unit database in the text format.
+     *
+     * @param path             the file to write
+     * @param random           the source of the units and frames
+     * @param types            the number of unit types
+     * @param unitsPerType     the number of units of each type
+     * @param optimalCoupling  the OPTIMAL_COUPLING setting
+     * @param extendSelections the EXTEND_SELECTIONS setting
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Random random, int types, int unitsPerType,
+                             int optimalCoupling, int extendSelections) throws IOException {
+        int units = types * unitsPerType;
+        int[] start = new int[units];
+        int[] end = new int[units];
+        int frames = 0;
+        for (int i = 0; i < units; i++) {
+            start[i] = frames;
+            frames += 2 + random.nextInt(8);
+            end[i] = frames;
+        }
+        // the frame after the last unit
+        frames++;
+
+        // units follow each other in random order, with some breaks
+        int[] prev = new int[units];
+        int[] next = new int[units];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < units; i++) {
+            prev[i] = next[i] = ClusterUnitDatabase.CLUNIT_NONE;
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+        for (int i = 1; i < units; i++) {
+            if (random.nextInt(10) != 0) {
+                next[order.get(i - 1)] = order.get(i);
+                prev[order.get(i)] = order.get(i - 1);
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("CONTINUITY_WEIGHT 5");
+            writer.println("OPTIMAL_COUPLING " + optimalCoupling);
+            writer.println("EXTEND_SELECTIONS " + extendSelections);
+            writer.println("JOIN_METHOD 1");
+            StringBuilder line = new StringBuilder("JOIN_WEIGHTS ").append(MCEP_CHANNELS);
+            for (int i = 0; i < MCEP_CHANNELS; i++) {
+                line.append(' ').append(32768);
+            }
+            writer.println(line);
+            writeSamples(writer, "STS", frames, 16, 80, random);
+            writeSamples(writer, "MCEP", frames, MCEP_CHANNELS, 4, random);
+            for (int i = 0; i < units; i++) {
+                writer.println("UNITS " + (i / unitsPerType) + " " + random.nextInt(3) + " "
+                        + start[i] + " " + end[i] + " " + prev[i] + " " + next[i]);
+            }
+            for (int type = 0; type < types; type++) {
+                writer.println("UNIT_TYPE " + typeName(type) + " " + type * unitsPerType + " " + unitsPerType);
+                writer.println("CART " + typeName(type) + " 1");
+                line = new StringBuilder("LEAF List(");
+                int count = Math.max(2, unitsPerType / 10 + random.nextInt(unitsPerType / 5 + 1));
+                for (int i = 0; i < count; i++) {
+                    line.append(i == 0 ? "" : ",").append(random.nextInt(unitsPerType));
+                }
+                writer.println(line.append(')'));
+            }
+        }
+    }
+
+    /**
+     * Writes a sample set of random frames and residuals.
+     */
+    private static void writeSamples(PrintWriter writer, String name, int frames, int channels,
+                                     int residuals, Random random) {
+        writer.println("STS " + name + " " + frames + " " + channels + " 16000 -1.0 2.0 0.95 1");
+        for (int i = 0; i < frames; i++) {
+            StringBuilder line = new StringBuilder("FRAME");
+            for (int k = 0; k < channels; k++) {
+                line.append(' ').append(random.nextInt(65536));
+            }
+            writer.println(line);
+            line = new StringBuilder("RESIDUAL ").append(residuals);
+            for (int k = 0; k < residuals; k++) {
+                line.append(' ').append(random.nextInt(256));
+            }
+            writer.println(line);
+        }
+    }
+}
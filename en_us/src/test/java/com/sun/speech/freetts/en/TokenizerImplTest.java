@@ -0,0 +1,145 @@
+/**
+ *
+ */
+
+package com.sun.speech.freetts.en;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.speech.freetts.Token;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test case for the TokenizerImpl.
+ */
+public class TokenizerImplTest {
+
+    private static final String TEXT = "He said: \"(Hello), world!\"\n\n"
+            + "  Dr. Smith   arrived.  Then [we] left... ok?";
+
+    /**
+     * Returns the tokens of the tokenizer, one string per token.
+     */
+    private static List<String> tokens(TokenizerImpl tokenizer) {
+        List<String> list = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            Token token = tokenizer.getNextToken();
+            list.add(token.getWhitespace() + "|" + token.getPrepunctuation() + "|"
+                    + token.getWord() + "|" + token.getPostpunctuation() + "|"
+                    + token.getPosition() + "|" + token.getLineNumber());
+        }
+        return list;
+    }
+
+    /**
+     * Test method for {@link TokenizerImpl#getNextToken()}.
+     */
+    @Test
+    void testGetNextToken() {
+        TokenizerImpl tokenizer = new TokenizerImpl("He said: \"(Hello), world!\"");
+        Token token = tokenizer.getNextToken();
+        assertEquals("He", token.getWord());
+        token = tokenizer.getNextToken();
+        assertEquals(" ", token.getWhitespace());
+        assertEquals("said", token.getWord());
+        assertEquals(":", token.getPostpunctuation());
+        token = tokenizer.getNextToken();
+        assertEquals("\"", token.getPrepunctuation());
+        assertEquals("(", token.getWord());
+        token = tokenizer.getNextToken();
+        assertEquals("Hello", token.getWord());
+        token = tokenizer.getNextToken();
+        assertEquals(")", token.getWord());
+        assertEquals(",", tokenizer.getNextToken().getWord());
+        token = tokenizer.getNextToken();
+        assertEquals("world", token.getWord());
+        assertEquals("!\"", token.getPostpunctuation());
+        assertEquals(26, token.getPosition());
+        assertFalse(tokenizer.hasMoreTokens());
+    }
+
+    /**
+     * Tests that text, buffers and readers give the same tokens, also
+     * when a reader returns only a few characters at a time.
+     */
+    @Test
+    void testInputSources() {
+        TokenizerImpl tokenizer = new TokenizerImpl(TEXT);
+        List<String> expected = tokens(tokenizer);
+
+        tokenizer = new TokenizerImpl();
+        tokenizer.setInputText(CharBuffer.wrap(TEXT));
+        assertEquals(expected, tokens(tokenizer));
+
+        tokenizer = new TokenizerImpl();
+        tokenizer.setInputReader(new StringReader(TEXT));
+        assertEquals(expected, tokens(tokenizer));
+
+        tokenizer = new TokenizerImpl();
+        tokenizer.setInputReader(new Reader() {
+            final Reader reader = new StringReader(TEXT);
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+                return reader.read(buffer, offset, Math.min(length, 3));
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        assertEquals(expected, tokens(tokenizer));
+    }
+
+    /**
+     * Test method for {@link TokenizerImpl#isBreak()}.
+     */
+    @Test
+    void testIsBreak() {
+        TokenizerImpl tokenizer = new TokenizerImpl(TEXT);
+        List<String> breaks = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            Token token = tokenizer.getNextToken();
+            if (tokenizer.isBreak()) {
+                breaks.add(token.getWord());
+            }
+        }
+        assertEquals(List.of("(", "Dr", "Then"), breaks);
+        assertTrue(tokenizer.hasErrors() == (tokenizer.getErrorDescription() != null));
+    }
+
+    /**
+     * Tests that line numbers and sentence breaks continue when new
+     * input is set, while positions restart for a text and continue
+     * for a reader.
+     */
+    @Test
+    void testNewInput() {
+        TokenizerImpl tokenizer = new TokenizerImpl("one\n\ntwo.");
+        tokens(tokenizer);
+
+        tokenizer.setInputText("Three four");
+        Token token = tokenizer.getNextToken();
+        assertEquals("Three", token.getWord());
+        assertEquals(6, token.getPosition());
+        assertEquals(2, token.getLineNumber());
+        assertTrue(tokenizer.isBreak());
+        tokens(tokenizer);
+
+        tokenizer.setInputReader(new StringReader("five"));
+        token = tokenizer.getNextToken();
+        assertEquals("five", token.getWord());
+        assertEquals(14, token.getPosition());
+        assertEquals(2, token.getLineNumber());
+        assertFalse(tokenizer.isBreak());
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ *
+ */
+
+package com.sun.speech.freetts.en.us;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Test case for the TokenClassifier.
+ */
+public class TokenClassifierTest {
+
+    private static final String[] PATTERNS = {
+            USEnglish.RX_ALPHABET,
+            USEnglish.RX_COMMAINT,
+            USEnglish.RX_DIGITS2DASH,
+            USEnglish.RX_DIGITS,
+            USEnglish.RX_DIGITSSLASHDIGITS,
+            USEnglish.RX_DOTTED_ABBREV,
+            USEnglish.RX_DOUBLE,
+            USEnglish.RX_DRST,
+            USEnglish.RX_FOUR_DIGIT,
+            USEnglish.RX_HAS_VOWEL,
+            USEnglish.RX_ILLION,
+            USEnglish.RX_NUMBER_TIME,
+            USEnglish.RX_NUMESS,
+            USEnglish.RX_ORDINAL_NUMBER,
+            USEnglish.RX_ROMAN_NUMBER,
+            USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER,
+            USEnglish.RX_THREE_DIGIT,
+            USEnglish.RX_US_MONEY,
+            "a{2}",
+    };
+
+    private static final String[] TOKENS = {
+            "", "0", "word", "XVIII", "Dr", "st", "U.S.A", "1,234,567.89",
+            "555-1234", "1-2-3", "1/2", "60s", "-1.5e+3", ".5", "12:30",
+            "21ST", "2nd", "$1,000.50", "$5", "million", "billions", "aa",
+            "abc123", "caf\u00e9", "\u2028illion", "x\u0085"
+    };
+
+    /**
+     * Tests that classifying gives the same result as matching each
+     * pattern on its own.
+     */
+    @Test
+    void testClassify() {
+        TokenClassifier classifier = new TokenClassifier(PATTERNS);
+        for (String token : TOKENS) {
+            int expected = 0;
+            for (int i = 0; i < PATTERNS.length; i++) {
+                if (Pattern.matches(PATTERNS[i], token)) {
+                    expected |= 1 << i;
+                }
+            }
+            assertEquals(expected, classifier.classify(token), token);
+        }
+    }
+
+    /**
+     * Tests the limit on the number of patterns.
+     */
+    @Test
+    void testTooManyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenClassifier(new String[33]));
+    }
+}
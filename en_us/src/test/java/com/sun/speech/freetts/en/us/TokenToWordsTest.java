@@ -0,0 +1,161 @@
+/**
+ *
+ */
+
+package com.sun.speech.freetts.en.us;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.ProcessException;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Token;
+import com.sun.speech.freetts.Tokenizer;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.UtteranceProcessor;
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.cart.CARTImpl;
+import com.sun.speech.freetts.en.TokenizerImpl;
+import com.sun.speech.freetts.util.LRUCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test case for the normalization cache of TokenToWords.
+ */
+public class TokenToWordsTest {
+
+    private static final String TEXT = "Call 555-1234 at 12:30 on the 2nd, or pay $12.50 for 1,024 "
+            + "U.S.A. maps, $3.50 million in 1998 and 1-2-3 more.";
+
+    private TokenToWords tokenToWords;
+
+    private Voice voice;
+
+    /**
+     * Set up the test environment.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        voice = new Voice() {
+            @Override
+            public Tokenizer getTokenizer() {
+                return null;
+            }
+
+            @Override
+            protected void loader() {
+            }
+
+            @Override
+            protected UtteranceProcessor getAudioOutput() {
+                return null;
+            }
+        };
+        voice.addFeatureProcessor("num_digits", new FeatureProcessors.NumDigits());
+        voice.addFeatureProcessor("month_range", new FeatureProcessors.MonthRange());
+        voice.addFeatureProcessor("token_pos_guess", new FeatureProcessors.TokenPosGuess());
+        tokenToWords = new TokenToWords(
+                new CARTImpl(getClass().getResource("nums_cart.txt").toURI()),
+                new PrefixFSM(getClass().getResource("prefix_fsm.txt").toURI()),
+                new SuffixFSM(getClass().getResource("suffix_fsm.txt").toURI()));
+    }
+
+    /**
+     * Returns the words the given text expands to, with breaks marked
+     * by a "|".
+     */
+    private List<String> words(String text) throws ProcessException {
+        TokenizerImpl tokenizer = new TokenizerImpl();
+        tokenizer.setWhitespaceSymbols(USEnglish.WHITESPACE_SYMBOLS);
+        tokenizer.setSingleCharSymbols(USEnglish.SINGLE_CHAR_SYMBOLS);
+        tokenizer.setPrepunctuationSymbols(USEnglish.PREPUNCTUATION_SYMBOLS);
+        tokenizer.setPostpunctuationSymbols(USEnglish.PUNCTUATION_SYMBOLS);
+        tokenizer.setInputText(text);
+        List<Token> tokens = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.getNextToken());
+        }
+        Utterance utterance = new Utterance(voice, tokens);
+        tokenToWords.processUtterance(utterance);
+
+        List<String> words = new ArrayList<>();
+        for (Item item = utterance.getRelation(Relation.WORD).getHead(); item != null; item = item.getNext()) {
+            words.add(item.getFeatures().getString("name"));
+            if (item.getFeatures().isPresent("break")) {
+                words.add("|");
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Tests that cached expansions give the same words and are
+     * counted as hits.
+     */
+    @Test
+    void testCacheHits() throws Exception {
+        List<String> expected = words(TEXT);
+        assertNull(tokenToWords.getNormalizationCache());
+
+        tokenToWords.setNormalizationCacheSize(100);
+        LRUCache<String, ?> cache = tokenToWords.getNormalizationCache();
+        assertEquals(expected, words(TEXT));
+        assertEquals(0, cache.getHits());
+        long misses = cache.getMisses();
+        assertTrue(misses > 0);
+        assertEquals(misses, cache.size());
+
+        assertEquals(expected, words(TEXT));
+        assertEquals(misses, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    /**
+     * Tests that the same token expands differently in a different
+     * context, also when the cache holds it.
+     */
+    @Test
+    void testContext() throws Exception {
+        List<String> million = words("$3.50 million");
+        List<String> apples = words("$3.50 apples");
+        assertTrue(!million.equals(apples));
+
+        tokenToWords.setNormalizationCacheSize(100);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(million, words("$3.50 million"));
+            assertEquals(apples, words("$3.50 apples"));
+        }
+        assertEquals(2, tokenToWords.getNormalizationCache().getHits());
+    }
+
+    /**
+     * Tests that changing the cache size discards the cached
+     * expansions, and that a size of 0 disables the cache.
+     */
+    @Test
+    void testInvalidation() throws Exception {
+        tokenToWords.setNormalizationCacheSize(100);
+        LRUCache<String, ?> cache = tokenToWords.getNormalizationCache();
+        words(TEXT);
+        assertTrue(cache.size() > 0);
+
+        tokenToWords.setNormalizationCacheSize(100);
+        LRUCache<String, ?> resized = tokenToWords.getNormalizationCache();
+        assertNotSame(cache, resized);
+        assertEquals(0, resized.size());
+        words(TEXT);
+        assertEquals(0, resized.getHits());
+
+        tokenToWords.setNormalizationCacheSize(0);
+        assertNull(tokenToWords.getNormalizationCache());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.speech.freetts.relp.LPCFilter;
+import com.sun.speech.freetts.relp.ScalarLPCFilter;
+import com.sun.speech.freetts.relp.vector.VectorLPCFilter;
+import com.sun.speech.freetts.util.WaveUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the samples per second of LPC resynthesis with the scalar
+ * and the vector filter, for voices of 8 kHz and 16 kHz.  A voice
+ * has one frame of coefficients per 10 ms of residuals.  The setup
+ * checks that both filters give close enough samples.
+ *
+ * <pre>
+ *   mvn -P benchmark -pl freetts-vector test-compile antrun:run@benchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LPCFilterBenchmark {
+
+    private static final int SAMPLES = 160000;
+
+    private static final float[] residualToFloatMap = new float[256];
+
+    static {
+        for (short i = 0; i < residualToFloatMap.length; i++) {
+            residualToFloatMap[i] = WaveUtils.ulawToShort(i);
+        }
+        residualToFloatMap[128] = WaveUtils.ulawToShort((short) 255);
+    }
+
+    @Param({"8000", "16000"})
+    private int sampleRate;
+
+    @Param({"10", "16"})
+    private int channels;
+
+    private final LPCFilter scalar = new ScalarLPCFilter();
+    private final LPCFilter vector = new VectorLPCFilter();
+
+    private byte[] residuals;
+    private float[][] frames;
+    private int frameSize;
+    private float[] values;
+    private float[] history;
+    private short[] samples;
+
+    /**
+     * Creates random frames and residuals, and checks that both
+     * filters give about the same samples.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        frameSize = sampleRate / 100;
+        residuals = new byte[SAMPLES];
+        random.nextBytes(residuals);
+        frames = new float[SAMPLES / frameSize][channels];
+        for (float[] frame : frames) {
+            for (int k = 0; k < channels; k++) {
+                frame[k] = (float) (random.nextGaussian() * 0.01);
+            }
+        }
+        values = new float[frameSize];
+        history = new float[2 * channels];
+        samples = new short[SAMPLES];
+
+        synthesize(scalar);
+        short[] expected = samples.clone();
+        synthesize(vector);
+        for (int i = 0; i < SAMPLES; i++) {
+            if (Math.abs(expected[i] - samples[i]) > 1) {
+                throw new IllegalStateException("Filters differ at sample " + i);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public short[] scalar() {
+        return synthesize(scalar);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public short[] vector() {
+        return synthesize(vector);
+    }
+
+    /**
+     * Runs the LPC filter over all residuals the way
+     * <code>LPCResult</code> does.
+     */
+    private short[] synthesize(LPCFilter filter) {
+        Arrays.fill(history, 0);
+        int head = 0;
+        int s = 0;
+        for (float[] coefficients : frames) {
+            filter.dequantize(residuals, s, residualToFloatMap, values, frameSize);
+            head = filter.filter(coefficients, history, head, values, frameSize);
+            for (int j = 0; j < frameSize; j++) {
+                samples[s++] = (short) values[j];
+            }
+        }
+        return samples;
+    }
+}
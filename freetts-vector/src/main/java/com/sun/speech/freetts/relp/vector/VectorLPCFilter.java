@@ -0,0 +1,198 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.relp.vector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.sun.speech.freetts.relp.LPCFilter;
+import com.sun.speech.freetts.relp.ScalarLPCFilter;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Provides an LPC filter that uses the SIMD instructions of the
+ * platform through the incubating Vector API.
+ *
+ * <p>Each output of the filter depends on the one before, so the
+ * products of a sample cannot be summed any faster than one output at
+ * a time.  Instead, lane <i>j</i> of an accumulator holds the part of
+ * the sum of the sample <i>j</i> ahead that is already known.  Once a
+ * sample is output, the accumulator is moved down by one lane and
+ * the output times the coefficients is added to all lanes at once.
+ * The sums are thus added in another order than by the scalar filter,
+ * and the output may differ from it in the last bits.  Filters of more
+ * channels than fit in two vectors are run by the scalar filter.
+ *
+ * <p>The filter is used by <code>LPCResult</code> when this module is
+ * on the class path and the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>.  Otherwise the
+ * scalar filter is used.
+ */
+public class VectorLPCFilter implements LPCFilter {
+
+    /** The widest vectors of the platform. */
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /** A vector of zeros. */
+    private static final FloatVector ZERO = FloatVector.zero(SPECIES);
+
+    /** Moves each lane down by one, and the first lane to the last. */
+    private static final VectorShuffle<Float> ROTATE = VectorShuffle.fromOp(SPECIES,
+            i -> (i + 1) % SPECIES.length());
+
+    /** Selects the last lane. */
+    private static final VectorMask<Float> LAST_LANE = SPECIES.indexInRange(0, SPECIES.length() - 1).not();
+
+    /** The work arrays of each thread. */
+    private static final ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(Scratch::new);
+
+    /** Runs the filters that do not fit in two vectors. */
+    private final LPCFilter scalar = new ScalarLPCFilter();
+
+    /**
+     * Runs the LPC filter over a block of samples.
+     *
+     * @param coefficients the LPC coefficients
+     * @param history      the past outputs, most recent first
+     * @param head         where the most recent output is in
+     *                     <code>history</code>
+     * @param values       the excitation of the samples on entry, and
+     *                     the outputs of the filter on return
+     * @param count        the number of samples
+     * @return where the most recent output is in <code>history</code>
+     */
+    @Override
+    public int filter(float[] coefficients, float[] history, int head, float[] values, int count) {
+        int numberChannels = coefficients.length;
+        int lanes = SPECIES.length();
+        if (numberChannels == 0 || numberChannels > 2 * lanes) {
+            return scalar.filter(coefficients, history, head, values, count);
+        }
+
+        // pad the coefficients with zeros, so that whole vectors can
+        // be loaded from any of them
+        float[] padded = scratches.get().coefficients;
+        System.arraycopy(coefficients, 0, padded, 0, numberChannels);
+        Arrays.fill(padded, numberChannels, padded.length, 0.0f);
+
+        // sum the past outputs into the samples ahead
+        FloatVector low = ZERO;
+        FloatVector high = ZERO;
+        for (int i = 0; i < numberChannels; i++) {
+            FloatVector output = FloatVector.broadcast(SPECIES, history[head + i]);
+            low = FloatVector.fromArray(SPECIES, padded, i).fma(output, low);
+            high = FloatVector.fromArray(SPECIES, padded, i + lanes).fma(output, high);
+        }
+
+        FloatVector lowCoefficients = FloatVector.fromArray(SPECIES, padded, 0);
+        if (numberChannels <= lanes) {
+            for (int j = 0; j < count; j++) {
+                float ob = values[j] + low.lane(0);
+                values[j] = ob;
+                low = lowCoefficients.fma(FloatVector.broadcast(SPECIES, ob),
+                        low.rearrange(ROTATE).blend(ZERO, LAST_LANE));
+            }
+        } else {
+            FloatVector highCoefficients = FloatVector.fromArray(SPECIES, padded, lanes);
+            for (int j = 0; j < count; j++) {
+                float ob = values[j] + low.lane(0);
+                values[j] = ob;
+                FloatVector output = FloatVector.broadcast(SPECIES, ob);
+                FloatVector rotated = high.rearrange(ROTATE);
+                low = lowCoefficients.fma(output, low.rearrange(ROTATE).blend(rotated, LAST_LANE));
+                high = highCoefficients.fma(output, rotated.blend(ZERO, LAST_LANE));
+            }
+        }
+
+        // keep the last outputs
+        int historySize = history.length / 2;
+        int p = head;
+        for (int j = Math.max(0, count - historySize); j < count; j++) {
+            p = (p == 0 ? historySize : p) - 1;
+            history[p] = history[p + historySize] = values[j];
+        }
+        return p;
+    }
+
+    /**
+     * Maps residuals to excitation values, gathering a vector of
+     * values from the table at a time.
+     *
+     * @param residuals the residuals
+     * @param offset    the first residual to map
+     * @param table     the excitation value of each residual
+     * @param values    where to put the excitation values
+     * @param count     the number of residuals to map
+     */
+    @Override
+    public void dequantize(byte[] residuals, int offset, float[] table, float[] values, int count) {
+        Scratch scratch = scratches.get();
+        if (scratch.indices.length < count) {
+            scratch.indices = new int[count];
+        }
+        int[] index = scratch.indices;
+        for (int i = 0; i < count; i++) {
+            index[i] = residuals[offset + i] + 128;
+        }
+        gather(table, index, values, count);
+    }
+
+    /**
+     * Maps residuals kept in a buffer to excitation values, gathering
+     * a vector of values from the table at a time.
+     *
+     * @param residuals the residuals
+     * @param offset    the index of the first residual to map
+     * @param table     the excitation value of each residual
+     * @param values    where to put the excitation values
+     * @param count     the number of residuals to map
+     */
+    @Override
+    public void dequantize(ByteBuffer residuals, int offset, float[] table, float[] values, int count) {
+        Scratch scratch = scratches.get();
+        if (scratch.indices.length < count) {
+            scratch.indices = new int[count];
+        }
+        int[] index = scratch.indices;
+        for (int i = 0; i < count; i++) {
+            index[i] = residuals.get(offset + i) + 128;
+        }
+        gather(table, index, values, count);
+    }
+
+    /**
+     * Looks up indices in a table, a vector at a time.
+     *
+     * @param table  the table
+     * @param index  the indices
+     * @param values where to put the values
+     * @param count  the number of indices
+     */
+    private static void gather(float[] table, int[] index, float[] values, int count) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, table, 0, index, i).intoArray(values, i);
+        }
+        for (; i < count; i++) {
+            values[i] = table[index[i]];
+        }
+    }
+
+    /**
+     * The work arrays of a thread.
+     */
+    private static class Scratch {
+        /** the coefficients, followed by zeros */
+        final float[] coefficients = new float[4 * SPECIES.length()];
+        /** the indices of the residuals being dequantized */
+        int[] indices = new int[0];
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.sun.speech.freetts.relp.LPCFilter;
+import com.sun.speech.freetts.relp.LPCResult;
+import com.sun.speech.freetts.relp.ScalarLPCFilter;
+import com.sun.speech.freetts.relp.vector.VectorLPCFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+
+/**
+ * JUnit Tests for the VectorLPCFilter class
+ *
+ * @version 1.0
+ */
+public class VectorLPCFilterTests {
+
+    /**
+     * Tests that the filter is found by LPCResult.
+     */
+    @Test
+    void testService() {
+        assertInstanceOf(VectorLPCFilter.class, LPCResult.getFilter());
+    }
+
+    /**
+     * Tests that the filter gives about the same outputs as the scalar
+     * filter, block after block, for any number of channels.
+     */
+    @Test
+    void testFilter() {
+        Random random = new Random(11);
+        LPCFilter scalar = new ScalarLPCFilter();
+        LPCFilter vector = new VectorLPCFilter();
+        for (int channels = 1; channels <= 40; channels++) {
+            float[] expectedHistory = new float[2 * channels];
+            float[] actualHistory = new float[2 * channels];
+            int expectedHead = 0;
+            int actualHead = 0;
+            for (int block = 0; block < 20; block++) {
+                float[] coefficients = new float[channels];
+                for (int k = 0; k < channels; k++) {
+                    coefficients[k] = (float) (random.nextGaussian() * 0.01);
+                }
+                int count = random.nextInt(200);
+                float[] expected = new float[count];
+                for (int j = 0; j < count; j++) {
+                    expected[j] = random.nextInt(16000) - 8000;
+                }
+                float[] actual = expected.clone();
+                expectedHead = scalar.filter(coefficients, expectedHistory, expectedHead, expected, count);
+                actualHead = vector.filter(coefficients, actualHistory, actualHead, actual, count);
+                for (int j = 0; j < count; j++) {
+                    assertEquals(expected[j], actual[j], Math.abs(expected[j]) * 1e-4f + 1e-2f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that residuals, in an array or a buffer, are mapped through
+     * the table.
+     */
+    @Test
+    void testDequantize() {
+        Random random = new Random(13);
+        float[] table = new float[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextFloat();
+        }
+        byte[] residuals = new byte[300];
+        random.nextBytes(residuals);
+        float[] expected = new float[290];
+        float[] actual = new float[290];
+        new ScalarLPCFilter().dequantize(residuals, 7, table, expected, 290);
+        new VectorLPCFilter().dequantize(residuals, 7, table, actual, 290);
+        assertArrayEquals(expected, actual);
+        new VectorLPCFilter().dequantize(ByteBuffer.wrap(residuals), 7, table, actual, 290);
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.speech.freetts.FreeTTSSpeakableImpl;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.audio.NullAudioPlayer;
+import com.sun.speech.freetts.relp.LPCResult;
+import com.sun.speech.freetts.util.WaveUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the samples per second of LPC resynthesis.  The
+ * <code>linkedList</code> benchmark runs the filter as it was written
+ * before, over a circular list of floats; <code>ringBuffer</code> runs
+ * <code>LPCResult.playWave</code>.  The setup checks that both give the
+ * same samples.
+ *
+ * <pre>
+ *   mvn -P benchmark -pl freetts test-compile antrun:run@benchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LPCResultBenchmark {
+
+    private static final int FRAMES = 2000;
+    private static final int FRAME_SAMPLES = 100;
+    private static final int SAMPLES = FRAMES * FRAME_SAMPLES;
+    private static final int CHANNELS = 16;
+    private static final int BUFFER_SIZE = 1024;
+
+    private LPCResult lpcResult;
+    private Utterance utterance;
+    private Sink sink;
+    private byte[] buffer;
+
+    /**
+     * An audio player that only checksums what it is given.
+     */
+    static class Sink extends NullAudioPlayer {
+        int checksum;
+
+        @Override
+        public boolean write(byte[] bytes, int offset, int size) {
+            for (int i = offset; i < offset + size; i++) {
+                checksum = checksum * 31 + bytes[i];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Creates an LPC result of random frames and residuals, and checks
+     * that both kernels give the same samples.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        lpcResult = new LPCResult();
+        lpcResult.resizeFrames(FRAMES);
+        lpcResult.resizeResiduals(SAMPLES);
+        lpcResult.setValues(CHANNELS, 16000, 1, -0.1f, 0.2f);
+        int[] sizes = new int[FRAMES];
+        Arrays.fill(sizes, FRAME_SAMPLES);
+        lpcResult.setResidualSizes(sizes);
+        random.nextBytes(lpcResult.getResiduals());
+        for (int i = 0; i < FRAMES; i++) {
+            short[] frame = new short[CHANNELS];
+            for (int k = 0; k < CHANNELS; k++) {
+                frame[k] = (short) (random.nextGaussian() * 3000);
+            }
+            lpcResult.setFrame(i, frame);
+        }
+        utterance = new Utterance(null);
+        utterance.setSpeakable(new FreeTTSSpeakableImpl(""));
+        sink = new Sink();
+        buffer = new byte[BUFFER_SIZE];
+
+        Sink expected = new Sink();
+        LinkedListKernel.play(lpcResult, expected);
+        Sink actual = new Sink();
+        lpcResult.playWave(actual, utterance, buffer);
+        if (expected.checksum != actual.checksum) {
+            throw new IllegalStateException("Kernels differ");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int linkedList() {
+        LinkedListKernel.play(lpcResult, sink);
+        return sink.checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int ringBuffer() throws IOException {
+        lpcResult.playWave(sink, utterance, buffer);
+        return sink.checksum;
+    }
+
+    /**
+     * The LPC filter as it was run over a circular doubly linked list.
+     */
+    static class LinkedListKernel {
+        private static final float[] residualToFloatMap = new float[256];
+
+        static {
+            for (short i = 0; i < residualToFloatMap.length; i++) {
+                residualToFloatMap[i] = WaveUtils.ulawToShort(i);
+            }
+            residualToFloatMap[128] = WaveUtils.ulawToShort((short) 255);
+        }
+
+        float value;
+        LinkedListKernel next;
+        LinkedListKernel prev;
+
+        static LinkedListKernel createList(int size) {
+            LinkedListKernel prev = null;
+            LinkedListKernel first = null;
+            for (int i = 0; i < size; i++) {
+                LinkedListKernel cur = new LinkedListKernel();
+                cur.prev = prev;
+                if (prev == null) {
+                    first = cur;
+                } else {
+                    prev.next = cur;
+                }
+                prev = cur;
+            }
+            first.prev = prev;
+            prev.next = first;
+            return first;
+        }
+
+        static void play(LPCResult result, Sink sink) {
+            int numberChannels = result.getNumberOfChannels();
+            byte[] samples = new byte[BUFFER_SIZE];
+            byte[] residuals = result.getResiduals();
+            int[] residualSizes = result.getResidualSizes();
+            LinkedListKernel outBuffer = createList(numberChannels + 1);
+            LinkedListKernel lpcCoefficients = createList(numberChannels);
+            double multiplier = (double) result.getLPCRange() / 65535.0;
+            float pp = 0;
+            int s = 0;
+
+            for (int r = 0, i = 0; i < result.getNumberOfFrames(); i++) {
+                short[] frame = result.getFrame(i);
+                LinkedListKernel lpcCoeffs = lpcCoefficients;
+                for (int k = 0; k < numberChannels; k++) {
+                    lpcCoeffs.value = (float) ((frame[k] + 32768.0) * multiplier) + result.getLPCMin();
+                    lpcCoeffs = lpcCoeffs.next;
+                }
+                for (int j = 0; j < residualSizes[i]; j++, r++) {
+                    LinkedListKernel backBuffer = outBuffer.prev;
+                    float ob = residualToFloatMap[residuals[r] + 128];
+                    lpcCoeffs = lpcCoefficients;
+                    do {
+                        ob += lpcCoeffs.value * backBuffer.value;
+                        backBuffer = backBuffer.prev;
+                        lpcCoeffs = lpcCoeffs.next;
+                    } while (lpcCoeffs != lpcCoefficients);
+
+                    int sample = (int) (ob + (pp * 0.0));
+                    samples[s++] = (byte) (sample >>> 8);
+                    samples[s++] = (byte) (sample & 0xFF);
+                    if (s >= samples.length) {
+                        sink.write(samples, 0, s);
+                        s = 0;
+                    }
+                    outBuffer.value = pp = ob;
+                    outBuffer = outBuffer.next;
+                }
+            }
+            if (s > 0) {
+                sink.write(samples, 0, s);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.sun.speech.freetts.util.Resampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the input samples per second of converting a 16 kHz wave of
+ * 16 bit samples to another rate.  The <code>resampler</code>
+ * benchmark converts it with <code>Resampler</code> in blocks of 256
+ * samples, as <code>LPCResult</code> does; <code>javaSound</code>
+ * reads it through the converter that
+ * <code>AudioSystem.getAudioInputStream</code> finds, which
+ * interpolates linearly by default, and <code>javaSoundSinc</code>
+ * asks that converter for its windowed sinc interpolation.
+ *
+ * <pre>
+ *   mvn -P benchmark -pl freetts test-compile antrun:run@benchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResamplerBenchmark {
+
+    private static final int INPUT_RATE = 16000;
+    private static final int SAMPLES = 10 * INPUT_RATE;
+    private static final int BLOCK_SIZE = 256;
+
+    @Param({"8000", "22050", "48000"})
+    private int outputRate;
+
+    private byte[] wave;
+    private float[] block;
+    private float[] resampled;
+    private byte[] output;
+    private AudioFormat inputFormat;
+    private AudioFormat outputFormat;
+    private AudioFormat sincFormat;
+
+    /**
+     * Makes up a wave of noise and tones.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        wave = new byte[2 * SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double tone = Math.sin(i * 2 * Math.PI * 440 / INPUT_RATE) + Math.sin(i * 2 * Math.PI * 3100 / INPUT_RATE);
+            int sample = (int) (tone * 8000 + random.nextGaussian() * 1000);
+            wave[2 * i] = (byte) (sample >> 8);
+            wave[2 * i + 1] = (byte) sample;
+        }
+        block = new float[BLOCK_SIZE];
+        resampled = new float[4 * BLOCK_SIZE];
+        output = new byte[4 * BLOCK_SIZE * 2];
+        inputFormat = new AudioFormat(INPUT_RATE, 16, 1, true, true);
+        outputFormat = new AudioFormat(outputRate, 16, 1, true, true);
+        sincFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, outputRate, 16, 1, 2, outputRate, true,
+                Map.of("interpolation", "sinc"));
+        if (javaSound() == 0 || javaSoundSinc() == 0) {
+            throw new IllegalStateException("Java Sound gave no samples");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int resampler() {
+        Resampler resampler = new Resampler(INPUT_RATE, outputRate);
+        int checksum = 0;
+        int position = 0;
+        while (!resampler.isFinished()) {
+            int count = resampler.read(resampled, 0, resampled.length);
+            if (count > 0) {
+                int b = 0;
+                for (int j = 0; j < count; j++) {
+                    int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(resampled[j])));
+                    output[b++] = (byte) (sample >> 8);
+                    output[b++] = (byte) sample;
+                }
+                checksum = checksum * 31 + output[b - 1];
+            } else if (position < SAMPLES) {
+                int length = Math.min(BLOCK_SIZE, SAMPLES - position);
+                for (int j = 0; j < length; j++) {
+                    int i = 2 * (position + j);
+                    block[j] = (short) ((wave[i] << 8) | (wave[i + 1] & 0xFF));
+                }
+                resampler.write(block, 0, length);
+                position += length;
+            } else {
+                resampler.end();
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int javaSound() throws IOException {
+        return convert(outputFormat);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int javaSoundSinc() throws IOException {
+        return convert(sincFormat);
+    }
+
+    /**
+     * Reads the wave through the Java Sound converter to the given
+     * format.
+     */
+    private int convert(AudioFormat format) throws IOException {
+        AudioInputStream input = new AudioInputStream(new ByteArrayInputStream(wave), inputFormat, SAMPLES);
+        int checksum = 0;
+        try (InputStream converted = AudioSystem.getAudioInputStream(format, input)) {
+            int count;
+            while ((count = converted.read(output, 0, output.length)) > 0) {
+                checksum = checksum * 31 + output[count - 1];
+            }
+        }
+        return checksum;
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.sun.speech.freetts.util.Utilities;
 
@@ -48,6 +49,16 @@ public class FeatureSetImpl implements FeatureSet {
         return featureMap.containsKey(name);
     }
 
+    /**
+     * Returns the names of the features, in the order they were first
+     * set.
+     *
+     * @return the names, a view of this set
+     */
+    Set<String> getNames() {
+        return featureMap.keySet();
+    }
+
     /**
      * Removes the named feature from this set of features.
      *
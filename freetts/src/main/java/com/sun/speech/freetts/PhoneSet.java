@@ -11,6 +11,7 @@
 
 package com.sun.speech.freetts;
 
+import java.util.List;
 
 /**
  * Maintains a list of phones with various features for those phones.
@@ -59,6 +60,52 @@ public interface PhoneSet {
      */
     String CVOX = "cvox";
 
+    /**
+     * Column of {@link #VC} in a phone feature row.
+     */
+    int VC_INDEX = 0;
+
+    /**
+     * Column of {@link #VLNG} in a phone feature row.
+     */
+    int VLNG_INDEX = 1;
+
+    /**
+     * Column of {@link #VHEIGHT} in a phone feature row.
+     */
+    int VHEIGHT_INDEX = 2;
+
+    /**
+     * Column of {@link #VFRONT} in a phone feature row.
+     */
+    int VFRONT_INDEX = 3;
+
+    /**
+     * Column of {@link #VRND} in a phone feature row.
+     */
+    int VRND_INDEX = 4;
+
+    /**
+     * Column of {@link #CTYPE} in a phone feature row.
+     */
+    int CTYPE_INDEX = 5;
+
+    /**
+     * Column of {@link #CPLACE} in a phone feature row.
+     */
+    int CPLACE_INDEX = 6;
+
+    /**
+     * Column of {@link #CVOX} in a phone feature row.
+     */
+    int CVOX_INDEX = 7;
+
+    /**
+     * The standard features, in the column order given by the
+     * <code>*_INDEX</code> constants.
+     */
+    List<String> STANDARD_FEATURES = List.of(VC, VLNG, VHEIGHT, VFRONT, VRND, CTYPE, CPLACE, CVOX);
+
     /**
      * Given a phoneme and a feature name, return the feature.
      *
@@ -67,4 +114,79 @@ public interface PhoneSet {
      * @return the feature with the given name
      */
     String getPhoneFeature(String phone, String featureName);
+
+    /**
+     * Returns the index of the given phone in this phone set.  The
+     * default implementation has no phone index and returns -1; use
+     * {@link #getPhoneFeatures} instead.
+     *
+     * @param phone the phoneme of interest
+     * @return the phone index, or -1 if the phone is unknown
+     */
+    default int getPhoneIndex(String phone) {
+        return -1;
+    }
+
+    /**
+     * Returns the column of the given feature in a phone feature row.
+     * The standard features always occupy the columns given by the
+     * <code>*_INDEX</code> constants of this interface.  The default
+     * implementation knows only the standard features.
+     *
+     * @param featureName the name of the feature of interest
+     * @return the feature column, or -1 if the feature is unknown
+     */
+    default int getFeatureIndex(String featureName) {
+        return STANDARD_FEATURES.indexOf(featureName);
+    }
+
+    /**
+     * Given a phone index and a feature column, returns the feature.
+     * The default implementation has no phone index and returns
+     * <code>null</code>.
+     *
+     * @param phoneIndex   the index as returned by {@link #getPhoneIndex}
+     * @param featureIndex the column as returned by {@link #getFeatureIndex}
+     * @return the interned feature value, or <code>null</code>
+     */
+    default String getPhoneFeature(int phoneIndex, int featureIndex) {
+        return null;
+    }
+
+    /**
+     * Given a phoneme and a feature column, returns the feature.  The
+     * default implementation looks up the standard feature of the
+     * column by name with {@link #getPhoneFeature(String, String)}.
+     *
+     * @param phone        the phoneme of interest
+     * @param featureIndex the column as returned by {@link #getFeatureIndex}
+     * @return the feature, or <code>null</code>
+     */
+    default String getPhoneFeature(String phone, int featureIndex) {
+        if (featureIndex < 0 || featureIndex >= STANDARD_FEATURES.size()) {
+            return null;
+        }
+        return getPhoneFeature(phone, STANDARD_FEATURES.get(featureIndex));
+    }
+
+    /**
+     * Returns all the features of the given phone, indexed by feature
+     * column.  The returned array may be shared and must not be
+     * modified.  The default implementation builds a new row of the
+     * standard features with {@link #getPhoneFeature(String, String)}
+     * on each call; single features are better looked up with
+     * {@link #getPhoneFeature(String, int)}.
+     *
+     * @param phone the phoneme of interest
+     * @return the feature row, or <code>null</code> if the phone is unknown
+     */
+    default String[] getPhoneFeatures(String phone) {
+        String[] row = new String[STANDARD_FEATURES.size()];
+        boolean known = false;
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getPhoneFeature(phone, STANDARD_FEATURES.get(i));
+            known |= row[i] != null;
+        }
+        return known ? row : null;
+    }
 }
@@ -15,7 +15,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
@@ -36,6 +38,10 @@ import java.util.StringTokenizer;
  * the phone feature such as "vc," "vlng," "vheight," and so on, and
  * "value" is the value of the feature.  There can be multiple lines
  * for the same phone to describe various features of that phone.
+ * <p>
+ * Once loaded, the features are held in a dense phone &times; feature
+ * matrix of interned values, so that a lookup by phone and feature
+ * index is two array accesses.
  */
 public class PhoneSetImpl implements PhoneSet {
 
@@ -46,9 +52,19 @@ public class PhoneSetImpl implements PhoneSet {
     private int lineCount = 0;
 
     /**
-     * The set of phone features indexed by phone.
+     * Maps a phone name to its row in the feature matrix.
+     */
+    private final Map<String, Integer> phoneIndex = new HashMap<>();
+
+    /**
+     * Maps a feature name to its column in the feature matrix.
+     */
+    private final Map<String, Integer> featureIndex = new HashMap<>();
+
+    /**
+     * The feature matrix, indexed by phone row and feature column.
      */
-    private Map<String, String> phonesetMap;
+    private String[][] features;
 
     /**
      * Create a new <code>PhoneSetImpl</code> by reading from the
@@ -58,48 +74,63 @@ public class PhoneSetImpl implements PhoneSet {
      * @throws IOException if an error occurs
      */
     public PhoneSetImpl(URI url) throws IOException {
-        phonesetMap = new HashMap<>();
+        for (String feature : STANDARD_FEATURES) {
+            featureIndex.put(feature, featureIndex.size());
+        }
+        // the features of each phone, as they are read
+        List<Map<String, String>> rows = new ArrayList<>();
         BufferedReader reader = new BufferedReader(new InputStreamReader(url.toURL().openStream()));
         String line = reader.readLine();
         lineCount++;
         while (line != null) {
             if (!line.startsWith("***")) {
-                parseAndAdd(line);
+                parseAndAdd(line, rows);
             }
             line = reader.readLine();
         }
         reader.close();
+        buildMatrix(rows);
+    }
+
+    /**
+     * Flattens the features read into the feature matrix.
+     *
+     * @param rows the features of each phone
+     */
+    private void buildMatrix(List<Map<String, String>> rows) {
+        features = new String[rows.size()][featureIndex.size()];
+        for (int i = 0; i < features.length; i++) {
+            for (Map.Entry<String, String> entry : rows.get(i).entrySet()) {
+                features[i][featureIndex.get(entry.getKey())] = entry.getValue();
+            }
+        }
     }
 
     /**
      * Creates a word from the given input line and add it to the map.
      *
      * @param line the input line
+     * @param rows the features of each phone read so far
      */
-    private void parseAndAdd(String line) {
+    private void parseAndAdd(String line, List<Map<String, String>> rows) {
         StringTokenizer tokenizer = new StringTokenizer(line, " ");
         try {
             String phoneme = tokenizer.nextToken();
             String feature = tokenizer.nextToken();
             String value = tokenizer.nextToken();
-            phonesetMap.put(getKey(phoneme, feature), value);
+            Integer row = phoneIndex.get(phoneme);
+            if (row == null) {
+                row = rows.size();
+                phoneIndex.put(phoneme, row);
+                rows.add(new HashMap<>());
+            }
+            featureIndex.putIfAbsent(feature, featureIndex.size());
+            rows.get(row).put(feature, value.intern());
         } catch (NoSuchElementException nse) {
             throw new Error("part of speech data in bad format at line " + lineCount);
         }
     }
 
-    /**
-     * Given a phoneme and a feature, returns the key that
-     * will obtain the value.
-     *
-     * @param phoneme the phoneme
-     * @param feature the name of the feature
-     * @return the key used to obtain the value
-     */
-    private static String getKey(String phoneme, String feature) {
-        return phoneme + feature;
-    }
-
     /**
      * Given a phoneme and a feature name, returns the feature.
      *
@@ -109,6 +140,37 @@ public class PhoneSetImpl implements PhoneSet {
      */
     @Override
     public String getPhoneFeature(String phone, String featureName) {
-        return phonesetMap.get(getKey(phone, featureName));
+        return getPhoneFeature(getPhoneIndex(phone), getFeatureIndex(featureName));
+    }
+
+    @Override
+    public int getPhoneIndex(String phone) {
+        Integer index = phoneIndex.get(phone);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int getFeatureIndex(String featureName) {
+        Integer index = featureIndex.get(featureName);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public String getPhoneFeature(int phoneIndex, int featureIndex) {
+        if (phoneIndex < 0 || featureIndex < 0) {
+            return null;
+        }
+        return features[phoneIndex][featureIndex];
+    }
+
+    @Override
+    public String getPhoneFeature(String phone, int featureIndex) {
+        return getPhoneFeature(getPhoneIndex(phone), featureIndex);
+    }
+
+    @Override
+    public String[] getPhoneFeatures(String phone) {
+        int index = getPhoneIndex(phone);
+        return index < 0 ? null : features[index];
     }
 }
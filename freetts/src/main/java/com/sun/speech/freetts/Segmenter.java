@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.sun.speech.freetts.lexicon.Lexicon;
+import com.sun.speech.freetts.lexicon.SyllabifiedPhones;
 
 
 /**
@@ -25,6 +26,10 @@ import com.sun.speech.freetts.lexicon.Lexicon;
  * a phone ending in the number "1".  Subclasses should override
  * <code>isStressed</code> and <code>deStress</code> if stresses are
  * determined in other ways.
+ * <p>
+ * Syllable boundaries that the lexicon stores with a word are used
+ * as they are; otherwise they are found phone by phone with
+ * <code>Lexicon.isSyllableBoundary</code>.
  *
  * @see Relation#SEGMENT
  * @see Relation#SYLLABLE
@@ -77,6 +82,7 @@ public class Segmenter implements UtteranceProcessor {
             Item sssyl = null; // item denoting syl in word
 
             String[] phones;
+            long boundaries = 0;
 
             Item token = word.getItemAs("Token");
             FeatureSet featureSet = null;
@@ -89,7 +95,13 @@ public class Segmenter implements UtteranceProcessor {
             if (featureSet != null && featureSet.isPresent("phones")) {
                 phones = (String[]) featureSet.getObject("phones");
             } else {
-                phones = lex.getPhones(word.toString(), null);
+                SyllabifiedPhones syllabified = lex.getSyllabifiedPhones(word.toString(), null);
+                phones = syllabified.getPhones();
+                boundaries = syllabified.getBoundaries();
+                // the stored boundaries must end exactly at the last phone
+                if ((boundaries >>> (phones.length - 1)) != 1) {
+                    boundaries = 0;
+                }
             }
 
             for (int j = 0; j < phones.length; j++) {
@@ -97,7 +109,9 @@ public class Segmenter implements UtteranceProcessor {
                     sylItem = syl.appendItem();
                     sssyl = ssword.addDaughter(sylItem);
                     stress = NO_STRESS;
-                    syllableList = new ArrayList<>();
+                    if (boundaries == 0) {
+                        syllableList = new ArrayList<>();
+                    }
                 }
                 segItem = seg.appendItem();
                 if (isStressed(phones[j])) {
@@ -106,8 +120,14 @@ public class Segmenter implements UtteranceProcessor {
                 }
                 segItem.getFeatures().setString("name", phones[j]);
                 sssyl.addDaughter(segItem);
-                syllableList.add(phones[j]);
-                if (lex.isSyllableBoundary(syllableList, phones, j + 1)) {
+                boolean boundary;
+                if (boundaries != 0) {
+                    boundary = (boundaries & (1L << j)) != 0;
+                } else {
+                    syllableList.add(phones[j]);
+                    boundary = lex.isSyllableBoundary(syllableList, phones, j + 1);
+                }
+                if (boundary) {
                     sylItem = null;
                     if (sssyl != null) {
                         sssyl.getFeatures().setString("stress", stress);
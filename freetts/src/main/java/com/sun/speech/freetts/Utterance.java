@@ -14,7 +14,9 @@ package com.sun.speech.freetts;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Set;
 
+import com.sun.speech.freetts.audio.AudioPlayer;
 import com.sun.speech.freetts.util.SegmentRelationUtils;
 
 
@@ -37,6 +39,7 @@ public class Utterance implements FeatureSet, Serializable {
     private boolean first;    // first in a connected series
     private boolean last;    // last in a connected series
     private FreeTTSSpeakable speakable;
+    private transient AudioPlayer audioPlayer;
 
     /**
      * Creates a new, empty utterance.
@@ -111,6 +114,26 @@ public class Utterance implements FeatureSet, Serializable {
         return relations.isPresent(name);
     }
 
+    /**
+     * Returns the names of the relations of this utterance, in the
+     * order they were created.
+     *
+     * @return the names, a view of the relations
+     */
+    Set<String> getRelationNames() {
+        return ((FeatureSetImpl) relations).getNames();
+    }
+
+    /**
+     * Returns the names of the features of this utterance itself, not
+     * including those of its voice.
+     *
+     * @return the names, a view of the features
+     */
+    Set<String> getFeatureNames() {
+        return ((FeatureSetImpl) features).getNames();
+    }
+
     /**
      * Retrieves the Voice associated with this Utterance.
      *
@@ -120,6 +143,29 @@ public class Utterance implements FeatureSet, Serializable {
         return voice;
     }
 
+    /**
+     * Retrieves the audio player that the audio of this utterance is
+     * sent to.  Unless another player has been set with
+     * <code>setAudioPlayer</code>, this is the player of the voice.
+     *
+     * @return the audio player
+     */
+    public AudioPlayer getAudioPlayer() {
+        AudioPlayer player = audioPlayer;
+        return player == null ? voice.getAudioPlayer() : player;
+    }
+
+    /**
+     * Sets the audio player that the audio of this utterance is sent
+     * to, in place of the player of the voice.
+     *
+     * @param audioPlayer the audio player, or <code>null</code> for the
+     *                    player of the voice
+     */
+    public void setAudioPlayer(AudioPlayer audioPlayer) {
+        this.audioPlayer = audioPlayer;
+    }
+
     /**
      * Dumps this utterance in textual form.
      *
@@ -0,0 +1,234 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * A copy of the relations and features of an utterance that can be
+ * put into another utterance.  This lets the result of the front end
+ * of a voice, from tokens to segment durations and pitch targets, be
+ * reused for an utterance with the same text.
+ *
+ * <p>Every relation is kept with its item trees, and items that share
+ * contents across relations share them again when restored, so the
+ * paths features are looked up through work as before.  Feature values
+ * are kept by reference, so only utterances whose features all hold
+ * immutable values (strings, numbers and booleans) can be captured.
+ */
+public final class UtteranceSnapshot {
+
+    private static final Logger logger = getLogger(UtteranceSnapshot.class.getName());
+
+    /** The names of the relations, in order. */
+    private final String[] relationNames;
+
+    /**
+     * The items of each relation in depth first order, as pairs of the
+     * index of their contents and their depth in the tree.
+     */
+    private final int[][] relationItems;
+
+    /** The feature names of each item contents. */
+    private final String[][] featureNames;
+
+    /** The feature values of each item contents. */
+    private final Object[][] featureValues;
+
+    /** The names of the features of the utterance itself. */
+    private final String[] utteranceFeatureNames;
+
+    /** The values of the features of the utterance itself. */
+    private final Object[] utteranceFeatureValues;
+
+    /**
+     * Creates a snapshot from the gathered parts.
+     */
+    private UtteranceSnapshot(String[] relationNames, int[][] relationItems,
+                              String[][] featureNames, Object[][] featureValues,
+                              String[] utteranceFeatureNames, Object[] utteranceFeatureValues) {
+        this.relationNames = relationNames;
+        this.relationItems = relationItems;
+        this.featureNames = featureNames;
+        this.featureValues = featureValues;
+        this.utteranceFeatureNames = utteranceFeatureNames;
+        this.utteranceFeatureValues = utteranceFeatureValues;
+    }
+
+    /**
+     * Takes a snapshot of the given utterance.
+     *
+     * @param utterance the utterance
+     * @return the snapshot, or <code>null</code> if a feature of the
+     * utterance holds a value that cannot be shared
+     */
+    public static UtteranceSnapshot capture(Utterance utterance) {
+        Map<ItemContents, Integer> contentsIndex = new IdentityHashMap<>();
+        List<String[]> names = new ArrayList<>();
+        List<Object[]> values = new ArrayList<>();
+
+        Set<String> relationNameSet = utterance.getRelationNames();
+        String[] relationNames = relationNameSet.toArray(new String[0]);
+        int[][] relationItems = new int[relationNames.length][];
+        for (int r = 0; r < relationNames.length; r++) {
+            List<Item> items = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            for (Item item = utterance.getRelation(relationNames[r]).getHead(); item != null; item = item.getNext()) {
+                addTree(item, 0, items, depths);
+            }
+            int[] packed = new int[items.size() * 2];
+            for (int i = 0; i < items.size(); i++) {
+                ItemContents contents = items.get(i).getSharedContents();
+                Integer index = contentsIndex.get(contents);
+                if (index == null) {
+                    index = names.size();
+                    contentsIndex.put(contents, index);
+                    FeatureSetImpl features = (FeatureSetImpl) contents.getFeatures();
+                    String[] featureNames = features.getNames().toArray(new String[0]);
+                    Object[] featureValues = getValues(features, featureNames);
+                    if (featureValues == null) {
+                        return null;
+                    }
+                    names.add(featureNames);
+                    values.add(featureValues);
+                }
+                packed[i * 2] = index;
+                packed[i * 2 + 1] = depths.get(i);
+            }
+            relationItems[r] = packed;
+        }
+
+        String[] utteranceFeatureNames = utterance.getFeatureNames().toArray(new String[0]);
+        Object[] utteranceFeatureValues = getValues(utterance, utteranceFeatureNames);
+        if (utteranceFeatureValues == null) {
+            return null;
+        }
+        return new UtteranceSnapshot(relationNames, relationItems,
+                names.toArray(new String[0][]), values.toArray(new Object[0][]),
+                utteranceFeatureNames, utteranceFeatureValues);
+    }
+
+    /**
+     * Adds an item and its daughters, depth first, to the lists.
+     *
+     * @param item   the item
+     * @param depth  the depth of the item in its tree
+     * @param items  receives the items
+     * @param depths receives the depth of each item
+     */
+    private static void addTree(Item item, int depth, List<Item> items, List<Integer> depths) {
+        items.add(item);
+        depths.add(depth);
+        for (Item daughter = item.getDaughter(); daughter != null; daughter = daughter.getNext()) {
+            addTree(daughter, depth + 1, items, depths);
+        }
+    }
+
+    /**
+     * Returns the values of the named features.
+     *
+     * @param features the features
+     * @param names    the names of the features
+     * @return the values, or <code>null</code> if a value may be mutable
+     */
+    private static Object[] getValues(FeatureSet features, String[] names) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Object value = features.getObject(names[i]);
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                logger.log(Level.DEBUG, "Not capturing utterance: feature " + names[i] + " holds a "
+                        + (value == null ? "null" : value.getClass().getName()));
+                return null;
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Puts the relations and features of this snapshot into the given
+     * utterance.  Relations of the same name are replaced.  The
+     * positions of the tokens in the input text are kept from the
+     * tokens of the utterance, as they depend on where the text was
+     * found rather than on the text itself.
+     *
+     * @param utterance the utterance
+     */
+    public void restore(Utterance utterance) {
+        Relation tokens = utterance.getRelation(Relation.TOKEN);
+        Item token = tokens == null ? null : tokens.getHead();
+
+        for (int i = 0; i < utteranceFeatureNames.length; i++) {
+            utterance.setObject(utteranceFeatureNames[i], utteranceFeatureValues[i]);
+        }
+
+        Item[] contentsItems = new Item[featureNames.length];
+        for (int r = 0; r < relationNames.length; r++) {
+            Relation relation = utterance.createRelation(relationNames[r]);
+            int[] items = relationItems[r];
+            List<Item> parents = new ArrayList<>();
+            for (int i = 0; i < items.length; i += 2) {
+                int index = items[i];
+                int depth = items[i + 1];
+                Item shared = contentsItems[index];
+                Item item = depth == 0 ? relation.appendItem(shared)
+                        : parents.get(depth - 1).addDaughter(shared);
+                if (shared == null) {
+                    contentsItems[index] = item;
+                    FeatureSet features = item.getFeatures();
+                    for (int f = 0; f < featureNames[index].length; f++) {
+                        features.setObject(featureNames[index][f], featureValues[index][f]);
+                    }
+                }
+                if (parents.size() > depth) {
+                    parents.set(depth, item);
+                } else {
+                    parents.add(item);
+                }
+            }
+        }
+
+        tokens = utterance.getRelation(Relation.TOKEN);
+        for (Item item = tokens == null ? null : tokens.getHead();
+             item != null && token != null; item = item.getNext(), token = token.getNext()) {
+            copyFeature(token, item, "file_pos");
+            copyFeature(token, item, "line_number");
+        }
+    }
+
+    /**
+     * Copies a feature from one item to another, if it is set.
+     *
+     * @param from the item to copy from
+     * @param to   the item to copy to
+     * @param name the name of the feature
+     */
+    private static void copyFeature(Item from, Item to, String name) {
+        FeatureSet features = from.getFeatures();
+        if (features.isPresent(name)) {
+            to.getFeatures().setObject(name, features.getObject(name));
+        }
+    }
+
+    /**
+     * Returns the number of distinct item contents in this snapshot.
+     *
+     * @return the number of item contents
+     */
+    public int getItemCount() {
+        return featureNames.length;
+    }
+}
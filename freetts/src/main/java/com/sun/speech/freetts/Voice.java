@@ -22,6 +22,7 @@ import java.lang.System.Logger.Level;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,11 +30,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import javax.sound.sampled.AudioFormat;
 
 import com.sun.speech.freetts.audio.AudioPlayer;
+import com.sun.speech.freetts.audio.PromptStore;
+import com.sun.speech.freetts.audio.RecordingAudioPlayer;
 import com.sun.speech.freetts.lexicon.Lexicon;
 import com.sun.speech.freetts.relp.LPCResult;
 import com.sun.speech.freetts.util.BulkTimer;
+import com.sun.speech.freetts.util.LRUCache;
 import com.sun.speech.freetts.util.Utilities;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -77,6 +82,47 @@ import org.w3c.dom.Text;
  * implements the AudioPlayer interface, and which also has a no-arg
  * constructor.
  *
+ * <p>A voice that marks where its front end ends (see
+ * <code>setFrontEndProcessorCount</code>) can cache the result of the
+ * front end for repeated utterances.  An utterance with the same text,
+ * spoken with the same pitch, pitch range and duration stretch, then
+ * skips straight to unit selection.  The cache is off by default; to
+ * keep the results for up to 200 utterances, set the following
+ * property (or call <code>setFrontEndCacheSize</code>):
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.voice.frontEndCacheSize=200
+ * </pre>
+ *
+ * The cache is cleared when the words of the lexicon change (see
+ * <code>Lexicon.getGeneration</code>).
+ *
+ * <p>The finished audio of utterances can be cached as well, so that
+ * a prompt that is spoken again is sent straight to the audio player
+ * without running any utterance processor.  This cache is bounded by
+ * the number of audio bytes it holds and is off by default; to keep
+ * up to 16 MB of audio, set the following property (or call
+ * <code>setAudioCacheSize</code>):
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.voice.audioCacheSize=16777216
+ * </pre>
+ *
+ * This cache is cleared along with the front end cache.  To keep
+ * finished audio across runs, or share it between programs, give the
+ * voice a <code>PromptStore</code> with <code>setPromptStore</code>.
+ * A prompt store is not told of changes to the lexicon, so it must be
+ * filled again after the addenda change.
+ *
+ * <p>The audio of a voice is given to the audio player at the sample
+ * rate of the voice.  To have it resampled to another rate as it is
+ * synthesized, such as 8000 Hz for telephony, set the following
+ * property (or call <code>setOutputSampleRate</code>):
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.voice.outputSampleRate=8000
+ * </pre>
+ *
  * @see VoiceManager
  * @see VoiceDirectory
  */
@@ -91,6 +137,13 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
      */
     public final static String DATABASE_NAME = "databaseName";
 
+    /** Utterance feature holding the cached audio to play for it. */
+    private final static String CACHED_AUDIO = "cached_audio";
+    /** Utterance feature holding the key to cache its audio under. */
+    private final static String AUDIO_CACHE_KEY = "audio_cache_key";
+    /** Utterance feature holding the lexicon generation of its audio. */
+    private final static String LEXICON_GENERATION = "lexicon_generation";
+
     private List<UtteranceProcessor> utteranceProcessors;
     private Map<String, FeatureProcessor> featureProcessors;
     private FeatureSetImpl features;
@@ -100,6 +153,7 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
     private boolean dumpRelations = false;
     private String runTitle = "unnamed run";
     private Lexicon lexicon = null;
+    private Lexicon allocatedLexicon = null;
     private AudioPlayer defaultAudioPlayer;
     private AudioPlayer audioPlayer;
     private UtteranceProcessor audioOutput;
@@ -110,6 +164,22 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
     private boolean externalOutputQueue = false;
     private boolean externalAudioPlayer = false;
 
+    /** the number of utterance processors that make up the front end */
+    private int frontEndProcessorCount = 0;
+    /** front end results, indexed by text and prosody; null if disabled */
+    private LRUCache<String, UtteranceSnapshot> frontEndCache =
+            createFrontEndCache(Utilities.getInteger(PROP_PREFIX + "frontEndCacheSize", 0));
+    /** finished audio, indexed by text and prosody; null if disabled */
+    private LRUCache<String, CachedAudio> audioCache =
+            createAudioCache(Utilities.getLong(PROP_PREFIX + "audioCacheSize", 0));
+    /** persistent store of finished audio; null if none */
+    private PromptStore promptStore;
+
+    /** The lexicon generation that the cached results were made with. */
+    private volatile long lexiconGeneration;
+    /** the sample rate of the audio output; 0 for the rate of the voice */
+    private int outputSampleRate = Utilities.getInteger(PROP_PREFIX + "outputSampleRate", 0);
+
     /** nominal speaking rate for this voice */
     private float nominalRate = 150;
     /** pitch baseline (hertz) */
@@ -315,13 +385,12 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
         }
         BulkTimer.LOAD.start();
 
-        if (!lexicon.isLoaded()) {
-            try {
-                lexicon.load();
-            } catch (IOException ioe) {
-                logger.log(Level.ERROR, "Can't load voice ", ioe);
-                throw new IllegalStateException("Can't load voice " + ioe.getMessage(), ioe);
-            }
+        try {
+            lexicon.allocate();
+            allocatedLexicon = lexicon;
+        } catch (IOException ioe) {
+            logger.log(Level.ERROR, "Can't load voice ", ioe);
+            throw new IllegalStateException("Can't load voice " + ioe.getMessage(), ioe);
         }
 
         try {
@@ -393,8 +462,42 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
             logger.log(Level.DEBUG, "Processing Utterance: " + u.getString("input_text"));
         }
         try {
-            for (int i = 0; i < processors.length && !u.getSpeakable().isCompleted(); i++) {
+            LRUCache<String, UtteranceSnapshot> cache = frontEndCache;
+            int frontEnd = frontEndProcessorCount;
+            String key = null;
+            int first = 0;
+            long generation = checkLexiconGeneration();
+            String audioKey = audioCache == null && promptStore == null ? null : getAudioCacheKey(u);
+            if (audioKey != null) {
+                CachedAudio cachedAudio = getCachedAudio(generation, audioKey);
+                if (cachedAudio != null) {
+                    u.setObject(CACHED_AUDIO, cachedAudio);
+                    first = processors.length;
+                }
+            }
+            if (first == 0 && cache != null && frontEnd > 0 && frontEnd <= processors.length) {
+                key = getCacheKey(u);
+                if (key != null) {
+                    key = generation + " " + key;
+                }
+                UtteranceSnapshot snapshot = key == null ? null : cache.get(key);
+                if (snapshot != null) {
+                    snapshot.restore(u);
+                    first = frontEnd;
+                }
+            }
+            for (int i = first; i < processors.length && !u.getSpeakable().isCompleted(); i++) {
                 runProcessor(processors[i], u, runTimer);
+                if (i == frontEnd - 1 && key != null) {
+                    UtteranceSnapshot snapshot = UtteranceSnapshot.capture(u);
+                    if (snapshot != null) {
+                        cache.put(key, snapshot);
+                    }
+                }
+            }
+            if (audioKey != null && first < processors.length) {
+                u.setString(AUDIO_CACHE_KEY, audioKey);
+                u.setObject(LEXICON_GENERATION, generation);
             }
             if (!u.getSpeakable().isCompleted()) {
                 if (outputQueue == null) {
@@ -506,7 +609,7 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
             // log("   utt: " + utterance.getString("input_text"));
             try {
                 if (!speakable.isCompleted()) {
-                    runProcessor(audioOutput, utterance, timer);
+                    ok = runAudioOutput(utterance, timer);
                 } else {
                     ok = false;
                 }
@@ -545,6 +648,107 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
         return ok;
     }
 
+    /**
+     * Sends the given utterance to the audio output processor, or
+     * plays its cached audio.  Cached audio is only played if it has
+     * the format the audio player is set to; otherwise the utterance
+     * is synthesized after all, so that the player keeps its format.
+     * The audio output of an utterance that
+     * carries an audio cache key is recorded and cached, and added to
+     * the prompt store if that is writable.
+     *
+     * @param utterance the utterance to be output
+     * @param timer     the timer for gathering performance metrics
+     * @return true if the utterance was output properly; otherwise
+     * false
+     * @throws ProcessException if an exception occurs while outputting
+     *                          the utterance
+     */
+    private boolean runAudioOutput(Utterance utterance, BulkTimer timer)
+            throws ProcessException {
+        CachedAudio cachedAudio = (CachedAudio) utterance.getObject(CACHED_AUDIO);
+        if (cachedAudio != null) {
+            AudioPlayer player = getAudioPlayer();
+            AudioFormat playerFormat = player.getAudioFormat();
+            if (playerFormat == null || cachedAudio.format.matches(playerFormat)) {
+                timer.start("..CachedAudio");
+                try {
+                    return cachedAudio.play(player, utterance.getSpeakable(), getVolume());
+                } catch (IOException ioe) {
+                    throw new ProcessException(ioe.getMessage(), ioe);
+                } finally {
+                    timer.stop("..CachedAudio");
+                }
+            }
+            if (logger.isLoggable(Level.DEBUG)) {
+                logger.log(Level.DEBUG, "Cached audio is " + cachedAudio.format
+                        + ", player is " + playerFormat + "; synthesizing");
+            }
+            utterance.remove(CACHED_AUDIO);
+            UtteranceProcessor[] processors = utteranceProcessors.toArray(new UtteranceProcessor[0]);
+            for (int i = 0; i < processors.length && !utterance.getSpeakable().isCompleted(); i++) {
+                runProcessor(processors[i], utterance, timer);
+            }
+        }
+
+        String key = utterance.getString(AUDIO_CACHE_KEY);
+        LRUCache<String, CachedAudio> cache = audioCache;
+        PromptStore store = promptStore;
+        if (key == null || (cache == null && (store == null || !store.isWritable()))) {
+            runProcessor(audioOutput, utterance, timer);
+            return true;
+        }
+        RecordingAudioPlayer recorder = new RecordingAudioPlayer(getAudioPlayer());
+        utterance.setAudioPlayer(recorder);
+        try {
+            runProcessor(audioOutput, utterance, timer);
+        } finally {
+            utterance.setAudioPlayer(null);
+        }
+        AudioFormat format = recorder.getRecordedFormat();
+        if (recorder.isComplete() && format != null && !utterance.getSpeakable().isCompleted()) {
+            byte[] samples = recorder.getRecordedAudio();
+            if (cache != null) {
+                long generation = (Long) utterance.getObject(LEXICON_GENERATION);
+                cache.put(generation + " " + key, new CachedAudio(format, ByteBuffer.wrap(samples)));
+            }
+            if (store != null && store.isWritable()) {
+                try {
+                    store.put(getName() + " " + key, format, samples);
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, "Can't add prompt to store: " + ioe.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the finished audio cached under the given key, looking
+     * in the audio cache and then in the prompt store.
+     *
+     * @param generation the lexicon generation, which only the audio
+     *                   cache is keyed by
+     * @param key        the audio cache key
+     * @return the audio, or <code>null</code> if it is not cached
+     */
+    private CachedAudio getCachedAudio(long generation, String key) {
+        LRUCache<String, CachedAudio> cache = audioCache;
+        CachedAudio cachedAudio = cache == null ? null : cache.get(generation + " " + key);
+        PromptStore store = promptStore;
+        if (cachedAudio == null && store != null) {
+            try {
+                PromptStore.Prompt prompt = store.get(getName() + " " + key);
+                if (prompt != null) {
+                    cachedAudio = new CachedAudio(prompt.getFormat(), prompt.getAudio());
+                }
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Can't read prompt store: " + ioe.getMessage());
+            }
+        }
+        return cachedAudio;
+    }
+
     /**
      * Runs the given utterance processor.
      *
@@ -585,6 +789,203 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
         return utteranceProcessors;
     }
 
+    /**
+     * Marks the first utterance processors of this voice as its front
+     * end, whose results can be cached.  The front end must produce
+     * the same relations and features for the same text and prosody
+     * settings.
+     *
+     * @param count the number of utterance processors in the front end,
+     *              or 0 if the front end is not known
+     */
+    protected void setFrontEndProcessorCount(int count) {
+        frontEndProcessorCount = count;
+    }
+
+    /**
+     * Sets the number of utterances whose front end results are
+     * cached.  Any cached results are discarded.
+     *
+     * @param size the number of utterances, or 0 to disable the cache
+     */
+    public void setFrontEndCacheSize(int size) {
+        frontEndCache = createFrontEndCache(size);
+    }
+
+    /**
+     * Returns the cache of front end results, for reporting its hit
+     * rate or clearing it.
+     *
+     * @return the cache, or <code>null</code> if it is disabled
+     */
+    public LRUCache<String, ?> getFrontEndCache() {
+        return frontEndCache;
+    }
+
+    /**
+     * Creates a front end cache of the given size.
+     *
+     * @param size the number of utterances, or 0 for no cache
+     * @return the cache, or <code>null</code>
+     */
+    private static LRUCache<String, UtteranceSnapshot> createFrontEndCache(int size) {
+        return size > 0 ? new LRUCache<>(size) : null;
+    }
+
+    /**
+     * Sets the number of bytes of finished audio that are cached.  Any
+     * cached audio is discarded.
+     *
+     * @param size the number of bytes, or 0 to disable the cache
+     */
+    public void setAudioCacheSize(long size) {
+        audioCache = createAudioCache(size);
+    }
+
+    /**
+     * Returns the cache of finished audio, for reporting its hits,
+     * misses and evictions or clearing it.
+     *
+     * @return the cache, or <code>null</code> if it is disabled
+     */
+    public LRUCache<String, ?> getAudioCache() {
+        return audioCache;
+    }
+
+    /**
+     * Creates an audio cache of the given size.
+     *
+     * @param size the number of bytes, or 0 for no cache
+     * @return the cache, or <code>null</code>
+     */
+    private static LRUCache<String, CachedAudio> createAudioCache(long size) {
+        return size > 0 ? new LRUCache<>(size, audio -> audio.samples.remaining()) : null;
+    }
+
+    /**
+     * Sets the prompt store that the finished audio of utterances is
+     * looked up in before they are synthesized.  If the store is
+     * writable, the audio of the utterances that are synthesized is
+     * added to it.  The store is shared with other voices by keying
+     * the audio with the name of this voice.
+     *
+     * @param store the prompt store, or <code>null</code> for none
+     */
+    public void setPromptStore(PromptStore store) {
+        promptStore = store;
+    }
+
+    /**
+     * Returns the prompt store of this voice.
+     *
+     * @return the prompt store, or <code>null</code> if there is none
+     */
+    public PromptStore getPromptStore() {
+        return promptStore;
+    }
+
+    /**
+     * Returns the generation of the lexicon, clearing the front end
+     * and audio caches if it changed since they were last used.
+     *
+     * @return the lexicon generation
+     */
+    private long checkLexiconGeneration() {
+        Lexicon lex = lexicon;
+        long generation = lex == null ? 0 : lex.getGeneration();
+        if (generation != lexiconGeneration) {
+            lexiconGeneration = generation;
+            clearCaches();
+        }
+        return generation;
+    }
+
+    /**
+     * Clears the front end and audio caches.
+     */
+    private void clearCaches() {
+        LRUCache<String, UtteranceSnapshot> cache = frontEndCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        LRUCache<String, CachedAudio> audio = audioCache;
+        if (audio != null) {
+            audio.clear();
+        }
+    }
+
+    /**
+     * Returns the front end and audio cache key of the given utterance:
+     * its text and the prosody settings that shape it.
+     *
+     * @param utterance the utterance
+     * @return the key, or <code>null</code> if the utterance has no text
+     */
+    private String getCacheKey(Utterance utterance) {
+        String text = utterance.getString("input_text");
+        if (text == null) {
+            return null;
+        }
+        return getPitch() + " " + getPitchRange() + " " + getDurationStretch() + " " + text;
+    }
+
+    /**
+     * Returns the audio cache key of the given utterance: its front end
+     * cache key, after the volume, the output sample rate if one is
+     * set, and the encoding, sample size, channels and byte order of
+     * the audio player.  The sample rate of the player is left out, as
+     * the audio output sets it to the rate of the voice.
+     *
+     * @param utterance the utterance
+     * @return the key, or <code>null</code> if the utterance has no text
+     */
+    private String getAudioCacheKey(Utterance utterance) {
+        String key = getCacheKey(utterance);
+        if (key == null) {
+            return null;
+        }
+        AudioPlayer player = getAudioPlayer();
+        AudioFormat format = player == null ? null : player.getAudioFormat();
+        StringBuilder builder = new StringBuilder();
+        builder.append(getVolume()).append(' ');
+        if (outputSampleRate > 0) {
+            builder.append(outputSampleRate).append("Hz ");
+        }
+        if (format != null) {
+            builder.append(format.getEncoding()).append(' ')
+                    .append(format.getSampleSizeInBits()).append(' ')
+                    .append(format.getChannels()).append(' ')
+                    .append(format.isBigEndian() ? "big " : "little ");
+        }
+        return builder.append(key).toString();
+    }
+
+    /**
+     * Sets the sample rate that the audio of this voice is resampled
+     * to before it is given to the audio player.
+     *
+     * @param rate the sample rate in Hz, or 0 for the sample rate of
+     *             the voice
+     * @throws IllegalArgumentException if the rate is negative
+     */
+    public void setOutputSampleRate(int rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Bad sample rate " + rate);
+        }
+        outputSampleRate = rate;
+    }
+
+    /**
+     * Returns the sample rate that the audio of this voice is resampled
+     * to.
+     *
+     * @return the sample rate in Hz, or 0 for the sample rate of the
+     * voice
+     */
+    public int getOutputSampleRate() {
+        return outputSampleRate;
+    }
+
     /**
      * Returns the feature set associated with this voice.
      *
@@ -957,9 +1358,53 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
     }
 
     /**
-     * Shuts down the voice processing.
+     * Given a phoneme and a feature column of {@link PhoneSet}, returns
+     * the feature.  The default implementation looks up the standard
+     * feature of the column by name with
+     * {@link #getPhoneFeature(String, String)}, so subclasses that
+     * override only that method still see their features.
+     *
+     * @param phone        the phoneme of interest
+     * @param featureIndex the feature column, one of the
+     *                     <code>PhoneSet.*_INDEX</code> constants
+     * @return the feature, or <code>null</code>
+     */
+    public String getPhoneFeature(String phone, int featureIndex) {
+        if (featureIndex < 0 || featureIndex >= PhoneSet.STANDARD_FEATURES.size()) {
+            return null;
+        }
+        return getPhoneFeature(phone, PhoneSet.STANDARD_FEATURES.get(featureIndex));
+    }
+
+    /**
+     * Given a phoneme, returns all of its features indexed by the
+     * feature columns of {@link PhoneSet}.  The default implementation
+     * builds a new row of the standard features from
+     * {@link #getPhoneFeature(String, String)} on each call.
+     *
+     * @param phone the phoneme of interest
+     * @return the feature row, or <code>null</code> if the phone is unknown
+     */
+    public String[] getPhoneFeatures(String phone) {
+        String[] row = new String[PhoneSet.STANDARD_FEATURES.size()];
+        boolean known = false;
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getPhoneFeature(phone, PhoneSet.STANDARD_FEATURES.get(i));
+            known |= row[i] != null;
+        }
+        return known ? row : null;
+    }
+
+    /**
+     * Shuts down the voice processing.  The lexicon allocated by
+     * <code>allocate()</code> is deallocated, which frees its data only
+     * if the voices loaded it and no other voice uses it.
      */
     public void deallocate() {
+        if (allocatedLexicon != null) {
+            allocatedLexicon.deallocate();
+            allocatedLexicon = null;
+        }
         setLoaded(false);
 
         if (!externalAudioPlayer) {
@@ -1104,6 +1549,7 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
      */
     public void setLexicon(Lexicon lexicon) {
         this.lexicon = lexicon;
+        clearCaches();
     }
 
     /**
@@ -1372,6 +1818,64 @@ public abstract class Voice implements UtteranceProcessor, Dumpable {
      */
     protected abstract UtteranceProcessor getAudioOutput() throws IOException;
 
+    /**
+     * The finished audio of an utterance.
+     */
+    private static class CachedAudio {
+
+        /** the number of bytes written to the player at once */
+        private static final int WRITE_SIZE = 8192;
+
+        private final AudioFormat format;
+        private final ByteBuffer samples;
+
+        /**
+         * Creates cached audio.
+         *
+         * @param format  the format of the audio
+         * @param samples the audio data
+         */
+        CachedAudio(AudioFormat format, ByteBuffer samples) {
+            this.format = format;
+            this.samples = samples;
+        }
+
+        /**
+         * Plays the audio on the given player, which must be set to
+         * the format of the audio or to no format at all.
+         *
+         * @param player    where to send the audio
+         * @param speakable the speakable being spoken
+         * @param volume    the volume to play the audio at
+         * @return <code>true</code> if the audio was played completely
+         * @throws IOException if an error occurs while writing the audio
+         */
+        boolean play(AudioPlayer player, FreeTTSSpeakable speakable, float volume) throws IOException {
+            boolean ok = true;
+            ByteBuffer audio = samples.duplicate();
+            byte[] buffer = audio.hasArray() ? null : new byte[Math.min(WRITE_SIZE, audio.remaining())];
+            if (player.getAudioFormat() == null) {
+                player.setAudioFormat(format);
+            }
+            player.setVolume(volume);
+            player.begin(audio.remaining());
+            while ((ok &= !speakable.isCompleted()) && audio.hasRemaining()) {
+                int size = Math.min(WRITE_SIZE, audio.remaining());
+                if (buffer == null) {
+                    ok = player.write(audio.array(), audio.arrayOffset() + audio.position(), size);
+                    audio.position(audio.position() + size);
+                } else {
+                    audio.get(buffer, 0, size);
+                    ok = player.write(buffer, 0, size);
+                }
+            }
+            if (ok &= !speakable.isCompleted()) {
+                ok = player.end();
+            }
+            return ok;
+        }
+    }
+
     /**
      * Tokenizes a FreeTTSSpeakable
      */
@@ -0,0 +1,569 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.audio;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+import com.sun.speech.freetts.util.BulkTimer;
+
+
+/**
+ * A file of synthesized prompt audio, kept across runs of a program.
+ * Voices that are given a prompt store (see
+ * <code>Voice.setPromptStore</code>) look the audio of each utterance
+ * up in it before synthesizing, and add the audio they synthesize if
+ * the store was opened for writing.
+ *
+ * <p>The file starts with a header and a hash table of the offsets of
+ * the last record added to each bucket, followed by the records.  A
+ * record holds its size, the offset of the previous record in its
+ * bucket, the hash code and text of the key, the audio format and the
+ * audio data.  Records are only ever appended, so a lookup walks the
+ * chain of one bucket from the newest record back.  The file is read
+ * through read only memory mappings of fixed size segments, 1 GB by
+ * default, that records never cross; only the segment a record lies
+ * in is mapped again when the file has grown, and the file grows in
+ * steps of a megabyte.
+ *
+ * <p>Several programs on one host can share a store.  Appends are
+ * serialized with a file lock, and a record is written before the end
+ * of the data and then its bucket are updated.  Readers take no lock;
+ * they read the bucket before the end of the data, so they only reach
+ * complete records.  A record cut short by a crash is overwritten by
+ * the next append.
+ *
+ * <p>The store can be filled ahead of time from a list of prompts:
+ *
+ * <pre>
+ *   java com.sun.speech.freetts.audio.PromptStore -voice kevin16 \
+ *       -store prompts.fps -prompts prompts.txt
+ * </pre>
+ */
+public class PromptStore implements Closeable {
+
+    /** Marks the start of a prompt store file. */
+    private static final int MAGIC = 0x46545053;
+
+    /** The version of the file format. */
+    private static final int VERSION = 2;
+
+    /** The number of buckets of the hash table. */
+    private static final int BUCKETS = 1 << 14;
+
+    /** The default size of the mapped segments of a new store. */
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    /** How much the file grows by when it is full. */
+    private static final int GROWTH = 1 << 20;
+
+    /** Where the header holds the number of buckets. */
+    private static final int BUCKETS_POSITION = 8;
+
+    /** Where the header holds the segment size. */
+    private static final int SEGMENT_SIZE_POSITION = 12;
+
+    /** Where the header holds the end of the data. */
+    private static final int DATA_END_POSITION = 16;
+
+    /** Where the header holds the number of prompts. */
+    private static final int COUNT_POSITION = 24;
+
+    /** The size of the file header. */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of a record without its key, encoding name and audio:
+     * size, previous record, hash, key length, encoding name length,
+     * sample rate, sample size, channels, frame size, frame rate, byte
+     * order and audio length.
+     */
+    private static final int RECORD_SIZE = 4 + 8 + 4 + 4 + 4 + 4 + 4 + 4 + 4 + 4 + 1 + 4;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer table;
+    private final int buckets;
+    private final int segmentSize;
+    private final long dataStart;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     * The audio of a prompt.
+     */
+    public static class Prompt {
+        private final AudioFormat format;
+        private final ByteBuffer audio;
+
+        /**
+         * Creates a prompt.
+         *
+         * @param format the audio format
+         * @param audio  the audio data
+         */
+        Prompt(AudioFormat format, ByteBuffer audio) {
+            this.format = format;
+            this.audio = audio;
+        }
+
+        /**
+         * Returns the format of the audio.
+         *
+         * @return the audio format
+         */
+        public AudioFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * Returns the audio data.
+         *
+         * @return a read only buffer holding the audio data
+         */
+        public ByteBuffer getAudio() {
+            return audio.duplicate();
+        }
+    }
+
+    /**
+     * Opens a prompt store.  A store opened for writing is created if
+     * it does not exist.
+     *
+     * @param path     the path of the store
+     * @param writable <code>true</code> to add prompts to the store
+     * @throws IOException if the store cannot be opened or is not a
+     *                     prompt store
+     */
+    public PromptStore(Path path, boolean writable) throws IOException {
+        this(path, writable, SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a prompt store.  A store opened for writing is created if
+     * it does not exist, with the given segment size.  No prompt can
+     * be larger than a segment.
+     *
+     * @param path        the path of the store
+     * @param writable    <code>true</code> to add prompts to the store
+     * @param segmentSize the number of bytes mapped at once, if the
+     *                    store is created
+     * @throws IOException if the store cannot be opened or is not a
+     *                     prompt store
+     */
+    public PromptStore(Path path, boolean writable, int segmentSize) throws IOException {
+        if (segmentSize <= RECORD_SIZE) {
+            throw new IllegalArgumentException("Bad segment size " + segmentSize);
+        }
+        this.writable = writable;
+        if (writable) {
+            channel = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (writable) {
+                try (FileLock lock = channel.lock()) {
+                    if (channel.size() == 0) {
+                        long start = HEADER_SIZE + (long) BUCKETS * 8;
+                        header.putInt(MAGIC).putInt(VERSION).putInt(BUCKETS).putInt(segmentSize)
+                                .putLong(start).putInt(0).putInt(0).flip();
+                        writeFully(header, 0);
+                        writeFully(ByteBuffer.allocate(BUCKETS * 8), HEADER_SIZE);
+                        header.clear();
+                    }
+                    readFully(header);
+                }
+            } else {
+                readFully(header);
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a prompt store");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported prompt store version " + header.getInt(4));
+            }
+            buckets = header.getInt(BUCKETS_POSITION);
+            this.segmentSize = header.getInt(SEGMENT_SIZE_POSITION);
+            dataStart = HEADER_SIZE + (long) buckets * 8;
+            if (buckets <= 0 || this.segmentSize <= RECORD_SIZE || channel.size() < dataStart) {
+                throw new IOException("Corrupt prompt store header");
+            }
+            table = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if prompts can be added to this store.
+     *
+     * @return <code>true</code> if this store was opened for writing
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Returns the audio stored under the given key, including prompts
+     * added by other programs.
+     *
+     * @param key the key
+     * @return the prompt, or <code>null</code> if it is not stored
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized Prompt get(String key) throws IOException {
+        int hash = key.hashCode();
+        // the bucket before the end of the data, which a writer updates
+        // the other way round, so the end covers the records it leads to
+        long offset = table.getLong(getBucketPosition(hash));
+        long dataEnd = table.getLong(DATA_END_POSITION);
+        while (offset != 0) {
+            if (offset < dataStart || !isBefore(offset + RECORD_SIZE, dataEnd)) {
+                throw new IOException("Corrupt prompt store record at " + offset);
+            }
+            int size = map(offset, 4).getInt(0);
+            if (size < RECORD_SIZE || !isBefore(offset + size, dataEnd)) {
+                throw new IOException("Corrupt prompt store record at " + offset);
+            }
+            ByteBuffer record = map(offset, size);
+            record.position(4);
+            long previous = record.getLong();
+            if (record.getInt() == hash && readString(record).equals(key)) {
+                return readPrompt(record);
+            }
+            if (previous >= offset) {
+                throw new IOException("Corrupt prompt store record at " + offset);
+            }
+            offset = previous;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the audio of a prompt to this store, unless a prompt with
+     * the same key is already stored.
+     *
+     * @param key    the key
+     * @param format the format of the audio
+     * @param audio  the audio data
+     * @throws IOException if the store cannot be written or the prompt
+     *                     is larger than a segment
+     * @throws IllegalStateException if the store is not writable
+     */
+    public synchronized void put(String key, AudioFormat format, byte[] audio) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("Prompt store is read only");
+        }
+        try (FileLock lock = channel.lock()) {
+            if (get(key) != null) {
+                return;
+            }
+            String encoding = format.getEncoding().toString();
+            long size = RECORD_SIZE + key.length() * 2L + encoding.length() * 2L + audio.length;
+            if (size > segmentSize) {
+                throw new IOException("Prompt of " + audio.length + " bytes does not fit in a segment");
+            }
+            long offset = table.getLong(DATA_END_POSITION);
+            if (offset / segmentSize != (offset + size - 1) / segmentSize) {
+                offset = (offset / segmentSize + 1) * segmentSize;
+            }
+            int hash = key.hashCode();
+            int bucketPosition = getBucketPosition(hash);
+
+            ByteBuffer record = ByteBuffer.allocate((int) size);
+            record.putInt((int) size);
+            record.putLong(table.getLong(bucketPosition));
+            record.putInt(hash);
+            writeString(record, key);
+            writeString(record, encoding);
+            record.putFloat(format.getSampleRate());
+            record.putInt(format.getSampleSizeInBits());
+            record.putInt(format.getChannels());
+            record.putInt(format.getFrameSize());
+            record.putFloat(format.getFrameRate());
+            record.put((byte) (format.isBigEndian() ? 1 : 0));
+            record.putInt(audio.length);
+            record.put(audio);
+            record.flip();
+
+            long end = offset + size;
+            if (end > channel.size()) {
+                writeFully(ByteBuffer.allocate(1), (end + GROWTH - 1) / GROWTH * GROWTH - 1);
+            }
+            writeFully(record, offset);
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putLong(end).putInt(table.getInt(COUNT_POSITION) + 1).flip();
+            writeFully(header, DATA_END_POSITION);
+            ByteBuffer link = ByteBuffer.allocate(8);
+            link.putLong(offset).flip();
+            writeFully(link, bucketPosition);
+        }
+    }
+
+    /**
+     * Returns the number of prompts in this store.
+     *
+     * @return the number of prompts
+     */
+    public synchronized int size() {
+        return table.getInt(COUNT_POSITION);
+    }
+
+    /**
+     * Closes this store.  Prompts already returned stay readable.
+     *
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns true if a record ends before the end of the data, reading
+     * the end again if it does not, in case the end read was older than
+     * the bucket that led to the record.
+     *
+     * @param recordEnd the end of the record
+     * @param dataEnd   the end of the data as last read
+     * @return <code>true</code> if the record lies within the data
+     */
+    private boolean isBefore(long recordEnd, long dataEnd) {
+        return recordEnd <= dataEnd || recordEnd <= table.getLong(DATA_END_POSITION);
+    }
+
+    /**
+     * Returns where the hash table holds the last record of the bucket
+     * of the given hash code.
+     *
+     * @param hash the hash code of a key
+     * @return the position in the file
+     */
+    private int getBucketPosition(int hash) {
+        return HEADER_SIZE + ((hash & Integer.MAX_VALUE) % buckets) * 8;
+    }
+
+    /**
+     * Returns a buffer of a part of the file, mapping the segment it
+     * lies in again if it has grown since it was mapped.
+     *
+     * @param offset the offset of the part in the file
+     * @param length the length of the part
+     * @return a read only buffer of the part
+     * @throws IOException if the part crosses a segment or lies beyond
+     *                     the end of the file
+     */
+    private ByteBuffer map(long offset, int length) throws IOException {
+        int index = (int) (offset / segmentSize);
+        long start = (long) index * segmentSize;
+        int position = (int) (offset - start);
+        if (position + (long) length > segmentSize) {
+            throw new IOException("Corrupt prompt store record at " + offset);
+        }
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        }
+        MappedByteBuffer segment = segments[index];
+        if (segment == null || position + length > segment.capacity()) {
+            long size = Math.min(channel.size() - start, segmentSize);
+            if (position + (long) length > size) {
+                throw new IOException("Corrupt prompt store record at " + offset);
+            }
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segments[index] = segment;
+        }
+        ByteBuffer buffer = segment.duplicate();
+        buffer.limit(position + length).position(position);
+        return buffer.slice();
+    }
+
+    /**
+     * Reads the audio format and data of a record.
+     *
+     * @param record the record, positioned after its key
+     * @return the prompt
+     * @throws IOException if the record is corrupt
+     */
+    private static Prompt readPrompt(ByteBuffer record) throws IOException {
+        String encoding = readString(record);
+        float sampleRate = record.getFloat();
+        int sampleSize = record.getInt();
+        int channels = record.getInt();
+        int frameSize = record.getInt();
+        float frameRate = record.getFloat();
+        boolean bigEndian = record.get() != 0;
+        int length = record.getInt();
+        if (length != record.remaining()) {
+            throw new IOException("Corrupt prompt store record");
+        }
+        AudioFormat format = new AudioFormat(getEncoding(encoding), sampleRate, sampleSize,
+                channels, frameSize, frameRate, bigEndian);
+        return new Prompt(format, record.slice());
+    }
+
+    /**
+     * Returns the audio encoding of the given name.
+     *
+     * @param name the name of the encoding
+     * @return the encoding
+     */
+    private static AudioFormat.Encoding getEncoding(String name) {
+        for (AudioFormat.Encoding encoding : new AudioFormat.Encoding[] {
+                AudioFormat.Encoding.PCM_SIGNED, AudioFormat.Encoding.PCM_UNSIGNED,
+                AudioFormat.Encoding.PCM_FLOAT, AudioFormat.Encoding.ULAW, AudioFormat.Encoding.ALAW}) {
+            if (encoding.toString().equals(name)) {
+                return encoding;
+            }
+        }
+        return new AudioFormat.Encoding(name);
+    }
+
+    /**
+     * Reads a string written by <code>writeString</code>.
+     *
+     * @param record the buffer to read from
+     * @return the string
+     * @throws IOException if the string is longer than the buffer
+     */
+    private static String readString(ByteBuffer record) throws IOException {
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining() / 2) {
+            throw new IOException("Corrupt prompt store record");
+        }
+        char[] chars = new char[length];
+        record.asCharBuffer().get(chars);
+        record.position(record.position() + length * 2);
+        return new String(chars);
+    }
+
+    /**
+     * Writes the length and the characters of a string.
+     *
+     * @param record the buffer to write to
+     * @param string the string
+     */
+    private static void writeString(ByteBuffer record, String string) {
+        record.putInt(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            record.putChar(string.charAt(i));
+        }
+    }
+
+    /**
+     * Reads the start of the file.
+     *
+     * @param buffer where to read it to
+     * @throws IOException if the file is shorter than the buffer
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new IOException("Not a prompt store");
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Writes all of a buffer to the file.
+     *
+     * @param buffer   the data to write
+     * @param position where to write it in the file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Fills a prompt store with the audio of the prompts in a text
+     * file, one prompt per line.
+     */
+    public static void main(String[] args) {
+        String voiceName = "kevin16";
+        String storePath = null;
+        String promptsPath = null;
+        boolean showTimes = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-voice") && i < args.length - 1) {
+                voiceName = args[++i];
+            } else if (args[i].equals("-store") && i < args.length - 1) {
+                storePath = args[++i];
+            } else if (args[i].equals("-prompts") && i < args.length - 1) {
+                promptsPath = args[++i];
+            } else if (args[i].equals("-showtimes")) {
+                showTimes = true;
+            } else {
+                System.out.println("Unknown option " + args[i]);
+            }
+        }
+        if (storePath == null || promptsPath == null) {
+            System.out.println("Options: ");
+            System.out.println("    -voice name");
+            System.out.println("    -store path");
+            System.out.println("    -prompts path");
+            System.out.println("    -showtimes");
+            return;
+        }
+
+        Voice voice = VoiceManager.getInstance().getVoice(voiceName);
+        if (voice == null) {
+            System.out.println("Invalid voice: " + voiceName);
+            return;
+        }
+
+        BulkTimer timer = new BulkTimer();
+        timer.start();
+        try (PromptStore store = new PromptStore(Paths.get(storePath), true);
+             BufferedReader reader = Files.newBufferedReader(Paths.get(promptsPath), StandardCharsets.UTF_8)) {
+            int before = store.size();
+            voice.setAudioPlayer(new NullAudioPlayer());
+            voice.allocate();
+            voice.setPromptStore(store);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    timer.start("synthesize");
+                    voice.speak(line);
+                    timer.stop("synthesize");
+                }
+            }
+            voice.deallocate();
+            System.out.println("Added " + (store.size() - before) + " prompts, "
+                    + store.size() + " in store");
+        } catch (IOException ioe) {
+            System.err.println("Can't fill prompt store: " + ioe.getMessage());
+        }
+        timer.stop();
+        if (showTimes) {
+            timer.show("Prompt store");
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.audio;
+
+import java.io.IOException;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+
+
+/**
+ * Provides an implementation of <code>AudioPlayer</code> that passes
+ * all calls on to another player and keeps a copy of the audio data
+ * written to it.  A recording is complete if all data was written
+ * and ended without being cancelled.
+ */
+public class RecordingAudioPlayer implements AudioPlayer {
+
+    private final AudioPlayer player;
+    private AudioFormat audioFormat;
+    private byte[] audio = new byte[0];
+    private int audioSize = 0;
+    private boolean ended = false;
+    private boolean failed = false;
+
+    /**
+     * Constructs a RecordingAudioPlayer
+     *
+     * @param player the player that plays the audio
+     */
+    public RecordingAudioPlayer(AudioPlayer player) {
+        this.player = player;
+    }
+
+    /**
+     * Returns the player that plays the audio.
+     *
+     * @return the player
+     */
+    public AudioPlayer getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns the format of the recorded audio.
+     *
+     * @return the audio format last set on this player
+     */
+    public AudioFormat getRecordedFormat() {
+        return audioFormat;
+    }
+
+    /**
+     * Returns a copy of the recorded audio data.
+     *
+     * @return the audio data
+     */
+    public byte[] getRecordedAudio() {
+        return Arrays.copyOf(audio, audioSize);
+    }
+
+    /**
+     * Returns true if the audio was ended and nothing was cancelled
+     * or failed to be written.
+     *
+     * @return <code>true</code> if the recording is complete
+     */
+    public boolean isComplete() {
+        return ended && !failed;
+    }
+
+    /**
+     * Sets the audio format for this player
+     *
+     * @param format the audio format
+     */
+    @Override
+    public void setAudioFormat(AudioFormat format) {
+        if (audioFormat != null && !audioFormat.matches(format)) {
+            failed = true;
+        }
+        audioFormat = format;
+        player.setAudioFormat(format);
+    }
+
+    /**
+     * Retrieves the audio format for this player
+     *
+     * @return the current audio format.
+     */
+    @Override
+    public AudioFormat getAudioFormat() {
+        return player.getAudioFormat();
+    }
+
+    /**
+     * Pauses the audio output
+     */
+    @Override
+    public void pause() {
+        player.pause();
+    }
+
+    /**
+     * Resumes audio output
+     */
+    @Override
+    public void resume() {
+        player.resume();
+    }
+
+    /**
+     * Prepares for another batch of output.
+     */
+    @Override
+    public void reset() {
+        player.reset();
+    }
+
+    /**
+     * Waits for all queued audio to be played
+     *
+     * @return <code>true</code> if the audio played to completion,
+     * <code> false </code>if the audio was stopped
+     */
+    @Override
+    public boolean drain() {
+        return player.drain();
+    }
+
+    /**
+     * Starts the output of a set of data
+     *
+     * @param size the size of data between now and the end
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public void begin(int size) throws IOException {
+        ensureCapacity(audioSize + size);
+        player.begin(size);
+    }
+
+    /**
+     * Marks the end of a set of data
+     *
+     * @return <code>true</code> if the audio was output properly
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public boolean end() throws IOException {
+        boolean ok = player.end();
+        ended = true;
+        failed |= !ok;
+        return ok;
+    }
+
+    /**
+     * Cancels all queued output.
+     */
+    @Override
+    public void cancel() {
+        failed = true;
+        player.cancel();
+    }
+
+    /**
+     * Closes the player that plays the audio.
+     *
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        player.close();
+    }
+
+    /**
+     * Returns the current volume.
+     *
+     * @return the current volume (between 0 and 1)
+     */
+    @Override
+    public float getVolume() {
+        return player.getVolume();
+    }
+
+    /**
+     * Sets the current volume.
+     *
+     * @param volume the current volume (between 0 and 1)
+     */
+    @Override
+    public void setVolume(float volume) {
+        player.setVolume(volume);
+    }
+
+    /**
+     * Gets the amount of audio played since the last resetTime
+     *
+     * @return the amount of audio in milliseconds
+     */
+    @Override
+    public long getTime() {
+        return player.getTime();
+    }
+
+    /**
+     * Resets the audio clock
+     */
+    @Override
+    public void resetTime() {
+        player.resetTime();
+    }
+
+    /**
+     * Starts the first sample timer
+     */
+    @Override
+    public void startFirstSampleTimer() {
+        player.startFirstSampleTimer();
+    }
+
+    /**
+     * Writes the given bytes to the audio stream
+     *
+     * @param audioData array of audio data
+     * @return <code>true</code> of the write completed successfully,
+     * <code> false </code>if the write was cancelled.
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public boolean write(byte[] audioData) throws IOException {
+        return write(audioData, 0, audioData.length);
+    }
+
+    /**
+     * Writes the given bytes to the audio stream
+     *
+     * @param bytes  audio data to write to the device
+     * @param offset the offset into the buffer
+     * @param size   the size into the buffer
+     * @return <code>true</code> of the write completed successfully,
+     * <code> false </code>if the write was cancelled.
+     * @throws IOException if an error occurs
+     */
+    @Override
+    public boolean write(byte[] bytes, int offset, int size) throws IOException {
+        ensureCapacity(audioSize + size);
+        System.arraycopy(bytes, offset, audio, audioSize, size);
+        audioSize += size;
+        boolean ok = player.write(bytes, offset, size);
+        failed |= !ok;
+        return ok;
+    }
+
+    /**
+     * Shows metrics for the player that plays the audio.
+     */
+    @Override
+    public void showMetrics() {
+        player.showMetrics();
+    }
+
+    /**
+     * Grows the recording buffer to hold at least the given number of
+     * bytes.
+     *
+     * @param capacity the number of bytes
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > audio.length) {
+            audio = Arrays.copyOf(audio, Math.max(capacity, audio.length * 2));
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.sun.speech.freetts.relp.Sample;
+import com.sun.speech.freetts.relp.SampleSet;
 
 
 /**
@@ -32,6 +33,7 @@ public class Diphone {
     private String name;
     private int midPoint;
     private Sample[] samples;
+    private int[] residualOffsets;
     private int unitSizePart1;
     private int unitSizePart2;
 
@@ -46,15 +48,9 @@ public class Diphone {
         this.name = name;
         this.midPoint = midPoint;
         this.samples = samples;
-        this.unitSizePart1 = 0;
-        this.unitSizePart2 = 0;
-
-        for (int i = 0; i < midPoint; i++) {
-            unitSizePart1 += samples[i].getResidualSize();
-        }
-        for (int i = midPoint; i < samples.length; i++) {
-            unitSizePart2 += samples[i].getResidualSize();
-        }
+        this.residualOffsets = SampleSet.getResidualOffsets(samples);
+        this.unitSizePart1 = residualOffsets[midPoint];
+        this.unitSizePart2 = residualOffsets[samples.length] - unitSizePart1;
     }
 
     /**
@@ -67,6 +63,7 @@ public class Diphone {
         this.name = name;
         this.midPoint = 0;
         this.samples = null;
+        this.residualOffsets = null;
         this.unitSizePart1 = 0;
         this.unitSizePart2 = 0;
     }
@@ -80,6 +77,27 @@ public class Diphone {
         return samples;
     }
 
+    /**
+     * Returns an estimate of the heap memory held by the samples of
+     * this diphone and the offsets of their residuals, in bytes.
+     *
+     * @return the number of bytes
+     */
+    public long getMemorySize() {
+        Sample[] samples = getSamples();
+        long size = 64;
+        if (samples != null) {
+            size += 16 + 4L * samples.length;
+            for (Sample sample : samples) {
+                size += sample.getMemorySize();
+            }
+        }
+        if (residualOffsets != null) {
+            size += 16 + 4L * residualOffsets.length;
+        }
+        return size;
+    }
+
     /**
      * Returns a particular sample.
      *
@@ -129,21 +147,9 @@ public class Diphone {
      * part
      */
     public Sample nearestSample(float uIndex, int unitPart) {
-        int i, iSize = 0, nSize;
-        // loop through all the Samples in this Diphone
         int start = (unitPart == 1) ? 0 : midPoint;
         int end = (unitPart == 1) ? midPoint : samples.length;
-
-        for (i = start; i < end; i++) {
-            nSize = iSize + samples[i].getResidualSize();
-
-            if (Math.abs(uIndex - (float) iSize) <
-                    Math.abs(uIndex - (float) nSize)) {
-                return samples[i];
-            }
-            iSize = nSize;
-        }
-        return samples[end - 1];
+        return samples[SampleSet.findNearestSample(residualOffsets, start, end, uIndex)];
     }
 
     /**
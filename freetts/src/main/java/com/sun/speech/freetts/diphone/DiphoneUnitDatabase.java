@@ -24,11 +24,12 @@ import java.io.InputStreamReader;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
+import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -38,6 +39,7 @@ import java.util.StringTokenizer;
 import com.sun.speech.freetts.relp.Sample;
 import com.sun.speech.freetts.relp.SampleInfo;
 import com.sun.speech.freetts.util.BulkTimer;
+import com.sun.speech.freetts.util.LRUCache;
 import com.sun.speech.freetts.util.Utilities;
 
 
@@ -87,12 +89,41 @@ import com.sun.speech.freetts.util.Utilities;
  * <li> demand: database is loaded on demand
  * <li> hard: database is loaded on demand but cached
  * <li> soft: database is loaded on demand but cached with soft references
+ * <li> lru: database is loaded on demand and the most recently used
+ * diphones are cached, up to a number of bytes
  * </ul>
  * <p>
  * This <code> cacheType </code> setting controls how the database is
  * loaded. The default is to 'preload' the database. This setting
  * gives the best runtime performance but with longer initial startup
- * cost.
+ * cost.  The 'hard' cache keeps every diphone it has loaded, and the
+ * 'soft' cache leaves it to the garbage collector which to drop; the
+ * 'lru' cache instead holds diphones of at most the number of bytes
+ * (8 MB by default) given by
+ * <pre>
+ * 	com.sun.speech.freetts.diphone.UnitDatabase.cacheSize
+ * </pre>
+ * <p>
+ * Its hits, misses and evictions are reported by <code>getCache</code>.
+ * <p>
+ * A binary database ends with an index of the diphone names, sorted
+ * and of fixed width, which is searched where the database is mapped.
+ * Diphones loaded on demand thus need nothing to be read or built at
+ * startup.  Databases written before the index was added are looked
+ * up through the separate <code>.idx</code> file instead.
+ * <p>
+ * A database that loads diphones on demand may be shared by threads
+ * that synthesize at the same time.  Each diphone is read from its
+ * own view of the mapped database, so the reads do not move each
+ * other's position, and the caches are synchronized.  Two threads that
+ * miss the same diphone may both load it; the one cached last is kept.
+ * <p>
+ * If the system property <code>com.sun.speech.freetts.relp.floatFrames</code>
+ * is set to true, the frames of each diphone are dequantized to
+ * floats as the diphone is loaded, and are not dequantized again
+ * when they are synthesized.
+ *
+ * @see Sample#PROP_FLOAT_FRAMES
  */
 public class DiphoneUnitDatabase {
 
@@ -119,15 +150,27 @@ public class DiphoneUnitDatabase {
     private boolean useIndexing = !cacheType.equals("preload");
     private boolean useCache = !cacheType.equals("demand");
     private boolean useSoftCache = cacheType.equals("soft");
+    private LRUCache<String, Diphone> lruCache = cacheType.equals("lru")
+            ? new LRUCache<>(Utilities.getLong("com.sun.speech.freetts.diphone.UnitDatabase.cacheSize",
+            8 * 1024 * 1024), Diphone::getMemorySize)
+            : null;
+    private boolean floatFrames = Utilities.getBoolean(Sample.PROP_FLOAT_FRAMES);
 
     private final static int MAGIC = 0xFEEDFACE;
     private final static int INDEX_MAGIC = 0xFACADE;
-    private final static int VERSION = 1;
+    private final static int VERSION = 2;
+    /** The version of databases without the name index. */
+    private final static int UNINDEXED_VERSION = 1;
+    /** The size of an entry of the name index: a name and a position. */
+    private final static int INDEX_ENTRY_SIZE = 2 * Diphone.NAME_LENGTH + 4;
     private final static int MAX_DB_SIZE = 4 * 1024 * 1024;
 
     private String indexName;
     private MappedByteBuffer mbb = null;
-    private int defaultIndex = -1;
+    private volatile int defaultIndex = -1;
+    /** where the name index starts in the mapped database, or -1 */
+    private int nameIndex = -1;
+    private int nameIndexSize;
 
     /**
      * Creates the DiphoneUnitDatabase from the given input stream.
@@ -175,8 +218,6 @@ public class DiphoneUnitDatabase {
      * @param databaseName the database name
      * @return the index name or null if the database is not
      * a binary database.
-     * <p>
-     * TODO the index should probably be incorporated into the binary database
      */
     private static String getIndexName(String databaseName) {
         String indexName = null;
@@ -310,6 +351,8 @@ public class DiphoneUnitDatabase {
                 }
                 return;
             }
+        } else {
+            dequantize(diphone);
         }
         diphoneMap.put(diphone.getName(), diphone);
         if (defaultDiphone == null) {
@@ -317,6 +360,20 @@ public class DiphoneUnitDatabase {
         }
     }
 
+    /**
+     * Dequantizes the frames of the given diphone if the database
+     * keeps float frames.
+     *
+     * @param diphone the diphone, which is not an alias
+     */
+    private void dequantize(Diphone diphone) {
+        if (floatFrames) {
+            for (Sample sample : diphone.getSamples()) {
+                sample.dequantize(lpcMin, lpcRange);
+            }
+        }
+    }
+
     /**
      * Looks up the diphone with the given name.
      *
@@ -331,9 +388,12 @@ public class DiphoneUnitDatabase {
             if (diphone == null) {
                 int index = getIndex(unitName);
                 if (index != -1) {
-                    mbb.position(index);
+                    // a view of our own, as other threads read the
+                    // database at the same time
+                    ByteBuffer bb = mbb.duplicate();
+                    bb.position(index);
                     try {
-                        diphone = Diphone.loadBinary(mbb);
+                        diphone = Diphone.loadBinary(bb);
                         if (diphone != null) {
                             // If diphone is an alias, must also get the original
                             if (diphone instanceof AliasDiphone adiph) {
@@ -352,6 +412,7 @@ public class DiphoneUnitDatabase {
                                     diphone = null;
                                 }
                             } else { // a normal diphone
+                                dequantize(diphone);
                                 putIntoCache(unitName, diphone);
                             }
                         }
@@ -391,22 +452,26 @@ public class DiphoneUnitDatabase {
      * @return the diphone or <code> null </code>  if not in the cache
      */
     private Diphone getFromCache(String name) {
+        if (lruCache != null) {
+            return lruCache.get(name);
+        }
         if (diphoneMap == null) {
             return null;
         }
         Diphone diphone = null;
 
-        if (useSoftCache) {
-            Reference<?> ref = (Reference<?>) diphoneMap.get(name);
-            if (ref != null) {
-                diphone = (Diphone) ref.get();
-                if (diphone == null) {
-                    diphoneMap.remove(name);
-                } else {
+        synchronized (diphoneMap) {
+            if (useSoftCache) {
+                Reference<?> ref = (Reference<?>) diphoneMap.get(name);
+                if (ref != null) {
+                    diphone = (Diphone) ref.get();
+                    if (diphone == null) {
+                        diphoneMap.remove(name);
+                    }
                 }
+            } else {
+                diphone = (Diphone) diphoneMap.get(name);
             }
-        } else {
-            diphone = (Diphone) diphoneMap.get(name);
         }
         return diphone;
     }
@@ -418,29 +483,48 @@ public class DiphoneUnitDatabase {
      * @param diphone     the diphone to put in the cache
      */
     private void putIntoCache(String diphoneName, Diphone diphone) {
+        if (lruCache != null) {
+            lruCache.put(diphoneName, diphone);
+            return;
+        }
         if (diphoneMap == null) {
             return;
         }
-        if (useSoftCache) {
-            diphoneMap.put(diphoneName, new WeakReference<>(diphone));
-        } else {
-            diphoneMap.put(diphoneName, diphone);
+        synchronized (diphoneMap) {
+            if (useSoftCache) {
+                diphoneMap.put(diphoneName, new SoftReference<>(diphone));
+            } else {
+                diphoneMap.put(diphoneName, diphone);
+            }
         }
     }
 
+    /**
+     * Returns the cache of diphones loaded on demand, for reporting its
+     * hits, misses and evictions or clearing it.
+     *
+     * @return the cache, or <code>null</code> if the cache type is not
+     * 'lru'
+     */
+    public LRUCache<String, ?> getCache() {
+        return lruCache;
+    }
+
     /**
      * Dumps the soft ref cache.
      */
     private void dumpCacheSize() {
         int empty = 0;
         int full = 0;
-        System.out.println("Entries: " + diphoneMap.size());
-        for (Object o : diphoneMap.values()) {
-            Reference<?> ref = (Reference<?>) o;
-            if (ref.get() == null) {
-                empty++;
-            } else {
-                full++;
+        synchronized (diphoneMap) {
+            System.out.println("Entries: " + diphoneMap.size());
+            for (Object o : diphoneMap.values()) {
+                Reference<?> ref = (Reference<?>) o;
+                if (ref.get() == null) {
+                    empty++;
+                } else {
+                    full++;
+                }
             }
         }
         System.out.println("   empty: " + empty);
@@ -488,10 +572,30 @@ public class DiphoneUnitDatabase {
             os.writeFloat(lpcRange);
             os.writeInt(diphoneMap.size());
 
+            String[] keys = new String[diphoneMap.size()];
+            int[] positions = new int[keys.length];
+            int count = 0;
             for (Object o : diphoneMap.values()) {
                 Diphone diphone = (Diphone) o;
+                keys[count] = getIndexKey(diphone.getName());
+                positions[count++] = os.size();
                 diphone.dumpBinary(os);
             }
+
+            // the name index, sorted, and where it starts
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+            int indexPosition = os.size();
+            os.writeInt(INDEX_MAGIC);
+            os.writeInt(count);
+            for (int i : order) {
+                os.writeChars(keys[i]);
+                os.writeInt(positions[i]);
+            }
+            os.writeInt(indexPosition);
             os.flush();
             fos.close();
 
@@ -502,10 +606,22 @@ public class DiphoneUnitDatabase {
         }
     }
 
+    /**
+     * Returns the key of a diphone in the name index: its name, cut or
+     * padded with spaces to the width of names in the database.
+     *
+     * @param name the name of the diphone
+     * @return the key
+     */
+    private static String getIndexKey(String name) {
+        return (name + "        ").substring(0, Diphone.NAME_LENGTH);
+    }
+
     /**
      * Dumps a binary index. The database index is used if our
      * cacheType is not set to 'preload' and we are loading a binary
-     * database. The index is a simple mapping of diphone names (the
+     * database that has no name index of its own. The index is a
+     * simple mapping of diphone names (the
      * key) to the file position in the database. In situations where
      * the entire database is not preloaded, this index can be loaded
      * and used to provide quicker startup (since only the index need
@@ -577,9 +693,14 @@ public class DiphoneUnitDatabase {
      * @return the index into the database for the diphone
      */
     private int getIndex(String diphone) {
-        Integer index = diphoneIndex.get(diphone);
-        if (index != null) {
-            int idx = index;
+        int idx;
+        if (nameIndex != -1) {
+            idx = searchIndex(diphone);
+        } else {
+            Integer index = diphoneIndex.get(diphone);
+            idx = index == null ? -1 : index;
+        }
+        if (idx != -1) {
             if (defaultIndex == -1) {
                 defaultIndex = idx;
             }
@@ -590,6 +711,40 @@ public class DiphoneUnitDatabase {
         }
     }
 
+    /**
+     * Searches the name index of the mapped database for a diphone.
+     * Only absolute reads are used, so threads may search at the
+     * same time.
+     *
+     * @param diphone the name of the diphone
+     * @return the position of the diphone in the database, or -1 if
+     * it is not in the index
+     */
+    private int searchIndex(String diphone) {
+        if (diphone.length() > Diphone.NAME_LENGTH) {
+            return -1;
+        }
+        int low = 0;
+        int high = nameIndexSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = nameIndex + middle * INDEX_ENTRY_SIZE;
+            int cmp = 0;
+            for (int i = 0; i < Diphone.NAME_LENGTH && cmp == 0; i++) {
+                char c = i < diphone.length() ? diphone.charAt(i) : ' ';
+                cmp = mbb.getChar(entry + 2 * i) - c;
+            }
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return mbb.getInt(entry + 2 * Diphone.NAME_LENGTH);
+            }
+        }
+        return -1;
+    }
+
     /**
      * Loads a binary file from the input stream.
      * <p>
@@ -608,8 +763,10 @@ public class DiphoneUnitDatabase {
         // always guarantee that we can do that.
         if (useNewIO && is instanceof FileInputStream fis) {
             if (useIndexing) {
-                loadBinaryIndex(URI.create(indexName));
                 mapDatabase(fis);
+                if (nameIndex == -1) {
+                    loadBinaryIndex(URI.create(indexName));
+                }
             } else {
                 loadMappedBinary(fis);
             }
@@ -630,7 +787,8 @@ public class DiphoneUnitDatabase {
         if (dis.readInt() != MAGIC) {
             throw new Error("Bad magic in db");
         }
-        if (dis.readInt() != VERSION) {
+        int version = dis.readInt();
+        if (version != VERSION && version != UNINDEXED_VERSION) {
             throw new Error("Bad VERSION in db");
         }
 
@@ -662,7 +820,8 @@ public class DiphoneUnitDatabase {
     }
 
     /**
-     * Maps the database from the given FileInputStream.
+     * Maps the database from the given FileInputStream, and finds
+     * its name index if it has one.
      *
      * @param is the InputStream to load the database from
      * @throws IOException if there is trouble opening the DB
@@ -671,20 +830,29 @@ public class DiphoneUnitDatabase {
         FileChannel fc = is.getChannel();
         mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, (int) fc.size());
         mbb.load();
-        loadDatabaseHeader(mbb);
+        if (loadDatabaseHeader(mbb) == VERSION) {
+            int position = mbb.getInt(mbb.limit() - 4);
+            if (mbb.getInt(position) != INDEX_MAGIC) {
+                throw new Error("Bad name index in db");
+            }
+            nameIndexSize = mbb.getInt(position + 4);
+            nameIndex = position + 8;
+        }
     }
 
     /**
      * Loads the database header from the given byte buffer.
      *
      * @param bb the byte buffer to load the db from
+     * @return the version of the database
      * @throws IOException if there is trouble opening the DB
      */
-    private void loadDatabaseHeader(ByteBuffer bb) throws IOException {
+    private int loadDatabaseHeader(ByteBuffer bb) throws IOException {
         if (bb.getInt() != MAGIC) {
             throw new Error("Bad magic in db");
         }
-        if (bb.getInt() != VERSION) {
+        int version = bb.getInt();
+        if (version != VERSION && version != UNINDEXED_VERSION) {
             throw new Error("Bad VERSION in db");
         }
 
@@ -692,6 +860,7 @@ public class DiphoneUnitDatabase {
         numChannels = bb.getInt();
         lpcMin = bb.getFloat();
         lpcRange = bb.getFloat();
+        return version;
     }
 
     /**
@@ -0,0 +1,203 @@
+/**
+ * Portions Copyright 2001 Sun Microsystems, Inc.
+ * Portions Copyright 1999-2001 Language Technologies Institute,
+ * Carnegie Mellon University.
+ * All Rights Reserved.  Use is subject to license terms.
+ * <p>
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.lexicon;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.speech.freetts.lexicon.LetterToSoundImpl.DecisionState;
+import com.sun.speech.freetts.lexicon.LetterToSoundImpl.FinalState;
+import com.sun.speech.freetts.lexicon.LetterToSoundImpl.State;
+
+
+/**
+ * Runs the CMU6 letter-to-sound rules of a {@link LetterToSoundImpl}
+ * over flat primitive arrays.
+ *
+ * <p>The state machine is flattened into parallel arrays with one
+ * entry per state: the context window position to test, the character
+ * to match and the states to go to on a match or a mismatch.  For a
+ * final state the position is <code>FINAL</code> and the two state
+ * entries instead hold the offset and length of its phones in a
+ * single packed phone array.  The entry point of every letter is
+ * found by indexing a table with the letter itself.
+ *
+ * <p>The context window of a letter is not copied into a buffer;
+ * each decision reads the character it needs straight from the word.
+ * The only allocation per word is the returned phone array, and no
+ * state is shared between lookups, so one instance can be used by
+ * any number of threads.
+ */
+public class ArrayLetterToSound implements LetterToSound {
+
+    /**
+     * The 'window size' of the LTS rules.
+     */
+    private final static int WINDOW_SIZE = 4;
+
+    /**
+     * Marks a final state in <code>feature</code>.
+     */
+    private final static byte FINAL = -1;
+
+    /**
+     * The start state of each letter, indexed by the letter, or -1.
+     */
+    private final int[] letterIndex;
+
+    /**
+     * The context window position tested by each state, or
+     * <code>FINAL</code>.
+     */
+    private final byte[] feature;
+
+    /**
+     * The character each decision state matches against.
+     */
+    private final char[] value;
+
+    /**
+     * The state to go to on a match; for a final state, the offset of
+     * its phones in <code>phones</code>.
+     */
+    private final int[] qtrue;
+
+    /**
+     * The state to go to on no match; for a final state, the number
+     * of its phones.
+     */
+    private final int[] qfalse;
+
+    /**
+     * The phones of all final states, packed end to end.
+     */
+    private final String[] phones;
+
+    /**
+     * The largest number of phones a single letter can produce.
+     */
+    private final int maxPhonesPerLetter;
+
+    /**
+     * Class constructor.
+     *
+     * @param ltsRules a URL pointing to the text
+     *                 containing the letter to sound rules
+     * @param binary   if true, the URL is a binary source
+     * @throws IOException if errors are encountered while reading the rules
+     */
+    public ArrayLetterToSound(URI ltsRules, boolean binary) throws IOException {
+        this(new LetterToSoundImpl(ltsRules, binary));
+    }
+
+    /**
+     * Flattens the state machine of the given rules.
+     *
+     * @param rules the loaded letter to sound rules
+     */
+    public ArrayLetterToSound(LetterToSoundImpl rules) {
+        int numStates = rules.getStateCount();
+        feature = new byte[numStates];
+        value = new char[numStates];
+        qtrue = new int[numStates];
+        qfalse = new int[numStates];
+
+        List<String> packed = new ArrayList<>();
+        int maxPhones = 0;
+        for (int i = 0; i < numStates; i++) {
+            State state = rules.getState(i);
+            if (state instanceof DecisionState decision) {
+                feature[i] = (byte) decision.index;
+                value[i] = decision.c;
+                qtrue[i] = decision.qtrue;
+                qfalse[i] = decision.qfalse;
+            } else {
+                String[] phoneList = ((FinalState) state).phoneList;
+                int count = phoneList == null ? 0 : phoneList.length;
+                feature[i] = FINAL;
+                qtrue[i] = packed.size();
+                qfalse[i] = count;
+                for (int j = 0; j < count; j++) {
+                    packed.add(phoneList[j].intern());
+                }
+                maxPhones = Math.max(maxPhones, count);
+            }
+        }
+        phones = packed.toArray(new String[0]);
+        maxPhonesPerLetter = maxPhones;
+
+        int maxLetter = -1;
+        for (String letter : rules.letterIndex.keySet()) {
+            maxLetter = Math.max(maxLetter, letter.charAt(0));
+        }
+        letterIndex = new int[maxLetter + 1];
+        Arrays.fill(letterIndex, -1);
+        for (Map.Entry<String, Integer> entry : rules.letterIndex.entrySet()) {
+            letterIndex[entry.getKey().charAt(0)] = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns the character at the given position of the word as
+     * padded to "000#word#000".
+     *
+     * @param word   the original word
+     * @param length the length of the word
+     * @param i      the position in the padded word
+     * @return the character at that position
+     */
+    private static char getPaddedChar(String word, int length, int i) {
+        if (i >= WINDOW_SIZE && i < WINDOW_SIZE + length) {
+            return word.charAt(i - WINDOW_SIZE);
+        } else if (i == WINDOW_SIZE - 1 || i == WINDOW_SIZE + length) {
+            return '#';
+        } else {
+            return '0';
+        }
+    }
+
+    /**
+     * Calculates the phone list for a given word.  If a phone list cannot
+     * be determined, <code>null</code> is returned.  This particular
+     * implementation ignores the part of speech.
+     *
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech.
+     * @return the array of phones for word or <code>null</code>
+     */
+    @Override
+    public String[] getPhones(String word, String partOfSpeech) {
+        int length = word.length();
+        String[] phoneList = new String[length * maxPhonesPerLetter];
+        int numPhones = 0;
+
+        for (int pos = 0; pos < length; pos++) {
+            char c = word.charAt(pos);
+            if (c >= letterIndex.length || letterIndex[c] < 0) {
+                continue;
+            }
+            int state = letterIndex[c];
+            while (feature[state] != FINAL) {
+                // window positions past the letter skip over the letter itself
+                int i = feature[state] < WINDOW_SIZE ? pos + feature[state] : pos + feature[state] + 1;
+                state = (getPaddedChar(word, length, i) == value[state]) ? qtrue[state] : qfalse[state];
+            }
+            System.arraycopy(phones, qtrue[state], phoneList, numPhones, qfalse[state]);
+            numPhones += qfalse[state];
+        }
+        return numPhones == phoneList.length ? phoneList : Arrays.copyOf(phoneList, numPhones);
+    }
+}
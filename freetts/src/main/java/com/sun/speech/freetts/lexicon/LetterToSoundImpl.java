@@ -113,6 +113,8 @@ import static java.lang.System.getLogger;
  * <pre>
  *   -Dcom.sun.speech.freetts.lexicon.LTSTokenize=load
  * </pre>
+ * <p>Lookups share a context buffer and are not thread-safe.  At
+ * runtime, wrap the loaded rules in an {@link ArrayLetterToSound}.
  * <p>
  * TODO This implementation uses ASCII 'a'-'z', which is not internationalized.
  */
@@ -421,6 +423,15 @@ public class LetterToSoundImpl implements LetterToSound {
         return new ArrayList<>(set);
     }
 
+    /**
+     * Returns the number of states in the state machine.
+     *
+     * @return the number of states
+     */
+    int getStateCount() {
+        return stateMachine.length;
+    }
+
     /**
      * Gets the <code>State</code> at the given index.  This may
      * replace a <code>String</code> at
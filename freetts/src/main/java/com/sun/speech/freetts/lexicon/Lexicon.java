@@ -88,6 +88,52 @@ public interface Lexicon {
      */
     boolean isSyllableBoundary(List<String> syllablePhones, String[] wordPhones, int currentWordPhone);
 
+    /**
+     * Returns the syllable boundaries of the phones that
+     * <code>getPhones</code> returns for a word from the lexicon
+     * proper (not from the letter to sound rules), if they are known
+     * without calling <code>isSyllableBoundary</code>.  Bit
+     * <code>i</code> of the result is set if a syllable ends with
+     * phone <code>i</code>.
+     *
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the boundaries, or 0 if they are not known
+     */
+    default long getSyllableBoundaries(String word, String partOfSpeech) {
+        return 0;
+    }
+
+    /**
+     * Gets the phones of a word together with their syllable
+     * boundaries, both taken from the same entry, so that they match
+     * even if the lexicon changes at the same time.  The phones may be
+     * modified by the caller.  The default implementation calls
+     * <code>getPhones</code> and <code>getSyllableBoundaries</code>.
+     *
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the phones and boundaries, or <code>null</code> if no
+     * phones are found
+     */
+    default SyllabifiedPhones getSyllabifiedPhones(String word, String partOfSpeech) {
+        String[] phones = getPhones(word, partOfSpeech);
+        return phones == null ? null : new SyllabifiedPhones(phones, getSyllableBoundaries(word, partOfSpeech));
+    }
+
+    /**
+     * Returns a number that changes whenever the words of this lexicon
+     * change, such as when addenda are added or removed, so that
+     * results derived from lookups can be cached until then.  The
+     * default implementation returns 0, for a lexicon that never
+     * changes.
+     *
+     * @return the generation of the words of this lexicon
+     */
+    default long getGeneration() {
+        return 0;
+    }
+
     /**
      * Loads this lexicon.  The loading of a lexicon need not be done
      * in the constructor.
@@ -102,4 +148,24 @@ public interface Lexicon {
      * @return <code>true</code> if the lexicon is loaded
      */
     boolean isLoaded();
+
+    /**
+     * Allocates this lexicon for a voice, loading it if needed.  A
+     * lexicon may be allocated by several voices at once.
+     *
+     * @throws IOException if an error occurs while loading
+     */
+    default void allocate() throws IOException {
+        if (!isLoaded()) {
+            load();
+        }
+    }
+
+    /**
+     * Deallocates this lexicon for a voice.  An implementation may
+     * free its data once every voice that allocated it has
+     * deallocated it.
+     */
+    default void deallocate() {
+    }
 }
@@ -29,13 +29,14 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.sun.speech.freetts.util.BulkTimer;
+import com.sun.speech.freetts.util.LRUCache;
 import com.sun.speech.freetts.util.Utilities;
 
 
@@ -78,6 +79,25 @@ import com.sun.speech.freetts.util.Utilities;
  * <p>
  * Where &lt;URLToUserAddenda> is a URL pointing to an ASCII file
  * containing addenda entries.
+ *
+ * <p>The addenda can be changed while the lexicon is in use.  Every
+ * change publishes a new read-only copy of the addenda, so lookups
+ * never wait for or see a partial change.  Since each change copies
+ * the addenda, large numbers of entries should be added together with
+ * <code>addAddenda</code> or <code>loadAddenda</code>.
+ *
+ * <p>Words that are in neither the addenda nor the compiled lexicon
+ * fall through to the letter-to-sound rules.  Their results can be
+ * kept in a bounded LRU cache, so that recurring out-of-vocabulary
+ * words skip the rules.  Only such words go through the cache, after
+ * both lexicon lookups missed, so its hit rate is that of the
+ * out-of-vocabulary words.  The cache is off by
+ * default; to keep the results for up to 5000 words, set the following
+ * property (or call <code>setLetterToSoundCacheSize</code>):
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.lexicon.ltsCacheSize=5000
+ * </pre>
  * <p>
  * TODO support multiple homographs with the same part of speech.
  */
@@ -92,9 +112,12 @@ abstract public class LexiconImpl implements Lexicon {
     protected boolean tokenizeOnLoad;
 
     /**
-     * If true, the phone string is replaced with the phone array in
-     * the hashmap when the phone array is first looked up.  The side effects
-     * Set by cmufilelex.tokenize=lookup.
+     * Set by <code>cmufilelex.tokenize=lookup</code>.  It used to make
+     * the first lookup of a word replace its phone string in the
+     * hashmap with the phone array, so that later lookups did not
+     * split the string again.  The maps are now shared and published
+     * read-only, so lookups no longer write to them, and this behaves
+     * like 'never'.
      */
     protected boolean tokenizeOnLookup;
 
@@ -104,9 +127,16 @@ abstract public class LexiconImpl implements Lexicon {
     private final static int MAGIC = 0xBABB1E;
 
     /**
-     * Current binary file version.
+     * Current binary file version.  Version 2 adds the syllable
+     * lengths of each entry; version 1 files can still be read.
+     */
+    private final static int VERSION = 2;
+
+    /**
+     * Words with more phones than this do not store their syllable
+     * boundaries.
      */
-    private final static int VERSION = 1;
+    private final static int MAX_SYLLABIFIED_PHONES = 63;
 
     /**
      * URL for the compiled form.
@@ -124,9 +154,23 @@ abstract public class LexiconImpl implements Lexicon {
     private URI letterToSoundURL;
 
     /**
-     * The addenda.
+     * The addenda.  This map is never modified; changes are made to a
+     * copy that then replaces it, so that lookups running at the same
+     * time always see a complete map.
      */
-    private Map<String, Object> addenda;
+    private volatile Map<String, Object> addenda;
+
+    /**
+     * Serializes changes to the addenda.
+     */
+    private final Object addendaLock = new Object();
+
+    /**
+     * Incremented under <code>addendaLock</code> whenever the words of
+     * this lexicon change: when it is loaded or unloaded and when the
+     * addenda change.
+     */
+    private volatile long generation;
 
     /**
      * The compiled lexicon.
@@ -138,20 +182,56 @@ abstract public class LexiconImpl implements Lexicon {
      */
     private LetterToSound letterToSound = null;
 
+    /**
+     * Cached letter-to-sound results, keyed by word, or
+     * <code>null</code> if caching is disabled.
+     */
+    private volatile LRUCache<String, String[]> letterToSoundCache =
+            createLetterToSoundCache(Utilities.getInteger("com.sun.speech.freetts.lexicon.ltsCacheSize", 0));
+
+    /**
+     * Guards <code>addendaGeneration</code> and the replacement of
+     * <code>letterToSoundCache</code>.
+     */
+    private final Object letterToSoundLock = new Object();
+
+    /**
+     * Incremented whenever the addenda or the letter-to-sound cache
+     * change, so that letter-to-sound results computed before the
+     * change are not cached after it.
+     */
+    private long addendaGeneration;
+
     /**
      * Parts of Speech.
      */
-    private List<Object> partsOfSpeech = new ArrayList<>();
+    private final CopyOnWriteArrayList<Object> partsOfSpeech = new CopyOnWriteArrayList<>();
+
+    /**
+     * The registry keys of the shared compiled form, addenda and
+     * letter to sound rules held by this lexicon while it is loaded.
+     * The compiled form, the addenda as loaded and the letter to sound
+     * rules are shared between lexicon instances through the
+     * {@link LexiconRegistry}.  As the addenda can be changed using
+     * <code>addAddendum()</code> and <code>removeAddendum</code>, each
+     * change publishes a new copy of the addenda for this instance
+     * only.
+     */
+    private String compiledKey;
+    private String addendaKey;
+    private String letterToSoundKey;
 
     /**
-     * A static directory of compiledURL URL objects and associated
-     * already-loaded compiled Map objects. This is used to share
-     * the immutable compiled lexicons between lexicon instances.
-     * As the addenda can be changed using <code>addAddendum()</code>
-     * and <code>removeAddendum</code>, each lexicon instance has its
-     * own addenda.
+     * The number of voices that allocated this lexicon.
      */
-    private static Map<URI, Object> loadedCompiledLexicons;
+    private int allocations;
+
+    /**
+     * Whether the lexicon was loaded by <code>allocate()</code> rather
+     * than by an explicit <code>load()</code>.  Only a lexicon loaded by
+     * its voices is unloaded when they deallocate it.
+     */
+    private boolean loadedByAllocate;
 
     /**
      * Loaded State of the lexicon
@@ -233,13 +313,23 @@ abstract public class LexiconImpl implements Lexicon {
     }
 
     /**
-     * Loads the data for this lexicon.  If the
+     * Loads the data for this lexicon.  The data is shared with other
+     * lexicons loaded from the same sources.
      *
      * @throws IOException if errors occur during loading
      */
     @Override
-    @SuppressWarnings("unchecked")
-    public void load() throws IOException {
+    public synchronized void load() throws IOException {
+        loadData();
+        loadedByAllocate = false;
+    }
+
+    /**
+     * Acquires the shared data for this lexicon from the registry.
+     *
+     * @throws IOException if errors occur during loading
+     */
+    private void loadData() throws IOException {
         BulkTimer.LOAD.start("Lexicon");
 
         if (compiledURL == null) {
@@ -250,34 +340,74 @@ abstract public class LexiconImpl implements Lexicon {
             throw new IOException("Can't load lexicon addenda ");
         }
 
-        if (loadedCompiledLexicons == null) {
-            loadedCompiledLexicons = new HashMap<>();
-        }
-        if (!loadedCompiledLexicons.containsKey(compiledURL)) {
-            InputStream compiledIS = Utilities.getInputStream(compiledURL);
-            if (compiledIS == null) {
-                throw new IOException("Can't load lexicon from " + compiledURL);
+        String userAddenda = Utilities.getProperty("com.sun.speech.freetts.lexicon.userAddenda", null);
+        String format = getClass().getName() + " " + (binary ? "binary" : "text")
+                + (tokenizeOnLoad ? "/tokenized" : "");
+        String compiledKey = "compiled " + format + " " + compiledURL;
+        String addendaKey = "addenda " + format + " " + addendaURL + " " + userAddenda;
+        String letterToSoundKey = "lts " + format + " " + letterToSoundURL;
+
+        SharedLexicon sharedCompiled = LexiconRegistry.acquire(compiledKey,
+                () -> loadShared(compiledURL, 65000, null));
+        SharedLexicon sharedAddenda;
+        LetterToSound sharedLetterToSound;
+        try {
+            sharedAddenda = LexiconRegistry.acquire(addendaKey,
+                    () -> loadShared(addendaURL, 50, userAddenda));
+            try {
+                sharedLetterToSound = LexiconRegistry.acquire(letterToSoundKey,
+                        () -> new ArrayLetterToSound(letterToSoundURL, binary));
+            } catch (IOException | RuntimeException e) {
+                LexiconRegistry.release(addendaKey);
+                throw e;
             }
-            Map<String, Object> newCompiled = createLexicon(compiledIS, binary, 65000);
-            loadedCompiledLexicons.put(compiledURL, newCompiled);
-            compiledIS.close();
+        } catch (IOException | RuntimeException e) {
+            LexiconRegistry.release(compiledKey);
+            throw e;
         }
-        compiled = Collections.unmodifiableMap((Map<String, Object>) loadedCompiledLexicons.get(compiledURL));
 
-        InputStream addendaIS = Utilities.getInputStream(addendaURL);
-        if (addendaIS == null) {
-            throw new IOException("Can't load lexicon addenda from " + addendaURL);
+        release();
+        this.compiledKey = compiledKey;
+        this.addendaKey = addendaKey;
+        this.letterToSoundKey = letterToSoundKey;
+        compiled = sharedCompiled.map;
+        synchronized (addendaLock) {
+            addenda = sharedAddenda.map;
+            generation++;
+        }
+        letterToSound = sharedLetterToSound;
+        for (String pos : sharedCompiled.partsOfSpeech) {
+            partsOfSpeech.addIfAbsent(pos);
+        }
+        for (String pos : sharedAddenda.partsOfSpeech) {
+            partsOfSpeech.addIfAbsent(pos);
         }
 
-        // [[[TODO: what is the best way to derive the estimated sizes?]]]
-        //
-        addenda = createLexicon(addendaIS, binary, 50);
-        addendaIS.close();
+        loaded = true;
+        BulkTimer.LOAD.stop("Lexicon");
+    }
+
+    /**
+     * Loads a lexicon map to be shared through the registry.
+     *
+     * @param url           where to load the map from
+     * @param estimatedSize the estimated number of entries
+     * @param userAddenda   the URI of entries that override those
+     *                      loaded, or <code>null</code>
+     * @return the loaded map
+     * @throws IOException if errors occur during loading
+     */
+    private SharedLexicon loadShared(URI url, int estimatedSize, String userAddenda) throws IOException {
+        InputStream is = Utilities.getInputStream(url);
+        if (is == null) {
+            throw new IOException("Can't load lexicon from " + url);
+        }
+        Map<String, Object> lexicon = createLexicon(is, binary, estimatedSize);
+        is.close();
 
         /* Load the user-defined addenda and override any existing
          * entries in the system addenda.
          */
-        String userAddenda = Utilities.getProperty("com.sun.speech.freetts.lexicon.userAddenda", null);
         if (userAddenda != null) {
             try {
                 URI userAddendaURL = URI.create(userAddenda);
@@ -287,17 +417,64 @@ abstract public class LexiconImpl implements Lexicon {
                 }
                 Map<String, Object> tmpAddenda = createLexicon(userAddendaIS, false, 50);
                 userAddendaIS.close();
-                for (String key : tmpAddenda.keySet()) {
-                    addenda.put(key, tmpAddenda.get(key));
-                }
-            } catch (MalformedURLException e) {
+                lexicon.putAll(tmpAddenda);
+            } catch (MalformedURLException | IllegalArgumentException e) {
                 throw new IOException("User addenda URL is malformed: " + userAddenda);
             }
         }
+        return new SharedLexicon(lexicon);
+    }
 
-        loaded = true;
-        BulkTimer.LOAD.stop("Lexicon");
-        letterToSound = new LetterToSoundImpl(letterToSoundURL, binary);
+    /**
+     * Allocates this lexicon for a voice, loading it if it is not
+     * loaded yet.  A lexicon may be allocated by several voices and is
+     * unloaded when the last of them deallocates it.
+     *
+     * @throws IOException if errors occur during loading
+     */
+    @Override
+    public synchronized void allocate() throws IOException {
+        if (!loaded) {
+            loadData();
+            loadedByAllocate = true;
+        }
+        allocations++;
+    }
+
+    /**
+     * Deallocates this lexicon for a voice.  When no voice has it
+     * allocated anymore and it was loaded by <code>allocate()</code>,
+     * its shared data is released so that it can be freed once no
+     * other lexicon uses it.  A lexicon loaded explicitly with
+     * <code>load()</code> stays loaded.
+     */
+    @Override
+    public synchronized void deallocate() {
+        if (allocations > 0 && --allocations == 0 && loadedByAllocate) {
+            loadedByAllocate = false;
+            release();
+            compiled = null;
+            synchronized (addendaLock) {
+                addenda = null;
+                generation++;
+            }
+            letterToSound = null;
+            loaded = false;
+        }
+    }
+
+    /**
+     * Releases the shared data held by this lexicon, if any.
+     */
+    private void release() {
+        if (compiledKey != null) {
+            LexiconRegistry.release(compiledKey);
+            LexiconRegistry.release(addendaKey);
+            LexiconRegistry.release(letterToSoundKey);
+            compiledKey = null;
+            addendaKey = null;
+            letterToSoundKey = null;
+        }
     }
 
     /**
@@ -358,9 +535,7 @@ abstract public class LexiconImpl implements Lexicon {
 
         String wordAndPos = tokenizer.nextToken();
         String pos = wordAndPos.substring(wordAndPos.length() - 1);
-        if (!partsOfSpeech.contains(pos)) {
-            partsOfSpeech.add(pos);
-        }
+        partsOfSpeech.addIfAbsent(pos);
         if (tokenizer.hasMoreTokens()) {
             phones = tokenizer.nextToken();
         }
@@ -402,13 +577,14 @@ abstract public class LexiconImpl implements Lexicon {
      */
     @Override
     public String[] getPhones(String word, String partOfSpeech, boolean useLTS) {
+        Map<String, Object> addenda = this.addenda;
         String[] phones = getPhones(addenda, word, partOfSpeech);
         if (phones == null) {
             phones = getPhones(compiled, word, partOfSpeech);
         }
         if (useLTS) {
             if (phones == null && letterToSound != null) {
-                phones = letterToSound.getPhones(word, partOfSpeech);
+                phones = getLetterToSoundPhones(addenda, word, partOfSpeech);
             }
         }
         if (phones != null) {
@@ -419,6 +595,105 @@ abstract public class LexiconImpl implements Lexicon {
             return null;
     }
 
+    /**
+     * Gets the phones of a word that is in neither the addenda nor the
+     * compiled lexicon from the letter-to-sound rules, through the
+     * cache if there is one.  The result is not cached if the addenda
+     * changed since the word was looked up in them.
+     *
+     * @param addenda      the addenda the word was looked up in
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the shared array of phones for word or <code>null</code>
+     */
+    private String[] getLetterToSoundPhones(Map<String, Object> addenda, String word, String partOfSpeech) {
+        LRUCache<String, String[]> cache = letterToSoundCache;
+        if (cache == null) {
+            return letterToSound.getPhones(word, partOfSpeech);
+        }
+        String[] phones = cache.get(word);
+        if (phones != null) {
+            return phones;
+        }
+        long generation;
+        synchronized (letterToSoundLock) {
+            generation = addendaGeneration;
+        }
+        phones = letterToSound.getPhones(word, partOfSpeech);
+        if (phones != null) {
+            synchronized (letterToSoundLock) {
+                if (generation == addendaGeneration && addenda == this.addenda) {
+                    cache.put(word, phones);
+                }
+            }
+        }
+        return phones;
+    }
+
+    /**
+     * Returns the syllable boundaries stored with the entry that
+     * <code>getPhones</code> finds for a word in the addenda or the
+     * compiled form.  Boundaries are stored by binary lexicons.
+     *
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the boundaries, or 0 if none are stored
+     */
+    @Override
+    public long getSyllableBoundaries(String word, String partOfSpeech) {
+        Object value = findEntry(addenda, word, partOfSpeech);
+        if (value == null) {
+            value = findEntry(compiled, word, partOfSpeech);
+        }
+        return value instanceof SyllabifiedPhones syllabified ? syllabified.boundaries : 0;
+    }
+
+    /**
+     * Gets the phones of a word and their syllable boundaries from the
+     * same entry of the addenda or the compiled form, or the phones
+     * of the letter-to-sound rules without boundaries.
+     *
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the phones and boundaries, or <code>null</code> if no
+     * phones are found
+     */
+    @Override
+    public SyllabifiedPhones getSyllabifiedPhones(String word, String partOfSpeech) {
+        Map<String, Object> addenda = this.addenda;
+        Object value = findEntry(addenda, word, partOfSpeech);
+        if (value == null) {
+            value = findEntry(compiled, word, partOfSpeech);
+        }
+        if (value != null) {
+            long boundaries = value instanceof SyllabifiedPhones syllabified ? syllabified.boundaries : 0;
+            return new SyllabifiedPhones(toPhones(value).clone(), boundaries);
+        }
+        String[] phones = letterToSound != null ? getLetterToSoundPhones(addenda, word, partOfSpeech) : null;
+        return phones == null ? null : new SyllabifiedPhones(phones.clone(), 0);
+    }
+
+    /**
+     * Finds the entry for a word in the given lexicon, trying the
+     * given part of speech first and then the others, as
+     * <code>getPhones</code> does.
+     *
+     * @param lexicon      the lexicon
+     * @param word         the word to find
+     * @param partOfSpeech the part of speech or <code>null</code>
+     * @return the entry, or <code>null</code>
+     */
+    private Object findEntry(Map<String, Object> lexicon, String word, String partOfSpeech) {
+        partOfSpeech = fixPartOfSpeech(partOfSpeech);
+        Object value = lexicon.get(word + partOfSpeech);
+        for (int i = 0; (i < partsOfSpeech.size()) && (value == null); i++) {
+            if (!partOfSpeech.equals(partsOfSpeech.get(i))) {
+                value = lexicon.get(word + partsOfSpeech.get(i));
+            }
+        }
+        return value;
+    }
+
     /**
      * Gets a phone list for a word from a given lexicon.  If a phone
      * list cannot be found, returns <code>null</code>.  The format is
@@ -451,15 +726,22 @@ abstract public class LexiconImpl implements Lexicon {
      * @return the array of phones for word or <code>null</code>
      */
     protected String[] getPhones(Map<String, Object> lexicon, String wordAndPartOfSpeech) {
-        Object value = lexicon.get(wordAndPartOfSpeech);
+        return toPhones(lexicon.get(wordAndPartOfSpeech));
+    }
+
+    /**
+     * Gets the phones of a lexicon entry.
+     *
+     * @param value the entry, or <code>null</code>
+     * @return the shared array of phones, or <code>null</code>
+     */
+    private static String[] toPhones(Object value) {
         if (value instanceof String[]) {
             return (String[]) value;
+        } else if (value instanceof SyllabifiedPhones syllabified) {
+            return syllabified.phones;
         } else if (value instanceof String) {
-            String[] phoneArray = getPhones((String) value);
-            if (tokenizeOnLookup) {
-                lexicon.put(wordAndPartOfSpeech, phoneArray);
-            }
-            return phoneArray;
+            return getPhones((String) value);
         } else {
             return null;
         }
@@ -491,10 +773,8 @@ abstract public class LexiconImpl implements Lexicon {
     @Override
     public void addAddendum(String word, String partOfSpeech, String[] phones) {
         String pos = fixPartOfSpeech(partOfSpeech);
-        if (!partsOfSpeech.contains(pos)) {
-            partsOfSpeech.add(pos);
-        }
-        addenda.put(word + pos, phones);
+        partsOfSpeech.addIfAbsent(pos);
+        updateAddenda(Collections.singletonMap(word + pos, phones), null);
     }
 
     /**
@@ -505,7 +785,131 @@ abstract public class LexiconImpl implements Lexicon {
      */
     @Override
     public void removeAddendum(String word, String partOfSpeech) {
-        addenda.remove(word + fixPartOfSpeech(partOfSpeech));
+        updateAddenda(Collections.emptyMap(), word + fixPartOfSpeech(partOfSpeech));
+    }
+
+    /**
+     * Adds all the given words to the addenda in one change.  Lookups
+     * see either none or all of them.
+     *
+     * @param words        the phones for each word
+     * @param partOfSpeech the part of speech of the words
+     */
+    public void addAddenda(Map<String, String[]> words, String partOfSpeech) {
+        String pos = fixPartOfSpeech(partOfSpeech);
+        partsOfSpeech.addIfAbsent(pos);
+        Map<String, Object> entries = new LinkedHashMap<>(words.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String[]> entry : words.entrySet()) {
+            entries.put(entry.getKey() + pos, entry.getValue());
+        }
+        updateAddenda(entries, null);
+    }
+
+    /**
+     * Adds all the entries of a text addenda file to the addenda in
+     * one change, overriding existing entries.  Lookups see either
+     * none or all of them.
+     *
+     * @param url the text addenda file, in the same format as the
+     *            system addenda
+     * @throws IOException if the file cannot be read
+     */
+    public void loadAddenda(URI url) throws IOException {
+        InputStream is = Utilities.getInputStream(url);
+        if (is == null) {
+            throw new IOException("Can't load addenda from " + url);
+        }
+        Map<String, Object> entries;
+        try {
+            entries = loadTextLexicon(is, 50);
+        } finally {
+            is.close();
+        }
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            if (entry.getValue() instanceof String phones) {
+                entry.setValue(getPhones(phones));
+            }
+        }
+        updateAddenda(entries, null);
+    }
+
+    /**
+     * Publishes a copy of the addenda with the given changes applied.
+     *
+     * @param additions   the entries to add, keyed by word and part
+     *                    of speech
+     * @param removedKey  the word and part of speech to remove, or
+     *                    <code>null</code>
+     */
+    private void updateAddenda(Map<String, Object> additions, String removedKey) {
+        synchronized (addendaLock) {
+            Map<String, Object> copy = new LinkedHashMap<>(addenda);
+            copy.putAll(additions);
+            if (removedKey != null) {
+                copy.remove(removedKey);
+            }
+            addenda = Collections.unmodifiableMap(copy);
+            generation++;
+        }
+        for (String key : additions.keySet()) {
+            invalidateLetterToSoundCache(key.substring(0, key.length() - 1));
+        }
+        if (removedKey != null) {
+            invalidateLetterToSoundCache(removedKey.substring(0, removedKey.length() - 1));
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Drops any cached letter-to-sound result for a word whose addenda
+     * entries changed.
+     *
+     * @param word the word
+     */
+    private void invalidateLetterToSoundCache(String word) {
+        synchronized (letterToSoundLock) {
+            addendaGeneration++;
+            if (letterToSoundCache != null) {
+                letterToSoundCache.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Sets the number of words whose letter-to-sound results are
+     * cached.  Any cached results are discarded.
+     *
+     * @param size the number of words, or 0 to disable the cache
+     */
+    public void setLetterToSoundCacheSize(int size) {
+        synchronized (letterToSoundLock) {
+            addendaGeneration++;
+            letterToSoundCache = createLetterToSoundCache(size);
+        }
+    }
+
+    /**
+     * Returns the cache of letter-to-sound results, for reporting its
+     * hit rate.
+     *
+     * @return the cache, or <code>null</code> if it is disabled
+     */
+    public LRUCache<String, String[]> getLetterToSoundCache() {
+        return letterToSoundCache;
+    }
+
+    /**
+     * Creates a letter-to-sound cache of the given size.
+     *
+     * @param size the number of words, or 0 for no cache
+     * @return the cache, or <code>null</code>
+     */
+    private static LRUCache<String, String[]> createLetterToSoundCache(int size) {
+        return size > 0 ? new LRUCache<>(size) : null;
     }
 
     /**
@@ -569,8 +973,15 @@ abstract public class LexiconImpl implements Lexicon {
      * phoneme index 1
      * phoneme index 2
      * phoneme index n
+     * (byte) numSyllables
+     * (byte) number of phonemes in syllable 1
+     * (byte) number of phonemes in syllable n
      * </pre>
      *
+     * <p>The syllables are found with <code>isSyllableBoundary</code>
+     * when the lexicon is dumped, so that they need not be found at
+     * runtime.  Words with more than 63 phonemes store no syllables.
+     *
      * <p>Strings are formatted as: <code>(byte) len char0 char1 charN</code>
      *
      * <p>Limits: Strings: 128 chars
@@ -605,6 +1016,11 @@ abstract public class LexiconImpl implements Lexicon {
                     }
                     dos.writeByte((byte) phonemeIndex);
                 }
+                int[] syllables = getSyllableLengths(phonemes);
+                dos.writeByte((byte) syllables.length);
+                for (int length : syllables) {
+                    dos.writeByte((byte) length);
+                }
             }
             dos.close();
         } catch (FileNotFoundException fe) {
@@ -614,6 +1030,52 @@ abstract public class LexiconImpl implements Lexicon {
         }
     }
 
+    /**
+     * Splits the given phones into syllables using
+     * <code>isSyllableBoundary</code>.
+     *
+     * @param phones the phones of a word
+     * @return the number of phones in each syllable, empty if the
+     * word has too many phones to store its syllables
+     */
+    private int[] getSyllableLengths(String[] phones) {
+        if (phones.length > MAX_SYLLABIFIED_PHONES) {
+            return new int[0];
+        }
+        List<Integer> lengths = new ArrayList<>();
+        List<String> syllable = new ArrayList<>();
+        for (int j = 0; j < phones.length; j++) {
+            syllable.add(phones[j]);
+            if (isSyllableBoundary(syllable, phones, j + 1)) {
+                lengths.add(syllable.size());
+                syllable = new ArrayList<>();
+            }
+        }
+        return lengths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Creates the lexicon entry for the given phones and syllable
+     * lengths as read from a binary lexicon.
+     *
+     * @param phonemes  the phones
+     * @param syllables the number of phones in each syllable
+     * @param numSyllables the number of syllables, 0 if none are stored
+     * @return the entry to put in the lexicon
+     */
+    private static Object createEntry(String[] phonemes, int[] syllables, int numSyllables) {
+        if (numSyllables == 0) {
+            return phonemes;
+        }
+        long boundaries = 0;
+        int end = 0;
+        for (int j = 0; j < numSyllables; j++) {
+            end += syllables[j];
+            boundaries |= 1L << (end - 1);
+        }
+        return new SyllabifiedPhones(phonemes, boundaries);
+    }
+
     /**
      * Loads the binary lexicon from the given InputStream.
      * This method is not thread safe.
@@ -643,9 +1105,11 @@ abstract public class LexiconImpl implements Lexicon {
             throw new Error("bad magic number in lexicon");
         }
 
-        if (bb.getInt() != VERSION) {
+        int version = bb.getInt();
+        if (version != VERSION && version != 1) {
             throw new Error("bad version number in lexicon");
         }
+        int[] syllables = new int[MAX_SYLLABIFIED_PHONES];
 
         size = bb.getInt();
         for (int i = 0; i < size; i++) {
@@ -657,9 +1121,7 @@ abstract public class LexiconImpl implements Lexicon {
         for (int i = 0; i < numEntries; i++) {
             String wordAndPos = getString(bb);
             String pos = Character.toString(wordAndPos.charAt(wordAndPos.length() - 1));
-            if (!partsOfSpeech.contains(pos)) {
-                partsOfSpeech.add(pos);
-            }
+            partsOfSpeech.addIfAbsent(pos);
 
             int numPhonemes = bb.get();
             String[] phonemes = new String[numPhonemes];
@@ -667,7 +1129,11 @@ abstract public class LexiconImpl implements Lexicon {
             for (int j = 0; j < numPhonemes; j++) {
                 phonemes[j] = (String) phonemeList.get(bb.get());
             }
-            lexicon.put(wordAndPos, phonemes);
+            int numSyllables = version == 1 ? 0 : bb.get();
+            for (int j = 0; j < numSyllables; j++) {
+                syllables[j] = bb.get();
+            }
+            lexicon.put(wordAndPos, createEntry(phonemes, syllables, numSyllables));
         }
         fc.close();
         return lexicon;
@@ -697,9 +1163,11 @@ abstract public class LexiconImpl implements Lexicon {
             throw new Error("bad magic number in lexicon");
         }
 
-        if (dis.readInt() != VERSION) {
+        int version = dis.readInt();
+        if (version != VERSION && version != 1) {
             throw new Error("bad version number in lexicon");
         }
+        int[] syllables = new int[MAX_SYLLABIFIED_PHONES];
 
         size = dis.readInt();
         for (int i = 0; i < size; i++) {
@@ -711,9 +1179,7 @@ abstract public class LexiconImpl implements Lexicon {
         for (int i = 0; i < numEntries; i++) {
             String wordAndPos = getString(dis);
             String pos = Character.toString(wordAndPos.charAt(wordAndPos.length() - 1));
-            if (!partsOfSpeech.contains(pos)) {
-                partsOfSpeech.add(pos);
-            }
+            partsOfSpeech.addIfAbsent(pos);
 
             int numPhonemes = dis.readByte();
             String[] phonemes = new String[numPhonemes];
@@ -721,7 +1187,11 @@ abstract public class LexiconImpl implements Lexicon {
             for (int j = 0; j < numPhonemes; j++) {
                 phonemes[j] = (String) phonemeList.get(dis.readByte());
             }
-            lexicon.put(wordAndPos, phonemes);
+            int numSyllables = version == 1 ? 0 : dis.readByte();
+            for (int j = 0; j < numSyllables; j++) {
+                syllables[j] = dis.readByte();
+            }
+            lexicon.put(wordAndPos, createEntry(phonemes, syllables, numSyllables));
         }
         dis.close();
         return lexicon;
@@ -810,4 +1280,29 @@ abstract public class LexiconImpl implements Lexicon {
     static protected String fixPartOfSpeech(String partOfSpeech) {
         return (partOfSpeech == null) ? "0" : partOfSpeech;
     }
+
+    /**
+     * A lexicon map shared through the {@link LexiconRegistry},
+     * together with the parts of speech that occur in it.
+     */
+    private static class SharedLexicon {
+
+        final Map<String, Object> map;
+        final List<String> partsOfSpeech = new ArrayList<>();
+
+        /**
+         * Wraps the given lexicon map.
+         *
+         * @param lexicon the loaded map, keyed by word and part of speech
+         */
+        SharedLexicon(Map<String, Object> lexicon) {
+            map = Collections.unmodifiableMap(lexicon);
+            for (String wordAndPos : lexicon.keySet()) {
+                String pos = wordAndPos.substring(wordAndPos.length() - 1);
+                if (!partsOfSpeech.contains(pos)) {
+                    partsOfSpeech.add(pos);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,128 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.lexicon;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A process-wide directory of loaded lexicon data, so that voices
+ * using the same lexicon share one copy of its compiled form, addenda
+ * and letter-to-sound rules.
+ *
+ * <p>Data is registered under a key that names its source, normally
+ * the URI it is loaded from, together with everything that affects
+ * how it is read, such as the lexicon class and the file format, so
+ * that differently configured lexicons at the same URI do not share
+ * data.  As voice class loaders only differ in
+ * how they find a resource, not in the URI they find it at, voices
+ * loaded through different class loaders share the data too.  Each
+ * {@link #acquire} counts a reference that must be given back with
+ * {@link #release}; when the last reference is released the data is
+ * dropped from the registry and can be garbage collected.
+ *
+ * <p>Shared data must not be modified by its users.
+ */
+public final class LexiconRegistry {
+
+    /**
+     * Loads the data for a key that is not yet registered.
+     *
+     * @param <T> the type of the data
+     */
+    public interface Loader<T> {
+
+        /**
+         * Loads the data.
+         *
+         * @return the data, never <code>null</code>
+         * @throws IOException if the data cannot be loaded
+         */
+        T load() throws IOException;
+    }
+
+    /**
+     * A registered piece of data and the number of its users.
+     */
+    private static class Entry {
+        Object value;
+        int references;
+    }
+
+    /**
+     * The registered data, indexed by key.
+     */
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Avoid construction.
+     */
+    private LexiconRegistry() {
+    }
+
+    /**
+     * Returns the data registered under the given key, loading it if
+     * needed, and counts a reference to it.  Data for different keys
+     * can be loaded concurrently; concurrent requests for the same key
+     * load it only once.
+     *
+     * @param <T>    the type of the data
+     * @param key    the key naming the data
+     * @param loader loads the data if it is not registered yet
+     * @return the shared data
+     * @throws IOException if the data cannot be loaded
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T acquire(String key, Loader<T> loader) throws IOException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+            entry.references++;
+        }
+        try {
+            synchronized (entry) {
+                if (entry.value == null) {
+                    entry.value = loader.load();
+                }
+                return (T) entry.value;
+            }
+        } catch (IOException | RuntimeException e) {
+            release(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a reference obtained with {@link #acquire}.
+     *
+     * @param key the key naming the data
+     */
+    public static void release(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && --entry.references == 0) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of references to the data registered under
+     * the given key.
+     *
+     * @param key the key naming the data
+     * @return the number of references, 0 if nothing is registered
+     */
+    public static int getReferenceCount(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry == null ? 0 : entry.references;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.lexicon;
+
+
+/**
+ * The phones of a word together with the syllable boundaries of those
+ * phones, as found in one lexicon entry.
+ *
+ * @see Lexicon#getSyllabifiedPhones
+ */
+public class SyllabifiedPhones {
+
+    final String[] phones;
+    final long boundaries;
+
+    /**
+     * Creates the phones of a word.
+     *
+     * @param phones     the phones
+     * @param boundaries bit <code>i</code> is set if a syllable ends
+     *                   with phone <code>i</code>, or 0 if the
+     *                   boundaries are not known
+     */
+    public SyllabifiedPhones(String[] phones, long boundaries) {
+        this.phones = phones;
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * Gets the phones.
+     *
+     * @return the phones
+     */
+    public String[] getPhones() {
+        return phones;
+    }
+
+    /**
+     * Gets the syllable boundaries.  Bit <code>i</code> is set if a
+     * syllable ends with phone <code>i</code>.
+     *
+     * @return the boundaries, or 0 if they are not known
+     */
+    public long getBoundaries() {
+        return boundaries;
+    }
+}
@@ -27,6 +27,16 @@ import com.sun.speech.freetts.audio.AudioPlayer;
  * utterance processor. The primary method, <code> procesUtterance </code>
  * takes an utterance and hands it off to the LPCResult to be sent to the
  * proper audio player.
+ * <p>
+ * The audio is given to the player as 16 bit linear samples, unless the
+ * audio format of the player has a G.711 encoding (<code>ULAW</code> or
+ * <code>ALAW</code>).  Then the samples are encoded as they are
+ * synthesized, at the sample rate of the voice.
+ * <p>
+ * If the voice has an output sample rate (see
+ * <code>Voice.setOutputSampleRate</code>), the samples are resampled
+ * to it as they are synthesized, and the player is given audio at that
+ * rate instead of the rate of the voice.
  *
  * @see LPCResult
  */
@@ -39,6 +49,16 @@ public class AudioOutput implements UtteranceProcessor {
             new AudioFormat(8000.0f, 16, 1, true, true);
     private final static AudioFormat AUDIO_16KHZ =
             new AudioFormat(16000.0f, 16, 1, true, true);
+    private final static AudioFormat ULAW_8KHZ =
+            new AudioFormat(AudioFormat.Encoding.ULAW, 8000.0f, 8, 1, 1, 8000.0f, false);
+    private final static AudioFormat ALAW_8KHZ =
+            new AudioFormat(AudioFormat.Encoding.ALAW, 8000.0f, 8, 1, 1, 8000.0f, false);
+
+    /**
+     * The buffer each output thread passes samples to its player in.
+     */
+    private final ThreadLocal<byte[]> sampleBuffers =
+            ThreadLocal.withInitial(() -> new byte[LPCResult.MAX_SAMPLE_SIZE]);
 
     /**
      * Generates audio waves for the given Utterance. The audio data
@@ -53,16 +73,21 @@ public class AudioOutput implements UtteranceProcessor {
     public void processUtterance(Utterance utterance) throws ProcessException {
         LPCResult lpcResult = (LPCResult) utterance.getObject("target_lpcres");
         SampleInfo sampleInfo = (SampleInfo) utterance.getObject(SampleInfo.UTT_NAME);
-        AudioPlayer audioPlayer = utterance.getVoice().getAudioPlayer();
+        AudioPlayer audioPlayer = utterance.getAudioPlayer();
+        int sampleRate = utterance.getVoice().getOutputSampleRate();
+        if (sampleRate <= 0) {
+            sampleRate = sampleInfo.getSampleRate();
+        }
 
-        audioPlayer.setAudioFormat(getAudioFormat(sampleInfo));
+        AudioFormat audioFormat = getAudioFormat(sampleRate, audioPlayer.getAudioFormat());
+        audioPlayer.setAudioFormat(audioFormat);
         audioPlayer.setVolume(utterance.getVoice().getVolume());
 
         if (logger.isLoggable(Level.DEBUG)) {
             logger.log(Level.DEBUG, "=== " + utterance.getString("input_text"));
         }
         try {
-            if (!lpcResult.playWave(audioPlayer, utterance)) {
+            if (!lpcResult.playWave(audioPlayer, utterance, sampleBuffers.get(), audioFormat)) {
                 throw new ProcessException("Output Cancelled");
             }
         } catch (IOException e) {
@@ -72,21 +97,29 @@ public class AudioOutput implements UtteranceProcessor {
 
     /**
      * Gets the current audio format.
-     * Given a sample info return an appropriate audio format. A cache
+     * Given a sample rate return an appropriate audio format. A cache
      * of common audio formats is used to reduce unnecessary object
-     * creation. Note that this method always returns an AudioFormat
-     * that uses 16-bit samples.
+     * creation. Note that this method returns an AudioFormat that uses
+     * 16-bit samples, unless the player uses a G.711 encoding.
      *
-     * @param sampleInfo the sample info
+     * @param sampleRate   the sample rate of the audio
+     * @param playerFormat the audio format of the player
      * @return an audio format
      */
-    private static AudioFormat getAudioFormat(SampleInfo sampleInfo) {
-        if (sampleInfo.getSampleRate() == 8000) {
+    private static AudioFormat getAudioFormat(int sampleRate, AudioFormat playerFormat) {
+        AudioFormat.Encoding encoding = playerFormat == null ? null : playerFormat.getEncoding();
+        if (AudioFormat.Encoding.ULAW.equals(encoding) || AudioFormat.Encoding.ALAW.equals(encoding)) {
+            if (sampleRate == 8000) {
+                return encoding.equals(AudioFormat.Encoding.ULAW) ? ULAW_8KHZ : ALAW_8KHZ;
+            } else {
+                return new AudioFormat(encoding, sampleRate, 8, 1, 1, sampleRate, false);
+            }
+        } else if (sampleRate == 8000) {
             return AUDIO_8KHZ;
-        } else if (sampleInfo.getSampleRate() == 16000) {
+        } else if (sampleRate == 16000) {
             return AUDIO_16KHZ;
         } else {
-            return new AudioFormat(sampleInfo.getSampleRate(), 16, 1, true, true);
+            return new AudioFormat(sampleRate, 16, 1, true, true);
         }
     }
 
@@ -0,0 +1,70 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.relp;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Provides the inner loops of LPC resynthesis.  <code>LPCResult</code>
+ * uses the first implementation found through
+ * <code>java.util.ServiceLoader</code>, and falls back on
+ * {@link ScalarLPCFilter} if there is none or it cannot be loaded.
+ * An implementation must be thread safe.
+ */
+public interface LPCFilter {
+
+    /**
+     * Runs the LPC filter over a block of samples: adds to the
+     * excitation of each sample the products of the coefficients with
+     * the past outputs.  The past outputs are kept twice in a row in
+     * <code>history</code>, most recent first, so that the last
+     * <i>n</i> of them are found in <i>n</i> consecutive elements
+     * from the head on.
+     *
+     * @param coefficients the LPC coefficients
+     * @param history      the past outputs, updated with the outputs
+     *                     of the block; at least twice as long as
+     *                     <code>coefficients</code>
+     * @param head         where the most recent output is in
+     *                     <code>history</code>
+     * @param values       the excitation of the samples on entry, and
+     *                     the outputs of the filter on return
+     * @param count        the number of samples
+     * @return where the most recent output is in <code>history</code>
+     */
+    int filter(float[] coefficients, float[] history, int head, float[] values, int count);
+
+    /**
+     * Maps residuals to excitation values.  Each residual is offset by
+     * 128 to index the table.
+     *
+     * @param residuals the residuals
+     * @param offset    the first residual to map
+     * @param table     the excitation value of each residual
+     * @param values    where to put the excitation values
+     * @param count     the number of residuals to map
+     */
+    void dequantize(byte[] residuals, int offset, float[] table, float[] values, int count);
+
+    /**
+     * Maps residuals kept in a buffer, such as a memory mapped unit
+     * database, to excitation values.  The buffer is read with
+     * absolute gets only.
+     *
+     * @param residuals the residuals
+     * @param offset    the index of the first residual to map
+     * @param table     the excitation value of each residual
+     * @param values    where to put the excitation values
+     * @param count     the number of residuals to map
+     */
+    default void dequantize(ByteBuffer residuals, int offset, float[] table, float[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = table[residuals.get(offset + i) + 128];
+        }
+    }
+}
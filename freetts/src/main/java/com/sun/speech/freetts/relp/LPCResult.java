@@ -17,12 +17,22 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import javax.sound.sampled.AudioFormat;
 
 import com.sun.speech.freetts.FreeTTSSpeakable;
 import com.sun.speech.freetts.Utterance;
 import com.sun.speech.freetts.audio.AudioPlayer;
+import com.sun.speech.freetts.util.Resampler;
 import com.sun.speech.freetts.util.Utilities;
 import com.sun.speech.freetts.util.WaveUtils;
 
@@ -32,12 +42,17 @@ import com.sun.speech.freetts.util.WaveUtils;
  */
 public class LPCResult {
 
+    /** Logger instance. */
+    private static final Logger logger = System.getLogger(LPCResult.class.getName());
+
     private static final double POST_EMPHASIS = 0.0;
 
     private int frameSize = 10;
     private int numberOfFrames = 0;
 
     private short[][] frames = null;
+    /** the dequantized frames; an entry is null if it is to be computed */
+    private float[][] coefficients = null;
     private int[] times = null;
     private int[] sizes = null;
 
@@ -46,6 +61,19 @@ public class LPCResult {
      * add 128 to it
      */
     private byte[] residuals = null;
+    private int numberOfSamples;
+
+    /**
+     * the buffers the residuals of each frame are kept in, if they were
+     * not copied; null if no frame refers to a buffer
+     */
+    private ByteBuffer[] residualBuffers = null;
+    /** the buffer index of the first residual of each frame */
+    private int[] residualOffsets;
+    /** where the residuals of the buffer begin in each frame */
+    private int[] residualStarts;
+    /** where the residuals of the buffer end in each frame */
+    private int[] residualEnds;
 
     private int numberOfChannels;
     private int sampleRate;
@@ -54,7 +82,7 @@ public class LPCResult {
     private float lpcMinimum;
     private float lpcRange;
 
-    private final static int MAX_SAMPLE_SIZE = Utilities.getInteger("com.sun.speech.freetts.LpcResult.maxSamples",
+    final static int MAX_SAMPLE_SIZE = Utilities.getInteger("com.sun.speech.freetts.LpcResult.maxSamples",
             1024);
 
     /**
@@ -69,6 +97,41 @@ public class LPCResult {
         residualToFloatMap[128] = WaveUtils.ulawToShort((short) 255);
     }
 
+    /**
+     * Runs the inner loops of the LPC filter.
+     */
+    private final static LPCFilter FILTER = loadFilter();
+
+    /**
+     * Returns the first LPC filter provided as a service, or the scalar
+     * filter if there is none that can be loaded.  A provider may not
+     * load if it needs a platform module that was not added.
+     *
+     * @return the LPC filter
+     */
+    private static LPCFilter loadFilter() {
+        try {
+            Iterator<LPCFilter> filters = ServiceLoader.load(LPCFilter.class).iterator();
+            if (filters.hasNext()) {
+                LPCFilter filter = filters.next();
+                logger.log(Level.DEBUG, "Using LPC filter " + filter.getClass().getName());
+                return filter;
+            }
+        } catch (ServiceConfigurationError | LinkageError e) {
+            logger.log(Level.DEBUG, "Can't load LPC filter, using scalar filter", e);
+        }
+        return new ScalarLPCFilter();
+    }
+
+    /**
+     * Returns the LPC filter used to synthesize waves.
+     *
+     * @return the LPC filter
+     */
+    public static LPCFilter getFilter() {
+        return FILTER;
+    }
+
     public LPCResult() {
         residualFold = 1;
     }
@@ -81,18 +144,35 @@ public class LPCResult {
     public void resizeFrames(int numberOfFrames) {
         times = new int[numberOfFrames];
         frames = new short[numberOfFrames][];
+        coefficients = new float[numberOfFrames][];
         sizes = new int[numberOfFrames];
+        residualBuffers = null;
         this.numberOfFrames = numberOfFrames;
     }
 
     /**
      * Resets the number of residuals, and initialize all of them to 255
-     * (which is 0 for mulaw).
+     * (which is 0 for mulaw).  The array is allocated when residuals
+     * are first copied into it, so it is not allocated at all if every
+     * frame refers to its residuals in a buffer.
      *
      * @param numberOfSamples the number of samples in this LPC result
      */
     public void resizeResiduals(int numberOfSamples) {
-        residuals = new byte[numberOfSamples];
+        this.numberOfSamples = numberOfSamples;
+        residuals = null;
+    }
+
+    /**
+     * Returns the array of residuals, allocating it if needed.
+     *
+     * @return the array of residuals
+     */
+    private byte[] getResidualArray() {
+        if (residuals == null) {
+            residuals = new byte[numberOfSamples];
+        }
+        return residuals;
     }
 
     /**
@@ -204,11 +284,7 @@ public class LPCResult {
      * @return the number of samples
      */
     public int getNumberOfSamples() {
-        if (residuals == null) {
-            return 0;
-        } else {
-            return residuals.length;
-        }
+        return numberOfSamples;
     }
 
     /**
@@ -230,11 +306,26 @@ public class LPCResult {
     }
 
     /**
-     * Returns the array of residuals.
+     * Returns the array of residuals.  The residuals of frames that
+     * refer to a buffer are copied into it first.
      *
      * @return the array of residuals
      */
     public byte[] getResiduals() {
+        byte[] residuals = getResidualArray();
+        if (residualBuffers != null) {
+            int position = 0;
+            for (int i = 0; i < residualBuffers.length; i++) {
+                ByteBuffer buffer = residualBuffers[i];
+                if (buffer != null) {
+                    int start = residualStarts[i];
+                    buffer.get(residualOffsets[i] + start, residuals, position + start,
+                            residualEnds[i] - start);
+                }
+                position += sizes[i];
+            }
+            residualBuffers = null;
+        }
         return residuals;
     }
 
@@ -263,7 +354,25 @@ public class LPCResult {
      * @param newFrames new frame data
      */
     public void setFrame(int index, short[] newFrames) {
+        setFrame(index, newFrames, null);
+    }
+
+    /**
+     * Sets the frame at the given index, along with its LPC
+     * coefficients.  The coefficients must be the ones the frame
+     * dequantizes to with the LPC minimum and range of this result;
+     * they are then used as they are.
+     *
+     * @param index        the position of the frame to set
+     * @param newFrames    new frame data
+     * @param coefficients the LPC coefficients of the frame, or
+     *                     <code>null</code> to compute them from the
+     *                     frame data
+     * @see Sample#dequantize
+     */
+    public void setFrame(int index, short[] newFrames, float[] coefficients) {
         frames[index] = newFrames;
+        this.coefficients[index] = coefficients;
     }
 
     /**
@@ -331,6 +440,7 @@ public class LPCResult {
      * @param targetSize     the maximum number of characters to copy
      */
     public void copyResiduals(byte[] source, int targetPosition, int targetSize) {
+        byte[] residuals = getResidualArray();
         int unitSize = source.length;
         if (unitSize < targetSize) {
             int targetStart = (targetSize - unitSize) / 2;
@@ -341,6 +451,41 @@ public class LPCResult {
         }
     }
 
+    /**
+     * Makes the frame at the given index refer to residuals kept in a
+     * buffer, such as a memory mapped unit database, instead of
+     * copying them.  They are placed in the frame the way
+     * <code>copyResiduals</code> places them: centered, and cut to the
+     * residual size of the frame, which must be set first.  The buffer
+     * is read with absolute gets, and must not change while this
+     * result is used.
+     *
+     * @param index  the frame
+     * @param source the buffer that holds the residuals
+     * @param offset the index of the first residual in the buffer
+     * @param length the number of residuals in the buffer
+     */
+    public void setResiduals(int index, ByteBuffer source, int offset, int length) {
+        if (residualBuffers == null) {
+            residualBuffers = new ByteBuffer[sizes.length];
+            residualOffsets = new int[sizes.length];
+            residualStarts = new int[sizes.length];
+            residualEnds = new int[sizes.length];
+        }
+        int targetSize = sizes[index];
+        residualBuffers[index] = source;
+        if (length < targetSize) {
+            int targetStart = (targetSize - length) / 2;
+            residualOffsets[index] = offset - targetStart;
+            residualStarts[index] = targetStart;
+            residualEnds[index] = targetStart + length;
+        } else {
+            residualOffsets[index] = offset + (length - targetSize) / 2;
+            residualStarts[index] = 0;
+            residualEnds[index] = targetSize;
+        }
+    }
+
     /**
      * Copies the residual pulse in the given unit to the array of residuals,
      * starting at the given index, up until targetSize chars.
@@ -351,6 +496,7 @@ public class LPCResult {
      */
     public void copyResidualsPulse(byte[] source, int targetPosition, int targetSize) {
         int unitSize = source.length;
+        byte[] residuals = getResidualArray();
         short sample = (short) (source[0] + 128);
         if (unitSize < targetSize) {
             residuals[(targetSize - unitSize) / 2] = WaveUtils.shortToUlaw(sample);
@@ -360,37 +506,89 @@ public class LPCResult {
     }
 
     /**
-     * Given a 16 bit value (represented as an int), extract
-     * the high eight bits and return them
+     * Synthesize a Wave  from this LPCResult
      *
-     * @param val the 16 bit value
-     * @return the high eight bits
+     * @return the wave
+     * @throws IOException if an error occurs while writing the audio data
      */
-    private static byte hibyte(int val) {
-        return (byte) (val >>> 8);
+    public boolean playWave(AudioPlayer player, Utterance utterance) throws IOException {
+        return playWave(player, utterance, new byte[MAX_SAMPLE_SIZE]);
     }
 
     /**
-     * Given a 16 bit value (represented as an int), extract
-     * the low eight bits and return them
+     * Synthesizes the wave of this LPCResult and plays it, passing the
+     * samples to the player through the given buffer.
      *
-     * @param val the 16 bit value
-     * @return the low eight bits
+     * @param player    where to send the audio
+     * @param utterance the utterance
+     * @param buffer    the buffer to write the samples to the player
+     *                  from, at least two bytes long
+     * @return <code>true</code> if the wave was played completely
+     * @throws IOException if an error occurs while writing the audio data
      */
-    private static byte lobyte(int val) {
-        return (byte) (val & 0x000000FF);
+    public boolean playWave(AudioPlayer player, Utterance utterance, byte[] buffer) throws IOException {
+        return playWaveSamples(player, utterance.getSpeakable(), 2 * getNumberOfSamples(), ByteBuffer.wrap(buffer),
+                getResynthesizer(), AudioFormat.Encoding.PCM_SIGNED);
     }
 
     /**
-     * Synthesize a Wave  from this LPCResult
+     * Synthesizes the wave of this LPCResult and plays it in the
+     * encoding and at the sample rate of the given format, passing the
+     * samples to the player through the given buffer.  The samples are
+     * encoded as they are synthesized, so the player is given G.711
+     * codes without a 16 bit copy of the wave.  If the sample rate of
+     * the format is not the one of this LPCResult, the wave is
+     * resampled on the way, a block of samples at a time.
      *
-     * @return the wave
+     * @param player    where to send the audio
+     * @param utterance the utterance
+     * @param buffer    the buffer to write the samples to the player
+     *                  from, at least two bytes long
+     * @param format    the format of the samples: one channel of
+     *                  <code>PCM_SIGNED</code> 16 bit samples in either
+     *                  byte order, <code>ULAW</code> or <code>ALAW</code>,
+     *                  at any sample rate
+     * @return <code>true</code> if the wave was played completely
      * @throws IOException if an error occurs while writing the audio data
+     * @throws IllegalArgumentException if the format is not supported
      */
-    public boolean playWave(AudioPlayer player, Utterance utterance) throws IOException {
-        return playWaveSamples(player, utterance.getSpeakable(), getNumberOfSamples() * 2);
+    public boolean playWave(AudioPlayer player, Utterance utterance, byte[] buffer,
+                            AudioFormat format) throws IOException {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int sampleSize = getSampleSizeInBytes(encoding);
+        if (format.getChannels() != 1 || format.getSampleSizeInBits() != 8 * sampleSize) {
+            throw new IllegalArgumentException("Unsupported format " + format);
+        }
+        Resynthesizer resynthesizer = getResynthesizer(0, numberOfFrames, (int) format.getSampleRate());
+        return playWaveSamples(player, utterance.getSpeakable(), resynthesizer.getRemaining() * sampleSize,
+                ByteBuffer.wrap(buffer).order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN),
+                resynthesizer, encoding);
+    }
+
+    /**
+     * Returns the number of bytes of a sample in the given encoding.
+     *
+     * @param encoding <code>PCM_SIGNED</code>, <code>ULAW</code> or
+     *                 <code>ALAW</code>
+     * @return the sample size
+     * @throws IllegalArgumentException if the encoding is not supported
+     */
+    private static int getSampleSizeInBytes(AudioFormat.Encoding encoding) {
+        if (encoding.equals(AudioFormat.Encoding.PCM_SIGNED)) {
+            return 2;
+        } else if (encoding.equals(AudioFormat.Encoding.ULAW) || encoding.equals(AudioFormat.Encoding.ALAW)) {
+            return 1;
+        } else {
+            throw new IllegalArgumentException("Unsupported encoding " + encoding);
+        }
     }
 
+    /**
+     * Synthesizes the wave of this LPCResult as 16 bit big endian
+     * samples.
+     *
+     * @return the samples
+     */
     public byte[] getWaveSamples() {
         return getWaveSamples(2 * getNumberOfSamples(), null);
     }
@@ -400,61 +598,10 @@ public class LPCResult {
      *
      * @param numberSamples the number of samples desirred
      * @param utterance     the utterance
-     *                      <p>
-     *                      TODO well there is a bunch of duplicated code here ..
-     *                       these should be combined into one routine.
      */
     private byte[] getWaveSamples(int numberSamples, Utterance utterance) {
-        int numberChannels = getNumberOfChannels();
-        int pmSizeSamples;
-        float pp = 0;
-
         byte[] samples = new byte[numberSamples];
-        byte[] residuals = getResiduals();
-        int[] residualSizes = getResidualSizes();
-
-        FloatList outBuffer = FloatList.createList(numberChannels + 1);
-        FloatList lpcCoefficients = FloatList.createList(numberChannels);
-
-        double multiplier = (double) getLPCRange() / 65535.0;
-        int s = 0;
-
-        // for each frame in the LPC result
-        for (int r = 0, i = 0; i < numberOfFrames; i++) {
-
-            // unpack the LPC coefficients
-            short[] frame = getFrame(i);
-
-            FloatList lpcCoeffs = lpcCoefficients;
-            for (int k = 0; k < numberChannels; k++) {
-                lpcCoeffs.value = (float) ((frame[k] + 32768.0) * multiplier) + lpcMinimum;
-                lpcCoeffs = lpcCoeffs.next;
-            }
-
-            pmSizeSamples = residualSizes[i];
-
-            // resynthesis the signal, pmSizeSamples ~= 90
-            // what's in the loop is done for each residual
-            for (int j = 0; j < pmSizeSamples; j++, r++) {
-
-                FloatList backBuffer = outBuffer.prev;
-                float ob = residualToFloatMap[residuals[r] + 128];
-
-                lpcCoeffs = lpcCoefficients;
-                do {
-                    ob += lpcCoeffs.value * backBuffer.value;
-                    backBuffer = backBuffer.prev;
-                    lpcCoeffs = lpcCoeffs.next;
-                } while (lpcCoeffs != lpcCoefficients);
-
-                int sample = (int) (ob + (pp * POST_EMPHASIS));
-                samples[s++] = hibyte(sample);
-                samples[s++] = lobyte(sample);
-
-                outBuffer.value = pp = ob;
-                outBuffer = outBuffer.next;
-            }
-        }
+        getResynthesizer().fill(ByteBuffer.wrap(samples));
         return samples;
     }
 
@@ -462,84 +609,414 @@ public class LPCResult {
      * Play the sample data on the given player
      *
      * @param player        where to send the audio
-     * @param numberSamples the number of samples
+     * @param numberSamples the number of bytes of the samples
+     * @param buffer        the buffer to write the samples from, in
+     *                      the byte order of the samples
+     * @param resynthesizer the resynthesizer of the samples
+     * @param encoding      the encoding of the samples
      * @throws IOException if an error occurs while writing the audio data
      */
     private boolean playWaveSamples(AudioPlayer player,
                                     FreeTTSSpeakable speakable,
-                                    int numberSamples) throws IOException {
+                                    int numberSamples,
+                                    ByteBuffer buffer,
+                                    Resynthesizer resynthesizer,
+                                    AudioFormat.Encoding encoding) throws IOException {
+        if (buffer.capacity() < 2) {
+            throw new IllegalArgumentException("Sample buffer too small: " + buffer.capacity());
+        }
         boolean ok = true;
-        int numberChannels = getNumberOfChannels();
-        int pmSizeSamples;
-        float pp = 0;
-
-        byte[] samples = new byte[MAX_SAMPLE_SIZE];
-        byte[] residuals = getResiduals();
-        int[] residualSizes = getResidualSizes();
+        byte[] samples = buffer.array();
 
-        FloatList outBuffer = FloatList.createList(numberChannels + 1);
-        FloatList lpcCoefficients = FloatList.createList(numberChannels);
+        player.begin(numberSamples);
+        while ((ok &= !speakable.isCompleted()) && resynthesizer.fill(buffer.clear(), encoding) > 0) {
+            if (!player.write(samples, 0, buffer.position())) {
+                ok = false;
+            }
+        }
 
-        double multiplier = (double) getLPCRange() / 65535.0;
-        int s = 0;
+        // tell the AudioPlayer it is the end of Utterance
+        if (ok &= !speakable.isCompleted()) {
+            ok = player.end();
+        }
 
-        // for each frame in the LPC result
-        player.begin(numberSamples);
-        for (int r = 0, i = 0; (ok &= !speakable.isCompleted()) && i < numberOfFrames; i++) {
+        return ok;
+    }
 
-            // unpack the LPC coefficients
-            short[] frame = getFrame(i);
+    /**
+     * Returns a resynthesizer of the wave of this LPCResult.
+     *
+     * @return a resynthesizer at the first sample
+     */
+    public Resynthesizer getResynthesizer() {
+        return new Resynthesizer(this, 0, numberOfFrames, null);
+    }
 
-            FloatList lpcCoeffs = lpcCoefficients;
-            for (int k = 0; k < numberChannels; k++) {
-                lpcCoeffs.value = (float) ((frame[k] + 32768.0) * multiplier) + lpcMinimum;
-                lpcCoeffs = lpcCoeffs.next;
-            }
+    /**
+     * Returns a resynthesizer of the wave of a range of frames of this
+     * LPCResult.  The filter starts from silence at the first frame of
+     * the range.
+     *
+     * @param firstFrame the first frame to synthesize
+     * @param endFrame   the frame after the last frame to synthesize
+     * @return a resynthesizer at the first sample of the range
+     */
+    public Resynthesizer getResynthesizer(int firstFrame, int endFrame) {
+        return getResynthesizer(firstFrame, endFrame, sampleRate);
+    }
 
-            pmSizeSamples = residualSizes[i];
+    /**
+     * Returns a resynthesizer of the wave of a range of frames of this
+     * LPCResult at the given sample rate.  The filter starts from
+     * silence at the first frame of the range.  If the rate is not the
+     * one of this LPCResult, the wave is passed through a
+     * <code>Resampler</code> as it is synthesized.
+     *
+     * @param firstFrame       the first frame to synthesize
+     * @param endFrame         the frame after the last frame to
+     *                         synthesize
+     * @param outputSampleRate the sample rate of the samples written
+     * @return a resynthesizer at the first sample of the range
+     * @see Resampler
+     */
+    public Resynthesizer getResynthesizer(int firstFrame, int endFrame, int outputSampleRate) {
+        if (firstFrame < 0 || endFrame > numberOfFrames || firstFrame > endFrame) {
+            throw new IndexOutOfBoundsException("Frames " + firstFrame + " to " + endFrame
+                    + " of " + numberOfFrames);
+        }
+        Resampler resampler = outputSampleRate == sampleRate ? null
+                : new Resampler(sampleRate, outputSampleRate);
+        return new Resynthesizer(this, firstFrame, endFrame, resampler);
+    }
 
-            // resynthesis the signal, pmSizeSamples ~= 90
-            // what's in the loop is done for each residual
-            for (int j = 0; j < pmSizeSamples; j++, r++) {
+    /**
+     * Runs the LPC filter over the residuals of a range of frames of an
+     * LPCResult and writes the wave as signed 16 bit samples into the
+     * buffers it is given, in the byte order of each buffer.  Each call
+     * continues where the previous one stopped, so the wave can be
+     * streamed through a small buffer, or written into a buffer that
+     * holds all of it.  The filter itself is run by an
+     * <code>LPCFilter</code>, a block of samples at a time.  A
+     * resynthesizer may write the wave at another sample rate than the
+     * one of the LPCResult; then each block is passed through a
+     * <code>Resampler</code>, which carries the filter state from one
+     * block to the next.
+     */
+    public static class Resynthesizer {
+        /** the number of samples synthesized at a time for the resampler */
+        private static final int BLOCK_SIZE = 256;
+
+        private final LPCResult result;
+        /** the coefficients of frames that were not dequantized */
+        private final float[] unpacked;
+        /** the coefficients of the current frame */
+        private float[] coefficients;
+        private final float[] history;
+        private final double multiplier;
+        private final int endFrame;
+        /** the resampler, or null if the wave is written at its own rate */
+        private final Resampler resampler;
+        /** the number of samples of the frames, at their own rate */
+        private final int numberSamples;
+        /** the output of the resampler */
+        private float[] resampled;
+        /** the number of samples read from the resampler */
+        private long produced;
+        /** the excitation, and then the output, of the samples being synthesized */
+        private float[] values = new float[0];
+        /** the samples being written */
+        private int[] samples = new int[0];
+
+        /** where the most recent output is in the history */
+        private int head;
+        /** the previous output */
+        private float pp;
+        /** the next frame to unpack */
+        private int frame;
+        /** the number of samples left in the current frame */
+        private int remaining;
+        /** the next residual */
+        private int residual;
+        /** the number of samples left after the current frame */
+        private int remainingAfterFrame;
 
-                FloatList backBuffer = outBuffer.prev;
-                float ob = residualToFloatMap[residuals[r] + 128];
+        /**
+         * Creates a resynthesizer at the start of the given frames.
+         *
+         * @param result     the LPC result
+         * @param firstFrame the first frame to synthesize
+         * @param endFrame   the frame after the last frame to synthesize
+         * @param resampler  the resampler to pass the samples through,
+         *                   or <code>null</code>
+         */
+        Resynthesizer(LPCResult result, int firstFrame, int endFrame, Resampler resampler) {
+            this.result = result;
+            this.endFrame = endFrame;
+            this.resampler = resampler;
+            int numberChannels = result.getNumberOfChannels();
+            int historySize = Math.max(numberChannels, 1);
+            unpacked = new float[numberChannels];
+            coefficients = unpacked;
+            history = new float[2 * historySize];
+            multiplier = (double) result.getLPCRange() / 65535.0;
+            frame = firstFrame;
+            for (int i = 0; i < firstFrame; i++) {
+                residual += result.sizes[i];
+            }
+            for (int i = firstFrame; i < endFrame; i++) {
+                remainingAfterFrame += result.sizes[i];
+            }
+            numberSamples = remainingAfterFrame;
+            resampled = resampler == null ? null : new float[4 * BLOCK_SIZE];
+        }
 
-                lpcCoeffs = lpcCoefficients;
-                do {
-                    ob += lpcCoeffs.value * backBuffer.value;
-                    backBuffer = backBuffer.prev;
-                    lpcCoeffs = lpcCoeffs.next;
-                } while (lpcCoeffs != lpcCoefficients);
+        /**
+         * Returns the number of samples left to synthesize.
+         *
+         * @return the number of samples
+         */
+        public int getRemaining() {
+            if (resampler != null) {
+                return (int) (resampler.getOutputLength(numberSamples) - produced);
+            }
+            return remaining + remainingAfterFrame;
+        }
 
-                int sample = (int) (ob + (pp * POST_EMPHASIS));
-                samples[s++] = hibyte(sample);
-                samples[s++] = lobyte(sample);
+        /**
+         * Writes the next samples into the given buffer as 16 bit
+         * linear samples, from its position on, and moves the position
+         * past them.
+         *
+         * @param buffer where to write the samples; only whole samples
+         *               are written
+         * @return the number of samples written, 0 if the buffer has
+         * no room for a sample, or -1 at the end of the wave
+         */
+        public int fill(ByteBuffer buffer) {
+            return fill(buffer, AudioFormat.Encoding.PCM_SIGNED);
+        }
 
-                if (s >= MAX_SAMPLE_SIZE) {
-                    if ((ok &= !speakable.isCompleted()) && !player.write(samples)) {
-                        ok = false;
+        /**
+         * Writes the next samples into the given buffer, from its
+         * position on, and moves the position past them.  Samples are
+         * written as signed 16 bit linear samples in the byte order of
+         * the buffer, or as 8 bit G.711 codes.
+         *
+         * @param buffer   where to write the samples; only whole
+         *                 samples are written
+         * @param encoding the encoding of the samples:
+         *                 <code>PCM_SIGNED</code>, <code>ULAW</code> or
+         *                 <code>ALAW</code>
+         * @return the number of samples written, 0 if the buffer has
+         * no room for a sample, or -1 at the end of the wave
+         * @throws IllegalArgumentException if the encoding is not
+         *                                  supported
+         */
+        public int fill(ByteBuffer buffer, AudioFormat.Encoding encoding) {
+            int sampleSize = getSampleSizeInBytes(encoding);
+            boolean ulaw = encoding.equals(AudioFormat.Encoding.ULAW);
+            int written = 0;
+            int count;
+            while ((count = next(buffer.remaining() / sampleSize)) > 0) {
+                int[] samples = this.samples;
+                if (sampleSize == 1) {
+                    if (buffer.hasArray()) {
+                        byte[] bytes = buffer.array();
+                        int b = buffer.arrayOffset() + buffer.position();
+                        if (ulaw) {
+                            for (int j = 0; j < count; j++) {
+                                bytes[b++] = WaveUtils.linearToUlaw((short) samples[j]);
+                            }
+                        } else {
+                            for (int j = 0; j < count; j++) {
+                                bytes[b++] = WaveUtils.linearToAlaw((short) samples[j]);
+                            }
+                        }
+                        buffer.position(buffer.position() + count);
+                    } else {
+                        for (int j = 0; j < count; j++) {
+                            buffer.put(ulaw ? WaveUtils.linearToUlaw((short) samples[j])
+                                    : WaveUtils.linearToAlaw((short) samples[j]));
+                        }
+                    }
+                } else if (buffer.hasArray()) {
+                    byte[] bytes = buffer.array();
+                    int b = buffer.arrayOffset() + buffer.position();
+                    if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+                        for (int j = 0; j < count; j++) {
+                            bytes[b++] = (byte) (samples[j] >>> 8);
+                            bytes[b++] = (byte) samples[j];
+                        }
+                    } else {
+                        for (int j = 0; j < count; j++) {
+                            bytes[b++] = (byte) samples[j];
+                            bytes[b++] = (byte) (samples[j] >>> 8);
+                        }
+                    }
+                    buffer.position(buffer.position() + 2 * count);
+                } else {
+                    for (int j = 0; j < count; j++) {
+                        buffer.putShort((short) samples[j]);
                     }
-                    s = 0;
                 }
+                written += count;
+            }
+            return written == 0 && getRemaining() == 0 ? -1 : written;
+        }
 
-                outBuffer.value = pp = ob;
-                outBuffer = outBuffer.next;
+        /**
+         * Writes the next samples into the given buffer, from its
+         * position on, and moves the position past them.
+         *
+         * @param buffer where to write the samples
+         * @return the number of samples written, 0 if the buffer has
+         * no room for a sample, or -1 at the end of the wave
+         */
+        public int fill(ShortBuffer buffer) {
+            int written = 0;
+            int count;
+            while ((count = next(buffer.remaining())) > 0) {
+                int[] samples = this.samples;
+                if (buffer.hasArray()) {
+                    short[] shorts = buffer.array();
+                    int b = buffer.arrayOffset() + buffer.position();
+                    for (int j = 0; j < count; j++) {
+                        shorts[b++] = (short) samples[j];
+                    }
+                    buffer.position(buffer.position() + count);
+                } else {
+                    for (int j = 0; j < count; j++) {
+                        buffer.put((short) samples[j]);
+                    }
+                }
+                written += count;
             }
+            return written == 0 && getRemaining() == 0 ? -1 : written;
         }
 
-        // write out the very last samples
-        if ((ok &= !speakable.isCompleted()) && s > 0) {
-            ok = player.write(samples, 0, s);
-            s = 0;
+        /**
+         * Puts the next samples into <code>samples</code>, at the
+         * output sample rate.
+         *
+         * @param max the largest number of samples
+         * @return the number of samples, 0 at the end of the wave or if
+         * <code>max</code> is 0
+         */
+        private int next(int max) {
+            Resampler resampler = this.resampler;
+            if (resampler == null) {
+                return synthesize(max);
+            }
+            while (max > 0) {
+                int count = resampler.read(resampled, 0, Math.min(max, resampled.length));
+                if (count > 0) {
+                    if (samples.length < count) {
+                        samples = new int[count];
+                    }
+                    int[] samples = this.samples;
+                    for (int j = 0; j < count; j++) {
+                        int sample = Math.round(resampled[j]);
+                        samples[j] = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                    }
+                    produced += count;
+                    return count;
+                } else if (resampler.isFinished()) {
+                    return 0;
+                }
+                int synthesized = synthesize(BLOCK_SIZE);
+                if (synthesized == 0) {
+                    resampler.end();
+                } else {
+                    resampler.write(values, 0, synthesized);
+                }
+            }
+            return 0;
         }
 
-        // tell the AudioPlayer it is the end of Utterance
-        if (ok &= !speakable.isCompleted()) {
-            ok = player.end();
+        /**
+         * Maps the residuals of a frame that refers to a buffer to
+         * excitation values.  The frame is silent outside of the
+         * residuals taken from the buffer.
+         *
+         * @param index    the frame
+         * @param position the first sample to map, in the frame
+         * @param count    the number of samples to map
+         */
+        private void dequantize(int index, int position, int count) {
+            int start = Math.min(Math.max(result.residualStarts[index] - position, 0), count);
+            int end = Math.min(Math.max(result.residualEnds[index] - position, start), count);
+            if (start < end) {
+                FILTER.dequantize(result.residualBuffers[index], result.residualOffsets[index] + position + start,
+                        residualToFloatMap, values, end - start);
+                if (start > 0) {
+                    System.arraycopy(values, 0, values, start, end - start);
+                }
+            }
+            float silence = residualToFloatMap[128];
+            Arrays.fill(values, 0, start, silence);
+            Arrays.fill(values, end, count, silence);
         }
 
-        return ok;
+        /**
+         * Synthesizes the next samples of the current frame into
+         * <code>samples</code>, and into <code>values</code> before
+         * they are truncated, moving on to the next frame first if
+         * the current one is done.
+         *
+         * @param max the largest number of samples to synthesize
+         * @return the number of samples synthesized, 0 at the end of
+         * the wave or if <code>max</code> is 0
+         */
+        private int synthesize(int max) {
+            while (remaining == 0) {
+                if (frame >= endFrame || max <= 0) {
+                    return 0;
+                }
+                float[] frameCoefficients = result.coefficients[frame];
+                if (frameCoefficients != null && frameCoefficients.length == unpacked.length) {
+                    coefficients = frameCoefficients;
+                } else {
+                    // unpack the LPC coefficients
+                    short[] frameValues = result.getFrame(frame);
+                    for (int k = 0; k < unpacked.length; k++) {
+                        unpacked[k] = (float) ((frameValues[k] + 32768.0) * multiplier) + result.lpcMinimum;
+                    }
+                    coefficients = unpacked;
+                }
+                remaining = result.sizes[frame++];
+                remainingAfterFrame -= remaining;
+            }
+
+            int count = Math.min(remaining, max);
+            if (values.length < count) {
+                values = new float[count];
+                samples = new int[count];
+            }
+            float[] values = this.values;
+            int[] samples = this.samples;
+            ByteBuffer[] buffers = result.residualBuffers;
+            if (buffers != null && buffers[frame - 1] != null) {
+                dequantize(frame - 1, result.sizes[frame - 1] - remaining, count);
+            } else if (result.residuals != null) {
+                FILTER.dequantize(result.residuals, residual, residualToFloatMap, values, count);
+            } else {
+                Arrays.fill(values, 0, count, residualToFloatMap[128]);
+            }
+            head = FILTER.filter(coefficients, history, head, values, count);
+
+            float pp = this.pp;
+            for (int j = 0; j < count; j++) {
+                float ob = values[j];
+                double sample = ob + (pp * POST_EMPHASIS);
+                values[j] = (float) sample;
+                samples[j] = (int) sample;
+                pp = ob;
+            }
+            this.pp = pp;
+            residual += count;
+            remaining -= count;
+            return count;
+        }
     }
 
     /**
@@ -594,6 +1071,7 @@ public class LPCResult {
             pw.print(sizes[i] + " ");
         }
         pw.print("\nResiduals: ");
+        byte[] residuals = getResiduals();
         for (i = 0; i < getNumberOfSamples(); i++) {
             if (residuals[i] == 0) {
                 pw.print(255);
@@ -705,69 +1183,3 @@ public class LPCResult {
         }
     }
 }
-
-/**
- * FloatList is used to maintain a circular buffer of float values.
- * It is essentially an index-free array of floats that can easily be
- * iterated through forwards or backwards. Keeping values in an index
- * free list like this eliminates index bounds checking which can
- * save us some time.
- */
-class FloatList {
-
-    float value;
-    FloatList next;
-    FloatList prev;
-
-    /**
-     * Creates a new node
-     */
-    FloatList() {
-        value = 0.0F;
-        next = null;
-        prev = null;
-    }
-
-    /**
-     * Creates a circular list of nodes of the given size
-     *
-     * @param size the number of nodes in the list
-     * @return an entry in the list.
-     */
-    static FloatList createList(int size) {
-        FloatList prev = null;
-        FloatList first = null;
-
-        for (int i = 0; i < size; i++) {
-            FloatList cur = new FloatList();
-            cur.prev = prev;
-            if (prev == null) {
-                first = cur;
-            } else {
-                prev.next = cur;
-            }
-            prev = cur;
-        }
-        first.prev = prev;
-        prev.next = first;
-
-        return first;
-    }
-
-    /**
-     * prints out the contents of this list
-     *
-     * @param title the title of the dump
-     * @param list  the list to dump
-     */
-    static void dump(String title, FloatList list) {
-        System.out.println(title);
-
-        FloatList cur = list;
-        do {
-            System.out.println("Item: " + cur.value);
-            cur = cur.next;
-        } while (cur != list);
-    }
-}
-
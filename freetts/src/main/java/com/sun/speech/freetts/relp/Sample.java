@@ -16,19 +16,61 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
+import com.sun.speech.freetts.util.Utilities;
+
 
 /**
  * A single short term sample containing Residual Excited Linear Predictive
  * (RELP) frame and residual voice data.
+ * <p>
+ * The frame holds the LPC coefficients quantized to 16 bits.  A sample
+ * can also keep them as floats, dequantized once with the coefficient
+ * minimum and range of its database, so that they do not have to be
+ * dequantized each time the sample is synthesized.  The 16 bit frame
+ * is kept as well, so the frame then takes three times the memory.
+ * Unit databases do so for all their samples if the following
+ * property is set:
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.relp.floatFrames=true
+ * </pre>
+ * <p>
+ * The residuals of a sample loaded from a memory mapped database can
+ * be left in the mapped file instead of being copied to the heap.  The
+ * sample then only holds where they are, and synthesis reads them from
+ * the page cache.  This is done if the following property is set:
+ *
+ * <pre>
+ *   -Dcom.sun.speech.freetts.relp.mappedResiduals=true
+ * </pre>
  */
 public class Sample {
 
+    /**
+     * The system property that makes unit databases keep the frames
+     * of their samples as floats.
+     */
+    public final static String PROP_FLOAT_FRAMES = "com.sun.speech.freetts.relp.floatFrames";
+
+    /**
+     * The system property that makes samples loaded from a memory
+     * mapped database refer to their residuals in the mapped file.
+     */
+    public final static String PROP_MAPPED_RESIDUALS = "com.sun.speech.freetts.relp.mappedResiduals";
+
+    private final static boolean mappedResiduals = Utilities.getBoolean(PROP_MAPPED_RESIDUALS);
+
     private final short[] frameData;
     private final byte[] residualData;
     private final int residualSize;
+    private final ByteBuffer residualBuffer;
+    private final int residualOffset;
+    private float[] coefficients;
 
     /**
      * Constructs a RELP Sample from its component parts
@@ -37,9 +79,7 @@ public class Sample {
      * @param residualData the residual data
      */
     public Sample(short[] frameData, byte[] residualData) {
-        this.frameData = frameData;
-        this.residualData = residualData;
-        this.residualSize = 0;
+        this(frameData, residualData, 0);
     }
 
     /**
@@ -52,6 +92,27 @@ public class Sample {
         this.frameData = frameData;
         this.residualData = residualData;
         this.residualSize = residualSize;
+        this.residualBuffer = null;
+        this.residualOffset = 0;
+    }
+
+    /**
+     * Constructs a Sample whose residuals are kept in a buffer, usually
+     * a memory mapped database.  The buffer is only read with absolute
+     * gets, so its position does not matter.
+     *
+     * @param frameData      the framedata
+     * @param residualBuffer the buffer that holds the residuals
+     * @param residualOffset the index of the first residual in the
+     *                       buffer
+     * @param residualSize   the number of residuals
+     */
+    public Sample(short[] frameData, ByteBuffer residualBuffer, int residualOffset, int residualSize) {
+        this.frameData = frameData;
+        this.residualData = null;
+        this.residualSize = residualSize;
+        this.residualBuffer = residualBuffer;
+        this.residualOffset = residualOffset;
     }
 
     /**
@@ -61,6 +122,8 @@ public class Sample {
      * @param numChannels the number of channels per frame
      */
     public Sample(BufferedReader reader, int numChannels) {
+        residualBuffer = null;
+        residualOffset = 0;
         try {
             String line = reader.readLine();
 
@@ -114,14 +177,69 @@ public class Sample {
     }
 
     /**
-     * Gets the residual data associated with this sample
+     * Dequantizes the frame data into LPC coefficients and keeps them
+     * with this sample.  The coefficients are the ones
+     * <code>LPCResult</code> computes from the frame data.
+     *
+     * @param coeffMin   the minimum coefficient
+     * @param coeffRange the range of coefficients
+     */
+    public void dequantize(float coeffMin, float coeffRange) {
+        double multiplier = (double) coeffRange / 65535.0;
+        float[] coefficients = new float[frameData.length];
+        for (int k = 0; k < coefficients.length; k++) {
+            coefficients[k] = (float) ((frameData[k] + 32768.0) * multiplier) + coeffMin;
+        }
+        this.coefficients = coefficients;
+    }
+
+    /**
+     * Gets the LPC coefficients of this sample, if it was dequantized.
+     *
+     * @return the coefficients, or <code>null</code>
+     * @see #dequantize
+     */
+    public float[] getCoefficients() {
+        return coefficients;
+    }
+
+    /**
+     * Gets the residual data associated with this sample.  If the
+     * residuals are kept in a buffer, they are copied out of it.
      *
      * @return the residual data associated with this sample
      */
     public byte[] getResidualData() {
+        if (residualData == null) {
+            byte[] data = new byte[residualSize];
+            residualBuffer.get(residualOffset, data);
+            return data;
+        }
         return residualData;
     }
 
+    /**
+     * Gets the buffer that the residuals of this sample are kept in.
+     *
+     * @return the buffer, or <code>null</code> if the residuals are
+     * kept in an array
+     * @see #getResidualOffset
+     */
+    public ByteBuffer getResidualBuffer() {
+        return residualBuffer;
+    }
+
+    /**
+     * Gets the index of the first residual of this sample in its
+     * residual buffer.
+     *
+     * @return the index
+     * @see #getResidualBuffer
+     */
+    public int getResidualOffset() {
+        return residualOffset;
+    }
+
     /**
      * Returns the number of residuals in this Sample.
      *
@@ -131,6 +249,23 @@ public class Sample {
         return residualSize;
     }
 
+    /**
+     * Returns an estimate of the heap memory held by this sample, in
+     * bytes.  Residuals kept in a buffer are not counted.
+     *
+     * @return the number of bytes
+     */
+    public int getMemorySize() {
+        int size = 48 + 16 + 2 * frameData.length;
+        if (residualData != null) {
+            size += 16 + residualData.length;
+        }
+        if (coefficients != null) {
+            size += 16 + 4 * coefficients.length;
+        }
+        return size;
+    }
+
     /**
      * Returns the normalized residual data. You may not want to
      * call this function because of the overhead involved.
@@ -139,6 +274,9 @@ public class Sample {
      * @return the normalized data.
      */
     public int getResidualData(int which) {
+        if (residualData == null) {
+            return ((int) residualBuffer.get(residualOffset + which)) + 128;
+        }
         return ((int) residualData[which]) + 128;
     }
 
@@ -164,7 +302,8 @@ public class Sample {
         System.out.println();
         System.out.println(" RD Count: " + getResidualSize());
 //        getResidualData().length);
-        for (int i = 0; i < getResidualData().length; i++) {
+        int residualCount = getResidualData().length;
+        for (int i = 0; i < residualCount; i++) {
             System.out.print(" " + getResidualData(i));
         }
         System.out.println();
@@ -181,6 +320,7 @@ public class Sample {
         for (short frameDatum : frameData) {
             bb.putShort(frameDatum);
         }
+        byte[] residualData = getResidualData();
         bb.putInt(residualData.length);
         bb.put(residualData);
     }
@@ -196,19 +336,24 @@ public class Sample {
         for (short frameDatum : frameData) {
             os.writeShort(frameDatum);
         }
+        byte[] residualData = getResidualData();
         os.writeInt(residualData.length);
-        for (byte residualDatum : residualData) {
-            os.writeByte(residualDatum);
-        }
+        os.write(residualData);
     }
 
     /**
-     * Loads the samples from the byte bufer
+     * Loads the samples from the byte bufer.  If the buffer is memory
+     * mapped and the <code>mappedResiduals</code> property is set, the
+     * residuals are left in it.
      *
      * @param bb the byte buffer to read the data from.
      * @throws IOException if IO error occurs
+     * @see #mapBinary
      */
     public static Sample loadBinary(ByteBuffer bb) throws IOException {
+        if (mappedResiduals && bb instanceof MappedByteBuffer) {
+            return mapBinary(bb);
+        }
         int frameDataSize = bb.getInt();
 
         short[] frameData = new short[frameDataSize];
@@ -227,6 +372,31 @@ public class Sample {
         return new Sample(frameData, residualData, residualDataSize);
     }
 
+    /**
+     * Loads the samples from the byte buffer, copying the frame data
+     * but leaving the residuals in the buffer.  The sample refers to
+     * the buffer for as long as it is used.
+     *
+     * @param bb the byte buffer to read the data from
+     * @return the sample
+     * @throws IOException if IO error occurs
+     */
+    public static Sample mapBinary(ByteBuffer bb) throws IOException {
+        int frameDataSize = bb.getInt();
+
+        short[] frameData = new short[frameDataSize];
+
+        for (int i = 0; i < frameData.length; i++) {
+            frameData[i] = bb.getShort();
+        }
+
+        int residualDataSize = bb.getInt();
+        int residualOffset = bb.position();
+        bb.position(residualOffset + residualDataSize);
+
+        return new Sample(frameData, bb, residualOffset, residualDataSize);
+    }
+
     /**
      * Loads the samples from the given channel
      *
@@ -272,16 +442,7 @@ public class Sample {
             }
         }
 
-        if (residualData.length != other.residualData.length) {
-            return false;
-        }
-
-        for (int i = 0; i < residualData.length; i++) {
-            if (residualData[i] != other.residualData[i]) {
-                return false;
-            }
-        }
-        return true;
+        return Arrays.equals(getResidualData(), other.getResidualData());
     }
 }
 
@@ -29,6 +29,8 @@ public class SampleSet {
 
     private Sample[] samples;
     private SampleInfo sampleInfo;
+    /** where each sample starts in the residuals, then their size */
+    private int[] residualOffsets;
 
     /**
      * Reads a SampleSet from the input reader.
@@ -52,6 +54,7 @@ public class SampleSet {
             for (int i = 0; i < numSamples; i++) {
                 samples[i] = new Sample(reader, numChannels);
             }
+            residualOffsets = getResidualOffsets(samples);
         } catch (NoSuchElementException nse) {
             throw new Error("Parsing sample error " + nse.getMessage());
         }
@@ -71,6 +74,7 @@ public class SampleSet {
         for (int i = 0; i < numSamples; i++) {
             samples[i] = Sample.loadBinary(bb);
         }
+        residualOffsets = getResidualOffsets(samples);
     }
 
     /**
@@ -87,6 +91,7 @@ public class SampleSet {
         for (int i = 0; i < numSamples; i++) {
             samples[i] = Sample.loadBinary(is);
         }
+        residualOffsets = getResidualOffsets(samples);
     }
 
     /**
@@ -103,6 +108,18 @@ public class SampleSet {
         }
     }
 
+    /**
+     * Dequantizes the frames of all samples of this set, using the
+     * coefficient minimum and range of its sample info.
+     *
+     * @see Sample#dequantize
+     */
+    public void dequantize() {
+        for (Sample sample : samples) {
+            sample.dequantize(sampleInfo.getCoeffMin(), sampleInfo.getCoeffRange());
+        }
+    }
+
     /**
      * return the sample associated with the index
      *
@@ -113,6 +130,15 @@ public class SampleSet {
         return samples[index];
     }
 
+    /**
+     * Returns the number of samples in this set.
+     *
+     * @return the number of samples
+     */
+    public int getNumberOfSamples() {
+        return samples.length;
+    }
+
     /**
      * Retrieves the info on this SampleSet
      *
@@ -131,12 +157,75 @@ public class SampleSet {
      * @return the size of the unit
      */
     public int getUnitSize(int start, int end) {
-        int size = 0;
+        return residualOffsets[end] - residualOffsets[start];
+    }
 
-        for (int i = start; i < end; i++) {
-            size += getFrameSize(i);
+    /**
+     * Retrieves the sample of a unit that is nearest to a position in
+     * the residuals of the unit.
+     *
+     * @param start the start of the unit
+     * @param end   the end of the unit
+     * @param index the position, from the start of the unit
+     * @return the nearest sample
+     */
+    public Sample getNearestSample(int start, int end, float index) {
+        return samples[findNearestSample(residualOffsets, start, end, index)];
+    }
+
+    /**
+     * Sums up the residual sizes of samples.
+     *
+     * @param samples the samples
+     * @return where the residuals of each sample start, counting from
+     * those of the first, followed by the size of them all
+     */
+    public static int[] getResidualOffsets(Sample[] samples) {
+        int[] offsets = new int[samples.length + 1];
+        for (int i = 0; i < samples.length; i++) {
+            offsets[i + 1] = offsets[i] + samples[i].getResidualSize();
+        }
+        return offsets;
+    }
+
+    /**
+     * Finds the sample of a unit that is nearest to a position in the
+     * residuals of the unit: the first sample whose start is nearer to
+     * the position than its end, or else the last sample.
+     * <p>
+     * The samples that end before the position cannot be nearest, so
+     * they are skipped by a binary search, and only the samples from
+     * there on are checked.
+     *
+     * @param offsets where the residuals of each sample start, as
+     *                returned by <code>getResidualOffsets</code>
+     * @param start   the first sample of the unit
+     * @param end     the end of the unit
+     * @param index   the position, from the start of the unit
+     * @return the index of the nearest sample
+     */
+    public static int findNearestSample(int[] offsets, int start, int end, float index) {
+        int base = offsets[start];
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((float) (offsets[middle + 1] - base) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < end; i++) {
+            int iSize = offsets[i] - base;
+            int nSize = offsets[i + 1] - base;
+            if (Math.abs(index - (float) iSize) <
+                    Math.abs(index - (float) nSize)) {
+                return i;
+            }
         }
-        return size;
+        return end - 1;
     }
 
     /**
@@ -146,7 +235,7 @@ public class SampleSet {
      * @return the size of the frame
      */
     public int getFrameSize(int frame) {
-        return samples[frame].getResidualSize();
+        return residualOffsets[frame + 1] - residualOffsets[frame];
     }
 }
 
@@ -0,0 +1,61 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.relp;
+
+
+/**
+ * Provides the plain implementation of the LPC filter.  The products
+ * are added in order of the coefficients, so the output does not
+ * depend on the platform.
+ */
+public class ScalarLPCFilter implements LPCFilter {
+
+    /**
+     * Runs the LPC filter over a block of samples.
+     *
+     * @param coefficients the LPC coefficients
+     * @param history      the past outputs, most recent first
+     * @param head         where the most recent output is in
+     *                     <code>history</code>
+     * @param values       the excitation of the samples on entry, and
+     *                     the outputs of the filter on return
+     * @param count        the number of samples
+     * @return where the most recent output is in <code>history</code>
+     */
+    @Override
+    public int filter(float[] coefficients, float[] history, int head, float[] values, int count) {
+        int numberChannels = coefficients.length;
+        int historySize = history.length / 2;
+        int p = head;
+        for (int j = 0; j < count; j++) {
+            float ob = values[j];
+            for (int k = 0; k < numberChannels; k++) {
+                ob += coefficients[k] * history[p + k];
+            }
+            values[j] = ob;
+            p = (p == 0 ? historySize : p) - 1;
+            history[p] = history[p + historySize] = ob;
+        }
+        return p;
+    }
+
+    /**
+     * Maps residuals to excitation values.
+     *
+     * @param residuals the residuals
+     * @param offset    the first residual to map
+     * @param table     the excitation value of each residual
+     * @param values    where to put the excitation values
+     * @param count     the number of residuals to map
+     */
+    @Override
+    public void dequantize(byte[] residuals, int offset, float[] table, float[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = table[residuals[offset + i] + 128];
+        }
+    }
+}
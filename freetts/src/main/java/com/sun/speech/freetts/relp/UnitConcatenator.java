@@ -11,6 +11,8 @@
 
 package com.sun.speech.freetts.relp;
 
+import java.nio.ByteBuffer;
+
 import com.sun.speech.freetts.FeatureSet;
 import com.sun.speech.freetts.Item;
 import com.sun.speech.freetts.ProcessException;
@@ -26,6 +28,10 @@ import com.sun.speech.freetts.util.Utilities;
  * result. This class is an UtteranceProcessor. It defines a method
  * <code> processUtterance </code> that helps populate the
  * target_lpcres relation.
+ * <p>
+ * The residuals of samples that are kept in a memory mapped database
+ * (see <code>Sample.PROP_MAPPED_RESIDUALS</code>) are not copied: the
+ * LPC result refers to them where they are.
  *
  * @see LPCResult
  */
@@ -104,18 +110,22 @@ public class UnitConcatenator implements UtteranceProcessor {
                 Sample sample = unit.getNearestSample(uIndex);
 
                 // Get LPC coefficients by copying
-                lpcResult.setFrame(pmI, sample.getFrameData());
+                lpcResult.setFrame(pmI, sample.getFrameData(), sample.getCoefficients());
 
                 // Get residual by copying
                 residualSize = lpcResult.getFrameShift(pmI);
 
                 residualSizes[pmI] = residualSize;
-                byte[] residualData = sample.getResidualData();
+                ByteBuffer residualBuffer = sample.getResidualBuffer();
 
                 if (addResidualMethod == ADD_RESIDUAL_PULSE) {
-                    lpcResult.copyResidualsPulse(residualData, targetResidualPosition, residualSize);
+                    lpcResult.copyResidualsPulse(sample.getResidualData(), targetResidualPosition, residualSize);
+                } else if (residualBuffer != null) {
+                    // refer to the residuals where the database keeps them
+                    lpcResult.setResiduals(pmI, residualBuffer, sample.getResidualOffset(),
+                            sample.getResidualSize());
                 } else {
-                    lpcResult.copyResiduals(residualData, targetResidualPosition, residualSize);
+                    lpcResult.copyResiduals(sample.getResidualData(), targetResidualPosition, residualSize);
                 }
 
                 targetResidualPosition += residualSize;
@@ -0,0 +1,214 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * A thread-safe, size-bounded cache that evicts the least recently
+ * used entries first.  The size of each entry is given by a weigher,
+ * so the cache can be bounded by entry count (the default, where every
+ * entry weighs one) or by an estimate such as bytes.  Hits, misses and
+ * evictions are counted so that the effectiveness of the cache can be
+ * reported.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LRUCache<K, V> {
+
+    /**
+     * The entries, in access order.
+     */
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum total weight of the entries.
+     */
+    private final long capacity;
+
+    /**
+     * Computes the weight of a value.
+     */
+    private final ToLongFunction<V> weigher;
+
+    /**
+     * The current total weight of the entries.
+     */
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache that holds at most the given number of entries.
+     *
+     * @param capacity the maximum number of entries
+     */
+    public LRUCache(long capacity) {
+        this(capacity, value -> 1);
+    }
+
+    /**
+     * Creates a cache whose entries weigh at most the given total.
+     *
+     * @param capacity the maximum total weight
+     * @param weigher  computes the weight of a value
+     */
+    public LRUCache(long capacity, ToLongFunction<V> weigher) {
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value for the given key and marks it as recently
+     * used.
+     *
+     * @param key the key
+     * @return the value, or <code>null</code> if it is not cached
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches the given value, evicting the least recently used
+     * entries as needed.  A value that weighs more than the whole
+     * cache is not stored.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > capacity) {
+            remove(key);
+            return;
+        }
+        V old = map.put(key, value);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+        weight += valueWeight;
+
+        Iterator<Map.Entry<K, V>> i = map.entrySet().iterator();
+        while (weight > capacity && i.hasNext()) {
+            Map.Entry<K, V> eldest = i.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            i.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the value for the given key.
+     *
+     * @param key the key
+     * @return the removed value, or <code>null</code>
+     */
+    public synchronized V remove(K key) {
+        V old = map.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+        return old;
+    }
+
+    /**
+     * Removes all entries.  The statistics are kept.
+     */
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the current total weight of the entries.
+     *
+     * @return the total weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the maximum total weight of the entries.
+     *
+     * @return the capacity
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found a value.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no value.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within capacity.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of lookups that found a value.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns a summary of the cache statistics.
+     *
+     * @return the statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("size %d weight %d/%d hits %d misses %d evictions %d hit rate %.3f",
+                map.size(), weight, capacity, hits, misses, evictions, getHitRate());
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package com.sun.speech.freetts.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Converts a stream of samples from one sample rate to another with a
+ * polyphase filter.  The rates are reduced to a ratio <i>L/M</i>; each
+ * output sample is the dot product of the last input samples with one
+ * of <i>L</i> phases of a Kaiser windowed sinc low pass filter, which
+ * cuts off below the lower of the two Nyquist frequencies.
+ *
+ * <p>Samples are written and read in chunks of any size.  The input
+ * still needed by the filter is kept between chunks, so the output
+ * does not depend on how the input was divided.  Once all input is
+ * written, <code>end</code> lets the filter run out over silence.  The
+ * output is delayed by nothing: output sample <i>k</i> is the input at
+ * time <i>k M / L</i>, and there are
+ * <code>getOutputLength(inputLength)</code> of them.
+ *
+ * <p>A resampler is not thread safe.  Filters are shared between
+ * resamplers of the same rates.
+ */
+public class Resampler {
+
+    /** The number of zero crossings of the sinc on each side. */
+    private static final int ZERO_CROSSINGS = 8;
+
+    /** The shape of the Kaiser window, for about 80 dB of stop band. */
+    private static final double KAISER_BETA = 8.0;
+
+    /** The part of the pass band kept below the cut off frequency. */
+    private static final double ROLLOFF = 0.92;
+
+    /** The filter phases of each ratio of rates. */
+    private static final Map<String, float[][]> filters = new ConcurrentHashMap<>();
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final float[][] phases;
+
+    /** input samples; <code>input[i]</code> is sample <code>base + i</code> */
+    private float[] input;
+    /** the index of the first input sample kept */
+    private long base;
+    /** the number of input samples written */
+    private long inputLength;
+    /** the index of the next output sample */
+    private long outputIndex;
+    /** true once all input was written */
+    private boolean ended;
+
+    /**
+     * Creates a resampler.
+     *
+     * @param inputRate  the sample rate of the input
+     * @param outputRate the sample rate of the output
+     * @throws IllegalArgumentException if a rate is not positive
+     */
+    public Resampler(int inputRate, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Bad sample rates " + inputRate + " to " + outputRate);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        up = outputRate / gcd;
+        down = inputRate / gcd;
+        taps = 2 * ZERO_CROSSINGS * Math.max(1, (down + up - 1) / up);
+        phases = filters.computeIfAbsent(up + "/" + down, k -> createPhases(up, down, taps));
+        input = new float[4 * taps];
+        base = -taps;
+    }
+
+    /**
+     * Returns the sample rate of the input.
+     *
+     * @return the sample rate
+     */
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    /**
+     * Returns the sample rate of the output.
+     *
+     * @return the sample rate
+     */
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /**
+     * Returns the number of output samples of an input.
+     *
+     * @param inputLength the number of input samples
+     * @return the number of output samples
+     */
+    public long getOutputLength(long inputLength) {
+        return (inputLength * up + down - 1) / down;
+    }
+
+    /**
+     * Adds samples to the input.
+     *
+     * @param samples the samples
+     * @param offset  the first sample to add
+     * @param length  the number of samples to add
+     * @throws IllegalStateException if the input has ended
+     */
+    public void write(float[] samples, int offset, int length) {
+        if (ended) {
+            throw new IllegalStateException("Input has ended");
+        }
+        int used = (int) (inputLength - base);
+        if (used + length > input.length) {
+            // drop the input the next output no longer needs
+            long first = Math.min(getInputIndex(outputIndex) - taps + 1, inputLength);
+            int drop = (int) (first - base);
+            System.arraycopy(input, drop, input, 0, used - drop);
+            base = first;
+            used -= drop;
+            if (used + length > input.length) {
+                input = Arrays.copyOf(input, Math.max(used + length, 2 * input.length));
+            }
+        }
+        System.arraycopy(samples, offset, input, used, length);
+        inputLength += length;
+    }
+
+    /**
+     * Marks the end of the input.  The output runs on over silence
+     * until it has <code>getOutputLength</code> samples.
+     */
+    public void end() {
+        ended = true;
+    }
+
+    /**
+     * Returns true if all output was read.
+     *
+     * @return <code>true</code> if the input has ended and all of its
+     * output was read
+     */
+    public boolean isFinished() {
+        return ended && outputIndex >= getOutputLength(inputLength);
+    }
+
+    /**
+     * Reads the output samples that the input written so far allows.
+     *
+     * @param samples where to put the output samples
+     * @param offset  where to put the first sample
+     * @param length  the largest number of samples to read
+     * @return the number of samples read; 0 if more input is needed or
+     * the output is finished
+     */
+    public int read(float[] samples, int offset, int length) {
+        long end = ended ? getOutputLength(inputLength) : Long.MAX_VALUE;
+        float[] input = this.input;
+        int taps = this.taps;
+        int count = 0;
+        while (count < length && outputIndex < end) {
+            long position = outputIndex * down + (long) taps * up / 2;
+            long last = position / up;
+            if (last >= inputLength && !ended) {
+                break;
+            }
+            float[] phase = phases[(int) (position % up)];
+            int i = (int) (last - base);
+            int available = (int) (inputLength - base);
+            float sum = 0.0f;
+            if (i < available) {
+                for (int j = 0; j < taps; j++) {
+                    sum += phase[j] * input[i - j];
+                }
+            } else {
+                // past the end of the input, which is silent
+                for (int j = i - available + 1; j < taps; j++) {
+                    sum += phase[j] * input[i - j];
+                }
+            }
+            samples[offset + count++] = sum;
+            outputIndex++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the latest input sample used by an output
+     * sample.
+     *
+     * @param index the index of the output sample
+     * @return the index of the input sample
+     */
+    private long getInputIndex(long index) {
+        return (index * down + (long) taps * up / 2) / up;
+    }
+
+    /**
+     * Creates the phases of the low pass filter for a ratio of rates.
+     * Phase <i>p</i> holds the taps <i>p</i>, <i>p + L</i>, ... of the
+     * filter, scaled by <i>L</i> to make up for the zeros that
+     * upsampling puts between the input samples.
+     *
+     * @param up   the upsampling factor <i>L</i>
+     * @param down the downsampling factor <i>M</i>
+     * @param taps the number of taps of each phase
+     * @return the phases
+     */
+    private static float[][] createPhases(int up, int down, int taps) {
+        int length = taps * up;
+        double cutoff = ROLLOFF * 0.5 / Math.max(up, down);
+        double center = length / 2.0;
+        double i0Beta = bessel(KAISER_BETA);
+        float[][] phases = new float[up][taps];
+        for (int n = 0; n < length; n++) {
+            double t = n - center;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double x = t / center;
+            double window = Math.abs(x) >= 1 ? 0 : bessel(KAISER_BETA * Math.sqrt(1 - x * x)) / i0Beta;
+            phases[n % up][n / up] = (float) (up * sinc * window);
+        }
+        return phases;
+    }
+
+    /**
+     * Computes the zeroth order modified Bessel function of the first
+     * kind.
+     *
+     * @param x the argument
+     * @return I0(x)
+     */
+    private static double bessel(double x) {
+        double sum = 1.0;
+        double term = 1.0;
+        for (int k = 1; term > 1e-12 * sum; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the greatest common divisor of two numbers.
+     *
+     * @param a a positive number
+     * @param b a positive number
+     * @return the greatest common divisor
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -41,6 +41,107 @@ public class WaveUtils {
 
     private final static int[] expLut = {0, 132, 396, 924, 1980, 4092, 8316, 16764};
 
+    /**
+     * The G.711 mu-law code of each 14 bit linear sample, offset by
+     * 8192.
+     */
+    private final static byte[] ulawTable = new byte[1 << 14];
+
+    /**
+     * The G.711 A-law code of each 13 bit linear sample, offset by
+     * 4096.
+     */
+    private final static byte[] alawTable = new byte[1 << 13];
+
+    static {
+        for (int i = 0; i < ulawTable.length; i++) {
+            ulawTable[i] = encodeUlaw(i - ulawTable.length / 2);
+        }
+        for (int i = 0; i < alawTable.length; i++) {
+            alawTable[i] = encodeAlaw(i - alawTable.length / 2);
+        }
+    }
+
+    /**
+     * Converts a 16 bit linear sample to a G.711 mu-law code, as used
+     * by <code>AudioFormat.Encoding.ULAW</code>.  Unlike
+     * <code>shortToUlaw</code>, the code is not normalized.
+     *
+     * @param sample signed 16 bit linear sample
+     * @return 8 bit mu-law code
+     */
+    public static byte linearToUlaw(short sample) {
+        return ulawTable[(sample >> 2) + ulawTable.length / 2];
+    }
+
+    /**
+     * Converts a 16 bit linear sample to a G.711 A-law code, as used
+     * by <code>AudioFormat.Encoding.ALAW</code>.
+     *
+     * @param sample signed 16 bit linear sample
+     * @return 8 bit A-law code
+     */
+    public static byte linearToAlaw(short sample) {
+        return alawTable[(sample >> 3) + alawTable.length / 2];
+    }
+
+    /**
+     * Returns the segment of a magnitude, the index of the first
+     * segment end it does not exceed.
+     *
+     * @param value       the magnitude
+     * @param segmentEnds the largest magnitude of each segment
+     * @return the segment, or the number of segments if it exceeds
+     * all of them
+     */
+    private static int segment(int value, int[] segmentEnds) {
+        int i = 0;
+        while (i < segmentEnds.length && value > segmentEnds[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Converts a 14 bit linear sample to a G.711 mu-law code.
+     *
+     * @param sample signed 14 bit linear sample
+     * @return 8 bit mu-law code
+     */
+    private static byte encodeUlaw(int sample) {
+        int mask = 0xFF;
+        if (sample < 0) {
+            sample = -sample;
+            mask = 0x7F;
+        }
+        sample = Math.min(sample, 8159) + 33;
+        int segment = segment(sample, new int[] {0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF, 0x1FFF});
+        if (segment >= 8) {
+            return (byte) (0x7F ^ mask);
+        }
+        return (byte) (((segment << 4) | ((sample >> (segment + 1)) & 0x0F)) ^ mask);
+    }
+
+    /**
+     * Converts a 13 bit linear sample to a G.711 A-law code.
+     *
+     * @param sample signed 13 bit linear sample
+     * @return 8 bit A-law code
+     */
+    private static byte encodeAlaw(int sample) {
+        int mask = 0xD5;
+        if (sample < 0) {
+            sample = -sample - 1;
+            mask = 0x55;
+        }
+        int segment = segment(sample, new int[] {0x1F, 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF});
+        if (segment >= 8) {
+            return (byte) (0x7F ^ mask);
+        }
+        int shift = segment < 2 ? 1 : segment;
+        return (byte) (((segment << 4) | ((sample >> shift) & 0x0F)) ^ mask);
+    }
+
     /**
      * Converts a raw short to ulaw.
      *
@@ -0,0 +1,324 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.speech.freetts.diphone.Diphone;
+import com.sun.speech.freetts.diphone.DiphoneUnitDatabase;
+import com.sun.speech.freetts.relp.Sample;
+import com.sun.speech.freetts.util.LRUCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the DiphoneUnitDatabase class
+ *
+ * @version 1.0
+ */
+public class DiphoneUnitDatabaseTests {
+
+    private static final String CACHE_TYPE = "com.sun.speech.freetts.diphone.UnitDatabase.cacheType";
+    private static final String CACHE_SIZE = "com.sun.speech.freetts.diphone.UnitDatabase.cacheSize";
+    private static final int DIPHONES = 20;
+
+    /**
+     * Writes a text database of random diphones to a new directory,
+     * and generates its binary form and index.
+     */
+    private static Path createDatabase() throws IOException {
+        Path directory = Files.createTempDirectory("diphones");
+        Random random = new Random(17);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(directory.resolve("units.txt")))) {
+            writer.println("NAME test");
+            writer.println("SAMPLE_RATE 16000");
+            writer.println("NUM_CHANNELS 4");
+            writer.println("COEFF_MIN -1.0");
+            writer.println("COEFF_RANGE 2.0");
+            for (int i = 0; i < DIPHONES; i++) {
+                int samples = 2 + random.nextInt(10);
+                writer.println("DIPHONE d" + i + " 0 " + (samples / 2) + " " + samples);
+                for (int j = 0; j < samples; j++) {
+                    StringBuilder line = new StringBuilder("FRAME");
+                    for (int k = 0; k < 4; k++) {
+                        line.append(' ').append(random.nextInt(65536));
+                    }
+                    writer.println(line);
+                    int residuals = 50 + random.nextInt(100);
+                    line = new StringBuilder("RESIDUAL ").append(residuals);
+                    for (int k = 0; k < residuals; k++) {
+                        line.append(' ').append(random.nextInt(256));
+                    }
+                    writer.println(line);
+                }
+            }
+        }
+        DiphoneUnitDatabase.main(new String[] {"-src", directory.toString(), "-dest", directory.toString(),
+                "-generate_binary", "units.txt"});
+        return directory;
+    }
+
+    /**
+     * Removes a database created by <code>createDatabase</code>.
+     */
+    private static void deleteDatabase(Path directory) throws IOException {
+        for (String name : new String[] {"units.txt", "units.bin", "units.idx"}) {
+            Files.deleteIfExists(directory.resolve(name));
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Tests that the LRU cache loads the same diphones as the text
+     * database, keeps them within its budget and counts its hits,
+     * misses and evictions.
+     */
+    @Test
+    void testLRUCache() throws IOException {
+        Path directory = createDatabase();
+        try {
+            testLRUCache(directory);
+        } finally {
+            System.clearProperty(CACHE_TYPE);
+            System.clearProperty(CACHE_SIZE);
+            deleteDatabase(directory);
+        }
+    }
+
+    private static void testLRUCache(Path directory) throws IOException {
+        DiphoneUnitDatabase text = new DiphoneUnitDatabase(directory.resolve("units.txt").toUri(), false);
+        assertNull(text.getCache());
+        long size = 0;
+        for (int i = 0; i < 4; i++) {
+            size += text.getUnit("d" + i).getMemorySize();
+        }
+
+        System.setProperty(CACHE_TYPE, "lru");
+        System.setProperty(CACHE_SIZE, Long.toString(size));
+        DiphoneUnitDatabase binary = new DiphoneUnitDatabase(directory.resolve("units.bin").toUri(), true);
+        LRUCache<String, ?> cache = binary.getCache();
+        assertNotNull(cache);
+        assertEquals(size, cache.getCapacity());
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < DIPHONES; i++) {
+                Diphone diphone = binary.getUnit("d" + i);
+                assertEquals("d" + i, diphone.getName());
+                assertSame(diphone, binary.getUnit("d" + i));
+                assertTrue(cache.getWeight() <= cache.getCapacity());
+            }
+        }
+        assertEquals(2 * DIPHONES, cache.getHits());
+        assertEquals(2 * DIPHONES, cache.getMisses());
+        assertEquals(2 * DIPHONES - cache.size(), cache.getEvictions());
+
+        // every diphone, loaded through the cache
+        assertTrue(text.compare(binary));
+    }
+
+    /**
+     * Tests that diphones are found through the name index of the
+     * binary database, without the separate index file.
+     */
+    @Test
+    void testNameIndex() throws IOException {
+        Path directory = createDatabase();
+        try {
+            Files.delete(directory.resolve("units.idx"));
+            DiphoneUnitDatabase text = new DiphoneUnitDatabase(directory.resolve("units.txt").toUri(), false);
+            System.setProperty(CACHE_TYPE, "demand");
+            DiphoneUnitDatabase binary = new DiphoneUnitDatabase(directory.resolve("units.bin").toUri(), true);
+            for (int i = DIPHONES - 1; i >= 0; i--) {
+                assertTrue(same(text.getUnit("d" + i), binary.getUnit("d" + i)));
+            }
+            // unknown names get the first diphone looked up
+            for (String name : new String[] {"d", "d20", "c0", "e0", "d19xxxxxx"}) {
+                assertEquals("d" + (DIPHONES - 1), binary.getUnit(name).getName());
+            }
+        } finally {
+            System.clearProperty(CACHE_TYPE);
+            deleteDatabase(directory);
+        }
+    }
+
+    /**
+     * Tests that databases loaded in float frame mode give every
+     * sample the coefficients of its frame, dequantized with the
+     * coefficient minimum and range of the database, and that they
+     * are left out otherwise.
+     */
+    @Test
+    void testFloatFrames() throws IOException {
+        Path directory = createDatabase();
+        try {
+            DiphoneUnitDatabase quantized = new DiphoneUnitDatabase(directory.resolve("units.txt").toUri(), false);
+            assertNull(quantized.getUnit("d0").getSamples(0).getCoefficients());
+
+            System.setProperty(Sample.PROP_FLOAT_FRAMES, "true");
+            List<DiphoneUnitDatabase> databases = new ArrayList<>();
+            databases.add(new DiphoneUnitDatabase(directory.resolve("units.txt").toUri(), false));
+            for (String cacheType : new String[] {"preload", "demand", "lru"}) {
+                System.setProperty(CACHE_TYPE, cacheType);
+                databases.add(new DiphoneUnitDatabase(directory.resolve("units.bin").toUri(), true));
+            }
+            for (DiphoneUnitDatabase database : databases) {
+                for (int i = 0; i < DIPHONES; i++) {
+                    Diphone diphone = database.getUnit("d" + i);
+                    assertTrue(same(quantized.getUnit("d" + i), diphone));
+                    for (Sample sample : diphone.getSamples()) {
+                        short[] frame = sample.getFrameData();
+                        float[] coefficients = sample.getCoefficients();
+                        assertNotNull(coefficients);
+                        assertEquals(frame.length, coefficients.length);
+                        for (int k = 0; k < frame.length; k++) {
+                            assertEquals((frame[k] + 32768) * 2.0 / 65535 - 1.0, coefficients[k], 1e-6);
+                        }
+                    }
+                }
+            }
+        } finally {
+            System.clearProperty(Sample.PROP_FLOAT_FRAMES);
+            System.clearProperty(CACHE_TYPE);
+            deleteDatabase(directory);
+        }
+    }
+
+    /**
+     * Tests that the nearest sample is the one a linear scan finds,
+     * with samples of no residuals and positions between, on and past
+     * the sample bounds.
+     */
+    @Test
+    void testNearestSample() {
+        Random random = new Random(19);
+        for (int round = 0; round < 200; round++) {
+            Sample[] samples = new Sample[1 + random.nextInt(30)];
+            for (int i = 0; i < samples.length; i++) {
+                int size = random.nextInt(4) == 0 ? 0 : random.nextInt(200);
+                samples[i] = new Sample(new short[0], new byte[size], size);
+            }
+            int midPoint = 1 + random.nextInt(samples.length);
+            Diphone diphone = new Diphone("d", samples, midPoint);
+            for (int unitPart = 1; unitPart <= 2; unitPart++) {
+                if (unitPart == 2 && midPoint == samples.length) {
+                    break;
+                }
+                int start = unitPart == 1 ? 0 : midPoint;
+                int end = unitPart == 1 ? midPoint : samples.length;
+                int unitSize = diphone.getUnitSize(unitPart);
+                for (int j = 0; j < 100; j++) {
+                    float index = random.nextBoolean() ? random.nextInt(unitSize + 50) / 2.0f
+                            : random.nextFloat() * (unitSize + 20) - 10;
+                    assertSame(nearestSample(samples, start, end, index), diphone.nearestSample(index, unitPart));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that the memory size of a diphone counts its samples and
+     * the offsets of their residuals.
+     */
+    @Test
+    void testMemorySize() {
+        Sample[] samples = new Sample[5];
+        long size = 64 + 16 + 4 * samples.length + 16 + 4 * (samples.length + 1);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new Sample(new short[8], new byte[10 * i], 10 * i);
+            size += samples[i].getMemorySize();
+        }
+        assertEquals(size, new Diphone("d", samples, 2).getMemorySize());
+    }
+
+    /**
+     * Finds the nearest sample by scanning the samples from the start.
+     */
+    private static Sample nearestSample(Sample[] samples, int start, int end, float index) {
+        int iSize = 0;
+        for (int i = start; i < end; i++) {
+            int nSize = iSize + samples[i].getResidualSize();
+            if (Math.abs(index - (float) iSize) < Math.abs(index - (float) nSize)) {
+                return samples[i];
+            }
+            iSize = nSize;
+        }
+        return samples[end - 1];
+    }
+
+    /**
+     * Tests that threads that load diphones on demand at the same time
+     * all get the right diphones.
+     */
+    @Test
+    void testConcurrentLoading() throws Exception {
+        Path directory = createDatabase();
+        try {
+            DiphoneUnitDatabase text = new DiphoneUnitDatabase(directory.resolve("units.txt").toUri(), false);
+            for (String cacheType : new String[] {"demand", "hard", "soft", "lru"}) {
+                System.setProperty(CACHE_TYPE, cacheType);
+                DiphoneUnitDatabase binary = new DiphoneUnitDatabase(directory.resolve("units.bin").toUri(), true);
+                ExecutorService executor = Executors.newFixedThreadPool(8);
+                try {
+                    List<Future<Boolean>> results = new ArrayList<>();
+                    for (int t = 0; t < 8; t++) {
+                        int seed = t;
+                        results.add(executor.submit(() -> {
+                            Random random = new Random(seed);
+                            for (int i = 0; i < 2000; i++) {
+                                String name = "d" + random.nextInt(DIPHONES);
+                                if (!same(text.getUnit(name), binary.getUnit(name))) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }));
+                    }
+                    for (Future<Boolean> result : results) {
+                        assertTrue(result.get(), cacheType);
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        } finally {
+            System.clearProperty(CACHE_TYPE);
+            deleteDatabase(directory);
+        }
+    }
+
+    /**
+     * Returns true if two diphones have the same name and samples.
+     */
+    private static boolean same(Diphone expected, Diphone actual) {
+        if (!expected.getName().equals(actual.getName())
+                || expected.getMidPoint() != actual.getMidPoint()
+                || expected.getSamples().length != actual.getSamples().length) {
+            return false;
+        }
+        for (int i = 0; i < expected.getSamples().length; i++) {
+            if (!expected.getSamples(i).compare(actual.getSamples(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
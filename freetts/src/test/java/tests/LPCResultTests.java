@@ -0,0 +1,350 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.FreeTTSSpeakableImpl;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.audio.NullAudioPlayer;
+import com.sun.speech.freetts.relp.LPCResult;
+import com.sun.speech.freetts.relp.Sample;
+import com.sun.speech.freetts.util.WaveUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the LPCResult class
+ *
+ * @version 1.0
+ */
+public class LPCResultTests {
+
+    /**
+     * Creates an LPC result with random frames and residuals.
+     */
+    private static LPCResult createResult(Random random, int frames, int channels) {
+        LPCResult result = new LPCResult();
+        int[] sizes = new int[frames];
+        int samples = 0;
+        for (int i = 0; i < frames; i++) {
+            sizes[i] = random.nextInt(120);
+            samples += sizes[i];
+        }
+        result.resizeFrames(frames);
+        result.resizeResiduals(samples);
+        result.setValues(channels, 16000, 1, -0.1f, 0.2f);
+        result.setResidualSizes(sizes);
+        random.nextBytes(result.getResiduals());
+        for (int i = 0; i < frames; i++) {
+            short[] frame = new short[channels];
+            for (int k = 0; k < channels; k++) {
+                frame[k] = (short) (random.nextGaussian() * 3000);
+            }
+            result.setFrame(i, frame);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the LPC filter the plain way, with the past outputs kept in
+     * order of time.
+     */
+    private static byte[] filter(LPCResult result) {
+        return filter(result, 0, result.getNumberOfFrames());
+    }
+
+    /**
+     * Runs the LPC filter the plain way over a range of frames.
+     */
+    private static byte[] filter(LPCResult result, int firstFrame, int endFrame) {
+        int channels = result.getNumberOfChannels();
+        byte[] residuals = result.getResiduals();
+        int first = 0;
+        int count = 0;
+        for (int i = 0; i < endFrame; i++) {
+            if (i < firstFrame) {
+                first += result.getResidualSizes()[i];
+            } else {
+                count += result.getResidualSizes()[i];
+            }
+        }
+        float[] outputs = new float[count];
+        byte[] samples = new byte[count * 2];
+        double multiplier = (double) result.getLPCRange() / 65535.0;
+        int t = 0;
+        for (int i = firstFrame; i < endFrame; i++) {
+            float[] coefficients = new float[channels];
+            for (int k = 0; k < channels; k++) {
+                coefficients[k] = (float) ((result.getFrame(i)[k] + 32768.0) * multiplier) + result.getLPCMin();
+            }
+            for (int j = 0; j < result.getResidualSizes()[i]; j++, t++) {
+                int residual = residuals[first + t] + 128;
+                float ob = WaveUtils.ulawToShort((short) (residual == 128 ? 255 : residual));
+                for (int k = 0; k < channels && t - 1 - k >= 0; k++) {
+                    ob += coefficients[k] * outputs[t - 1 - k];
+                }
+                outputs[t] = ob;
+                samples[2 * t] = (byte) ((int) ob >>> 8);
+                samples[2 * t + 1] = (byte) ((int) ob & 0xFF);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Tests that the samples are those of the LPC filter, whether they
+     * are played through buffers of any size or returned at once.
+     */
+    @Test
+    void testWaveSamples() throws IOException {
+        Random random = new Random(7);
+        Utterance utterance = new Utterance(null);
+        utterance.setSpeakable(new FreeTTSSpeakableImpl(""));
+        for (int n = 0; n < 50; n++) {
+            LPCResult result = createResult(random, random.nextInt(30), 1 + random.nextInt(20));
+            byte[] expected = filter(result);
+            assertArrayEquals(expected, result.getWaveSamples());
+
+            ByteArrayOutputStream played = new ByteArrayOutputStream();
+            NullAudioPlayer player = new NullAudioPlayer() {
+                @Override
+                public boolean write(byte[] bytes, int offset, int size) {
+                    played.write(bytes, offset, size);
+                    return true;
+                }
+            };
+            assertTrue(result.playWave(player, utterance, new byte[2 + random.nextInt(500)]));
+            assertArrayEquals(expected, played.toByteArray());
+        }
+    }
+
+    /**
+     * Tests that a range of frames is synthesized from silence into
+     * buffers of either byte order.
+     */
+    @Test
+    void testResynthesizer() {
+        Random random = new Random(9);
+        for (int n = 0; n < 50; n++) {
+            LPCResult result = createResult(random, 1 + random.nextInt(30), 1 + random.nextInt(20));
+            int firstFrame = random.nextInt(result.getNumberOfFrames());
+            int endFrame = firstFrame + random.nextInt(result.getNumberOfFrames() - firstFrame + 1);
+            byte[] expected = filter(result, firstFrame, endFrame);
+            ShortBuffer shorts = ByteBuffer.wrap(expected).asShortBuffer();
+
+            LPCResult.Resynthesizer resynthesizer = result.getResynthesizer(firstFrame, endFrame);
+            assertEquals(expected.length / 2, resynthesizer.getRemaining());
+            ByteBuffer little = ByteBuffer.allocate(expected.length + 1).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(expected.length == 0 ? -1 : 0, resynthesizer.fill(ByteBuffer.allocate(1)));
+            ByteBuffer small = ByteBuffer.allocateDirect(2 + random.nextInt(100)).order(ByteOrder.LITTLE_ENDIAN);
+            while (resynthesizer.fill(small.clear()) > 0) {
+                little.put(small.flip());
+            }
+            assertEquals(0, resynthesizer.getRemaining());
+            assertEquals(-1, resynthesizer.fill(small.clear()));
+            assertEquals(-1, resynthesizer.fill(ByteBuffer.allocate(0)));
+            little.flip();
+            assertEquals(expected.length, little.remaining());
+            assertEquals(shorts, little.asShortBuffer());
+
+            ShortBuffer heap = ShortBuffer.allocate(expected.length / 2);
+            assertEquals(expected.length == 0 ? -1 : expected.length / 2,
+                    result.getResynthesizer(firstFrame, endFrame).fill(heap));
+            assertEquals(shorts, heap.flip());
+        }
+    }
+
+    /**
+     * Tests that samples are encoded in G.711 as they are synthesized
+     * and played.
+     */
+    @Test
+    void testEncoding() throws IOException {
+        Random random = new Random(5);
+        Utterance utterance = new Utterance(null);
+        utterance.setSpeakable(new FreeTTSSpeakableImpl(""));
+        for (int n = 0; n < 20; n++) {
+            LPCResult result = createResult(random, random.nextInt(30), 1 + random.nextInt(20));
+            ShortBuffer linear = ByteBuffer.wrap(filter(result)).asShortBuffer();
+            byte[] ulaw = new byte[linear.remaining()];
+            byte[] alaw = new byte[linear.remaining()];
+            for (int i = 0; i < ulaw.length; i++) {
+                ulaw[i] = WaveUtilsTests.linear2ulaw(linear.get(i));
+                alaw[i] = WaveUtilsTests.linear2alaw(linear.get(i));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(ulaw.length);
+            assertEquals(ulaw.length == 0 ? -1 : ulaw.length,
+                    result.getResynthesizer().fill(buffer, AudioFormat.Encoding.ULAW));
+            assertArrayEquals(ulaw, buffer.array());
+
+            ByteArrayOutputStream played = new ByteArrayOutputStream();
+            int[] size = new int[1];
+            NullAudioPlayer player = new NullAudioPlayer() {
+                @Override
+                public void begin(int bytes) {
+                    size[0] = bytes;
+                }
+
+                @Override
+                public boolean write(byte[] bytes, int offset, int length) {
+                    played.write(bytes, offset, length);
+                    return true;
+                }
+            };
+            assertTrue(result.playWave(player, utterance, new byte[2 + random.nextInt(500)],
+                    new AudioFormat(AudioFormat.Encoding.ALAW, 16000, 8, 1, 1, 16000, false)));
+            assertEquals(alaw.length, size[0]);
+            assertArrayEquals(alaw, played.toByteArray());
+        }
+    }
+
+    /**
+     * Tests that a resampling resynthesizer writes as many samples as
+     * it says it will, through buffers of any size, that a wave
+     * played at another rate has that many samples in the byte order
+     * of the format, and that other sample sizes and channels are
+     * rejected.
+     */
+    @Test
+    void testResample() throws IOException {
+        Random random = new Random(7);
+        Utterance utterance = new Utterance(null);
+        utterance.setSpeakable(new FreeTTSSpeakableImpl(""));
+        int[] rates = {8000, 11025, 22050, 48000};
+        for (int n = 0; n < 20; n++) {
+            LPCResult result = createResult(random, random.nextInt(30), 1 + random.nextInt(20));
+            int rate = rates[random.nextInt(rates.length)];
+            LPCResult.Resynthesizer resynthesizer =
+                    result.getResynthesizer(0, result.getNumberOfFrames(), rate);
+            int expected = resynthesizer.getRemaining();
+            assertEquals((result.getNumberOfSamples() * (long) rate + 15999) / 16000, expected);
+            ShortBuffer samples = ShortBuffer.allocate(expected + 1);
+            ShortBuffer small = ShortBuffer.allocate(1 + random.nextInt(100));
+            while (resynthesizer.fill(small.clear()) > 0) {
+                samples.put(small.flip());
+            }
+            assertEquals(expected, samples.position());
+            assertEquals(0, resynthesizer.getRemaining());
+            assertEquals(-1, resynthesizer.fill(small.clear()));
+
+            ByteArrayOutputStream played = new ByteArrayOutputStream();
+            int[] size = new int[1];
+            NullAudioPlayer player = new NullAudioPlayer() {
+                @Override
+                public void begin(int bytes) {
+                    size[0] = bytes;
+                }
+
+                @Override
+                public boolean write(byte[] bytes, int offset, int length) {
+                    played.write(bytes, offset, length);
+                    return true;
+                }
+            };
+            boolean bigEndian = random.nextBoolean();
+            assertTrue(result.playWave(player, utterance, new byte[2 + random.nextInt(500)],
+                    new AudioFormat(rate, 16, 1, true, bigEndian)));
+            assertEquals(2 * expected, size[0]);
+            ShortBuffer wave = ByteBuffer.wrap(played.toByteArray())
+                    .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            assertEquals(samples.flip(), wave);
+        }
+
+        LPCResult result = createResult(random, 2, 10);
+        assertThrows(IllegalArgumentException.class, () -> result.playWave(new NullAudioPlayer(), utterance,
+                new byte[2], new AudioFormat(16000, 16, 2, true, true)));
+        assertThrows(IllegalArgumentException.class, () -> result.playWave(new NullAudioPlayer(), utterance,
+                new byte[2], new AudioFormat(16000, 8, 1, true, true)));
+    }
+
+    /**
+     * Tests that frames given with their dequantized coefficients
+     * synthesize to the same wave as frames that are dequantized as
+     * they are synthesized.
+     */
+    @Test
+    void testFloatFrames() {
+        Random random = new Random(9);
+        for (int n = 0; n < 20; n++) {
+            LPCResult result = createResult(random, random.nextInt(30), 1 + random.nextInt(20));
+            byte[] expected = filter(result);
+            for (int i = 0; i < result.getNumberOfFrames(); i++) {
+                Sample sample = new Sample(result.getFrame(i), new byte[0]);
+                sample.dequantize(result.getLPCMin(), result.getLPCRange());
+                result.setFrame(i, sample.getFrameData(), sample.getCoefficients());
+            }
+            assertArrayEquals(expected, result.getWaveSamples());
+        }
+    }
+
+    /**
+     * Tests that frames that refer to their residuals in a buffer
+     * synthesize to the same wave as frames whose residuals are
+     * copied, and that the residuals are copied when asked for.
+     */
+    @Test
+    void testMappedResiduals() throws IOException {
+        Random random = new Random(10);
+        for (int n = 0; n < 20; n++) {
+            int frames = random.nextInt(30);
+            int channels = 1 + random.nextInt(20);
+            int[] sizes = new int[frames];
+            int samples = 0;
+            for (int i = 0; i < frames; i++) {
+                sizes[i] = random.nextInt(120);
+                samples += sizes[i];
+            }
+            LPCResult copied = new LPCResult();
+            LPCResult mapped = new LPCResult();
+            ByteBuffer database = ByteBuffer.allocateDirect(frames * 200);
+            for (LPCResult result : new LPCResult[] {copied, mapped}) {
+                result.resizeFrames(frames);
+                result.resizeResiduals(samples);
+                result.setValues(channels, 16000, 1, -0.1f, 0.2f);
+                result.setResidualSizes(sizes);
+            }
+            int position = 0;
+            for (int i = 0; i < frames; i++) {
+                short[] frame = new short[channels];
+                for (int k = 0; k < channels; k++) {
+                    frame[k] = (short) (random.nextGaussian() * 3000);
+                }
+                byte[] residuals = new byte[random.nextInt(120)];
+                random.nextBytes(residuals);
+                ByteBuffer dump = ByteBuffer.allocate(8 + 2 * channels + residuals.length);
+                new Sample(frame, residuals, residuals.length).dumpBinary(dump);
+                database.put(dump.array());
+                Sample sample = Sample.mapBinary(database.position(database.position() - dump.capacity()));
+                assertTrue(sample.compare(new Sample(frame, residuals, residuals.length)));
+
+                copied.setFrame(i, frame);
+                copied.copyResiduals(residuals, position, sizes[i]);
+                mapped.setFrame(i, sample.getFrameData());
+                mapped.setResiduals(i, sample.getResidualBuffer(), sample.getResidualOffset(),
+                        sample.getResidualSize());
+                position += sizes[i];
+            }
+            byte[] expected = copied.getWaveSamples();
+            assertArrayEquals(expected, mapped.getWaveSamples());
+            assertArrayEquals(copied.getResiduals(), mapped.getResiduals());
+            assertArrayEquals(expected, mapped.getWaveSamples());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import com.sun.speech.freetts.util.LRUCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * JUnit Tests for the LRUCache class
+ *
+ * @version 1.0
+ */
+public class LRUCacheTests {
+
+    /**
+     * Tests that the least recently used entry is evicted first.
+     */
+    @Test
+    void testEviction() {
+        LRUCache<String, String> cache = new LRUCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Tests that a weighed cache stays within its capacity.
+     */
+    @Test
+    void testWeight() {
+        LRUCache<String, byte[]> cache = new LRUCache<>(10, value -> value.length);
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.put("c", new byte[4]);
+        assertEquals(8, cache.getWeight());
+        assertNull(cache.get("a"));
+        cache.put("d", new byte[11]);
+        assertNull(cache.get("d"));
+        cache.remove("b");
+        assertEquals(4, cache.getWeight());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.audio.PromptStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the PromptStore class
+ *
+ * @version 1.0
+ */
+public class PromptStoreTests {
+
+    private static final AudioFormat FORMAT = new AudioFormat(16000.0f, 16, 1, true, true);
+
+    /**
+     * Returns the bytes of a buffer.
+     */
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Tests that prompts are kept across opening the store, and that
+     * a reader sees prompts added after it opened the store.
+     */
+    @Test
+    void testPersistence() throws IOException {
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        try {
+            try (PromptStore store = new PromptStore(path, true)) {
+                store.put("hello", FORMAT, new byte[] {1, 2, 3, 4});
+                store.put("hello", FORMAT, new byte[] {5});
+                assertEquals(1, store.size());
+            }
+            try (PromptStore reader = new PromptStore(path, false)) {
+                PromptStore.Prompt prompt = reader.get("hello");
+                assertTrue(FORMAT.matches(prompt.getFormat()));
+                assertEquals(4, prompt.getAudio().remaining());
+                assertEquals(3, prompt.getAudio().get(2));
+                assertNull(reader.get("goodbye"));
+                assertThrows(IllegalStateException.class, () -> reader.put("goodbye", FORMAT, new byte[1]));
+
+                try (PromptStore writer = new PromptStore(path, true)) {
+                    writer.put("goodbye", FORMAT, new byte[] {9, 8});
+                }
+                assertEquals(2, bytes(reader.get("goodbye").getAudio()).length);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Tests that a reader finds the prompts that a writer adds to the
+     * same file at the same time, each whole, and never sees a corrupt
+     * record.
+     */
+    @Test
+    void testConcurrentReader() throws Exception {
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        int count = 2000;
+        try (PromptStore writer = new PromptStore(path, true, 1 << 16);
+             PromptStore reader = new PromptStore(path, false)) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> writing = executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        byte[] audio = new byte[1 + i % 500];
+                        Arrays.fill(audio, (byte) i);
+                        writer.put("prompt " + i, FORMAT, audio);
+                    }
+                    return null;
+                });
+                int found = 0;
+                while (found < count) {
+                    PromptStore.Prompt prompt = reader.get("prompt " + found);
+                    if (prompt != null) {
+                        byte[] audio = bytes(prompt.getAudio());
+                        assertEquals(1 + found % 500, audio.length);
+                        assertEquals((byte) found, audio[audio.length - 1]);
+                        found++;
+                    } else if (writing.isDone()) {
+                        writing.get();
+                        assertNotNull(reader.get("prompt " + found));
+                    }
+                }
+                writing.get();
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(count, reader.size());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Tests that a record cut short is ignored and then replaced by
+     * the next prompt added.
+     */
+    @Test
+    void testTornRecord() throws IOException {
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        try {
+            try (PromptStore store = new PromptStore(path, true)) {
+                store.put("one", FORMAT, new byte[] {1});
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {0, 0, 1, 0, 7, 7}), channel.size());
+            }
+            try (PromptStore store = new PromptStore(path, true)) {
+                assertEquals(1, store.size());
+                store.put("two", FORMAT, new byte[] {2});
+            }
+            try (PromptStore store = new PromptStore(path, false)) {
+                assertEquals(2, store.size());
+                assertEquals(2, store.get("two").getAudio().get(0));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Tests that the encoding, frame size and byte order of the audio
+     * format are kept.
+     */
+    @Test
+    void testFormats() throws IOException {
+        AudioFormat ulaw = new AudioFormat(AudioFormat.Encoding.ULAW, 8000f, 8, 1, 1, 8000f, false);
+        AudioFormat unsigned = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 22050f, 16, 2, 4, 22050f, false);
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        try {
+            try (PromptStore store = new PromptStore(path, true)) {
+                store.put("ulaw", ulaw, new byte[] {1});
+                store.put("unsigned", unsigned, new byte[] {1, 2, 3, 4});
+            }
+            try (PromptStore store = new PromptStore(path, false)) {
+                AudioFormat format = store.get("ulaw").getFormat();
+                assertSame(AudioFormat.Encoding.ULAW, format.getEncoding());
+                assertTrue(ulaw.matches(format));
+                format = store.get("unsigned").getFormat();
+                assertSame(AudioFormat.Encoding.PCM_UNSIGNED, format.getEncoding());
+                assertEquals(4, format.getFrameSize());
+                assertFalse(format.isBigEndian());
+                assertTrue(unsigned.matches(format));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Tests that prompts are kept in several segments and that no
+     * prompt can be larger than a segment.
+     */
+    @Test
+    void testSegments() throws IOException {
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        try {
+            try (PromptStore store = new PromptStore(path, true, 4096)) {
+                for (int i = 0; i < 100; i++) {
+                    byte[] audio = new byte[1000 + i];
+                    Arrays.fill(audio, (byte) i);
+                    store.put("prompt " + i, FORMAT, audio);
+                }
+                assertThrows(IOException.class, () -> store.put("long", FORMAT, new byte[4096]));
+                assertEquals(100, store.size());
+            }
+            try (PromptStore store = new PromptStore(path, false)) {
+                assertEquals(100, store.size());
+                for (int i = 0; i < 100; i++) {
+                    byte[] audio = bytes(store.get("prompt " + i).getAudio());
+                    assertEquals(1000 + i, audio.length);
+                    assertEquals(i, audio[0]);
+                    assertEquals(i, audio[audio.length - 1]);
+                }
+                assertNull(store.get("long"));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
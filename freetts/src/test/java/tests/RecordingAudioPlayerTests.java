@@ -0,0 +1,122 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.audio.NullAudioPlayer;
+import com.sun.speech.freetts.audio.RecordingAudioPlayer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the RecordingAudioPlayer class
+ *
+ * @version 1.0
+ */
+public class RecordingAudioPlayerTests {
+
+    private static final AudioFormat FORMAT = new AudioFormat(16000f, 16, 1, true, true);
+
+    /**
+     * Records the given chunks of audio, ending the recording if asked.
+     */
+    private static RecordingAudioPlayer record(NullAudioPlayer player, boolean end, byte[]... chunks)
+            throws IOException {
+        RecordingAudioPlayer recorder = new RecordingAudioPlayer(player);
+        recorder.setAudioFormat(FORMAT);
+        recorder.setVolume(0.5f);
+        int size = 0;
+        for (byte[] chunk : chunks) {
+            size += chunk.length;
+        }
+        recorder.begin(size);
+        for (byte[] chunk : chunks) {
+            recorder.write(chunk, 1, chunk.length - 1);
+        }
+        if (end) {
+            recorder.end();
+        }
+        return recorder;
+    }
+
+    /**
+     * Tests that the audio written is recorded and passed on to the
+     * player.
+     */
+    @Test
+    void testRecord() throws IOException {
+        NullAudioPlayer player = new NullAudioPlayer();
+        RecordingAudioPlayer recorder = record(player, true, new byte[] {9, 1, 2, 3}, new byte[] {9, 4, 5});
+        assertTrue(recorder.isComplete());
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, recorder.getRecordedAudio());
+        assertSame(FORMAT, recorder.getRecordedFormat());
+        assertSame(player, recorder.getPlayer());
+        assertSame(FORMAT, player.getAudioFormat());
+        assertEquals(0.5f, player.getVolume());
+    }
+
+    /**
+     * Tests that a recording is not complete before it is ended.
+     */
+    @Test
+    void testNotEnded() throws IOException {
+        RecordingAudioPlayer recorder = record(new NullAudioPlayer(), false, new byte[] {9, 1, 2});
+        assertFalse(recorder.isComplete());
+        assertArrayEquals(new byte[] {1, 2}, recorder.getRecordedAudio());
+    }
+
+    /**
+     * Tests that a recording is not complete if it was cancelled.
+     */
+    @Test
+    void testCancel() throws IOException {
+        RecordingAudioPlayer recorder = record(new NullAudioPlayer(), false, new byte[] {9, 1, 2});
+        recorder.cancel();
+        recorder.end();
+        assertFalse(recorder.isComplete());
+    }
+
+    /**
+     * Tests that a recording is not complete if the player fails to
+     * write the audio.
+     */
+    @Test
+    void testFailedWrite() throws IOException {
+        NullAudioPlayer player = new NullAudioPlayer() {
+            @Override
+            public boolean write(byte[] audioData, int offset, int size) {
+                return false;
+            }
+        };
+        RecordingAudioPlayer recorder = record(player, true, new byte[] {9, 1, 2});
+        assertFalse(recorder.isComplete());
+    }
+
+    /**
+     * Tests that a recording is not complete if the audio format
+     * changes while it is recorded.
+     */
+    @Test
+    void testFormatChange() throws IOException {
+        RecordingAudioPlayer recorder = new RecordingAudioPlayer(new NullAudioPlayer());
+        recorder.setAudioFormat(FORMAT);
+        recorder.setAudioFormat(new AudioFormat(16000f, 16, 1, true, true));
+        recorder.begin(2);
+        recorder.write(new byte[] {1, 2});
+        recorder.setAudioFormat(new AudioFormat(8000f, 16, 1, true, true));
+        recorder.end();
+        assertFalse(recorder.isComplete());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.util.Random;
+
+import com.sun.speech.freetts.util.Resampler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the Resampler class
+ *
+ * @version 1.0
+ */
+public class ResamplerTests {
+
+    /**
+     * Resamples the whole input at once.
+     */
+    private static float[] resample(int inputRate, int outputRate, float[] input) {
+        Resampler resampler = new Resampler(inputRate, outputRate);
+        float[] output = new float[(int) resampler.getOutputLength(input.length)];
+        resampler.write(input, 0, input.length);
+        resampler.end();
+        assertEquals(output.length, resampler.read(output, 0, output.length + 1));
+        assertTrue(resampler.isFinished());
+        return output;
+    }
+
+    /**
+     * Tests that the output does not depend on how the input and the
+     * output are divided into chunks.
+     */
+    @Test
+    void testChunks() {
+        Random random = new Random(3);
+        int[][] rates = {{16000, 8000}, {8000, 16000}, {16000, 22050}, {16000, 48000}, {44100, 8000}};
+        for (int[] rate : rates) {
+            float[] input = new float[5000];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextInt(20000) - 10000;
+            }
+            float[] expected = resample(rate[0], rate[1], input);
+
+            Resampler resampler = new Resampler(rate[0], rate[1]);
+            float[] actual = new float[expected.length];
+            int written = 0;
+            int read = 0;
+            while (!resampler.isFinished()) {
+                if (written < input.length) {
+                    int length = Math.min(random.nextInt(300), input.length - written);
+                    resampler.write(input, written, length);
+                    written += length;
+                } else {
+                    resampler.end();
+                }
+                int count;
+                do {
+                    count = resampler.read(actual, read, Math.min(random.nextInt(200), actual.length - read));
+                    read += count;
+                } while (count > 0);
+            }
+            assertEquals(expected.length, read);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Tests that a sine below both Nyquist frequencies keeps its
+     * amplitude and frequency, and that one above the output Nyquist
+     * frequency is removed.
+     */
+    @Test
+    void testSine() {
+        int[] outputRates = {8000, 11025, 22050, 48000};
+        for (int outputRate : outputRates) {
+            assertSine(16000, outputRate, 1000);
+        }
+        float[] input = sine(16000, 6000, 16000);
+        float[] output = resample(16000, 8000, input);
+        for (int i = 200; i < output.length - 200; i++) {
+            assertEquals(0, output[i], 10);
+        }
+    }
+
+    /**
+     * Checks that a resampled sine matches the sine at the output rate.
+     */
+    private static void assertSine(int inputRate, int outputRate, double frequency) {
+        float[] input = sine(inputRate, frequency, inputRate);
+        float[] output = resample(inputRate, outputRate, input);
+        float[] expected = sine(outputRate, frequency, outputRate);
+        assertEquals(expected.length, output.length);
+        // leave out the ends, where the filter runs over silence
+        for (int i = 100; i < output.length - 100; i++) {
+            assertEquals(expected[i], output[i], 100);
+        }
+    }
+
+    /**
+     * Creates a sine of amplitude 10000.
+     */
+    private static float[] sine(int sampleRate, double frequency, int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) (10000 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    /**
+     * Tests the number of output samples and the state checks.
+     */
+    @Test
+    void testLength() {
+        Resampler resampler = new Resampler(16000, 8000);
+        assertEquals(16000, resampler.getInputRate());
+        assertEquals(8000, resampler.getOutputRate());
+        assertEquals(0, resampler.getOutputLength(0));
+        assertEquals(1, resampler.getOutputLength(1));
+        assertEquals(50, resampler.getOutputLength(100));
+        assertEquals(51, resampler.getOutputLength(101));
+        assertEquals(221, new Resampler(8000, 22050).getOutputLength(80));
+
+        assertFalse(resampler.isFinished());
+        float[] output = new float[10];
+        assertEquals(0, resampler.read(output, 0, output.length));
+        resampler.end();
+        assertTrue(resampler.isFinished());
+        assertThrows(IllegalStateException.class, () -> resampler.write(new float[1], 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Resampler(0, 8000));
+
+        float[] silence = new float[300];
+        assertArrayEquals(new float[150], resample(16000, 8000, silence));
+        assertArrayEquals(new float[600], resample(16000, 32000, silence));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.UtteranceSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the UtteranceSnapshot class
+ *
+ * @version 1.0
+ */
+public class UtteranceSnapshotTests {
+
+    /**
+     * Creates an utterance with a token relation and a word relation
+     * whose items share contents with the daughters of the tokens.
+     */
+    private static Utterance createUtterance(String filePos) {
+        Utterance utterance = new Utterance(null);
+        utterance.setString("input_text", "21 cats");
+        Relation tokens = utterance.createRelation(Relation.TOKEN);
+        Relation words = utterance.createRelation(Relation.WORD);
+
+        Item token = tokens.appendItem();
+        token.getFeatures().setString("name", "21");
+        token.getFeatures().setString("file_pos", filePos);
+        for (String name : new String[] {"twenty", "one"}) {
+            Item word = token.createDaughter();
+            word.getFeatures().setString("name", name);
+            words.appendItem(word);
+        }
+        token = tokens.appendItem();
+        token.getFeatures().setString("name", "cats");
+        token.getFeatures().setString("file_pos", filePos);
+        Item word = token.createDaughter();
+        word.getFeatures().setString("name", "cats");
+        word.getFeatures().setFloat("end", 0.5f);
+        words.appendItem(word);
+        return utterance;
+    }
+
+    /**
+     * Returns the names of the items of a relation, with those of
+     * their daughters in brackets.
+     */
+    private static List<String> names(Relation relation) {
+        List<String> names = new ArrayList<>();
+        for (Item item = relation.getHead(); item != null; item = item.getNext()) {
+            StringBuilder name = new StringBuilder(item.getFeatures().getString("name"));
+            for (Item daughter = item.getDaughter(); daughter != null; daughter = daughter.getNext()) {
+                name.append('[').append(daughter.getFeatures().getString("name")).append(']');
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Tests that a restored utterance has the same relations, features
+     * and shared contents.
+     */
+    @Test
+    void testRestore() {
+        Utterance original = createUtterance("0");
+        UtteranceSnapshot snapshot = UtteranceSnapshot.capture(original);
+        assertNotNull(snapshot);
+        assertEquals(5, snapshot.getItemCount());
+
+        Utterance restored = new Utterance(null);
+        snapshot.restore(restored);
+        assertEquals("21 cats", restored.getString("input_text"));
+        assertEquals(names(original.getRelation(Relation.TOKEN)), names(restored.getRelation(Relation.TOKEN)));
+        assertEquals(names(original.getRelation(Relation.WORD)), names(restored.getRelation(Relation.WORD)));
+
+        Item word = restored.getRelation(Relation.WORD).getTail();
+        assertEquals(0.5f, word.getFeatures().getFloat("end"));
+        assertEquals("cats", word.getItemAs(Relation.TOKEN).getParent().getFeatures().getString("name"));
+        assertTrue(word.equalsShared(restored.getRelation(Relation.TOKEN).getTail().getDaughter()));
+    }
+
+    /**
+     * Tests that the token positions of the utterance are kept.
+     */
+    @Test
+    void testTokenPositions() {
+        UtteranceSnapshot snapshot = UtteranceSnapshot.capture(createUtterance("0"));
+        Utterance utterance = createUtterance("42");
+        snapshot.restore(utterance);
+        Item token = utterance.getRelation(Relation.TOKEN).getHead();
+        assertEquals("42", token.getFeatures().getString("file_pos"));
+        assertEquals("42", token.getNext().getFeatures().getString("file_pos"));
+    }
+
+    /**
+     * Tests that utterances with mutable feature values are not
+     * captured.
+     */
+    @Test
+    void testMutableFeature() {
+        Utterance utterance = createUtterance("0");
+        utterance.setObject("samples", new int[1]);
+        assertNull(UtteranceSnapshot.capture(utterance));
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.Token;
+import com.sun.speech.freetts.Tokenizer;
+import com.sun.speech.freetts.UtteranceProcessor;
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.audio.AudioPlayer;
+import com.sun.speech.freetts.audio.NullAudioPlayer;
+import com.sun.speech.freetts.audio.PromptStore;
+import com.sun.speech.freetts.audio.RecordingAudioPlayer;
+import com.sun.speech.freetts.lexicon.Lexicon;
+import com.sun.speech.freetts.util.LRUCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * JUnit Tests for the finished audio cache of the Voice class
+ *
+ * @version 1.0
+ */
+public class VoiceAudioCacheTests {
+
+    private static final AudioFormat FORMAT = new AudioFormat(16000f, 16, 1, true, true);
+
+    private TestVoice voice;
+    private long lexiconGeneration;
+
+    /**
+     * A voice that speaks each text as one utterance, whose audio is
+     * made up from the text and the pitch of the voice.
+     */
+    private static class TestVoice extends Voice {
+
+        int processed;
+        int synthesized;
+        AudioPlayer voicePlayer;
+        AudioPlayer utterancePlayer;
+
+        @Override
+        public Tokenizer getTokenizer() {
+            return new Tokenizer() {
+                private String text;
+
+                @Override
+                public void setInputText(String textToTokenize) {
+                    text = textToTokenize;
+                }
+
+                @Override
+                public void setInputReader(Reader reader) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Token getNextToken() {
+                    Token token = new Token();
+                    token.setWord(text);
+                    text = null;
+                    return token;
+                }
+
+                @Override
+                public boolean hasMoreTokens() {
+                    return text != null;
+                }
+
+                @Override
+                public boolean hasErrors() {
+                    return false;
+                }
+
+                @Override
+                public String getErrorDescription() {
+                    return null;
+                }
+
+                @Override
+                public void setWhitespaceSymbols(String symbols) {
+                }
+
+                @Override
+                public void setSingleCharSymbols(String symbols) {
+                }
+
+                @Override
+                public void setPrepunctuationSymbols(String symbols) {
+                }
+
+                @Override
+                public void setPostpunctuationSymbols(String symbols) {
+                }
+
+                @Override
+                public boolean isBreak() {
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        protected void loader() {
+            getUtteranceProcessors().add(utterance -> processed++);
+        }
+
+        @Override
+        protected UtteranceProcessor getAudioOutput() {
+            return utterance -> {
+                synthesized++;
+                voicePlayer = utterance.getVoice().getAudioPlayer();
+                utterancePlayer = utterance.getAudioPlayer();
+                byte[] text = utterance.getString("input_text").getBytes();
+                byte[] audio = new byte[text.length * 2];
+                for (int i = 0; i < text.length; i++) {
+                    audio[i * 2] = text[i];
+                    audio[i * 2 + 1] = (byte) getPitch();
+                }
+                try {
+                    utterancePlayer.setAudioFormat(FORMAT);
+                    utterancePlayer.setVolume(getVolume());
+                    utterancePlayer.begin(audio.length);
+                    utterancePlayer.write(audio);
+                    utterancePlayer.end();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        voice = new TestVoice();
+        voice.setLexicon(new Lexicon() {
+            @Override
+            public String[] getPhones(String word, String partOfSpeech) {
+                return null;
+            }
+
+            @Override
+            public String[] getPhones(String word, String partOfSpeech, boolean useLTS) {
+                return null;
+            }
+
+            @Override
+            public void addAddendum(String word, String partOfSpeech, String[] phones) {
+                lexiconGeneration++;
+            }
+
+            @Override
+            public void removeAddendum(String word, String partOfSpeech) {
+                lexiconGeneration++;
+            }
+
+            @Override
+            public long getGeneration() {
+                return lexiconGeneration;
+            }
+
+            @Override
+            public boolean isSyllableBoundary(List<String> syllablePhones, String[] wordPhones, int currentWordPhone) {
+                return false;
+            }
+
+            @Override
+            public void load() {
+            }
+
+            @Override
+            public boolean isLoaded() {
+                return true;
+            }
+        });
+        voice.allocate();
+        voice.setAudioCacheSize(1 << 20);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        voice.deallocate();
+    }
+
+    /**
+     * Speaks the text and returns the recording of what was played.
+     */
+    private RecordingAudioPlayer speak(String text) {
+        RecordingAudioPlayer player = new RecordingAudioPlayer(new NullAudioPlayer());
+        player.setAudioFormat(FORMAT);
+        voice.setAudioPlayer(player);
+        assertTrue(voice.speak(text));
+        return player;
+    }
+
+    /**
+     * Tests that cached audio is played without running the utterance
+     * processors, and that it is the same audio as the synthesized.
+     */
+    @Test
+    void testHit() {
+        RecordingAudioPlayer synthesized = speak("hello there");
+        RecordingAudioPlayer replayed = speak("hello there");
+        assertEquals(1, voice.processed);
+        assertEquals(1, voice.synthesized);
+        assertEquals(1, voice.getAudioCache().getHits());
+        assertEquals(22, replayed.getRecordedAudio().length);
+        assertArrayEquals(synthesized.getRecordedAudio(), replayed.getRecordedAudio());
+        assertTrue(replayed.isComplete());
+        assertTrue(FORMAT.matches(replayed.getRecordedFormat()));
+    }
+
+    /**
+     * Tests that other text, prosody, volume or an audio player of
+     * another encoding miss the cache.
+     */
+    @Test
+    void testMiss() {
+        speak("hello there");
+        speak("hello again");
+        assertEquals(2, voice.synthesized);
+
+        voice.setPitch(120);
+        RecordingAudioPlayer higher = speak("hello there");
+        assertEquals(3, voice.synthesized);
+        assertEquals(120, higher.getRecordedAudio()[1]);
+
+        voice.setVolume(0.5f);
+        speak("hello there");
+        assertEquals(4, voice.synthesized);
+
+        RecordingAudioPlayer player = new RecordingAudioPlayer(new NullAudioPlayer());
+        player.setAudioFormat(new AudioFormat(AudioFormat.Encoding.ULAW, 16000f, 8, 1, 1, 16000f, false));
+        voice.setAudioPlayer(player);
+        assertTrue(voice.speak("hello there"));
+        assertEquals(5, voice.synthesized);
+
+        LRUCache<String, ?> cache = voice.getAudioCache();
+        assertEquals(0, cache.getHits());
+        assertEquals(5, cache.getMisses());
+    }
+
+    /**
+     * Tests that cached audio is not played on a player that is set to
+     * another format, and that the player keeps its format.
+     */
+    @Test
+    void testPlayerFormat() {
+        speak("hello there");
+        AudioFormat slower = new AudioFormat(8000f, 16, 1, true, true);
+        List<AudioFormat> formats = new ArrayList<>();
+        RecordingAudioPlayer player = new RecordingAudioPlayer(new NullAudioPlayer()) {
+            @Override
+            public void setAudioFormat(AudioFormat format) {
+                formats.add(format);
+                super.setAudioFormat(format);
+            }
+        };
+        player.setAudioFormat(slower);
+        voice.setAudioPlayer(player);
+        assertTrue(voice.speak("hello there"));
+        assertEquals(2, voice.synthesized);
+        assertEquals(List.of(slower, FORMAT), formats);
+
+        RecordingAudioPlayer replayed = speak("hello there");
+        assertEquals(2, voice.synthesized);
+        assertEquals(22, replayed.getRecordedAudio().length);
+    }
+
+    /**
+     * Tests that resizing the cache discards the cached audio, and that
+     * a size of 0 disables it.
+     */
+    @Test
+    void testInvalidation() {
+        speak("hello there");
+        voice.setAudioCacheSize(1 << 20);
+        speak("hello there");
+        assertEquals(2, voice.synthesized);
+        assertEquals(0, voice.getAudioCache().getHits());
+
+        voice.setAudioCacheSize(0);
+        assertNull(voice.getAudioCache());
+        speak("hello there");
+        assertEquals(3, voice.synthesized);
+    }
+
+    /**
+     * Tests that a change to the lexicon discards the cached audio.
+     */
+    @Test
+    void testLexiconChange() {
+        speak("hello there");
+        speak("hello there");
+        assertEquals(1, voice.synthesized);
+
+        voice.getLexicon().addAddendum("hello", null, new String[] {"hh", "ax", "l", "ow"});
+        speak("hello there");
+        assertEquals(2, voice.synthesized);
+        assertEquals(1, voice.getAudioCache().size());
+        speak("hello there");
+        assertEquals(2, voice.synthesized);
+    }
+
+    /**
+     * Tests that the audio output is recorded through the utterance,
+     * leaving the audio player of the voice in place.
+     */
+    @Test
+    void testPlayerNotReplaced() {
+        RecordingAudioPlayer player = speak("hello there");
+        assertSame(player, voice.voicePlayer);
+        assertTrue(voice.utterancePlayer instanceof RecordingAudioPlayer);
+        assertSame(player, ((RecordingAudioPlayer) voice.utterancePlayer).getPlayer());
+        assertSame(player, voice.getAudioPlayer());
+        assertFalse(voice.utterancePlayer == player);
+    }
+
+    /**
+     * Tests that audio added to a prompt store is replayed from it.
+     */
+    @Test
+    void testPromptStore() throws IOException {
+        Path path = Files.createTempFile("prompts", ".fps");
+        Files.delete(path);
+        try (PromptStore store = new PromptStore(path, true)) {
+            voice.setAudioCacheSize(0);
+            voice.setPromptStore(store);
+            RecordingAudioPlayer synthesized = speak("hello there");
+            assertEquals(1, store.size());
+            RecordingAudioPlayer replayed = speak("hello there");
+            assertEquals(1, voice.synthesized);
+            assertArrayEquals(synthesized.getRecordedAudio(), replayed.getRecordedAudio());
+        } finally {
+            voice.setPromptStore(null);
+            Files.deleteIfExists(path);
+        }
+    }
+}
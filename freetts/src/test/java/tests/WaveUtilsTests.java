@@ -0,0 +1,201 @@
+/*
+ * See the file "license.terms" for information on usage and
+ * redistribution of this file, and for a DISCLAIMER OF ALL
+ * WARRANTIES.
+ */
+
+package tests;
+
+import com.sun.speech.freetts.util.WaveUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * JUnit Tests for the G.711 encoders of the WaveUtils class.  They
+ * are checked against the reference coder of Sun's public domain
+ * g711.c, which is transcribed here as it is written in C.
+ *
+ * @version 1.0
+ */
+public class WaveUtilsTests {
+
+    private static final int SIGN_BIT = 0x80;
+    private static final int QUANT_MASK = 0xf;
+    private static final int SEG_SHIFT = 4;
+    private static final int SEG_MASK = 0x70;
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 8159;
+
+    private static final short[] SEG_AEND = {0x1F, 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF};
+    private static final short[] SEG_UEND = {0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF, 0x1FFF};
+
+    /**
+     * search() of g711.c.
+     */
+    private static short search(int val, short[] table, int size) {
+        for (short i = 0; i < size; i++) {
+            if (val <= table[i]) {
+                return i;
+            }
+        }
+        return (short) size;
+    }
+
+    /**
+     * linear2alaw() of g711.c.
+     *
+     * @param pcmVal 2's complement (16-bit range)
+     * @return the A-law code
+     */
+    static byte linear2alaw(short pcmVal) {
+        int mask;
+        int seg;
+        int aval;
+
+        pcmVal = (short) (pcmVal >> 3);
+
+        if (pcmVal >= 0) {
+            mask = 0xD5;        /* sign (7th) bit = 1 */
+        } else {
+            mask = 0x55;        /* sign bit = 0 */
+            pcmVal = (short) (-pcmVal - 1);
+        }
+
+        /* Convert the scaled magnitude to segment number. */
+        seg = search(pcmVal, SEG_AEND, 8);
+
+        /* Combine the sign, segment, and quantization bits. */
+
+        if (seg >= 8) {         /* out of range, return maximum value. */
+            return (byte) (0x7F ^ mask);
+        } else {
+            aval = seg << SEG_SHIFT;
+            if (seg < 2) {
+                aval |= (pcmVal >> 1) & QUANT_MASK;
+            } else {
+                aval |= (pcmVal >> seg) & QUANT_MASK;
+            }
+            return (byte) (aval ^ mask);
+        }
+    }
+
+    /**
+     * alaw2linear() of g711.c.
+     *
+     * @param aVal the A-law code
+     * @return the 16-bit linear sample
+     */
+    static int alaw2linear(byte aVal) {
+        int a = (aVal & 0xFF) ^ 0x55;
+        int t = (a & QUANT_MASK) << 4;
+        int seg = (a & SEG_MASK) >> SEG_SHIFT;
+        switch (seg) {
+            case 0:
+                t += 8;
+                break;
+            case 1:
+                t += 0x108;
+                break;
+            default:
+                t += 0x108;
+                t <<= seg - 1;
+        }
+        return (a & SIGN_BIT) != 0 ? t : -t;
+    }
+
+    /**
+     * linear2ulaw() of g711.c.
+     *
+     * @param pcmVal 2's complement (16-bit range)
+     * @return the u-law code
+     */
+    static byte linear2ulaw(short pcmVal) {
+        int mask;
+        int seg;
+        int uval;
+
+        /* Get the sign and the magnitude of the value. */
+        pcmVal = (short) (pcmVal >> 2);
+        if (pcmVal < 0) {
+            pcmVal = (short) -pcmVal;
+            mask = 0x7F;
+        } else {
+            mask = 0xFF;
+        }
+        if (pcmVal > CLIP) {
+            pcmVal = CLIP;      /* clip the magnitude */
+        }
+        pcmVal += (BIAS >> 2);
+
+        /* Convert the scaled magnitude to segment number. */
+        seg = search(pcmVal, SEG_UEND, 8);
+
+        /*
+         * Combine the sign, segment, quantization bits;
+         * and complement the code word.
+         */
+        if (seg >= 8) {         /* out of range, return maximum value. */
+            return (byte) (0x7F ^ mask);
+        } else {
+            uval = (seg << 4) | ((pcmVal >> (seg + 1)) & 0xF);
+            return (byte) (uval ^ mask);
+        }
+    }
+
+    /**
+     * ulaw2linear() of g711.c.
+     *
+     * @param uVal the u-law code
+     * @return the 16-bit linear sample
+     */
+    static int ulaw2linear(byte uVal) {
+        int u = ~uVal & 0xFF;
+        int t = ((u & QUANT_MASK) << 3) + BIAS;
+        t <<= (u & SEG_MASK) >> SEG_SHIFT;
+        return (u & SIGN_BIT) != 0 ? BIAS - t : t - BIAS;
+    }
+
+    /**
+     * Tests the codes of zero, the extremes and one level in between.
+     */
+    @Test
+    void testKnownCodes() {
+        assertEquals((byte) 0xFF, WaveUtils.linearToUlaw((short) 0));
+        assertEquals((byte) 0xCE, WaveUtils.linearToUlaw((short) 1000));
+        assertEquals((byte) 0x4E, WaveUtils.linearToUlaw((short) -1000));
+        assertEquals((byte) 0x80, WaveUtils.linearToUlaw(Short.MAX_VALUE));
+        assertEquals((byte) 0x00, WaveUtils.linearToUlaw(Short.MIN_VALUE));
+        assertEquals((byte) 0xD5, WaveUtils.linearToAlaw((short) 0));
+        assertEquals((byte) 0xFA, WaveUtils.linearToAlaw((short) 1000));
+        assertEquals((byte) 0x7A, WaveUtils.linearToAlaw((short) -1000));
+        assertEquals((byte) 0xAA, WaveUtils.linearToAlaw(Short.MAX_VALUE));
+        assertEquals((byte) 0x2A, WaveUtils.linearToAlaw(Short.MIN_VALUE));
+    }
+
+    /**
+     * Tests every 16 bit sample against the g711.c coder.
+     */
+    @Test
+    void testFullRange() {
+        for (int sample = Short.MIN_VALUE; sample <= Short.MAX_VALUE; sample++) {
+            short linear = (short) sample;
+            assertEquals(linear2ulaw(linear), WaveUtils.linearToUlaw(linear), "mu-law of " + sample);
+            assertEquals(linear2alaw(linear), WaveUtils.linearToAlaw(linear), "A-law of " + sample);
+        }
+    }
+
+    /**
+     * Tests that the level of every code decoded by g711.c is encoded
+     * back to the same code, except for the negative zero of mu-law.
+     */
+    @Test
+    void testDecodedLevels() {
+        for (int code = 0; code < 256; code++) {
+            assertEquals((byte) (code == 0x7F ? 0xFF : code),
+                    WaveUtils.linearToUlaw((short) ulaw2linear((byte) code)), "mu-law code " + code);
+            assertEquals((byte) code, WaveUtils.linearToAlaw((short) alaw2linear((byte) code)), "A-law code " + code);
+        }
+    }
+}
@@ -62,7 +62,7 @@ public class MbrolaAudioOutput implements UtteranceProcessor {
             logger.log(Level.DEBUG, "=== " + utterance.getString("input_text"));
         }
 
-        AudioPlayer audioPlayer = utterance.getVoice().getAudioPlayer();
+        AudioPlayer audioPlayer = utterance.getAudioPlayer();
 
         audioPlayer.setAudioFormat(MBROLA_AUDIO);
         audioPlayer.setVolume(utterance.getVoice().getVolume());